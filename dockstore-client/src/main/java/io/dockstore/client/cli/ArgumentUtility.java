@@ -19,6 +19,7 @@ package io.dockstore.client.cli;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 import io.swagger.client.model.DockstoreTool;
 import io.swagger.client.model.Workflow;
@@ -149,43 +150,38 @@ public final class ArgumentUtility {
     }
 
     public static int[] columnWidthsTool(List<DockstoreTool> containers) {
-        int[] maxWidths = { NAME_HEADER.length(), DESCRIPTION_HEADER.length(), GIT_HEADER.length() };
-
-        for (DockstoreTool container : containers) {
-            final String toolPath = container.getToolPath();
-            if (toolPath != null && toolPath.length() > maxWidths[0]) {
-                maxWidths[0] = toolPath.length();
-            }
-            final String description = container.getDescription();
-            if (description != null && description.length() > maxWidths[1]) {
-                maxWidths[1] = description.length();
-            }
-            final String gitUrl = container.getGitUrl();
-            if (gitUrl != null && gitUrl.length() > maxWidths[2]) {
-                maxWidths[2] = gitUrl.length();
-            }
-        }
-
-        maxWidths[1] = (maxWidths[1] > MAX_DESCRIPTION) ? MAX_DESCRIPTION : maxWidths[1];
-
-        return maxWidths;
+        return columnWidths(containers, DockstoreTool::getToolPath, DockstoreTool::getDescription, DockstoreTool::getGitUrl);
     }
 
     public static int[] columnWidthsWorkflow(List<Workflow> workflows) {
+        return columnWidths(workflows, Workflow::getPath, Workflow::getDescription, Workflow::getGitUrl);
+    }
+
+    /**
+     * Widths of the name, description and git columns of a listing
+     *
+     * @param entries     the entries listed, tools or workflows in full or as summaries
+     * @param name        the name column of an entry
+     * @param description the description column of an entry
+     * @param gitUrl      the git column of an entry
+     * @return the widest value of each column, the description capped at {@link #MAX_DESCRIPTION}
+     */
+    public static <T> int[] columnWidths(List<T> entries, Function<T, String> name, Function<T, String> description,
+        Function<T, String> gitUrl) {
         int[] maxWidths = { NAME_HEADER.length(), DESCRIPTION_HEADER.length(), GIT_HEADER.length() };
 
-        for (Workflow workflow : workflows) {
-            final String workflowGitPath = workflow.getPath();
-            if (workflowGitPath != null && workflowGitPath.length() > maxWidths[0]) {
-                maxWidths[0] = workflowGitPath.length();
+        for (T entry : entries) {
+            final String entryName = name.apply(entry);
+            if (entryName != null && entryName.length() > maxWidths[0]) {
+                maxWidths[0] = entryName.length();
             }
-            final String description = workflow.getDescription();
-            if (description != null && description.length() > maxWidths[1]) {
-                maxWidths[1] = description.length();
+            final String entryDescription = description.apply(entry);
+            if (entryDescription != null && entryDescription.length() > maxWidths[1]) {
+                maxWidths[1] = entryDescription.length();
             }
-            final String gitUrl = workflow.getGitUrl();
-            if (gitUrl != null && gitUrl.length() > maxWidths[2]) {
-                maxWidths[2] = gitUrl.length();
+            final String entryGitUrl = gitUrl.apply(entry);
+            if (entryGitUrl != null && entryGitUrl.length() > maxWidths[2]) {
+                maxWidths[2] = entryGitUrl.length();
             }
         }
 
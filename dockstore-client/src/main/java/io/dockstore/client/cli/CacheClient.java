@@ -0,0 +1,129 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.client.cli;
+package io.dockstore.client.cli;
+
+import java.util.List;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.Parameters;
+import io.dockstore.common.FileCache;
+import io.dockstore.common.TabExpansionUtil;
+import org.apache.commons.configuration2.INIConfiguration;
+import org.apache.commons.configuration2.ex.ConversionException;
+
+import static io.dockstore.client.cli.ArgumentUtility.errorMessage;
+import static io.dockstore.client.cli.ArgumentUtility.out;
+import static io.dockstore.client.cli.JCommanderUtility.printJCommanderHelp;
+
+/**
+ * Inspect and prune the cache of input files used by the launchers, see {@link FileCache}
+ */
+public final class CacheClient {
+
+    private CacheClient() {
+        // disable constructor for utility class
+    }
+
+    private static JCommander addCommand(JCommander parentCommand, String commandName, Object commandObject) {
+        parentCommand.addCommand(commandName, commandObject);
+        return parentCommand.getCommands().get(commandName);
+    }
+
+    /**
+     * @param args
+     * @param configFile
+     */
+    public static boolean handleCommand(List<String> args, INIConfiguration configFile) {
+        String[] argv = args.toArray(new String[args.size()]);
+        JCommander jc = new JCommander();
+
+        CommandCache commandCache = new CommandCache();
+        JCommander jcCache = addCommand(jc, "cache", commandCache);
+
+        CommandCacheStats commandCacheStats = new CommandCacheStats();
+        addCommand(jcCache, "stats", commandCacheStats);
+
+        CommandCachePrune commandCachePrune = new CommandCachePrune();
+        addCommand(jcCache, "prune", commandCachePrune);
+        // Not parsing with jc because we know the first command was cache.  jc's purpose is to display help
+        try {
+            jcCache.parse(argv);
+            if (args.isEmpty() || commandCache.help) {
+                printJCommanderHelp(jc, "dockstore", "cache");
+            } else {
+                switch (jcCache.getParsedCommand()) {
+                case "stats":
+                    if (commandCacheStats.help) {
+                        printJCommanderHelp(jc, "dockstore", "cache");
+                    } else {
+                        out(TabExpansionUtil.aligned(new FileCache(configFile).statistics().toString()));
+                    }
+                    break;
+                case "prune":
+                    if (commandCachePrune.help) {
+                        printJCommanderHelp(jc, "dockstore", "cache");
+                    } else {
+                        return handlePrune(configFile, commandCachePrune.size);
+                    }
+                    break;
+                default:
+                    // fall through
+                }
+            }
+        } catch (ParameterException e) {
+            printJCommanderHelp(jc, "dockstore", "cache");
+        }
+        return true;
+    }
+
+    private static boolean handlePrune(INIConfiguration configFile, String size) {
+        long maxBytes = 0;
+        try {
+            maxBytes = size == null ? FileCache.parseSize(configFile, FileCache.CACHE_MAX_SIZE, "0") : FileCache.parseSize(size);
+        } catch (IllegalArgumentException | ConversionException e) {
+            errorMessage(e.getMessage(), Client.CLIENT_ERROR);
+        }
+        FileCache cache = new FileCache(configFile);
+        long before = cache.statistics().getBytes();
+        FileCache.Statistics statistics = cache.prune(maxBytes);
+        out("Pruned " + (before - statistics.getBytes()) + " bytes");
+        out(TabExpansionUtil.aligned(statistics.toString()));
+        return true;
+    }
+
+    @Parameters(separators = "=", commandDescription = "Inspect and prune the cache of input files")
+    private static class CommandCache {
+        @Parameter(names = "--help", description = "Prints help for cache command", help = true)
+        private boolean help = false;
+    }
+
+    @Parameters(separators = "=", commandDescription = "Show how many files the cache holds and how large it is")
+    private static class CommandCacheStats {
+        @Parameter(names = "--help", description = "Prints help for stats command", help = true)
+        private boolean help = false;
+    }
+
+    @Parameters(separators = "=", commandDescription = "Delete unfinished files and the least recently used files until the cache fits its maximum size")
+    private static class CommandCachePrune {
+        @Parameter(names = "--size", description = "Size to prune to, e.g. 500M or 20G, instead of cache-max-size from the config file. 0 only deletes unfinished files")
+        private String size;
+        @Parameter(names = "--help", description = "Prints help for prune command", help = true)
+        private boolean help = false;
+    }
+}
@@ -570,6 +570,7 @@ public class Client {
         out("   workflow            Puts dockstore into workflow mode.");
         out("   checker             Puts dockstore into checker mode.");
         out("   plugin              Configure and debug plugins.");
+        out("   cache               Inspect and prune the cache of input files.");
         out("");
         printLineBreak();
         out("");
@@ -681,6 +682,8 @@ public class Client {
                         targetClient = getWorkflowClient();
                     } else if ("plugin".equals(mode)) {
                         handled = PluginClient.handleCommand(args, Utilities.parseConfig(configFile));
+                    } else if ("cache".equals(mode)) {
+                        handled = CacheClient.handleCommand(args, Utilities.parseConfig(configFile));
                     } else if ("search".equals(mode)) {
                         handled = SearchClient.handleCommand(args, this.extendedGA4GHApi);
                     } else if ("checker".equals(mode)) {
@@ -94,6 +94,11 @@ public abstract class AbstractEntryClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractEntryClient.class);
     protected boolean isAdmin = false;
+    /**
+     * how many runs of a batch to launch at once, 0 to launch them one after another without a batch summary
+     */
+    private int parallel = 0;
+    private boolean continueOnError = false;
 
     static String getCleanedDescription(String description) {
         if (description != null) {
@@ -106,6 +111,26 @@ public abstract class AbstractEntryClient {
         return description;
     }
 
+    public int getParallel() {
+        return parallel;
+    }
+
+    public boolean isContinueOnError() {
+        return continueOnError;
+    }
+
+    /**
+     * @param parallel        how many runs of a batch to launch at once, null to launch them one after another without a batch summary
+     * @param continueOnError whether the rest of a batch is launched after a run fails
+     */
+    protected void setBatchOptions(Integer parallel, boolean continueOnError) {
+        if (parallel != null && parallel < 1) {
+            errorMessage("dockstore: --parallel must be at least 1", CLIENT_ERROR);
+        }
+        this.parallel = parallel == null ? 0 : parallel;
+        this.continueOnError = continueOnError;
+    }
+
     public CWL getCwlUtil() {
         String cwlrunner = CWLRunnerFactory.getCWLRunner();
         return new CWL(cwlrunner.equalsIgnoreCase(CWLRunnerFactory.CWLRunner.BUNNY.toString()), Utilities.parseConfig(getConfigFile()));
@@ -881,6 +906,12 @@ public abstract class AbstractEntryClient {
         String jsonRun = optVal(args, "--json", null);
         final String csvRuns = optVal(args, "--tsv", null);
         final String uuid = optVal(args, "--uuid", null);
+        final String parallel = optVal(args, "--parallel", null);
+        try {
+            setBatchOptions(parallel == null ? null : Integer.valueOf(parallel), args.remove("--continue-on-error"));
+        } catch (NumberFormatException e) {
+            errorMessage("dockstore: --parallel must be a number", CLIENT_ERROR);
+        }
 
         if (!(yamlRun != null ^ jsonRun != null ^ csvRuns != null)) {
             errorMessage("One of  --json, --yaml, and --tsv is required", CLIENT_ERROR);
@@ -1230,6 +1261,8 @@ public abstract class AbstractEntryClient {
         out("  --local-entry                       Allows you to specify a full path to a local descriptor for --entry instead of an entry path");
         out("  --wdl-output-target                 Allows you to specify a remote path to provision output files to ex: s3://oicr.temp/testing-launcher/");
         out("  --uuid                              Allows you to specify a uuid for 3rd party notifications");
+        out("  --parallel <runs>                   Launch this many runs of a JSON/YAML array or TSV at once, each in its own directory, and summarize them at the end (Only for CWL)");
+        out("  --continue-on-error                 With --parallel, keep launching runs after one fails instead of skipping the rest");
         printHelpFooter();
     }
 
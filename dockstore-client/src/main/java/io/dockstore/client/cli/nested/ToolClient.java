@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import com.google.common.base.Joiner;
@@ -43,6 +44,7 @@ import io.swagger.client.model.PublishRequest;
 import io.swagger.client.model.SourceFile;
 import io.swagger.client.model.StarRequest;
 import io.swagger.client.model.Tag;
+import io.swagger.client.model.ToolSummary;
 import io.swagger.client.model.User;
 import io.swagger.client.model.VerifyRequest;
 import org.apache.commons.validator.routines.EmailValidator;
@@ -56,6 +58,7 @@ import static io.dockstore.client.cli.ArgumentUtility.MAX_DESCRIPTION;
 import static io.dockstore.client.cli.ArgumentUtility.NAME_HEADER;
 import static io.dockstore.client.cli.ArgumentUtility.WDL_STRING;
 import static io.dockstore.client.cli.ArgumentUtility.boolWord;
+import static io.dockstore.client.cli.ArgumentUtility.columnWidths;
 import static io.dockstore.client.cli.ArgumentUtility.columnWidthsTool;
 import static io.dockstore.client.cli.ArgumentUtility.containsHelpRequest;
 import static io.dockstore.client.cli.ArgumentUtility.errorMessage;
@@ -157,8 +160,17 @@ public class ToolClient extends AbstractEntryClient {
 
     private static void printPublishedList(List<DockstoreTool> containers) {
         Collections.sort(containers, new ToolComparator());
+        printPublishedList(containers, DockstoreTool::getToolPath, DockstoreTool::getDescription, DockstoreTool::getGitUrl);
+    }
 
-        int[] maxWidths = columnWidthsTool(containers);
+    private static void printPublishedSummaries(List<ToolSummary> summaries) {
+        summaries.sort(Comparator.comparing(ToolSummary::getPath, String.CASE_INSENSITIVE_ORDER));
+        printPublishedList(summaries, ToolSummary::getToolPath, ToolSummary::getDescription, ToolSummary::getGitUrl);
+    }
+
+    private static <T> void printPublishedList(List<T> containers, Function<T, String> toolPath, Function<T, String> description,
+        Function<T, String> gitUrl) {
+        int[] maxWidths = columnWidths(containers, toolPath, description, gitUrl);
 
         int nameWidth = maxWidths[0] + Client.PADDING;
         int descWidth = maxWidths[1] + Client.PADDING;
@@ -166,17 +178,9 @@ public class ToolClient extends AbstractEntryClient {
         String format = "%-" + nameWidth + "s%-" + descWidth + "s%-" + gitWidth + "s";
         outFormatted(format, NAME_HEADER, DESCRIPTION_HEADER, GIT_HEADER);
 
-        for (DockstoreTool container : containers) {
-            String description = "";
-            String gitUrl = "";
-
-            if (container.getGitUrl() != null && !container.getGitUrl().isEmpty()) {
-                gitUrl = container.getGitUrl();
-            }
-
-            description = getCleanedDescription(container.getDescription());
-
-            outFormatted(format, container.getToolPath(), description, gitUrl);
+        for (T container : containers) {
+            String containerDescription = getCleanedDescription(description.apply(container));
+            outFormatted(format, toolPath.apply(container), containerDescription, Strings.nullToEmpty(gitUrl.apply(container)));
         }
     }
 
@@ -196,7 +200,7 @@ public class ToolClient extends AbstractEntryClient {
 
     protected void handleSearch(String pattern) {
         try {
-            List<DockstoreTool> containers = containersApi.search(pattern);
+            List<DockstoreTool> containers = containersApi.search(pattern, null, null);
 
             out("MATCHING TOOLS");
             printLineBreak();
@@ -294,10 +298,10 @@ public class ToolClient extends AbstractEntryClient {
     @Override
     protected void handleListUnstarredEntries() {
         try {
-            List<DockstoreTool> containers = containersApi.allPublishedContainers();
+            List<ToolSummary> containers = containersApi.allPublishedContainers();
             out("ALL PUBLISHED TOOLS");
             printLineBreak();
-            printPublishedList(containers);
+            printPublishedSummaries(containers);
         } catch (ApiException ex) {
             exceptionMessage(ex, "", Client.API_ERROR);
         }
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.function.Function;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -44,6 +45,7 @@ import io.swagger.client.model.StarRequest;
 import io.swagger.client.model.User;
 import io.swagger.client.model.VerifyRequest;
 import io.swagger.client.model.Workflow;
+import io.swagger.client.model.WorkflowSummary;
 import io.swagger.client.model.WorkflowVersion;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.EnumUtils;
@@ -58,7 +60,7 @@ import static io.dockstore.client.cli.ArgumentUtility.NAME_HEADER;
 import static io.dockstore.client.cli.ArgumentUtility.NFL_STRING;
 import static io.dockstore.client.cli.ArgumentUtility.WDL_STRING;
 import static io.dockstore.client.cli.ArgumentUtility.boolWord;
-import static io.dockstore.client.cli.ArgumentUtility.columnWidthsWorkflow;
+import static io.dockstore.client.cli.ArgumentUtility.columnWidths;
 import static io.dockstore.client.cli.ArgumentUtility.containsHelpRequest;
 import static io.dockstore.client.cli.ArgumentUtility.errorMessage;
 import static io.dockstore.client.cli.ArgumentUtility.exceptionMessage;
@@ -103,7 +105,17 @@ public class WorkflowClient extends AbstractEntryClient {
     }
 
     private static void printWorkflowList(List<Workflow> workflows) {
-        int[] maxWidths = columnWidthsWorkflow(workflows);
+        printWorkflowList(workflows, Workflow::getPath, Workflow::getDescription, Workflow::getGitUrl, Workflow::isIsPublished);
+    }
+
+    private static void printWorkflowSummaries(List<WorkflowSummary> summaries) {
+        printWorkflowList(summaries, WorkflowSummary::getPath, WorkflowSummary::getDescription, WorkflowSummary::getGitUrl,
+            WorkflowSummary::isIsPublished);
+    }
+
+    private static <T> void printWorkflowList(List<T> workflows, Function<T, String> path, Function<T, String> description,
+        Function<T, String> gitUrl, Function<T, Boolean> published) {
+        int[] maxWidths = columnWidths(workflows, path, description, gitUrl);
 
         int nameWidth = maxWidths[0] + Client.PADDING;
         int descWidth = maxWidths[1] + Client.PADDING;
@@ -111,16 +123,16 @@ public class WorkflowClient extends AbstractEntryClient {
         String format = "%-" + nameWidth + "s%-" + descWidth + "s%-" + gitWidth + "s%-16s";
         outFormatted(format, NAME_HEADER, DESCRIPTION_HEADER, GIT_HEADER, "On Dockstore?");
 
-        for (Workflow workflow : workflows) {
-            String gitUrl = "";
+        for (T workflow : workflows) {
+            String workflowGitUrl = "";
 
-            if (workflow.getGitUrl() != null && !workflow.getGitUrl().isEmpty()) {
-                gitUrl = workflow.getGitUrl();
+            if (gitUrl.apply(workflow) != null && !gitUrl.apply(workflow).isEmpty()) {
+                workflowGitUrl = gitUrl.apply(workflow);
             }
 
-            String description = getCleanedDescription(workflow.getDescription());
+            String workflowDescription = getCleanedDescription(description.apply(workflow));
 
-            outFormatted(format, workflow.getPath(), description, gitUrl, boolWord(workflow.isIsPublished()));
+            outFormatted(format, path.apply(workflow), workflowDescription, workflowGitUrl, boolWord(published.apply(workflow)));
         }
     }
 
@@ -326,6 +338,7 @@ public class WorkflowClient extends AbstractEntryClient {
         String tsvRun = commandLaunch.tsv;
         String wdlOutputTarget = commandLaunch.wdlOutputTarget;
         String uuid = commandLaunch.uuid;
+        setBatchOptions(commandLaunch.parallel, commandLaunch.continueOnError);
 
         // trim the final slash on output if it is present, probably an error ( https://github.com/aws/aws-cli/issues/421 ) causes a double slash which can fail
         wdlOutputTarget = wdlOutputTarget != null ? wdlOutputTarget.replaceAll("/$", "") : null;
@@ -656,10 +669,10 @@ public class WorkflowClient extends AbstractEntryClient {
     @Override
     protected void handleListUnstarredEntries() {
         try {
-            List<Workflow> workflows = workflowsApi.allPublishedWorkflows();
+            List<WorkflowSummary> workflows = workflowsApi.allPublishedWorkflows();
             out("ALL PUBLISHED WORKFLOWS");
             printLineBreak();
-            printWorkflowList(workflows);
+            printWorkflowSummaries(workflows);
         } catch (ApiException ex) {
             exceptionMessage(ex, "", Client.API_ERROR);
         }
@@ -715,7 +728,7 @@ public class WorkflowClient extends AbstractEntryClient {
     @Override
     protected void handleSearch(String pattern) {
         try {
-            List<Workflow> workflows = workflowsApi.search(pattern);
+            List<Workflow> workflows = workflowsApi.search(pattern, null, null);
 
             out("MATCHING WORKFLOWS");
             printLineBreak();
@@ -1118,6 +1131,10 @@ public class WorkflowClient extends AbstractEntryClient {
         private boolean help = false;
         @Parameter(names = "--uuid", description = "Allows you to specify a uuid for 3rd party notifications")
         private String uuid;
+        @Parameter(names = "--parallel", description = "Launch this many runs of a JSON/YAML array or TSV at once, each in its own directory, and summarize them at the end (Only for CWL)")
+        private Integer parallel = null;
+        @Parameter(names = "--continue-on-error", description = "With --parallel, keep launching runs after one fails instead of skipping the rest")
+        private boolean continueOnError = false;
     }
 
 }
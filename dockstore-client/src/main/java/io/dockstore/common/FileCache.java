@@ -0,0 +1,498 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.util.concurrent.Striped;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.configuration2.INIConfiguration;
+import org.apache.commons.configuration2.ex.ConversionException;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of input files downloaded by the launchers, shared by all launches using the same cache directory.
+ * Each entry is keyed by the URL it was downloaded from and records the size, ETag and Last-Modified of the remote object,
+ * so that an object that changed since it was cached is downloaded again.
+ * Entries are written to a temporary file and renamed into place, so concurrent launches never see a partial entry.
+ * When the cache grows beyond cache-max-size, the least recently used entries are deleted.
+ */
+public class FileCache {
+    public static final String CACHE_MAX_SIZE = "cache-max-size";
+    public static final String CACHE_VERIFY_CHECKSUM = "cache-verify-checksum";
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileCache.class);
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long STALE_TEMP_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int HEAD_TIMEOUT_MILLIS = 10000;
+    private static final int LOCK_STRIPES = 1024;
+    /**
+     * shared by all caches in this process, two threads provisioning the same URL wait for each other and the second finds it cached
+     */
+    private static final Striped<Lock> LOCKS = Striped.lazyWeakLock(LOCK_STRIPES);
+    private static final String SIZE_UNITS = "KMGT";
+    private static final Pattern SIZE = Pattern.compile("(\\d+)\\s*(?:([" + SIZE_UNITS + "])(?:I?B)?|B)?");
+
+    private final Path directory;
+    private final long maxBytes;
+    private final boolean verifyChecksum;
+
+    public FileCache(INIConfiguration config) {
+        this(Paths.get(FileProvisioning.getCacheDirectory(config)), parseSize(config, CACHE_MAX_SIZE, "0"),
+            config.getBoolean(CACHE_VERIFY_CHECKSUM, false));
+    }
+
+    /**
+     * @param directory      where the entries are stored
+     * @param maxBytes       how large the cache may grow before least recently used entries are deleted, 0 for no limit
+     * @param verifyChecksum whether to check the checksum of an entry each time it is used, rather than only its size
+     */
+    FileCache(Path directory, long maxBytes, boolean verifyChecksum) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.verifyChecksum = verifyChecksum;
+    }
+
+    /**
+     * @param size a number of bytes, optionally followed by K, M, G or T and then by B or iB, as in 20G, 20GB or 20GiB.
+     *             The units are multiples of 1024 whichever way they are written
+     * @return the number of bytes
+     * @throws IllegalArgumentException if the size cannot be read
+     */
+    public static long parseSize(String size) {
+        Matcher matcher = SIZE.matcher(size.trim().toUpperCase(Locale.ENGLISH));
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(
+                "'" + size + "' is not a size, expected a number of bytes optionally followed by K, M, G or T");
+        }
+        try {
+            long bytes = Long.parseLong(matcher.group(1));
+            String unit = matcher.group(2);
+            return unit == null ? bytes : Math.multiplyExact(bytes, (long)Math.pow(FileUtils.ONE_KB, SIZE_UNITS.indexOf(unit) + 1));
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("'" + size + "' is too large", e);
+        }
+    }
+
+    /**
+     * @param config       the client configuration
+     * @param key          where the size is set in the configuration
+     * @param defaultValue the size when the key is not set
+     * @return the number of bytes, see {@link #parseSize(String)}
+     * @throws ConversionException naming the key if its value cannot be read
+     */
+    public static long parseSize(INIConfiguration config, String key, String defaultValue) {
+        try {
+            return parseSize(config.getString(key, defaultValue));
+        } catch (IllegalArgumentException e) {
+            throw new ConversionException("Invalid " + key + " in the config file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Take the lock for a URL, hold it from looking the URL up until it has been stored
+     *
+     * @param url the URL about to be provisioned
+     * @return the lock, already locked
+     */
+    public Lock lock(String url) {
+        Lock lock = LOCKS.get(key(url));
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Look up what the remote object currently is, only http and https URLs can be checked
+     *
+     * @param url where the file is downloaded from
+     * @return the size, ETag and Last-Modified of the object, all unknown if they could not be found
+     */
+    public Validator validatorFor(String url) {
+        String lowerCaseUrl = url.toLowerCase(Locale.ENGLISH);
+        if (!lowerCaseUrl.startsWith("http://") && !lowerCaseUrl.startsWith("https://")) {
+            return Validator.UNKNOWN;
+        }
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(HEAD_TIMEOUT_MILLIS).setSocketTimeout(HEAD_TIMEOUT_MILLIS)
+            .build();
+        try (CloseableHttpClient client = HttpClients.custom().setDefaultRequestConfig(requestConfig).build()) {
+            HttpResponse response = client.execute(new HttpHead(url));
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                return Validator.UNKNOWN;
+            }
+            Header length = response.getFirstHeader("Content-Length");
+            return new Validator(length == null ? -1 : Long.parseLong(length.getValue().trim()), headerValue(response, "ETag"),
+                headerValue(response, "Last-Modified"));
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.debug("Could not check " + url + " , the cached copy will be used if there is one", e);
+            return Validator.UNKNOWN;
+        }
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    /**
+     * Link or copy the cached copy of a URL into place, if there is one and it is still current
+     *
+     * @param url       where the file is downloaded from
+     * @param validator what the remote object currently is
+     * @param localPath where the file is needed
+     * @return true if the file was provisioned from the cache
+     */
+    public boolean retrieve(String url, Validator validator, Path localPath) {
+        Path content = contentPath(url);
+        Properties entry = readEntry(entryPath(url));
+        if (entry == null || Files.notExists(content)) {
+            return false;
+        }
+        if (!validator.matches(entry)) {
+            System.out.println("Cached copy of " + url + " is out of date, downloading it again");
+            return false;
+        }
+        try {
+            if (Files.size(content) != Long.parseLong(entry.getProperty("size"))) {
+                LOG.warn("Cached copy of " + url + " has the wrong size, downloading it again");
+                return false;
+            }
+            String sha256 = entry.getProperty("sha256");
+            if (verifyChecksum && sha256 != null && !sha256.equals(sha256(content))) {
+                LOG.warn("Cached copy of " + url + " has the wrong checksum, downloading it again");
+                return false;
+            }
+
+            final Path parentPath = localPath.getParent();
+            if (Files.notExists(parentPath)) {
+                Files.createDirectories(parentPath);
+            }
+            try {
+                Files.createLink(localPath, content);
+                System.out.println("Found file " + url + " in cache, hard-linking");
+            } catch (IOException e) {
+                LOG.error("Cannot create hard link to cached file, you may want to move your cache", e.getMessage());
+                Files.copy(content, localPath);
+                System.out.println("Found file " + url + " in cache, copied");
+            }
+            // the modification time of the entry orders the entries for eviction
+            Files.setLastModifiedTime(entryPath(url), FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            LOG.error("Could not use the cached copy of " + url + " , downloading it again", e);
+            return false;
+        }
+    }
+
+    /**
+     * Cache a file that has just been provisioned
+     *
+     * @param url       where the file was downloaded from
+     * @param validator what the remote object was when it was downloaded
+     * @param localPath where the file was downloaded to
+     */
+    public void store(String url, Validator validator, Path localPath) {
+        Path content = contentPath(url);
+        try {
+            Files.createDirectories(content.getParent());
+            Path tempContent = tempPath(content);
+            try {
+                Files.createLink(tempContent, localPath);
+                System.out.println("Caching file " + localPath + " in cache, hard-linking");
+            } catch (IOException e) {
+                LOG.info("Cannot create hard link for local file, copying", e);
+                Files.copy(localPath, tempContent);
+                System.out.println("Caching file " + localPath + " in cache, copied");
+            }
+
+            Properties entry = new Properties();
+            entry.setProperty("url", url);
+            entry.setProperty("size", Long.toString(Files.size(tempContent)));
+            if (verifyChecksum) {
+                entry.setProperty("sha256", sha256(tempContent));
+            }
+            validator.record(entry);
+            Path tempEntry = tempPath(entryPath(url));
+            try (OutputStream out = Files.newOutputStream(tempEntry)) {
+                entry.store(out, null);
+            }
+
+            // the content goes first, an entry whose size does not match its content is not used
+            moveIntoPlace(tempContent, content);
+            moveIntoPlace(tempEntry, entryPath(url));
+        } catch (IOException e) {
+            LOG.error("Could not cache " + url + " , skipping", e);
+        }
+    }
+
+    /**
+     * Delete the least recently used entries until the cache is within cache-max-size
+     */
+    public void evict() {
+        if (maxBytes > 0) {
+            prune(maxBytes);
+        }
+    }
+
+    /**
+     * Delete unfinished and orphaned files, then the least recently used entries until the cache is within the given size
+     *
+     * @param bytes the size to prune to, 0 for no limit
+     * @return the statistics of the cache after pruning
+     */
+    public Statistics prune(long bytes) {
+        List<CachedFile> entries = scan(true);
+        long total = entries.stream().mapToLong(entry -> entry.size).sum();
+        if (bytes > 0) {
+            entries.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+            for (CachedFile entry : entries) {
+                if (total <= bytes) {
+                    break;
+                }
+                // delete the entry first, content without an entry is never used
+                Lock lock = LOCKS.get(entry.key);
+                lock.lock();
+                try {
+                    Files.deleteIfExists(entry.entry);
+                    Files.deleteIfExists(entry.content);
+                    total -= entry.size;
+                    LOG.info("Evicted " + entry.content + " from the cache");
+                } catch (IOException e) {
+                    LOG.error("Could not evict " + entry.content + " from the cache", e);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        return statistics();
+    }
+
+    public Statistics statistics() {
+        List<CachedFile> entries = scan(false);
+        return new Statistics(directory, entries.size(), entries.stream().mapToLong(entry -> entry.size).sum(), maxBytes,
+            entries.stream().mapToLong(entry -> entry.lastUsed).min().orElse(0));
+    }
+
+    /**
+     * @param clean also delete temporary files left behind by launches that did not finish and content whose entry is missing
+     */
+    private List<CachedFile> scan(boolean clean) {
+        List<CachedFile> entries = new ArrayList<>();
+        if (Files.notExists(directory)) {
+            return entries;
+        }
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                String name = file.getFileName().toString();
+                try {
+                    if (name.endsWith(TEMP_SUFFIX)) {
+                        if (clean && Files.getLastModifiedTime(file).toMillis() < System.currentTimeMillis() - STALE_TEMP_MILLIS) {
+                            Files.deleteIfExists(file);
+                        }
+                    } else if (name.endsWith(ENTRY_SUFFIX)) {
+                        Path content = file.resolveSibling(name.substring(0, name.length() - ENTRY_SUFFIX.length()));
+                        if (Files.exists(content)) {
+                            entries.add(new CachedFile(file, content));
+                        }
+                    } else if (clean && Files.notExists(file.resolveSibling(name + ENTRY_SUFFIX))) {
+                        // cached by an older version of the launcher, or its entry was evicted
+                        Files.deleteIfExists(file);
+                    }
+                } catch (NoSuchFileException e) {
+                    // deleted by another launch while scanning
+                    LOG.debug("Cached file disappeared while scanning", e);
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Could not scan the cache " + directory, e);
+        }
+        return entries;
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return DigestUtils.sha256Hex(in);
+        }
+    }
+
+    private static Properties readEntry(Path entryPath) {
+        if (Files.notExists(entryPath)) {
+            return null;
+        }
+        Properties entry = new Properties();
+        try (InputStream in = Files.newInputStream(entryPath)) {
+            entry.load(in);
+            return entry.getProperty("size") == null ? null : entry;
+        } catch (IOException e) {
+            LOG.debug("Could not read cache entry " + entryPath, e);
+            return null;
+        }
+    }
+
+    private static String key(String url) {
+        return DigestUtils.sha1Hex(url);
+    }
+
+    private Path contentPath(String url) {
+        final String sha1 = key(url);
+        return directory.resolve(sha1.substring(0, 2)).resolve(sha1.substring(2));
+    }
+
+    private Path entryPath(String url) {
+        Path content = contentPath(url);
+        return content.resolveSibling(content.getFileName() + ENTRY_SUFFIX);
+    }
+
+    private static Path tempPath(Path path) {
+        return path.resolveSibling(path.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+    }
+
+    /**
+     * What a remote object was when it was downloaded
+     */
+    public static final class Validator {
+        static final Validator UNKNOWN = new Validator(-1, null, null);
+
+        private final long size;
+        private final String etag;
+        private final String lastModified;
+
+        Validator(long size, String etag, String lastModified) {
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * The strongest validator known on both sides decides, an entry is trusted when nothing is known about the remote object
+         */
+        boolean matches(Properties entry) {
+            if (etag != null && entry.getProperty("etag") != null) {
+                return etag.equals(entry.getProperty("etag"));
+            }
+            if (lastModified != null && entry.getProperty("lastModified") != null) {
+                return lastModified.equals(entry.getProperty("lastModified"));
+            }
+            return size < 0 || Objects.equals(Long.toString(size), entry.getProperty("size"));
+        }
+
+        void record(Properties entry) {
+            if (etag != null) {
+                entry.setProperty("etag", etag);
+            }
+            if (lastModified != null) {
+                entry.setProperty("lastModified", lastModified);
+            }
+        }
+    }
+
+    /**
+     * How much the cache holds
+     */
+    public static final class Statistics {
+        private final Path directory;
+        private final int entries;
+        private final long bytes;
+        private final long maxBytes;
+        private final long oldestUse;
+
+        Statistics(Path directory, int entries, long bytes, long maxBytes, long oldestUse) {
+            this.directory = directory;
+            this.entries = entries;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+            this.oldestUse = oldestUse;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("Cache directory\t").append(directory).append('\n');
+            builder.append("Files\t").append(entries).append('\n');
+            builder.append("Size\t").append(FileUtils.byteCountToDisplaySize(bytes)).append('\n');
+            builder.append("Maximum size\t").append(maxBytes > 0 ? FileUtils.byteCountToDisplaySize(maxBytes) : "unlimited").append('\n');
+            if (oldestUse > 0) {
+                builder.append("Least recently used\t").append(new Date(oldestUse)).append('\n');
+            }
+            return builder.toString();
+        }
+    }
+
+    private static final class CachedFile {
+        private final Path entry;
+        private final Path content;
+        private final String key;
+        private final long size;
+        private final long lastUsed;
+
+        CachedFile(Path entry, Path content) throws IOException {
+            this.entry = entry;
+            this.content = content;
+            this.key = content.getParent().getFileName().toString() + content.getFileName();
+            this.size = Files.size(content);
+            this.lastUsed = Files.getLastModifiedTime(entry).toMillis();
+        }
+    }
+}
@@ -21,17 +21,32 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
 
 import com.google.gson.Gson;
 import com.google.gson.stream.JsonReader;
@@ -58,13 +73,30 @@ import ro.fortsoft.pf4j.PluginManager;
 public final class FileProvisionUtil {
 
     static final String PLUGINS_JSON_FILENAME = "plugins.json";
+    private static final long TRANSFER_SIZE = 64 * FileUtils.ONE_MB;
     private static final Logger LOG = LoggerFactory.getLogger(FileProvisionUtil.class);
 
     private FileProvisionUtil() {
         // disable utility constructor
     }
 
-    static boolean downloadFromVFS2(String path, Path targetFilePath, int threads) {
+    /**
+     * @param threads     number of threads, used for display purposes
+     * @param connections number of ranges to download at once from servers that support them, 1 to always download as a whole
+     * @param partSize    bytes per range
+     */
+    static boolean downloadFromVFS2(String path, Path targetFilePath, int threads, int connections, long partSize) {
+        if (connections > 1 && RangedDownload.handles(path)) {
+            try {
+                if (new RangedDownload(path, targetFilePath, connections, partSize, threads).download()) {
+                    return true;
+                }
+            } catch (IOException e) {
+                // the ranges downloaded so far are kept, a retry fetches the rest
+                LOG.error(e.getMessage());
+                return false;
+            }
+        }
         // VFS call, see https://github.com/abashev/vfs-s3/tree/branch-2.3.x and
         // https://commons.apache.org/proper/commons-vfs/filesystems.html
         try {
@@ -128,6 +160,115 @@ public final class FileProvisionUtil {
         }
     }
 
+    /**
+     * Provision a local file or directory tree to a local destination. Each file is hard linked where possible, otherwise the
+     * file system copies it with FileChannel.transferTo without passing it through a buffer. The files of a directory are
+     * provisioned in parallel.
+     *
+     * @param threads number of files to provision at once
+     * @throws IOException throws an exception if unable to provision a file
+     */
+    static void copyLocal(Path source, Path destination, int threads) throws IOException {
+        if (!Files.isDirectory(source)) {
+            linkOrTransfer(source, destination, threads);
+            return;
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Future<Object>> futures = new ArrayList<>();
+        try {
+            Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(destination.resolve(source.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    Path nestedFile = destination.resolve(source.relativize(file));
+                    futures.add(executorService.submit(() -> {
+                        System.out.println("Provisioning from nested file " + file + " to " + nestedFile);
+                        linkOrTransfer(file, nestedFile, threads);
+                        return null;
+                    }));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while provisioning " + source);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException)e.getCause() : new IOException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static void linkOrTransfer(Path source, Path destination, int threads) throws IOException {
+        Path parent = destination.toAbsolutePath().getParent();
+        if (Files.notExists(parent)) {
+            Files.createDirectories(parent);
+        }
+        if (Files.exists(destination)) {
+            if (Files.isSameFile(source, destination)) {
+                return;
+            }
+            Files.delete(destination);
+        }
+        try {
+            Files.createLink(destination, source);
+            return;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.debug("Could not link " + source + " to " + destination + " , copying instead", e);
+        }
+
+        transfer(source, destination, threads);
+    }
+
+    /**
+     * Copy a file with FileChannel.transferTo, replacing the destination if it exists
+     *
+     * @param threads number of files provisioned at once, to lay out the progress
+     */
+    static void transfer(Path source, Path destination, int threads) throws IOException {
+        ProgressPrinter printer = new ProgressPrinter(threads, threads > 1 ? source.toString() : "");
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+            FileChannel out = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final long size = in.size();
+            transfer(in, out, position -> {
+                synchronized (System.out) {
+                    printer.handleProgress(position, size);
+                }
+            });
+        } finally {
+            // finalize output from the printer
+            System.out.println();
+        }
+    }
+
+    /**
+     * Copy all of a file in steps, to show progress
+     *
+     * @param progress called with the number of bytes copied so far after each step
+     * @throws IOException if a step copies nothing, e.g. because the file was truncated while it was copied
+     */
+    static void transfer(FileChannel in, WritableByteChannel out, LongConsumer progress) throws IOException {
+        final long size = in.size();
+        long position = 0;
+        while (position < size) {
+            long transferred = in.transferTo(position, Math.min(TRANSFER_SIZE, size - position), out);
+            if (transferred <= 0) {
+                throw new IOException("Copying stopped after " + position + " of " + size + " bytes");
+            }
+            position += transferred;
+            progress.accept(position);
+        }
+    }
+
     public static PluginManager getPluginManager(INIConfiguration config) {
         String filePluginLocation = getFilePluginLocation(config);
         // create plugin directory if it does not exist
@@ -34,6 +34,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -42,7 +43,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import io.dockstore.client.cli.Client;
 import io.dockstore.provision.ProvisionInterface;
-import org.apache.commons.codec.digest.DigestUtils;
+import io.dockstore.provision.StreamingProvisionInterface;
 import org.apache.commons.configuration2.INIConfiguration;
 import org.apache.commons.configuration2.SubnodeConfiguration;
 import org.apache.commons.io.FileUtils;
@@ -71,9 +72,22 @@ public class FileProvisioning {
 
     private static final int DEFAULT_RETRIES = 3;
     private static final String FILE_PROVISION_RETRIES = "file-provision-retries";
+
+    private static final int DEFAULT_CONNECTIONS = 1;
+    private static final String FILE_PROVISION_CONNECTIONS = "file-provision-connections";
+    private static final String FILE_PROVISION_PART_SIZE = "file-provision-part-size";
     private static final Logger LOG = LoggerFactory.getLogger(FileProvisioning.class);
     private final int threads;
-    private final boolean cache;
+    private final int connections;
+    private final long partSize;
+    /**
+     * downloads whatever no plugin handles
+     */
+    private final FileProvisionUtilPluginWrapper vfsWrapper;
+    /**
+     * null when caching is off
+     */
+    private final FileCache fileCache;
 
     private List<ProvisionInterface> plugins = new ArrayList<>();
 
@@ -83,9 +97,26 @@ public class FileProvisioning {
      * Constructor
      */
     public FileProvisioning(String configFile) {
+        this(configFile, null);
+    }
+
+    /**
+     * Constructor for provisioning shared by the runs of a batch, so input files used by several runs are only provisioned once
+     *
+     * @param batchCacheDirectory where to keep the input files of the batch when the cache is off, null for nowhere.
+     *                            Should be on the same filesystem as the working directories, the caller deletes it after the batch
+     */
+    public FileProvisioning(String configFile, Path batchCacheDirectory) {
         this.config = Utilities.parseConfig(configFile);
         this.threads = config.getInt(FileProvisioning.FILE_PROVISION_THREADS, FileProvisioning.DEFAULT_THREADS);
-        this.cache = isCacheOn(config);
+        if (isCacheOn(config)) {
+            this.fileCache = new FileCache(config);
+        } else {
+            this.fileCache = batchCacheDirectory == null ? null : new FileCache(batchCacheDirectory, 0, false);
+        }
+        this.connections = config.getInt(FILE_PROVISION_CONNECTIONS, DEFAULT_CONNECTIONS);
+        this.partSize = FileCache.parseSize(config, FILE_PROVISION_PART_SIZE, Long.toString(RangedDownload.DEFAULT_PART_SIZE));
+        this.vfsWrapper = new FileProvisionUtilPluginWrapper(threads, connections, partSize);
         try {
             PluginManager pluginManager = FileProvisionUtil.getPluginManager(config);
 
@@ -214,6 +245,9 @@ public class FileProvisioning {
             }
         }
         executorService.shutdownNow();
+        if (fileCache != null) {
+            fileCache.evict();
+        }
     }
 
     /**
@@ -225,48 +259,32 @@ public class FileProvisioning {
      * @param localPath         the absolute path where we will download files to
      */
     private void provisionInputFile(String parameterFilePath, String targetPath, Path localPath) {
+        URI objectIdentifier = URI.create(targetPath);    // throws IllegalArgumentException if it isn't a valid URI
+        // local files are linked into place, caching them would not save anything
+        if (fileCache == null || objectIdentifier.getScheme() == null) {
+            provisionInputFileUncached(parameterFilePath, targetPath, localPath, objectIdentifier);
+            return;
+        }
 
-        Path potentialCachedFile = null;
-        // check if a file exists in the cache and if it does, link/copy it into place
-        synchronized (LOG) {
-            if (cache) {
-                // check cache for cached files
-                final String cacheDirectory = getCacheDirectory(config);
-                // create cache directory
-                final Path cachePath = Paths.get(cacheDirectory);
-                if (Files.notExists(cachePath)) {
-                    if (!cachePath.toFile().mkdirs()) {
-                        throw new RuntimeException("Could not create dockstore cache: " + cacheDirectory);
-                    }
-                }
-
-                final String sha1 = DigestUtils.sha1Hex(targetPath);
-                final String sha1Prefix = sha1.substring(0, 2);
-                final String sha1Suffix = sha1.substring(2);
-                potentialCachedFile = Paths.get(cacheDirectory, sha1Prefix, sha1Suffix);
-                if (Files.exists(potentialCachedFile)) {
-                    System.out.println("Found file " + targetPath + " in cache, hard-linking");
-                    try {
-                        final Path parentPath = localPath.getParent();
-                        if (Files.notExists(parentPath)) {
-                            Files.createDirectory(parentPath);
-                        }
-                        Files.createLink(localPath, potentialCachedFile);
-                    } catch (IOException e) {
-                        LOG.error("Cannot create hard link to cached file, you may want to move your cache", e.getMessage());
-                        try {
-                            Files.copy(potentialCachedFile, localPath);
-                        } catch (IOException e1) {
-                            LOG.error("Could not copy " + targetPath + " to " + localPath, e);
-                            throw new RuntimeException("Could not copy " + targetPath + " to " + localPath, e1);
-                        }
-                        System.out.println("Found file " + targetPath + " in cache, copied");
-                    }
-                }
+        // only threads provisioning the same URL wait for each other
+        Lock lock = fileCache.lock(targetPath);
+        try {
+            // check if a current copy exists in the cache and if it does, link/copy it into place
+            FileCache.Validator validator = fileCache.validatorFor(targetPath);
+            if (fileCache.retrieve(targetPath, validator, localPath)) {
+                return;
             }
+            provisionInputFileUncached(parameterFilePath, targetPath, localPath, objectIdentifier);
+            // cache the file if we got it successfully, do not cache directories
+            if (Files.isRegularFile(localPath)) {
+                fileCache.store(targetPath, validator, localPath);
+            }
+        } finally {
+            lock.unlock();
         }
+    }
 
-        URI objectIdentifier = URI.create(targetPath);    // throws IllegalArgumentException if it isn't a valid URI
+    private void provisionInputFileUncached(String parameterFilePath, String targetPath, Path localPath, URI objectIdentifier) {
         if (objectIdentifier.getScheme() != null) {
             String scheme = objectIdentifier.getScheme().toLowerCase();
             for (ProvisionInterface provision : plugins) {
@@ -328,40 +346,26 @@ public class FileProvisioning {
                 }
             }
         }
-
-        synchronized (LOG) {
-            // cache the file if we got it successfully
-            if (cache) {
-                // do not cache directories
-                if (localPath.toFile().isDirectory()) {
-                    return;
-                }
-                // populate cache
-                if (Files.notExists(potentialCachedFile)) {
-                    System.out.println("Caching file " + localPath + " in cache, hard-linking");
-                    try {
-                        // create parent directory
-                        final Path parentPath = potentialCachedFile.getParent();
-                        if (Files.notExists(parentPath)) {
-                            Files.createDirectory(parentPath);
-                        }
-                        Files.createLink(potentialCachedFile, localPath);
-                    } catch (IOException e) {
-                        LOG.error("Cannot create hard link for local file, skipping", e);
-                    }
-                }
-            }
-        }
     }
 
     private void handleDownloadProvisionWithRetries(String targetPath, Path localPath, ProvisionInterface provision) {
         int maxRetries = config.getInt(FILE_PROVISION_RETRIES, DEFAULT_RETRIES);
-        retryWrapper(provision, targetPath, localPath, maxRetries, true, threads);
+        retryWrapper(provision == null ? vfsWrapper : withStrategy(provision), targetPath, localPath, maxRetries, true, threads);
     }
 
     private void handleUploadProvisionWithRetries(String targetPath, Path localPath, ProvisionInterface provision, String metadata) {
         int maxRetries = config.getInt(FILE_PROVISION_RETRIES, DEFAULT_RETRIES);
-        retryWrapper(provision, targetPath, localPath, maxRetries, false, threads);
+        retryWrapper(withStrategy(provision), targetPath, localPath, maxRetries, false, threads);
+    }
+
+    /**
+     * @return a plugin that provisions through its channels when it has them, otherwise the plugin itself
+     */
+    private ProvisionInterface withStrategy(ProvisionInterface provision) {
+        if (provision instanceof StreamingProvisionInterface) {
+            return new StreamingPluginWrapper((StreamingProvisionInterface)provision, threads, connections, partSize);
+        }
+        return provision;
     }
 
     /**
@@ -386,6 +390,16 @@ public class FileProvisioning {
             // finalize output from the printer
             System.out.println();
         } else {
+            Path localDestination = localPath(destPath);
+            if (localDestination != null) {
+                System.out.println("Provisioning from " + srcPath + " to " + destPath);
+                try {
+                    FileProvisionUtil.copyLocal(sourceFile.toPath(), localDestination, threads);
+                } catch (IOException e) {
+                    throw new RuntimeException("Could not provision output files", e);
+                }
+                return;
+            }
             try {
                 FileSystemManager fsManager = VFS.getManager();
                 ((DefaultFileSystemManager)fsManager).setBaseFile(Paths.get("").toFile());
@@ -446,6 +460,31 @@ public class FileProvisioning {
         }
     }
 
+    /**
+     * @param destPath where to provision to
+     * @return the local path for a path without a scheme or a file:// url, null for anything else
+     */
+    private static Path localPath(String destPath) {
+        URI uri;
+        try {
+            uri = URI.create(destPath);
+        } catch (IllegalArgumentException e) {
+            LOG.debug(destPath + " not a uri");
+            return Paths.get(destPath).toAbsolutePath();
+        }
+        if (uri.getScheme() == null) {
+            return Paths.get(destPath).toAbsolutePath();
+        } else if (!"file".equalsIgnoreCase(uri.getScheme())) {
+            return null;
+        }
+        try {
+            return Paths.get(uri);
+        } catch (IllegalArgumentException e) {
+            // e.g. a host, leave it to vfs
+            return null;
+        }
+    }
+
     /**
      * This is an entry point for both WDL and CWL, where registered files are provisioned out.
      * @param outputSet pairs that describe files that we want to provision out
@@ -577,9 +616,22 @@ public class FileProvisioning {
     public static class FileProvisionUtilPluginWrapper implements ProvisionInterface {
 
         private final int threads;
+        private final int connections;
+        private final long partSize;
 
         FileProvisionUtilPluginWrapper(int threads) {
+            this(threads, DEFAULT_CONNECTIONS, RangedDownload.DEFAULT_PART_SIZE);
+        }
+
+        /**
+         * @param threads     number of threads, used for display purposes
+         * @param connections number of ranges of a file to download at once where the server supports it, 1 to download it as a whole
+         * @param partSize    bytes per range
+         */
+        FileProvisionUtilPluginWrapper(int threads, int connections, long partSize) {
             this.threads = threads;
+            this.connections = connections;
+            this.partSize = partSize;
         }
 
         @Override
@@ -589,7 +641,7 @@ public class FileProvisioning {
 
         @Override
         public boolean downloadFrom(String sourcePath, Path destination) {
-            return FileProvisionUtil.downloadFromVFS2(sourcePath, destination, threads);
+            return FileProvisionUtil.downloadFromVFS2(sourcePath, destination, threads, connections, partSize);
         }
 
         @Override
@@ -0,0 +1,386 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import io.dockstore.provision.ProgressPrinter;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+
+/**
+ * Downloads an object as parts fetched over several connections at once and written in place into a preallocated file,
+ * over http(s) or from a plugin that reads ranges.
+ * Which parts are complete is recorded next to the file, so after a failure the next attempt only fetches the missing parts,
+ * as long as the object has not changed in the meantime.
+ */
+final class RangedDownload {
+    static final long DEFAULT_PART_SIZE = 64 * FileUtils.ONE_MB;
+
+    private static final String STATE_SUFFIX = ".ranges";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final String url;
+    private final RangeSource source;
+    private final Path target;
+    private final Path statePath;
+    private final int connections;
+    private final long partSize;
+    private final int threads;
+
+    private Remote remote;
+    private BitSet completed;
+
+    /**
+     * @param url         where to download from
+     * @param target      where to download to
+     * @param connections how many parts to fetch at once
+     * @param partSize    bytes per part, at most this many bytes are fetched again for each connection after a failure
+     * @param threads     number of files provisioned at once, used for display purposes
+     */
+    RangedDownload(String url, Path target, int connections, long partSize, int threads) {
+        this(url, new HttpRangeSource(url, connections), target, connections, partSize, threads);
+    }
+
+    /**
+     * @param url    where to download from, for display and to match an earlier attempt
+     * @param source reads the ranges, closed when the download ends
+     */
+    RangedDownload(String url, RangeSource source, Path target, int connections, long partSize, int threads) {
+        this.url = url;
+        this.source = source;
+        this.target = target;
+        this.statePath = target.resolveSibling(target.getFileName() + STATE_SUFFIX);
+        this.connections = connections;
+        this.partSize = partSize;
+        this.threads = threads;
+    }
+
+    /**
+     * @param url where to download from
+     * @return true if the scheme of the url can be downloaded in ranges
+     */
+    static boolean handles(String url) {
+        String lowerCaseUrl = url.toLowerCase(Locale.ENGLISH);
+        return lowerCaseUrl.startsWith("http://") || lowerCaseUrl.startsWith("https://");
+    }
+
+    /**
+     * @return true if the object was downloaded, false if the source does not support ranges or the object is too small to split
+     * @throws IOException if a part could not be downloaded, the completed parts are kept for the next attempt
+     */
+    boolean download() throws IOException {
+        try (RangeSource rangeSource = source) {
+            remote = rangeSource.describe();
+            if (remote == null || remote.size < 2 * partSize) {
+                return false;
+            }
+            final int parts = (int)((remote.size + partSize - 1) / partSize);
+            completed = readState(parts);
+            Path parent = target.toAbsolutePath().getParent();
+            if (Files.notExists(parent)) {
+                Files.createDirectories(parent);
+            }
+
+            System.out.println("Downloading: " + url + " to " + target + " over " + connections + " connections");
+            ExecutorService executorService = Executors.newFixedThreadPool(connections);
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // preallocate, the parts are written at their offsets as they arrive
+                if (channel.size() > remote.size) {
+                    channel.truncate(remote.size);
+                } else if (channel.size() < remote.size) {
+                    channel.write(ByteBuffer.wrap(new byte[1]), remote.size - 1);
+                }
+
+                Progress progress = new Progress(completedBytes(parts));
+                List<Future<Object>> futures = new ArrayList<>();
+                for (int part = completed.nextClearBit(0); part < parts; part = completed.nextClearBit(part + 1)) {
+                    final int index = part;
+                    futures.add(executorService.submit(() -> {
+                        fetchPart(channel, index, progress);
+                        markCompleted(index);
+                        return null;
+                    }));
+                }
+                for (Future<Object> future : futures) {
+                    future.get();
+                }
+                channel.force(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while downloading " + url);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RangesNotSupportedException) {
+                    Files.deleteIfExists(statePath);
+                    return false;
+                }
+                throw e.getCause() instanceof IOException ? (IOException)e.getCause() : new IOException(e.getCause());
+            } finally {
+                executorService.shutdownNow();
+                // finalize output from the printer
+                System.out.println();
+            }
+        }
+        Files.deleteIfExists(statePath);
+        return true;
+    }
+
+    private void fetchPart(FileChannel channel, int index, Progress progress) throws IOException {
+        final long start = index * partSize;
+        final long end = Math.min(remote.size, start + partSize);
+        try (InputStream in = source.open(start, end)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long position = start;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (position + read > end) {
+                    throw new IOException(url + " returned more than the range " + start + "-" + (end - 1));
+                }
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                while (byteBuffer.hasRemaining()) {
+                    position += channel.write(byteBuffer, position);
+                }
+                progress.add(read);
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("Interrupted while downloading " + url);
+                }
+            }
+            if (position != end) {
+                throw new IOException(url + " ended the range " + start + "-" + (end - 1) + " early");
+            }
+        }
+    }
+
+    private long completedBytes(int parts) {
+        long bytes = 0;
+        for (int part = completed.nextSetBit(0); part >= 0 && part < parts; part = completed.nextSetBit(part + 1)) {
+            bytes += Math.min(remote.size, (part + 1) * partSize) - part * partSize;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the parts completed by an earlier attempt, none if the object or the part size changed since
+     */
+    private BitSet readState(int parts) {
+        BitSet state = new BitSet(parts);
+        if (Files.notExists(statePath) || Files.notExists(target)) {
+            return state;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(statePath)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return state;
+        }
+        if (!url.equals(properties.getProperty("url")) || !Long.toString(remote.size).equals(properties.getProperty("size")) || !Long
+            .toString(partSize).equals(properties.getProperty("partSize")) || !Objects.equals(remote.etag, properties.getProperty("etag"))
+            || !Objects.equals(remote.lastModified, properties.getProperty("lastModified"))) {
+            return state;
+        }
+        String completedParts = properties.getProperty("completed", "");
+        if (!completedParts.isEmpty()) {
+            Arrays.stream(completedParts.split(",")).mapToInt(Integer::parseInt).filter(part -> part < parts).forEach(state::set);
+        }
+        if (!state.isEmpty()) {
+            System.out.println("Resuming download of " + url + " , " + state.cardinality() + " of " + parts + " parts already downloaded");
+        }
+        return state;
+    }
+
+    /**
+     * Record that a part is complete, the state is replaced atomically so a failure while writing it loses nothing
+     */
+    private synchronized void markCompleted(int index) throws IOException {
+        completed.set(index);
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        properties.setProperty("size", Long.toString(remote.size));
+        properties.setProperty("partSize", Long.toString(partSize));
+        if (remote.etag != null) {
+            properties.setProperty("etag", remote.etag);
+        }
+        if (remote.lastModified != null) {
+            properties.setProperty("lastModified", remote.lastModified);
+        }
+        properties.setProperty("completed", completed.stream().mapToObj(Integer::toString).collect(Collectors.joining(",")));
+        Path temp = statePath.resolveSibling(statePath.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, statePath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * The bytes downloaded by all connections, reported as one progress bar
+     */
+    private final class Progress {
+        private final AtomicLong transferred;
+        private final ProgressPrinter printer = new ProgressPrinter(threads, threads > 1 ? url : "");
+
+        Progress(long alreadyTransferred) {
+            this.transferred = new AtomicLong(alreadyTransferred);
+        }
+
+        void add(long bytes) {
+            long total = transferred.addAndGet(bytes);
+            synchronized (System.out) {
+                printer.handleProgress(total, remote.size);
+            }
+        }
+    }
+
+    /**
+     * Where the ranges come from
+     */
+    interface RangeSource extends Closeable {
+        /**
+         * @return the size of the object and what identifies its version, null if it cannot be read in ranges
+         */
+        Remote describe() throws IOException;
+
+        /**
+         * Called from several threads at once
+         * @param start first byte
+         * @param end   byte after the last one
+         * @return the bytes of the range
+         * @throws RangesNotSupportedException if the source answered with something other than the range
+         */
+        InputStream open(long start, long end) throws IOException;
+    }
+
+    /**
+     * The size of an object and its validators, a change in either invalidates the parts downloaded so far
+     */
+    static final class Remote {
+        private final long size;
+        private final String etag;
+        private final String lastModified;
+
+        /**
+         * @param etag         an identifier of the content, such as an ETag or a checksum, may be null
+         * @param lastModified when the content last changed, may be null
+         */
+        Remote(long size, String etag, String lastModified) {
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Reads ranges with Range requests
+     */
+    private static final class HttpRangeSource implements RangeSource {
+        private final String url;
+        private final CloseableHttpClient client;
+        private String validator;
+
+        HttpRangeSource(String url, int connections) {
+            this.url = url;
+            this.client = HttpClients.custom().setMaxConnPerRoute(connections).setMaxConnTotal(connections).build();
+        }
+
+        @Override
+        public Remote describe() throws IOException {
+            try (CloseableHttpResponse response = client.execute(new HttpHead(url))) {
+                Header length = response.getFirstHeader("Content-Length");
+                Header acceptRanges = response.getFirstHeader("Accept-Ranges");
+                if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || length == null || acceptRanges == null || !"bytes"
+                    .equalsIgnoreCase(acceptRanges.getValue().trim())) {
+                    return null;
+                }
+                Remote remote = new Remote(Long.parseLong(length.getValue().trim()), headerValue(response, "ETag"),
+                    headerValue(response, "Last-Modified"));
+                validator = remote.etag != null ? remote.etag : remote.lastModified;
+                return remote;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String headerValue(HttpResponse response, String name) {
+            Header header = response.getFirstHeader(name);
+            return header == null ? null : header.getValue();
+        }
+
+        @Override
+        public InputStream open(long start, long end) throws IOException {
+            HttpGet get = new HttpGet(url);
+            get.addHeader("Range", "bytes=" + start + "-" + (end - 1));
+            // the server sends the whole object instead if it changed since the download started
+            if (validator != null) {
+                get.addHeader("If-Range", validator);
+            }
+            CloseableHttpResponse response = client.execute(get);
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_PARTIAL_CONTENT) {
+                response.close();
+                if (statusCode == HttpStatus.SC_OK) {
+                    throw new RangesNotSupportedException(url + " returned the whole object for a range");
+                }
+                throw new IOException(url + " returned " + response.getStatusLine() + " for the range " + start + "-" + (end - 1));
+            }
+            // closing the stream releases the connection
+            return response.getEntity().getContent();
+        }
+
+        @Override
+        public void close() throws IOException {
+            client.close();
+        }
+    }
+
+    /**
+     * The source answered a range request with the whole object, it ignores ranges or the object changed
+     */
+    static final class RangesNotSupportedException extends IOException {
+        RangesNotSupportedException(String message) {
+            super(message);
+        }
+    }
+}
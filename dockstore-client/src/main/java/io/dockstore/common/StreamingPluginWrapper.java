@@ -0,0 +1,211 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import io.dockstore.provision.ProgressPrinter;
+import io.dockstore.provision.ProvisionInterface;
+import io.dockstore.provision.StreamingProvisionInterface;
+import io.dockstore.provision.StreamingProvisionInterface.Capability;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provisions through the channels of a plugin, picking for each file how from what the plugin supports.
+ * Downloads read ranges in parallel when the plugin reads ranges and more than one connection is configured,
+ * otherwise stream straight into place while checking the checksum the plugin reports, otherwise are left to the plugin as a whole.
+ * Uploads stream from the local file when the plugin writes streams.
+ */
+final class StreamingPluginWrapper implements ProvisionInterface {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingPluginWrapper.class);
+    private static final String CHECKSUM_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long TRANSFER_SIZE = 64 * FileUtils.ONE_MB;
+
+    private final StreamingProvisionInterface plugin;
+    private final int threads;
+    private final int connections;
+    private final long partSize;
+
+    /**
+     * @param threads     number of threads, used for display purposes
+     * @param connections number of ranges of a file to download at once where the plugin supports it, 1 to stream it as a whole
+     * @param partSize    bytes per range
+     */
+    StreamingPluginWrapper(StreamingProvisionInterface plugin, int threads, int connections, long partSize) {
+        this.plugin = plugin;
+        this.threads = threads;
+        this.connections = connections;
+        this.partSize = partSize;
+    }
+
+    @Override
+    public Set<String> schemesHandled() {
+        return plugin.schemesHandled();
+    }
+
+    @Override
+    public boolean downloadFrom(String sourcePath, Path destination) {
+        Set<Capability> capabilities = plugin.capabilities();
+        try {
+            if (connections > 1 && capabilities.contains(Capability.RANGE_READ)
+                && new RangedDownload(sourcePath, new PluginRangeSource(sourcePath), destination, connections, partSize, threads).download()) {
+                return true;
+            }
+            if (capabilities.contains(Capability.STREAM_READ)) {
+                streamFrom(sourcePath, destination);
+                return true;
+            }
+        } catch (IOException e) {
+            // completed ranges are kept, a retry fetches the rest
+            LOG.error("Could not download " + sourcePath + " : " + e.getMessage());
+            return false;
+        }
+        return plugin.downloadFrom(sourcePath, destination);
+    }
+
+    private void streamFrom(String sourcePath, Path destination) throws IOException {
+        final long size = plugin.size(sourcePath).orElse(-1);
+        Optional<String> checksum = plugin.checksum(sourcePath, CHECKSUM_ALGORITHM);
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        Path parent = destination.toAbsolutePath().getParent();
+        if (Files.notExists(parent)) {
+            Files.createDirectories(parent);
+        }
+
+        System.out.println("Downloading: " + sourcePath + " to " + destination);
+        ProgressPrinter printer = new ProgressPrinter(threads, threads > 1 ? sourcePath : "");
+        try (ReadableByteChannel in = plugin.openRead(sourcePath);
+            FileChannel out = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long transferred = 0;
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    transferred += out.write(buffer);
+                }
+                buffer.clear();
+                if (size > 0) {
+                    synchronized (System.out) {
+                        printer.handleProgress(transferred, size);
+                    }
+                }
+            }
+        } finally {
+            // finalize output from the printer
+            System.out.println();
+        }
+        String actual = Hex.encodeHexString(digest.digest());
+        if (checksum.isPresent() && !checksum.get().equalsIgnoreCase(actual)) {
+            throw new IOException(sourcePath + " was downloaded with " + CHECKSUM_ALGORITHM + " " + actual + " instead of " + checksum.get());
+        }
+    }
+
+    @Override
+    public boolean uploadTo(String destPath, Path sourceFile, Optional<String> metadata) {
+        if (!plugin.capabilities().contains(Capability.STREAM_WRITE)) {
+            return plugin.uploadTo(destPath, sourceFile, metadata);
+        }
+        ProgressPrinter printer = new ProgressPrinter(threads, threads > 1 ? destPath : "");
+        try (FileChannel in = FileChannel.open(sourceFile, StandardOpenOption.READ)) {
+            final long size = in.size();
+            try (WritableByteChannel out = plugin.openWrite(destPath, size, metadata)) {
+                long position = 0;
+                while (position < size) {
+                    // in steps, to show progress
+                    long transferred = in.transferTo(position, Math.min(TRANSFER_SIZE, size - position), out);
+                    if (transferred <= 0) {
+                        throw new IOException(sourceFile + " shrank while it was uploaded");
+                    }
+                    position += transferred;
+                    synchronized (System.out) {
+                        printer.handleProgress(position, size);
+                    }
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.error("Could not upload " + sourceFile + " to " + destPath + " : " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean prepareFileSet(List<String> destPath, List<Path> sourceFile, List<Optional<String>> metadata) {
+        return plugin.prepareFileSet(destPath, sourceFile, metadata);
+    }
+
+    @Override
+    public boolean finalizeFileSet(List<String> destPath, List<Path> sourceFile, List<Optional<String>> metadata) {
+        return plugin.finalizeFileSet(destPath, sourceFile, metadata);
+    }
+
+    @Override
+    public void setConfiguration(Map<String, String> config) {
+        plugin.setConfiguration(config);
+    }
+
+    /**
+     * Reads ranges through the plugin, the checksum identifies the version of the object when resuming
+     */
+    private final class PluginRangeSource implements RangedDownload.RangeSource {
+        private final String sourcePath;
+
+        PluginRangeSource(String sourcePath) {
+            this.sourcePath = sourcePath;
+        }
+
+        @Override
+        public RangedDownload.Remote describe() throws IOException {
+            OptionalLong size = plugin.size(sourcePath);
+            if (!size.isPresent()) {
+                return null;
+            }
+            return new RangedDownload.Remote(size.getAsLong(), plugin.checksum(sourcePath, CHECKSUM_ALGORITHM).orElse(null), null);
+        }
+
+        @Override
+        public InputStream open(long start, long end) throws IOException {
+            return Channels.newInputStream(plugin.openRead(sourcePath, start, end - start));
+        }
+
+        @Override
+        public void close() {
+            // the plugin outlives the download
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.collaboratory.cwl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.dockstore.common.FileProvisioning;
+import io.dockstore.common.Utilities;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.dockstore.client.cli.ArgumentUtility.out;
+
+/**
+ * Launches the runs of a batch, the entries of a JSON array or the rows of a TSV file, a bounded number at a time.
+ * Each run gets its own launcher directory as usual, input files used by several runs are provisioned once for the whole batch.
+ */
+class BatchLaunch {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchLaunch.class);
+    private static final String[] REPORT_HEADER = { "run", "status", "seconds", "parameters", "directory", "outputs", "error" };
+
+    private final String configFile;
+    private final Class cwlClassTarget;
+    private final int parallel;
+    private final boolean continueOnError;
+    private final LauncherFactory launcherFactory;
+
+    /**
+     * @param descriptor      the CWL tool or workflow
+     * @param cwlClassTarget  Workflow or CommandLineTool
+     * @param parallel        how many runs to launch at once
+     * @param continueOnError false to skip the runs that have not started yet once a run fails
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    BatchLaunch(String configFile, String descriptor, String originalTestParameterFilePath, String uuid, Class cwlClassTarget, int parallel,
+        boolean continueOnError) {
+        this(configFile, cwlClassTarget, parallel, continueOnError,
+            (parameterFile, runnerOutput, fileProvisioning) -> new LauncherCWL(configFile, descriptor, parameterFile.getAbsolutePath(),
+                runnerOutput, runnerOutput, originalTestParameterFilePath, uuid, fileProvisioning));
+    }
+
+    BatchLaunch(String configFile, Class cwlClassTarget, int parallel, boolean continueOnError, LauncherFactory launcherFactory) {
+        this.configFile = configFile;
+        this.cwlClassTarget = cwlClassTarget;
+        this.parallel = parallel;
+        this.continueOnError = continueOnError;
+        this.launcherFactory = launcherFactory;
+    }
+
+    /**
+     * Launch the runs, then print a summary and save it next to the launcher directories
+     *
+     * @param parameterFiles one parameter file for each run
+     * @return the result of each run, in order
+     */
+    List<Result> launch(List<File> parameterFiles) {
+        final Path batchDirectory = Paths.get(LauncherCWL.getWorkingDirectoryRoot(Utilities.parseConfig(configFile)), "batch-" + UUID.randomUUID());
+        // the launcher directories link to the input files, so they stay after the batch directory is deleted
+        final FileProvisioning fileProvisioning = new FileProvisioning(configFile, batchDirectory.resolve("inputs"));
+        try {
+            // up front, so that a working directory that cannot be written to fails before any run
+            Files.createDirectories(batchDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create the batch directory " + batchDirectory, e);
+        }
+        final List<Result> results = new ArrayList<>();
+        for (int i = 0; i < parameterFiles.size(); i++) {
+            results.add(new Result(i + 1, parameterFiles.get(i)));
+        }
+
+        out("Launching " + results.size() + " runs, " + parallel + " at a time");
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        ExecutorService executorService = Executors.newFixedThreadPool(parallel);
+        try {
+            for (Result result : results) {
+                executorService.submit(() -> {
+                    if (failed.get() && !continueOnError) {
+                        return;
+                    }
+                    launch(result, fileProvisioning);
+                    if (result.status == Status.FAILED) {
+                        failed.set(true);
+                    }
+                });
+            }
+            executorService.shutdown();
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while launching the batch", e);
+        } finally {
+            executorService.shutdownNow();
+            FileUtils.deleteQuietly(batchDirectory.toFile());
+        }
+
+        report(results, Paths.get(batchDirectory + ".tsv"));
+        return results;
+    }
+
+    private void launch(Result result, FileProvisioning fileProvisioning) {
+        // the output of runs launched at once would interleave, each run keeps a copy in its outputs directory
+        OutputStream runnerOutput = parallel > 1 ? NullOutputStream.NULL_OUTPUT_STREAM : null;
+        LauncherCWL launcher = launcherFactory.create(result.parameterFile, runnerOutput, fileProvisioning);
+        out("Launching run " + result.index + " with " + result.parameterFile);
+        final long start = System.currentTimeMillis();
+        try {
+            launcher.run(cwlClassTarget);
+            result.status = Status.SUCCEEDED;
+        } catch (RuntimeException e) {
+            LOG.error("Run " + result.index + " failed", e);
+            result.status = Status.FAILED;
+            result.error = e.getMessage();
+        } finally {
+            result.millis = System.currentTimeMillis() - start;
+            result.workingDirectory = launcher.getWorkingDirectory();
+            result.outputs = launcher.getOutputLocations();
+        }
+        out("Run " + result.index + " " + result.status.toString().toLowerCase() + " after " + result.getSeconds() + " seconds");
+    }
+
+    private static void report(List<Result> results, Path reportPath) {
+        out("");
+        out("Batch summary:");
+        out(String.join("\t", REPORT_HEADER));
+        for (Result result : results) {
+            out(String.join("\t", result.toRow()));
+        }
+        long succeeded = results.stream().filter(result -> result.status == Status.SUCCEEDED).count();
+        long failed = results.stream().filter(result -> result.status == Status.FAILED).count();
+        out(succeeded + " succeeded, " + failed + " failed, " + (results.size() - succeeded - failed) + " skipped");
+
+        try {
+            Files.createDirectories(reportPath.getParent());
+            try (Writer writer = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8);
+                CSVPrinter printer = new CSVPrinter(writer, CSVFormat.TDF.withHeader(REPORT_HEADER))) {
+                for (Result result : results) {
+                    printer.printRecord((Object[])result.toRow());
+                }
+            }
+            out("Saved the batch summary to " + reportPath);
+        } catch (IOException e) {
+            LOG.error("Could not save the batch summary to " + reportPath, e);
+        }
+    }
+
+    /**
+     * Creates the launcher of one run of the batch
+     */
+    interface LauncherFactory {
+        LauncherCWL create(File parameterFile, OutputStream runnerOutput, FileProvisioning fileProvisioning);
+    }
+
+    enum Status {
+        SUCCEEDED, FAILED, SKIPPED
+    }
+
+    /**
+     * The outcome of one run of the batch
+     */
+    static final class Result {
+        private final int index;
+        private final File parameterFile;
+        private volatile Status status = Status.SKIPPED;
+        private volatile long millis;
+        private volatile String workingDirectory;
+        private volatile List<String> outputs = Collections.emptyList();
+        private volatile String error;
+
+        private Result(int index, File parameterFile) {
+            this.index = index;
+            this.parameterFile = parameterFile;
+        }
+
+        Status getStatus() {
+            return status;
+        }
+
+        private String getSeconds() {
+            return String.format("%.1f", millis / (double)TimeUnit.SECONDS.toMillis(1));
+        }
+
+        private String[] toRow() {
+            return new String[] { Integer.toString(index), status.toString(), getSeconds(), parameterFile.getAbsolutePath(),
+                workingDirectory == null ? "" : workingDirectory, String.join(",", outputs), error == null ? "" : error };
+        }
+    }
+}
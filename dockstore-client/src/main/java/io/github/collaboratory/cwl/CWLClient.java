@@ -60,6 +60,7 @@ import static io.dockstore.client.cli.ArgumentUtility.exceptionMessage;
 import static io.dockstore.client.cli.ArgumentUtility.out;
 import static io.dockstore.client.cli.Client.API_ERROR;
 import static io.dockstore.client.cli.Client.CLIENT_ERROR;
+import static io.dockstore.client.cli.Client.COMMAND_ERROR;
 import static io.dockstore.client.cli.Client.ENTRY_NOT_FOUND;
 import static io.dockstore.client.cli.Client.SCRIPT;
 
@@ -130,26 +131,18 @@ public class CWLClient implements LanguageClientInterface {
                 final JsonElement parsed = parser.parse(new InputStreamReader(new FileInputStream(jsonRun), StandardCharsets.UTF_8));
                 if (parsed.isJsonArray()) {
                     final JsonArray asJsonArray = parsed.getAsJsonArray();
+                    List<File> runs = new ArrayList<>();
                     for (JsonElement element : asJsonArray) {
                         final String finalString = gson.toJson(element);
                         final File tempJson = File.createTempFile("parameter", ".json", Files.createTempDir());
                         FileUtils.write(tempJson, finalString, StandardCharsets.UTF_8);
-                        final LauncherCWL cwlLauncher = new LauncherCWL(abstractEntryClient.getConfigFile(), tempCWL.getAbsolutePath(),
-                            tempJson.getAbsolutePath(), null, null, originalTestParameterFilePath, uuid);
-                        if (abstractEntryClient instanceof WorkflowClient) {
-                            cwlLauncher.run(Workflow.class);
-                        } else {
-                            cwlLauncher.run(CommandLineTool.class);
-                        }
+                        runs.add(tempJson);
                     }
+                    launchRuns(tempCWL, runs, originalTestParameterFilePath, uuid);
                 } else {
                     final LauncherCWL cwlLauncher = new LauncherCWL(abstractEntryClient.getConfigFile(), tempCWL.getAbsolutePath(), jsonRun,
                         null, null, originalTestParameterFilePath, uuid);
-                    if (abstractEntryClient instanceof WorkflowClient) {
-                        cwlLauncher.run(Workflow.class);
-                    } else {
-                        cwlLauncher.run(CommandLineTool.class);
-                    }
+                    cwlLauncher.run(getCwlClassTarget());
                 }
             } else if (csvRuns != null) {
                 final File csvData = new File(csvRuns);
@@ -161,6 +154,7 @@ public class CWLClient implements LanguageClientInterface {
                     // ignore row with type information
                     iterator.next();
                     // process rows
+                    List<File> runs = new ArrayList<>();
                     while (iterator.hasNext()) {
                         final CSVRecord csvRecord = iterator.next();
                         final File tempJson = File.createTempFile("temp", ".json", Files.createTempDir());
@@ -187,14 +181,9 @@ public class CWLClient implements LanguageClientInterface {
 
                         // final String stringMapAsString = gson.toJson(stringMap);
                         // Files.write(stringMapAsString, tempJson, StandardCharsets.UTF_8);
-                        final LauncherCWL cwlLauncher = new LauncherCWL(abstractEntryClient.getConfigFile(), tempCWL.getAbsolutePath(),
-                            tempJson.getAbsolutePath(), null, null, originalTestParameterFilePath, uuid);
-                        if (abstractEntryClient instanceof WorkflowClient) {
-                            cwlLauncher.run(Workflow.class);
-                        } else {
-                            cwlLauncher.run(CommandLineTool.class);
-                        }
+                        runs.add(tempJson);
                     }
+                    launchRuns(tempCWL, runs, originalTestParameterFilePath, uuid);
                 }
             } else {
                 errorMessage("Missing required parameters, one of  --json or --tsv is required", CLIENT_ERROR);
@@ -207,6 +196,34 @@ public class CWLClient implements LanguageClientInterface {
         return 0;
     }
 
+    private Class getCwlClassTarget() {
+        return abstractEntryClient instanceof WorkflowClient ? Workflow.class : CommandLineTool.class;
+    }
+
+    /**
+     * Launch several runs, one after another or as a batch when --parallel is given
+     *
+     * @param tempCWL the tool or workflow
+     * @param runs    one parameter file for each run
+     */
+    private void launchRuns(File tempCWL, List<File> runs, String originalTestParameterFilePath, String uuid) {
+        final int parallel = abstractEntryClient.getParallel();
+        if (parallel == 0) {
+            for (File run : runs) {
+                final LauncherCWL cwlLauncher = new LauncherCWL(abstractEntryClient.getConfigFile(), tempCWL.getAbsolutePath(),
+                    run.getAbsolutePath(), null, null, originalTestParameterFilePath, uuid);
+                cwlLauncher.run(getCwlClassTarget());
+            }
+            return;
+        }
+        BatchLaunch batchLaunch = new BatchLaunch(abstractEntryClient.getConfigFile(), tempCWL.getAbsolutePath(), originalTestParameterFilePath,
+            uuid, getCwlClassTarget(), parallel, abstractEntryClient.isContinueOnError());
+        long unsuccessful = batchLaunch.launch(runs).stream().filter(result -> result.getStatus() != BatchLaunch.Status.SUCCEEDED).count();
+        if (unsuccessful > 0) {
+            errorMessage(unsuccessful + " of " + runs.size() + " runs did not succeed", COMMAND_ERROR);
+        }
+    }
+
     /**
      * this function will check if the content of the file is CWL or not
      * it will get the content of the file and try to find/match the required fields
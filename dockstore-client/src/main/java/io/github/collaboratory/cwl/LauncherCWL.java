@@ -96,6 +96,7 @@ public class LauncherCWL {
     private final String originalTestParameterFilePath;
     private INIConfiguration config;
     private String globalWorkingDir;
+    private List<String> outputLocations = new ArrayList<>();
 
     /**
      * Constructor for shell-based launch
@@ -130,12 +131,24 @@ public class LauncherCWL {
      */
     public LauncherCWL(String configFilePath, String imageDescriptorPath, String runtimeDescriptorPath, OutputStream stdoutStream,
             OutputStream stderrStream, String originalTestParameterFilePath, String uuid) {
+        this(configFilePath, imageDescriptorPath, runtimeDescriptorPath, stdoutStream, stderrStream, originalTestParameterFilePath, uuid,
+            new FileProvisioning(configFilePath));
+    }
+
+    /**
+     * Constructor for programmatic launch of one run of a batch
+     *
+     * @param fileProvisioning provisioning shared by the runs of the batch
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    public LauncherCWL(String configFilePath, String imageDescriptorPath, String runtimeDescriptorPath, OutputStream stdoutStream,
+            OutputStream stderrStream, String originalTestParameterFilePath, String uuid, FileProvisioning fileProvisioning) {
         this.configFilePath = configFilePath;
         this.imageDescriptorPath = imageDescriptorPath;
         this.runtimeDescriptorPath = runtimeDescriptorPath;
         this.notificationsUUID = uuid;
         this.originalTestParameterFilePath = originalTestParameterFilePath;
-        fileProvisioning = new FileProvisioning(configFilePath);
+        this.fileProvisioning = fileProvisioning;
         this.stdoutStream = stdoutStream;
         this.stderrStream = stderrStream;
         gson = CWL.getTypeSafeCWLToolDocument();
@@ -254,6 +267,7 @@ public class LauncherCWL {
                 System.out.println("Provisioning your output files to their final destinations");
                 List<ImmutablePair<String, FileProvisioning.FileInfo>> outputList = registerOutputFiles(outputMap, outputObj);
                 this.fileProvisioning.uploadFiles(outputList);
+                outputLocations = outputList.stream().map(output -> output.getRight().getUrl()).collect(Collectors.toList());
             }
         } catch (Exception e) {
             notificationsClient.sendMessage(NotificationsClient.PROVISION_OUTPUT, false);
@@ -567,11 +581,33 @@ public class LauncherCWL {
         }
     }
 
+    /**
+     * @return the directory of this run, null until it is created
+     */
+    public String getWorkingDirectory() {
+        return globalWorkingDir;
+    }
+
+    /**
+     * @return where the output files of this run were provisioned to
+     */
+    public List<String> getOutputLocations() {
+        return outputLocations;
+    }
+
+    /**
+     * @param config the configuration of the launcher
+     * @return the directory the directories of runs are created in, typically a large, encrypted filesystem
+     */
+    static String getWorkingDirectoryRoot(INIConfiguration config) {
+        return config.getString(WORKING_DIRECTORY, System.getProperty("user.dir") + "/datastore/");
+    }
+
     private String setupDirectories() {
 
         LOG.info("MAKING DIRECTORIES...");
         // directory to use, typically a large, encrypted filesystem
-        String workingDir = config.getString(WORKING_DIRECTORY, System.getProperty("user.dir") + "/datastore/");
+        String workingDir = getWorkingDirectoryRoot(config);
         // make UUID
         UUID uuid = UUID.randomUUID();
         // setup directories
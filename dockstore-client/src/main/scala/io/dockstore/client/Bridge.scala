@@ -25,6 +25,7 @@ import wdl4s._
 import wdl4s.types.{WdlArrayType, WdlFileType}
 import wdl4s.values.WdlValue
 
+import scala.beans.BeanProperty
 import scala.language.postfixOps
 import scala.util.{Failure, Success, Try}
 
@@ -33,13 +34,23 @@ import scala.util.{Failure, Success, Try}
   * until wdltool is released to artifactory.
   */
 class Bridge {
-  var secondaryWdlFiles = new util.HashMap[String, String]()
+  var secondaryWdlFiles: util.Map[String, String] = new util.HashMap[String, String]()
   val bridgeHelper = new BridgeHelper()
 
-  def setSecondaryFiles(secondaryFiles: util.HashMap[String, String]) = {
+  def setSecondaryFiles(secondaryFiles: util.Map[String, String]) = {
     secondaryWdlFiles = secondaryFiles
   }
 
+  /**
+    * Loads a workflow once from its content, imports are resolved from the secondary files
+    * @param content the workflow descriptor
+    * @return its calls with their docker images and dependencies, and its imports
+    */
+  def analyzeWorkflow(content: String): WorkflowAnalysis = {
+    val ns = NamespaceWithWorkflow.load(content, dagResolver)
+    new WorkflowAnalysis(callsToDockerMap(ns), importMap(ns), callsToDependencies(ns))
+  }
+
   def main(args: Array[String]): Unit = {
     println("Hello, world!")
   }
@@ -111,9 +122,11 @@ class Bridge {
 
   def getImportMap(file: JFile): util.LinkedHashMap[String, String] = {
     val lines = scala.io.Source.fromFile(file).mkString
-    val importMap = new util.LinkedHashMap[String, String]()
+    importMap(NamespaceWithWorkflow.load(lines, dagResolver))
+  }
 
-    val ns = NamespaceWithWorkflow.load(lines, dagResolver)
+  private[this] def importMap(ns: NamespaceWithWorkflow): util.LinkedHashMap[String, String] = {
+    val importMap = new util.LinkedHashMap[String, String]()
 
     ns.imports foreach { imported =>
       val importNamespace = imported.namespace.get
@@ -173,7 +186,10 @@ class Bridge {
 
   def getCallsToDockerMap(file: JFile): util.LinkedHashMap[String, String] = {
     val lines = scala.io.Source.fromFile(file).mkString
-    val ns = NamespaceWithWorkflow.load(lines, dagResolver)
+    callsToDockerMap(NamespaceWithWorkflow.load(lines, dagResolver))
+  }
+
+  private[this] def callsToDockerMap(ns: NamespaceWithWorkflow): util.LinkedHashMap[String, String] = {
     val tasks = new util.LinkedHashMap[String, String]()
 
 
@@ -187,7 +203,10 @@ class Bridge {
 
   def getCallsToDependencies(file: JFile): util.LinkedHashMap[String, util.List[String]] = {
     val lines = scala.io.Source.fromFile(file).mkString
-    val ns = NamespaceWithWorkflow.load(lines, dagResolver)
+    callsToDependencies(NamespaceWithWorkflow.load(lines, dagResolver))
+  }
+
+  private[this] def callsToDependencies(ns: NamespaceWithWorkflow): util.LinkedHashMap[String, util.List[String]] = {
     val dependencyMap = new util.LinkedHashMap[String, util.List[String]]()
     ns.workflow.calls foreach { call =>
       val dependencies = new util.ArrayList[String]()
@@ -202,4 +221,14 @@ class Bridge {
   }
 
 
-}
\ No newline at end of file
+}
+
+/**
+  * What the DAG and tool table of a workflow are built from, see Bridge.analyzeWorkflow
+  * @param callsToDocker call (prefixed with dockstore_) to its docker image, null if it has none
+  * @param imports import namespace to the path it was imported from
+  * @param callsToDependencies call (prefixed with dockstore_) to the calls it depends on
+  */
+class WorkflowAnalysis(@BeanProperty val callsToDocker: util.LinkedHashMap[String, String],
+                       @BeanProperty val imports: util.LinkedHashMap[String, String],
+                       @BeanProperty val callsToDependencies: util.LinkedHashMap[String, util.List[String]])
@@ -0,0 +1,121 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.common;
+package io.dockstore.common;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.configuration2.INIConfiguration;
+import org.apache.commons.configuration2.ex.ConversionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileCacheTest {
+    private static final String URL = "https://example.org/input.txt";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void storeAndRetrieve() throws Exception {
+        FileCache cache = new FileCache(temporaryFolder.newFolder("cache").toPath(), 0, true);
+        Path downloaded = write("downloaded", "content");
+        cache.store(URL, new FileCache.Validator(7, "\"v1\"", null), downloaded);
+
+        Path localPath = temporaryFolder.getRoot().toPath().resolve("work").resolve("input.txt");
+        assertTrue(cache.retrieve(URL, new FileCache.Validator(7, "\"v1\"", null), localPath));
+        assertEquals("content", new String(Files.readAllBytes(localPath), StandardCharsets.UTF_8));
+        assertEquals(1, cache.statistics().getEntries());
+    }
+
+    @Test
+    public void staleEntryIsNotUsed() throws Exception {
+        FileCache cache = new FileCache(temporaryFolder.newFolder("cache").toPath(), 0, false);
+        cache.store(URL, new FileCache.Validator(7, "\"v1\"", null), write("downloaded", "content"));
+
+        Path localPath = temporaryFolder.getRoot().toPath().resolve("input.txt");
+        assertFalse(cache.retrieve(URL, new FileCache.Validator(7, "\"v2\"", null), localPath));
+        assertFalse(Files.exists(localPath));
+        // nothing is known about objects other plugins provision, the cached copy is trusted
+        assertTrue(cache.retrieve(URL, FileCache.Validator.UNKNOWN, localPath));
+    }
+
+    @Test
+    public void pruneEvictsLeastRecentlyUsed() throws Exception {
+        Path cacheDirectory = temporaryFolder.newFolder("cache").toPath();
+        FileCache cache = new FileCache(cacheDirectory, 0, false);
+        cache.store(URL, FileCache.Validator.UNKNOWN, write("old", "0123456789"));
+        cache.store(URL + "2", FileCache.Validator.UNKNOWN, write("new", "0123456789"));
+        // mark the first entry as used long ago
+        String sha1 = DigestUtils.sha1Hex(URL);
+        Files.setLastModifiedTime(cacheDirectory.resolve(sha1.substring(0, 2)).resolve(sha1.substring(2) + ".entry"), FileTime.fromMillis(0));
+
+        assertEquals(1, cache.prune(15).getEntries());
+        assertFalse(cache.retrieve(URL, FileCache.Validator.UNKNOWN, temporaryFolder.getRoot().toPath().resolve("a")));
+        assertTrue(cache.retrieve(URL + "2", FileCache.Validator.UNKNOWN, temporaryFolder.getRoot().toPath().resolve("b")));
+    }
+
+    @Test
+    public void parseSize() {
+        assertEquals(1000, FileCache.parseSize("1000"));
+        assertEquals(500L * 1024 * 1024, FileCache.parseSize("500M"));
+        assertEquals(20L * 1024 * 1024 * 1024, FileCache.parseSize("20g"));
+        assertEquals(20L * 1024 * 1024 * 1024, FileCache.parseSize("20GB"));
+        assertEquals(20L * 1024 * 1024 * 1024, FileCache.parseSize("20 GiB"));
+        assertEquals(64L * 1024 * 1024, FileCache.parseSize("64mb"));
+        assertEquals(512, FileCache.parseSize("512B"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseSizeRejectsUnknownUnits() {
+        FileCache.parseSize("20GBytes");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseSizeRejectsOverflow() {
+        FileCache.parseSize("99999999T");
+    }
+
+    @Test
+    public void parseSizeNamesTheConfigKey() {
+        INIConfiguration config = new INIConfiguration();
+        config.setProperty(FileCache.CACHE_MAX_SIZE, "twenty gigabytes");
+        try {
+            FileCache.parseSize(config, FileCache.CACHE_MAX_SIZE, "0");
+            fail("an unreadable size should not be ignored");
+        } catch (ConversionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(FileCache.CACHE_MAX_SIZE));
+            assertTrue(e.getMessage(), e.getMessage().contains("twenty gigabytes"));
+        }
+        assertEquals(0, FileCache.parseSize(new INIConfiguration(), FileCache.CACHE_MAX_SIZE, "0"));
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
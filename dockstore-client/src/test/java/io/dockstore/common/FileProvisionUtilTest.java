@@ -16,19 +16,35 @@
 package io.dockstore.common;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import org.apache.commons.configuration2.INIConfiguration;
 import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static io.dockstore.common.FileProvisionUtil.PLUGINS_JSON_FILENAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author gluu
  * @since 14/03/17
  */
 public class FileProvisionUtilTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void downloadPlugins() throws Exception {
         File iniFile = FileUtils.getFile("src", "test", "resources", "launcher.cwltool.ini");
@@ -45,4 +61,67 @@ public class FileProvisionUtilTest {
         assertTrue(f.exists() && !f.isDirectory());
         f.delete();
     }
+
+    @Test
+    public void copyLocalDirectory() throws Exception {
+        Path source = temporaryFolder.newFolder("output").toPath();
+        Files.createDirectories(source.resolve("nested").resolve("empty"));
+        Files.write(source.resolve("top.txt"), "top".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("nested").resolve("inner.txt"), "inner".getBytes(StandardCharsets.UTF_8));
+
+        Path destination = temporaryFolder.getRoot().toPath().resolve("provisioned").resolve("output");
+        FileProvisionUtil.copyLocal(source, destination, 2);
+        assertEquals("top", new String(Files.readAllBytes(destination.resolve("top.txt")), StandardCharsets.UTF_8));
+        assertEquals("inner", new String(Files.readAllBytes(destination.resolve("nested").resolve("inner.txt")), StandardCharsets.UTF_8));
+        assertTrue(Files.isDirectory(destination.resolve("nested").resolve("empty")));
+
+        // provisioning again replaces what is there
+        FileProvisionUtil.copyLocal(source.resolve("top.txt"), destination.resolve("top.txt"), 1);
+        assertEquals("top", new String(Files.readAllBytes(destination.resolve("top.txt")), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * What copyLocal does when the file system cannot hard link the file
+     */
+    @Test
+    public void transferReplacesDifferentFile() throws Exception {
+        Path source = temporaryFolder.newFile("source.txt").toPath();
+        Files.write(source, "new".getBytes(StandardCharsets.UTF_8));
+        Path destination = temporaryFolder.newFile("destination.txt").toPath();
+        Files.write(destination, "older and longer".getBytes(StandardCharsets.UTF_8));
+
+        FileProvisionUtil.transfer(source, destination, 1);
+        assertEquals("new", new String(Files.readAllBytes(destination), StandardCharsets.UTF_8));
+        assertFalse("the file should be copied, not linked", Files.isSameFile(source, destination));
+        assertEquals("new", new String(Files.readAllBytes(source), StandardCharsets.UTF_8));
+    }
+
+    @Test(timeout = 10000)
+    public void transferFailsWhenNothingIsCopied() throws Exception {
+        Path source = temporaryFolder.newFile("source.txt").toPath();
+        Files.write(source, "content".getBytes(StandardCharsets.UTF_8));
+        // like a file truncated while it is copied, no step makes progress
+        WritableByteChannel stuck = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                return 0;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+                // nothing to close
+            }
+        };
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            FileProvisionUtil.transfer(in, stuck, position -> fail("nothing was copied"));
+            fail("a copy that makes no progress should fail instead of looping");
+        } catch (IOException e) {
+            assertEquals("Copying stopped after 0 of 7 bytes", e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.dockstore.provision.StreamingProvisionInterface;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * A reference plugin that keeps objects in memory under mem:// paths, with whichever capabilities a test needs
+ */
+public class InMemoryProvisionPlugin implements StreamingProvisionInterface {
+    final AtomicInteger streamReads = new AtomicInteger();
+    final AtomicInteger rangeReads = new AtomicInteger();
+    final AtomicInteger wholeFileDownloads = new AtomicInteger();
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Set<Capability> capabilities;
+
+    InMemoryProvisionPlugin(Capability... capabilities) {
+        this.capabilities = capabilities.length == 0 ? EnumSet.noneOf(Capability.class) : EnumSet.copyOf(Arrays.asList(capabilities));
+    }
+
+    void put(String path, byte[] content) {
+        objects.put(path, content);
+    }
+
+    byte[] get(String path) {
+        return objects.get(path);
+    }
+
+    private byte[] content(String path) throws FileNotFoundException {
+        byte[] content = objects.get(path);
+        if (content == null) {
+            throw new FileNotFoundException(path);
+        }
+        return content;
+    }
+
+    @Override
+    public Set<String> schemesHandled() {
+        return Collections.singleton("mem");
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public OptionalLong size(String sourcePath) throws IOException {
+        return OptionalLong.of(content(sourcePath).length);
+    }
+
+    @Override
+    public Optional<String> checksum(String sourcePath, String algorithm) throws IOException {
+        return "SHA-256".equals(algorithm) ? Optional.of(DigestUtils.sha256Hex(content(sourcePath))) : Optional.empty();
+    }
+
+    @Override
+    public ReadableByteChannel openRead(String sourcePath) throws IOException {
+        streamReads.incrementAndGet();
+        return Channels.newChannel(new ByteArrayInputStream(content(sourcePath)));
+    }
+
+    @Override
+    public ReadableByteChannel openRead(String sourcePath, long position, long length) throws IOException {
+        rangeReads.incrementAndGet();
+        return Channels.newChannel(new ByteArrayInputStream(content(sourcePath), (int)position, (int)length));
+    }
+
+    @Override
+    public WritableByteChannel openWrite(String destPath, long size, Optional<String> metadata) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                objects.put(destPath, toByteArray());
+            }
+        };
+        return Channels.newChannel(out);
+    }
+
+    @Override
+    public boolean downloadFrom(String sourcePath, Path destination) {
+        wholeFileDownloads.incrementAndGet();
+        try {
+            Files.write(destination, content(sourcePath));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean uploadTo(String destPath, Path sourceFile, Optional<String> metadata) {
+        try {
+            objects.put(destPath, Files.readAllBytes(sourceFile));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void setConfiguration(Map<String, String> config) {
+        // nothing to configure
+    }
+}
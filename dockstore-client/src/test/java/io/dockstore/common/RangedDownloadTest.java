@@ -0,0 +1,139 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Downloads from a local http server that serves ranges the way object stores do
+ */
+public class RangedDownloadTest {
+    private static final int PART_SIZE = 64 * 1024;
+    private static final int PARTS = 16;
+    private static final int FAILING_PART = 3;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final byte[] content = new byte[PARTS * PART_SIZE - 100];
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private final AtomicBoolean failOnce = new AtomicBoolean();
+    private boolean acceptRanges = true;
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void startServer() throws IOException {
+        new Random(0).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/input.bin", this::serve);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/input.bin";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void downloadsInRanges() throws IOException {
+        Path target = temporaryFolder.getRoot().toPath().resolve("work").resolve("input.bin");
+        assertTrue(new RangedDownload(url, target, 4, PART_SIZE, 1).download());
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(PARTS, rangeRequests.get());
+        assertFalse(Files.exists(target.resolveSibling("input.bin.ranges")));
+    }
+
+    @Test
+    public void resumesFromCompletedRanges() throws IOException {
+        Path target = temporaryFolder.getRoot().toPath().resolve("input.bin");
+        failOnce.set(true);
+        try {
+            new RangedDownload(url, target, 4, PART_SIZE, 1).download();
+            fail("the failing range should fail the download");
+        } catch (IOException e) {
+            assertTrue(Files.exists(target.resolveSibling("input.bin.ranges")));
+        }
+
+        rangeRequests.set(0);
+        assertTrue(new RangedDownload(url, target, 4, PART_SIZE, 1).download());
+        assertArrayEquals(content, Files.readAllBytes(target));
+        // at least the ranges before the failing one were kept
+        assertTrue(rangeRequests.get() <= PARTS - FAILING_PART);
+    }
+
+    @Test
+    public void declinesWithoutRangeSupport() throws IOException {
+        acceptRanges = false;
+        Path target = temporaryFolder.getRoot().toPath().resolve("input.bin");
+        assertFalse(new RangedDownload(url, target, 4, PART_SIZE, 1).download());
+        assertEquals(0, rangeRequests.get());
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        if (acceptRanges) {
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().add("Content-Length", Integer.toString(content.length));
+            exchange.sendResponseHeaders(200, -1);
+        } else if (range == null || !acceptRanges) {
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        } else {
+            rangeRequests.incrementAndGet();
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(bounds[0]);
+            int end = Integer.parseInt(bounds[1]) + 1;
+            if (start == FAILING_PART * PART_SIZE && failOnce.getAndSet(false)) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + content.length);
+            exchange.sendResponseHeaders(206, end - start);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content, start, end - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.common;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.Set;
+
+import io.dockstore.provision.StreamingProvisionInterface;
+import io.dockstore.provision.StreamingProvisionInterface.Capability;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingPluginWrapperTest {
+    private static final String SOURCE = "mem://bucket/input.bin";
+    private static final int PART_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final byte[] content = new byte[10 * PART_SIZE + 1];
+    private Path destination;
+
+    @Before
+    public void setUp() {
+        new Random(0).nextBytes(content);
+        destination = temporaryFolder.getRoot().toPath().resolve("work").resolve("input.bin");
+    }
+
+    @Test
+    public void rangedWhenPluginReadsRanges() throws Exception {
+        InMemoryProvisionPlugin plugin = plugin(Capability.STREAM_READ, Capability.RANGE_READ);
+        assertTrue(new StreamingPluginWrapper(plugin, 1, 4, PART_SIZE).downloadFrom(SOURCE, destination));
+        assertArrayEquals(content, Files.readAllBytes(destination));
+        assertEquals(11, plugin.rangeReads.get());
+        assertEquals(0, plugin.streamReads.get());
+    }
+
+    @Test
+    public void streamWithOneConnection() throws Exception {
+        InMemoryProvisionPlugin plugin = plugin(Capability.STREAM_READ, Capability.RANGE_READ);
+        assertTrue(new StreamingPluginWrapper(plugin, 1, 1, PART_SIZE).downloadFrom(SOURCE, destination));
+        assertArrayEquals(content, Files.readAllBytes(destination));
+        assertEquals(0, plugin.rangeReads.get());
+        assertEquals(1, plugin.streamReads.get());
+    }
+
+    @Test
+    public void wholeFileWithoutCapabilities() throws Exception {
+        InMemoryProvisionPlugin plugin = plugin();
+        Files.createDirectories(destination.getParent());
+        assertTrue(new StreamingPluginWrapper(plugin, 1, 4, PART_SIZE).downloadFrom(SOURCE, destination));
+        assertArrayEquals(content, Files.readAllBytes(destination));
+        assertEquals(1, plugin.wholeFileDownloads.get());
+    }
+
+    @Test
+    public void streamFailsOnChecksumMismatch() throws Exception {
+        InMemoryProvisionPlugin plugin = new InMemoryProvisionPlugin(Capability.STREAM_READ) {
+            @Override
+            public Optional<String> checksum(String sourcePath, String algorithm) {
+                return Optional.of("0000");
+            }
+        };
+        plugin.put(SOURCE, content);
+        assertFalse(new StreamingPluginWrapper(plugin, 1, 1, PART_SIZE).downloadFrom(SOURCE, destination));
+    }
+
+    @Test
+    public void uploadStreams() throws Exception {
+        InMemoryProvisionPlugin plugin = plugin(Capability.STREAM_WRITE);
+        Path output = temporaryFolder.newFile("output.bin").toPath();
+        Files.write(output, content);
+        assertTrue(new StreamingPluginWrapper(plugin, 1, 1, PART_SIZE).uploadTo("mem://bucket/output.bin", output, Optional.empty()));
+        assertArrayEquals(content, plugin.get("mem://bucket/output.bin"));
+    }
+
+    @Test
+    public void defaultDownloadReadsOneRangeWithOneConnection() throws Exception {
+        Files.createDirectories(destination.getParent());
+        assertTrue(new StreamingPluginWrapper(new RangeOnlyPlugin(content, Capability.RANGE_READ), 1, 1, PART_SIZE)
+            .downloadFrom(SOURCE, destination));
+        assertArrayEquals(content, Files.readAllBytes(destination));
+    }
+
+    @Test
+    public void defaultDownloadReadsOneRangeOfSmallObjects() throws Exception {
+        // too small to be worth downloading in ranges
+        byte[] small = Arrays.copyOf(content, PART_SIZE + 1);
+        Files.createDirectories(destination.getParent());
+        assertTrue(new StreamingPluginWrapper(new RangeOnlyPlugin(small, Capability.RANGE_READ), 1, 4, PART_SIZE)
+            .downloadFrom(SOURCE, destination));
+        assertArrayEquals(small, Files.readAllBytes(destination));
+    }
+
+    @Test
+    public void defaultsDeclineWithoutCapabilities() throws Exception {
+        RangeOnlyPlugin plugin = new RangeOnlyPlugin(content);
+        Files.createDirectories(destination.getParent());
+        assertFalse(plugin.downloadFrom(SOURCE, destination));
+        Path output = temporaryFolder.newFile("output.bin").toPath();
+        assertFalse(plugin.uploadTo("mem://bucket/output.bin", output, Optional.empty()));
+    }
+
+    private InMemoryProvisionPlugin plugin(Capability... capabilities) {
+        InMemoryProvisionPlugin plugin = new InMemoryProvisionPlugin(capabilities);
+        plugin.put(SOURCE, content);
+        return plugin;
+    }
+
+    /**
+     * Implements only what it advertises, downloadFrom and uploadTo are the defaults of the interface
+     */
+    private static final class RangeOnlyPlugin implements StreamingProvisionInterface {
+        private final byte[] content;
+        private final Set<Capability> capabilities;
+
+        RangeOnlyPlugin(byte[] content, Capability... capabilities) {
+            this.content = content;
+            this.capabilities = capabilities.length == 0 ? EnumSet.noneOf(Capability.class) : EnumSet.copyOf(Arrays.asList(capabilities));
+        }
+
+        @Override
+        public Set<Capability> capabilities() {
+            return capabilities;
+        }
+
+        @Override
+        public OptionalLong size(String sourcePath) {
+            return OptionalLong.of(content.length);
+        }
+
+        @Override
+        public ReadableByteChannel openRead(String sourcePath, long position, long length) {
+            return Channels.newChannel(new ByteArrayInputStream(content, (int)position, (int)length));
+        }
+
+        @Override
+        public Set<String> schemesHandled() {
+            return Collections.singleton("mem");
+        }
+
+        @Override
+        public void setConfiguration(Map<String, String> config) {
+            // nothing to configure
+        }
+    }
+}
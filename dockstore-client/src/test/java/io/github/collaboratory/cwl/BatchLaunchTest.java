@@ -0,0 +1,247 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.collaboratory.cwl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.cwl.avro.CommandLineTool;
+import io.dockstore.common.FileProvisioning;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchLaunchTest {
+    private static final int RUNS = 6;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path workingDirectoryRoot;
+    private String configFile;
+    private List<File> parameterFiles;
+
+    @Before
+    public void setUp() throws IOException {
+        workingDirectoryRoot = temporaryFolder.newFolder("datastore").toPath();
+        File config = temporaryFolder.newFile("config");
+        Files.write(config.toPath(), ("working-directory = " + workingDirectoryRoot + "\n" + "file-plugins-location = " + temporaryFolder
+            .newFolder("plugins") + "\n").getBytes(StandardCharsets.UTF_8));
+        configFile = config.getAbsolutePath();
+        parameterFiles = new ArrayList<>();
+        for (int i = 1; i <= RUNS; i++) {
+            parameterFiles.add(temporaryFolder.newFile("run" + i + ".json"));
+        }
+    }
+
+    @Test
+    public void launchesAtMostParallelRunsAtOnce() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        // the first runs only finish once they have all started
+        CountDownLatch started = new CountDownLatch(2);
+        List<BatchLaunch.Result> results = launch(2, false, run -> {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            started.countDown();
+            try {
+                assertTrue("runs should be launched together", started.await(10, TimeUnit.SECONDS));
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        assertEquals(2, mostRunning.get());
+        assertEquals(Collections.nCopies(RUNS, BatchLaunch.Status.SUCCEEDED), statuses(results));
+    }
+
+    @Test
+    public void skipsRemainingRunsAfterFailure() throws Exception {
+        AtomicInteger launched = new AtomicInteger();
+        List<BatchLaunch.Result> results = launch(1, false, run -> {
+            launched.incrementAndGet();
+            if (run.equals("run2.json")) {
+                throw new RuntimeException("cwltool failed");
+            }
+        });
+
+        assertEquals(2, launched.get());
+        assertEquals(BatchLaunch.Status.SUCCEEDED, results.get(0).getStatus());
+        assertEquals(BatchLaunch.Status.FAILED, results.get(1).getStatus());
+        for (BatchLaunch.Result result : results.subList(2, RUNS)) {
+            assertEquals(BatchLaunch.Status.SKIPPED, result.getStatus());
+        }
+    }
+
+    @Test
+    public void continuesAfterFailureWhenAsked() throws Exception {
+        List<BatchLaunch.Result> results = launch(1, true, run -> {
+            if (run.equals("run2.json")) {
+                throw new RuntimeException("cwltool failed");
+            }
+        });
+
+        List<BatchLaunch.Status> expected = new ArrayList<>(Collections.nCopies(RUNS, BatchLaunch.Status.SUCCEEDED));
+        expected.set(1, BatchLaunch.Status.FAILED);
+        assertEquals(expected, statuses(results));
+    }
+
+    @Test
+    public void sharesInputProvisioningAndDeletesItAfterwards() throws Exception {
+        Set<FileProvisioning> provisionings = ConcurrentHashMap.newKeySet();
+        Set<Path> batchDirectories = ConcurrentHashMap.newKeySet();
+        BatchLaunch batchLaunch = new BatchLaunch(configFile, CommandLineTool.class, 3, false,
+            (parameterFile, runnerOutput, fileProvisioning) -> {
+                provisionings.add(fileProvisioning);
+                return new StubLauncher(parameterFile, fileProvisioning, run -> {
+                    // stands in for the input files provisioned for the batch
+                    Path batchDirectory = findBatchDirectory();
+                    batchDirectories.add(batchDirectory);
+                    write(batchDirectory.resolve("inputs").resolve(run), run);
+                });
+            });
+        batchLaunch.launch(parameterFiles);
+
+        assertEquals("runs should share the provisioning of the batch", 1, provisionings.size());
+        assertEquals(1, batchDirectories.size());
+        assertFalse("the batch directory should be deleted", Files.exists(batchDirectories.iterator().next()));
+    }
+
+    @Test
+    public void savesSummary() throws Exception {
+        launch(1, false, run -> {
+            if (run.equals("run3.json")) {
+                throw new RuntimeException("cwltool failed");
+            }
+        });
+
+        List<Path> summaries;
+        try (Stream<Path> paths = Files.list(workingDirectoryRoot)) {
+            summaries = paths.filter(path -> path.getFileName().toString().endsWith(".tsv")).collect(Collectors.toList());
+        }
+        assertEquals(1, summaries.size());
+        List<CSVRecord> rows;
+        try (Reader reader = Files.newBufferedReader(summaries.get(0), StandardCharsets.UTF_8);
+            CSVParser parser = CSVFormat.TDF.withHeader().parse(reader)) {
+            rows = parser.getRecords();
+        }
+        assertEquals(RUNS, rows.size());
+        CSVRecord succeeded = rows.get(0);
+        assertEquals("1", succeeded.get("run"));
+        assertEquals("SUCCEEDED", succeeded.get("status"));
+        assertEquals(parameterFiles.get(0).getAbsolutePath(), succeeded.get("parameters"));
+        assertEquals(workingDirectoryRoot.resolve("run1.json").toString(), succeeded.get("directory"));
+        assertEquals("/outputs/run1.json", succeeded.get("outputs"));
+        CSVRecord failed = rows.get(2);
+        assertEquals("FAILED", failed.get("status"));
+        assertEquals("cwltool failed", failed.get("error"));
+        CSVRecord skipped = rows.get(3);
+        assertEquals("SKIPPED", skipped.get("status"));
+        assertEquals("", skipped.get("directory"));
+        assertEquals("", skipped.get("outputs"));
+    }
+
+    private List<BatchLaunch.Result> launch(int parallel, boolean continueOnError, Run run) {
+        BatchLaunch batchLaunch = new BatchLaunch(configFile, CommandLineTool.class, parallel, continueOnError,
+            (parameterFile, runnerOutput, fileProvisioning) -> new StubLauncher(parameterFile, fileProvisioning, run));
+        return batchLaunch.launch(parameterFiles);
+    }
+
+    private static List<BatchLaunch.Status> statuses(List<BatchLaunch.Result> results) {
+        return results.stream().map(BatchLaunch.Result::getStatus).collect(Collectors.toList());
+    }
+
+    private Path findBatchDirectory() throws IOException {
+        try (Stream<Path> paths = Files.list(workingDirectoryRoot)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith("batch-") && Files.isDirectory(path)).findFirst()
+                .orElseThrow(() -> new IOException("no batch directory"));
+        }
+    }
+
+    private static void write(Path path, String content) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * What a run does instead of calling out to cwltool
+     */
+    private interface Run {
+        /**
+         * @param parameterFile the name of the parameter file of the run
+         */
+        void run(String parameterFile) throws Exception;
+    }
+
+    private final class StubLauncher extends LauncherCWL {
+        private final File parameterFile;
+        private final Run run;
+        private String workingDirectory;
+
+        StubLauncher(File parameterFile, FileProvisioning fileProvisioning, Run run) {
+            super(configFile, "Dockstore.cwl", parameterFile.getAbsolutePath(), null, null, "", null, fileProvisioning);
+            this.parameterFile = parameterFile;
+            this.run = run;
+        }
+
+        @Override
+        public void run(Class cwlClassTarget) {
+            workingDirectory = workingDirectoryRoot.resolve(parameterFile.getName()).toString();
+            try {
+                run.run(parameterFile.getName());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public String getWorkingDirectory() {
+            return workingDirectory;
+        }
+
+        @Override
+        public List<String> getOutputLocations() {
+            return workingDirectory == null ? Collections.emptyList() : Collections.singletonList("/outputs/" + parameterFile.getName());
+        }
+    }
+}
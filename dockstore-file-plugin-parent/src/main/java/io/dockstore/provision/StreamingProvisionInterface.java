@@ -0,0 +1,179 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.provision;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * File provisioning through channels, for plugins that can read and write objects without a local copy of their own.
+ * The Dockstore CLI writes what it reads straight to where it is needed, and reads ranges in parallel when the plugin supports it.
+ * Plugins that implement only {@link ProvisionInterface} keep working, downloadFrom and uploadTo default to copying through these channels.
+ */
+public interface StreamingProvisionInterface extends ProvisionInterface {
+
+    /**
+     * What a plugin can do beyond whole file downloads and uploads
+     */
+    enum Capability {
+        /**
+         * {@link #openRead(String)} is supported
+         */
+        STREAM_READ,
+        /**
+         * {@link #openRead(String, long, long)} is supported, several ranges of an object can be read at once
+         */
+        RANGE_READ,
+        /**
+         * {@link #openWrite(String, long, Optional)} is supported
+         */
+        STREAM_WRITE
+    }
+
+    /**
+     * @return what this plugin supports, the Dockstore CLI picks how to provision each file from these
+     */
+    Set<Capability> capabilities();
+
+    /**
+     * Optional method that can be overridden.
+     * @param sourcePath a string indicating a source for a file, for example `s3://bucket/input.bam`
+     * @return the size of the object in bytes, empty if unknown
+     * @throws IOException if the object cannot be looked up
+     */
+    default OptionalLong size(String sourcePath) throws IOException {
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Optional method that can be overridden.
+     * @param sourcePath a string indicating a source for a file
+     * @param algorithm  a {@link java.security.MessageDigest} algorithm, for example `SHA-256` or `MD5`
+     * @return the lower case hex checksum of the object, empty if the plugin does not know it for that algorithm
+     * @throws IOException if the object cannot be looked up
+     */
+    default Optional<String> checksum(String sourcePath, String algorithm) throws IOException {
+        return Optional.empty();
+    }
+
+    /**
+     * Requires {@link Capability#STREAM_READ}
+     * @param sourcePath a string indicating a source for a file
+     * @return the content of the object, closed by the caller
+     * @throws IOException if the object cannot be read
+     */
+    default ReadableByteChannel openRead(String sourcePath) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot read " + sourcePath + " as a stream");
+    }
+
+    /**
+     * Requires {@link Capability#RANGE_READ}, called from several threads at once
+     * @param sourcePath a string indicating a source for a file
+     * @param position   offset of the first byte to read
+     * @param length     number of bytes to read
+     * @return the content of the range, closed by the caller
+     * @throws IOException if the range cannot be read
+     */
+    default ReadableByteChannel openRead(String sourcePath, long position, long length) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot read ranges of " + sourcePath);
+    }
+
+    /**
+     * Requires {@link Capability#STREAM_WRITE}
+     * @param destPath a string indicating a destination for a file, for example `s3://upload.destination/output.bam`
+     * @param size     number of bytes that will be written
+     * @param metadata optional metadata describing the uploaded file that can be understood by the provisioning plugin
+     * @return where to write the content, the upload is complete when it is closed
+     * @throws IOException if the object cannot be written
+     */
+    default WritableByteChannel openWrite(String destPath, long size, Optional<String> metadata) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " cannot write " + destPath + " as a stream");
+    }
+
+    /**
+     * Copies through {@link #openRead(String)}, or through {@link #openRead(String, long, long)} as a single range
+     * when the plugin only reads ranges and knows the size of the object.
+     * @return false if the plugin can do neither or the copy failed
+     */
+    @Override
+    default boolean downloadFrom(String sourcePath, Path destination) {
+        final Set<Capability> capabilities = capabilities();
+        try {
+            final ReadableByteChannel channel;
+            if (capabilities.contains(Capability.STREAM_READ)) {
+                channel = openRead(sourcePath);
+            } else if (capabilities.contains(Capability.RANGE_READ)) {
+                OptionalLong size = size(sourcePath);
+                if (!size.isPresent()) {
+                    return false;
+                }
+                channel = openRead(sourcePath, 0, size.getAsLong());
+            } else {
+                return false;
+            }
+            try (ReadableByteChannel in = channel;
+                FileChannel out = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = 0;
+                long transferred;
+                while ((transferred = out.transferFrom(in, position, Long.MAX_VALUE)) > 0) {
+                    position += transferred;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LoggerFactory.getLogger(getClass()).warn("Could not download " + sourcePath + " to " + destination + " : " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Copies through {@link #openWrite(String, long, Optional)}
+     * @return false if the plugin does not write streams or the copy failed
+     */
+    @Override
+    default boolean uploadTo(String destPath, Path sourceFile, Optional<String> metadata) {
+        if (!capabilities().contains(Capability.STREAM_WRITE)) {
+            return false;
+        }
+        try (FileChannel in = FileChannel.open(sourceFile, StandardOpenOption.READ)) {
+            final long size = in.size();
+            try (WritableByteChannel out = openWrite(destPath, size, metadata)) {
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, size - position, out);
+                    if (transferred <= 0) {
+                        throw new IOException(sourceFile + " shrank while it was uploaded");
+                    }
+                    position += transferred;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LoggerFactory.getLogger(getClass()).warn("Could not upload " + sourceFile + " to " + destPath + " : " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -15,7 +15,11 @@
  */
 package io.dockstore.client.cli;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.Response;
@@ -67,6 +71,94 @@ public class GA4GHV2IT extends GA4GHIT {
         assertTool(MAPPER.writeValueAsString(responseObject), true);
     }
 
+    /**
+     * Following next_page with small pages lists the same tools and workflows as one page does, filters included
+     */
+    @Test
+    public void toolsPagesFollowNextPage() throws Exception {
+        for (String filters : new String[] { "", "organization=test_org", "registry=quay.io&organization=test_org", "author=Dockstore",
+            "description=a&author=a" }) {
+            List<String> all = toolIds(listTools(filters + "&limit=1000"));
+            if (filters.isEmpty() || filters.startsWith("organization")) {
+                assertThat(all).isNotEmpty();
+            }
+            for (int limit : new int[] { 1, 2, 3 }) {
+                Assert.assertEquals("pages of " + limit + " filtered with " + filters, all, followNextPages(filters, limit));
+            }
+        }
+    }
+
+    /**
+     * A page that ends on the last tool before a workflow has to resume on that workflow, and the other way around
+     */
+    @Test
+    public void toolsCursorAtToolWorkflowBoundary() throws Exception {
+        List<String> all = toolIds(listTools("limit=1000"));
+        int boundary = 1;
+        while (boundary < all.size() && isWorkflow(all.get(boundary)) == isWorkflow(all.get(boundary - 1))) {
+            boundary++;
+        }
+        assertThat(boundary).as("the test data lists both tools and workflows").isLessThan(all.size());
+
+        Response firstPage = listTools("limit=" + boundary);
+        Assert.assertEquals(all.subList(0, boundary), toolIds(firstPage));
+        Response secondPage = listTools("limit=" + boundary + "&offset=" + offset(firstPage.getHeaderString("next_page")));
+        Assert.assertEquals(all.subList(boundary, Math.min(all.size(), 2 * boundary)), toolIds(secondPage));
+    }
+
+    /**
+     * last_page is a cursor pointing at the entries that a walk through next_page ends with
+     */
+    @Test
+    public void toolsLastPageIsACursor() throws Exception {
+        List<String> all = toolIds(listTools("limit=1000"));
+        for (int limit : new int[] { 1, 2, 3, all.size(), all.size() + 1 }) {
+            String lastOffset = offset(listTools("limit=" + limit).getHeaderString("last_page"));
+            assertThat(lastOffset).as("a page index is not handed out anymore").doesNotMatch("\\d+");
+            int lastPageSize = all.size() % limit == 0 ? limit : all.size() % limit;
+            List<String> lastPage = toolIds(listTools("limit=" + limit + "&offset=" + lastOffset));
+            Assert.assertEquals("last page of " + limit, all.subList(all.size() - lastPageSize, all.size()), lastPage);
+        }
+    }
+
+    private Response listTools(String query) {
+        return checkedResponse(basePath + "tools?" + query);
+    }
+
+    private List<String> followNextPages(String filters, int limit) {
+        List<String> ids = new ArrayList<>();
+        Response page = listTools(filters + "&limit=" + limit);
+        while (true) {
+            List<String> pageIds = toolIds(page);
+            assertThat(pageIds.size()).isLessThanOrEqualTo(limit);
+            ids.addAll(pageIds);
+            String nextPage = page.getHeaderString("next_page");
+            if (nextPage == null) {
+                return ids;
+            }
+            page = listTools(filters + "&limit=" + limit + "&offset=" + offset(nextPage));
+        }
+    }
+
+    private static List<String> toolIds(Response response) {
+        List<Tool> tools = response.readEntity(new GenericType<List<Tool>>() {
+        });
+        return tools.stream().map(Tool::getId).collect(Collectors.toList());
+    }
+
+    private static boolean isWorkflow(String toolId) {
+        return toolId.startsWith("#workflow/");
+    }
+
+    /**
+     * The links point at the configured external address, only their offset is used against the test webservice
+     */
+    private static String offset(String link) {
+        Matcher matcher = Pattern.compile("[?&]offset=([^&]*)").matcher(link);
+        Assert.assertTrue(link, matcher.find());
+        return matcher.group(1);
+    }
+
     @Test
     public void toolsId() throws Exception {
         toolsIdTool();
@@ -0,0 +1,169 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.client.cli;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import io.dockstore.common.CommonTestUtilities;
+import io.dockstore.common.Registry;
+import io.dockstore.webservice.DockstoreWebserviceApplication;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.ToolMode;
+import io.dockstore.webservice.jdbi.ToolDAO;
+import io.dropwizard.client.JerseyClientBuilder;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.glassfish.jersey.client.ClientProperties;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static io.dockstore.common.CommonTestUtilities.WAIT_TIME;
+
+/**
+ * Testing that the sitemap and RSS feed are generated again only once a published entry changes, and what the feed lists
+ */
+public class MetadataResourceIT {
+
+    public static final DropwizardTestSupport<DockstoreWebserviceConfiguration> SUPPORT = new DropwizardTestSupport<>(
+        DockstoreWebserviceApplication.class, CommonTestUtilities.CONFIG_PATH);
+    private static final String TOOL_PATH = "quay.io/test_org/test6";
+    private static final int RSS_ENTRIES = 50;
+    private static final Pattern RSS_TOOL_TITLE = Pattern.compile("<title>quay\\.io/rss_org/rss(\\d+)</title>");
+
+    private static Client client;
+    private static SessionFactory sessionFactory;
+    private static ToolDAO toolDAO;
+
+    @BeforeClass
+    public static void dumpDBAndCreateSchema() throws Exception {
+        CommonTestUtilities.dropAndCreateWithTestData(SUPPORT, true);
+        SUPPORT.before();
+        client = new JerseyClientBuilder(SUPPORT.getEnvironment()).build("metadata test client")
+            .property(ClientProperties.READ_TIMEOUT, WAIT_TIME);
+        sessionFactory = ((DockstoreWebserviceApplication)SUPPORT.getApplication()).getHibernate().getSessionFactory();
+        toolDAO = new ToolDAO(sessionFactory);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        SUPPORT.after();
+    }
+
+    @Test
+    public void unchangedEntriesAreNotModified() {
+        for (String document : new String[] { "sitemap", "rss" }) {
+            Response response = get(document, null);
+            Assert.assertEquals(200, response.getStatus());
+            String lastModified = response.getHeaderString(HttpHeaders.LAST_MODIFIED);
+            Assert.assertNotNull(lastModified);
+
+            Response conditional = get(document, lastModified);
+            Assert.assertEquals(document, 304, conditional.getStatus());
+        }
+    }
+
+    @Test
+    public void changedEntryIsServedAgain() {
+        String lastModified = get("rss", null).getHeaderString(HttpHeaders.LAST_MODIFIED);
+
+        // changed right away, likely within the second of the last document, and more recent than any other entry
+        inTransaction(dao -> {
+            Tool tool = dao.findByPath(TOOL_PATH, true);
+            tool.setDescription("changed for the feed");
+            tool.setLastUpdated(new Date(TimeUnit.DAYS.toMillis(365 * 1000)));
+        });
+
+        Response response = get("rss", lastModified);
+        Assert.assertEquals(200, response.getStatus());
+        String feed = response.readEntity(String.class);
+        Assert.assertTrue(feed, feed.contains("changed for the feed"));
+        Assert.assertNotEquals(lastModified, response.getHeaderString(HttpHeaders.LAST_MODIFIED));
+        Assert.assertEquals(304, get("rss", response.getHeaderString(HttpHeaders.LAST_MODIFIED)).getStatus());
+    }
+
+    @Test
+    public void feedListsTheMostRecentEntriesFirst() {
+        final int tools = RSS_ENTRIES + 10;
+        inTransaction(dao -> {
+            for (int i = 0; i < tools; i++) {
+                Tool tool = new Tool();
+                tool.setMode(ToolMode.MANUAL_IMAGE_PATH);
+                tool.setRegistry(Registry.QUAY_IO.toString());
+                tool.setNamespace("rss_org");
+                tool.setName("rss" + i);
+                tool.setGitUrl("git@github.com:rss_org/rss" + i + ".git");
+                tool.setIsPublished(true);
+                // in the future of every other entry, the later ones are more recent
+                tool.setLastUpdated(new Date(TimeUnit.DAYS.toMillis(365 * 200) + TimeUnit.MINUTES.toMillis(i)));
+                dao.create(tool);
+            }
+        });
+
+        String feed = get("rss", null).readEntity(String.class);
+        Assert.assertEquals(RSS_ENTRIES, feed.split("<item>", -1).length - 1);
+        List<Integer> listed = new ArrayList<>();
+        Matcher matcher = RSS_TOOL_TITLE.matcher(feed);
+        while (matcher.find()) {
+            listed.add(Integer.parseInt(matcher.group(1)));
+        }
+        // the entry changed by changedEntryIsServedAgain may be more recent still
+        Assert.assertTrue(listed.toString(), listed.size() >= RSS_ENTRIES - 1);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = tools - 1; expected.size() < listed.size(); i--) {
+            expected.add(i);
+        }
+        Assert.assertEquals(expected, listed);
+    }
+
+    private static Response get(String document, String ifModifiedSince) {
+        Invocation.Builder request = client.target(String.format("http://localhost:%d/metadata/%s", SUPPORT.getLocalPort(), document))
+            .request();
+        if (ifModifiedSince != null) {
+            request.header(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+        }
+        return request.get();
+    }
+
+    private static void inTransaction(Consumer<ToolDAO> work) {
+        Session session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+        try {
+            session.beginTransaction();
+            work.accept(toolDAO);
+            session.getTransaction().commit();
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.client.cli;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import io.dockstore.common.CommonTestUtilities;
+import io.dockstore.webservice.DockstoreWebserviceApplication;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.RefreshJob;
+import io.dockstore.webservice.jdbi.RefreshJobDAO;
+import io.dockstore.webservice.jdbi.TokenDAO;
+import io.dockstore.webservice.jdbi.UserDAO;
+import io.dockstore.webservice.resources.WorkflowRefreshTasks;
+import io.dockstore.webservice.resources.WorkflowResource;
+import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Testing that refresh jobs keep track of their progress in the database, so that an interrupted job can resume
+ */
+public class RefreshJobIT {
+
+    public static final DropwizardTestSupport<DockstoreWebserviceConfiguration> SUPPORT = new DropwizardTestSupport<>(
+        DockstoreWebserviceApplication.class, CommonTestUtilities.CONFIG_PATH);
+
+    private SessionFactory sessionFactory;
+    private RefreshJobDAO refreshJobDAO;
+    private WorkflowRefreshTasks tasks;
+
+    @BeforeClass
+    public static void dumpDBAndCreateSchema() throws Exception {
+        CommonTestUtilities.dropAndCreateWithTestData(SUPPORT, true);
+        SUPPORT.before();
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        SUPPORT.after();
+    }
+
+    @Before
+    public void setUp() {
+        DockstoreWebserviceApplication application = (DockstoreWebserviceApplication)SUPPORT.getApplication();
+        sessionFactory = application.getHibernate().getSessionFactory();
+        refreshJobDAO = new RefreshJobDAO(sessionFactory);
+        tasks = new UnitOfWorkAwareProxyFactory(application.getHibernate()).create(WorkflowRefreshTasks.class,
+            new Class[] { WorkflowResource.class, UserDAO.class, TokenDAO.class, RefreshJobDAO.class },
+            new Object[] { null, new UserDAO(sessionFactory), new TokenDAO(sessionFactory), refreshJobDAO });
+    }
+
+    @Test
+    public void createdJobIsRunning() {
+        RefreshJob job = tasks.createJob("admin");
+
+        RefreshJob found = tasks.findJob(job.getId());
+        Assert.assertEquals("admin", found.getRequestedBy());
+        Assert.assertEquals(RefreshJob.Status.RUNNING, found.getStatus());
+        Assert.assertEquals(0, found.getTotalRepositories());
+        Assert.assertNotNull(found.getStartDate());
+        Assert.assertNull(found.getEndDate());
+        Assert.assertTrue(tasks.findRunningJobs().stream().anyMatch(running -> running.getId() == job.getId()));
+    }
+
+    @Test
+    public void progressIsRecordedPerRepository() {
+        final long id = tasks.createJob("admin").getId();
+        inTransaction(dao -> {
+            dao.addRepositories(id, 3);
+            dao.recordRepository(id, "git@github.com:a/a.git", false);
+            dao.recordRepository(id, "git@github.com:b/b.git", true);
+        });
+
+        RefreshJob job = tasks.findJob(id);
+        Assert.assertEquals(3, job.getTotalRepositories());
+        Assert.assertEquals(1, job.getCompletedRepositories());
+        Assert.assertEquals(1, job.getFailedRepositories());
+
+        // the third repository was listed but not refreshed when the webservice stopped
+        List<String> done = tasks.prepareResume(id);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("git@github.com:a/a.git", "git@github.com:b/b.git")), new HashSet<>(done));
+        Assert.assertEquals("it is counted again once it is listed again", 2, tasks.findJob(id).getTotalRepositories());
+    }
+
+    @Test
+    public void finishedJobIsNoLongerRunning() {
+        final long id = tasks.createJob("admin").getId();
+        tasks.finishJob(id, RefreshJob.Status.FAILED);
+
+        RefreshJob job = tasks.findJob(id);
+        Assert.assertEquals(RefreshJob.Status.FAILED, job.getStatus());
+        Assert.assertNotNull(job.getEndDate());
+        Assert.assertTrue(tasks.findRunningJobs().stream().noneMatch(running -> running.getId() == id));
+    }
+
+    @Test
+    public void everyUserIsListed() {
+        List<Long> userIds = tasks.findUserIds();
+        Assert.assertFalse(userIds.isEmpty());
+        Assert.assertEquals(userIds.stream().sorted().collect(Collectors.toList()), userIds);
+    }
+
+    private void inTransaction(Consumer<RefreshJobDAO> work) {
+        Session session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+        try {
+            session.beginTransaction();
+            work.accept(refreshJobDAO);
+            session.getTransaction().commit();
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+}
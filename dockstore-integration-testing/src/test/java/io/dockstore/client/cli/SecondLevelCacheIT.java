@@ -0,0 +1,171 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.client.cli;
+
+import java.util.UUID;
+
+import io.dockstore.common.CommonTestUtilities;
+import io.dockstore.webservice.DockstoreWebserviceApplication;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.Label;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.jdbi.LabelDAO;
+import io.dockstore.webservice.jdbi.ToolDAO;
+import io.dropwizard.testing.ConfigOverride;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Testing that the second-level and query cache serve reads and that writes through Hibernate do not leave stale copies behind
+ */
+public class SecondLevelCacheIT {
+
+    public static final DropwizardTestSupport<DockstoreWebserviceConfiguration> SUPPORT = new DropwizardTestSupport<>(
+        DockstoreWebserviceApplication.class, CommonTestUtilities.CONFIG_PATH,
+        ConfigOverride.config("secondlevelcacheconfiguration.enabled", "true"));
+
+    private SessionFactory sessionFactory;
+    private Statistics statistics;
+    private LabelDAO labelDAO;
+    private ToolDAO toolDAO;
+    private Session session;
+
+    @BeforeClass
+    public static void dumpDBAndCreateSchema() throws Exception {
+        CommonTestUtilities.dropAndCreateWithTestData(SUPPORT, true);
+        SUPPORT.before();
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        SUPPORT.after();
+    }
+
+    @Before
+    public void openSession() {
+        sessionFactory = ((DockstoreWebserviceApplication)SUPPORT.getApplication()).getHibernate().getSessionFactory();
+        statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        labelDAO = new LabelDAO(sessionFactory);
+        toolDAO = new ToolDAO(sessionFactory);
+        reopenSession();
+    }
+
+    @After
+    public void closeSession() {
+        session.close();
+    }
+
+    @Test
+    public void cachedLabelIsReadWithoutTheDatabase() {
+        final String value = "cached-" + UUID.randomUUID();
+        final long id = createLabel(value);
+
+        reopenSession();
+        Assert.assertEquals(id, labelDAO.findByLabelValue(value).getId());
+
+        reopenSession();
+        statistics.clear();
+        Assert.assertEquals(id, labelDAO.findByLabelValue(value).getId());
+        Assert.assertEquals(1, statistics.getQueryCacheHitCount());
+        Assert.assertEquals("the query result and the label should both come from the cache", 0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void writeEvictsCachedQueryAndEntity() {
+        final String oldValue = "old-" + UUID.randomUUID();
+        final String newValue = "new-" + UUID.randomUUID();
+        final long id = createLabel(oldValue);
+        // cache the query result and the label
+        reopenSession();
+        labelDAO.findByLabelValue(oldValue);
+        Assert.assertTrue(sessionFactory.getCache().containsEntity(Label.class, id));
+
+        reopenSession();
+        session.beginTransaction();
+        labelDAO.findById(id).setValue(newValue);
+        session.getTransaction().commit();
+
+        reopenSession();
+        statistics.clear();
+        Assert.assertNull("the cached result of the query is stale once the label table is written", labelDAO.findByLabelValue(oldValue));
+        Assert.assertEquals(0, statistics.getQueryCacheHitCount());
+        Assert.assertEquals(1, statistics.getQueryCacheMissCount());
+        Assert.assertEquals(newValue, labelDAO.findById(id).getValue());
+
+        reopenSession();
+        session.beginTransaction();
+        session.delete(labelDAO.findById(id));
+        session.getTransaction().commit();
+        Assert.assertFalse(sessionFactory.getCache().containsEntity(Label.class, id));
+
+        reopenSession();
+        Assert.assertNull(labelDAO.findById(id));
+        Assert.assertNull(labelDAO.findByLabelValue(newValue));
+    }
+
+    @Test
+    public void writeEvictsCachedCollection() {
+        final long toolId = 1L;
+        final String value = "collection-" + UUID.randomUUID();
+        final long labelId = createLabel(value);
+        // cache the tool and its labels
+        reopenSession();
+        final int labels = toolDAO.findById(toolId).getLabels().size();
+
+        reopenSession();
+        statistics.clear();
+        Assert.assertEquals(labels, toolDAO.findById(toolId).getLabels().size());
+        Assert.assertEquals("the tool and its labels should both come from the cache", 0, statistics.getPrepareStatementCount());
+
+        reopenSession();
+        session.beginTransaction();
+        toolDAO.findById(toolId).getLabels().add(labelDAO.findById(labelId));
+        session.getTransaction().commit();
+
+        reopenSession();
+        Tool tool = toolDAO.findById(toolId);
+        Assert.assertEquals(labels + 1, tool.getLabels().size());
+        Assert.assertTrue(tool.getLabels().stream().anyMatch(label -> label.getId() == labelId));
+    }
+
+    private long createLabel(String value) {
+        Label label = new Label();
+        label.setValue(value);
+        session.beginTransaction();
+        final long id = labelDAO.create(label);
+        session.getTransaction().commit();
+        return id;
+    }
+
+    private void reopenSession() {
+        if (session != null) {
+            session.close();
+        }
+        session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.client.cli;
+
+import java.util.List;
+import java.util.UUID;
+
+import io.dockstore.common.CommonTestUtilities;
+import io.dockstore.webservice.DockstoreWebserviceApplication;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.jdbi.FileDAO;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.apache.commons.dbutils.handlers.ArrayListHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Testing that source file content is stored once per hash, by the migration and by the webservice
+ */
+public class SourceFileContentIT {
+
+    public static final DropwizardTestSupport<DockstoreWebserviceConfiguration> SUPPORT = new DropwizardTestSupport<>(
+        DockstoreWebserviceApplication.class, CommonTestUtilities.CONFIG_PATH);
+
+    private final CommonTestUtilities.TestingPostgres testingPostgres = CommonTestUtilities.getTestingPostgres();
+    private SessionFactory sessionFactory;
+    private FileDAO fileDAO;
+    private Session session;
+
+    @BeforeClass
+    public static void dumpDBAndCreateSchema() throws Exception {
+        // the test data has source files with content, the 1.4.0 migrations move it
+        CommonTestUtilities.dropAndCreateWithTestData(SUPPORT, true);
+        SUPPORT.before();
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        SUPPORT.after();
+    }
+
+    @Before
+    public void openSession() {
+        sessionFactory = ((DockstoreWebserviceApplication)SUPPORT.getApplication()).getHibernate().getSessionFactory();
+        fileDAO = new FileDAO(sessionFactory);
+        reopenSession();
+    }
+
+    @After
+    public void closeSession() {
+        session.close();
+    }
+
+    @Test
+    public void migrationStoresContentOncePerHash() {
+        final long unresolved = testingPostgres.runSelectStatement("select count(*) from sourcefile f where f.contenthash is not null "
+            + "and not exists (select 1 from sourcefilecontent c where c.hash = f.contenthash)", new ScalarHandler<>());
+        Assert.assertEquals("every file should have its content", 0, unresolved);
+        final long hashes = testingPostgres.runSelectStatement("select count(distinct contenthash) from sourcefile", new ScalarHandler<>());
+        final long contents = testingPostgres.runSelectStatement("select count(*) from sourcefilecontent", new ScalarHandler<>());
+        Assert.assertTrue("the test data should have content to migrate", hashes > 0);
+        Assert.assertEquals("content should be stored once per hash", hashes, contents);
+
+        // the webservice must find the content the migration hashed
+        List<Object[]> rows = testingPostgres.runSelectStatement("select hash, content from sourcefilecontent", new ArrayListHandler());
+        for (Object[] row : rows) {
+            Assert.assertEquals(row[0], SourceFile.hash((String)row[1]));
+        }
+    }
+
+    @Test
+    public void filesWithTheSameContentShareOneRow() {
+        final String content = "cwlVersion: v1.0\nclass: CommandLineTool\n# " + UUID.randomUUID();
+        session.beginTransaction();
+        final long firstId = fileDAO.create(newFile("/Dockstore.cwl", content));
+        final long secondId = fileDAO.create(newFile("/tools/Dockstore.cwl", content));
+        session.getTransaction().commit();
+
+        Assert.assertEquals(1L, countContent(SourceFile.hash(content)));
+        reopenSession();
+        Assert.assertEquals(content, fileDAO.findById(firstId).getContent());
+        Assert.assertEquals(content, fileDAO.findById(secondId).getContent());
+    }
+
+    @Test
+    public void contentIsOnlyWrittenWhenItChanges() {
+        final String content = "cwlVersion: v1.0\nclass: Workflow\n# " + UUID.randomUUID();
+        session.beginTransaction();
+        final long id = fileDAO.create(newFile("/Dockstore.cwl", content));
+        session.getTransaction().commit();
+
+        // writing the content again locks its row, which marks it with the locking transaction
+        final String lockedBy = lockedBy(SourceFile.hash(content));
+
+        reopenSession();
+        session.beginTransaction();
+        fileDAO.findById(id).setPath("/renamed.cwl");
+        session.getTransaction().commit();
+        Assert.assertEquals(lockedBy, lockedBy(SourceFile.hash(content)));
+
+        reopenSession();
+        session.beginTransaction();
+        fileDAO.findById(id).setContent(content + "\n# changed");
+        session.getTransaction().commit();
+        Assert.assertEquals(1L, countContent(SourceFile.hash(content + "\n# changed")));
+    }
+
+    @Test
+    public void unusedContentIsDeleted() {
+        final String oldContent = "cwlVersion: v1.0\nclass: ExpressionTool\n# " + UUID.randomUUID();
+        final String newContent = oldContent + "\n# changed";
+        session.beginTransaction();
+        final long id = fileDAO.create(newFile("/Dockstore.cwl", oldContent));
+        session.getTransaction().commit();
+
+        reopenSession();
+        session.beginTransaction();
+        fileDAO.findById(id).setContent(newContent);
+        session.getTransaction().commit();
+        Assert.assertEquals("the previous content is left behind", 1L, countContent(SourceFile.hash(oldContent)));
+
+        reopenSession();
+        session.beginTransaction();
+        Assert.assertTrue(fileDAO.deleteUnusedContent(Integer.MAX_VALUE) >= 1);
+        session.getTransaction().commit();
+        Assert.assertEquals(0L, countContent(SourceFile.hash(oldContent)));
+        Assert.assertEquals(1L, countContent(SourceFile.hash(newContent)));
+
+        reopenSession();
+        Assert.assertEquals(newContent, fileDAO.findById(id).getContent());
+    }
+
+    private void reopenSession() {
+        if (session != null) {
+            session.close();
+        }
+        session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+    }
+
+    private String lockedBy(String hash) {
+        return testingPostgres.runSelectStatement("select xmax::text from sourcefilecontent where hash = ?", new ScalarHandler<>(), hash);
+    }
+
+    private long countContent(String hash) {
+        return testingPostgres.runSelectStatement("select count(*) from sourcefilecontent where hash = ?", new ScalarHandler<>(), hash);
+    }
+
+    private static SourceFile newFile(String path, String content) {
+        SourceFile file = new SourceFile();
+        file.setType(SourceFile.FileType.DOCKSTORE_CWL);
+        file.setPath(path);
+        file.setContent(content);
+        return file;
+    }
+}
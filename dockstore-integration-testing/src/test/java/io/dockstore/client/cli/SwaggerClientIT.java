@@ -61,6 +61,7 @@ import io.swagger.client.model.Tag;
 import io.swagger.client.model.Token;
 import io.swagger.client.model.ToolDescriptor;
 import io.swagger.client.model.ToolDockerfile;
+import io.swagger.client.model.ToolSummary;
 import io.swagger.client.model.ToolVersionV1;
 import io.swagger.client.model.User;
 import io.swagger.client.model.VerifyRequest;
@@ -189,13 +190,13 @@ public class SwaggerClientIT {
     public void testFailedContainerRegistration() throws ApiException, IOException, TimeoutException {
         ApiClient client = getWebClient();
         ContainersApi containersApi = new ContainersApi(client);
-        List<DockstoreTool> containers = containersApi.allPublishedContainers();
+        List<ToolSummary> publishedContainers = containersApi.allPublishedContainers();
 
-        assertTrue(containers.size() == 1);
+        assertTrue(publishedContainers.size() == 1);
 
         UsersApi usersApi = new UsersApi(client);
         User user = usersApi.getUser();
-        containers = usersApi.userContainers(user.getId());
+        List<DockstoreTool> containers = usersApi.userContainers(user.getId());
 
         assertTrue(containers.size() == 5);
 
@@ -468,13 +469,13 @@ public class SwaggerClientIT {
     public void testContainerRegistration() throws ApiException, IOException, TimeoutException {
         ApiClient client = getWebClient();
         ContainersApi containersApi = new ContainersApi(client);
-        List<DockstoreTool> containers = containersApi.allPublishedContainers();
+        List<ToolSummary> publishedContainers = containersApi.allPublishedContainers();
 
-        assertTrue(containers.size() == 1);
+        assertTrue(publishedContainers.size() == 1);
 
         UsersApi usersApi = new UsersApi(client);
         User user = usersApi.getUser();
-        containers = usersApi.userContainers(user.getId());
+        List<DockstoreTool> containers = usersApi.userContainers(user.getId());
 
         assertTrue(containers.size() == 5);
 
@@ -488,8 +489,8 @@ public class SwaggerClientIT {
         container = containersApi.publish(containerId, pub);
         assertTrue(container.isIsPublished());
 
-        containers = containersApi.allPublishedContainers();
-        assertTrue(containers.size() == 2);
+        publishedContainers = containersApi.allPublishedContainers();
+        assertTrue(publishedContainers.size() == 2);
 
         pub = SwaggerUtility.createPublishRequest(false);
 
@@ -502,11 +503,11 @@ public class SwaggerClientIT {
         ApiClient client = getWebClient();
         ContainersApi containersApi = new ContainersApi(client);
 
-        List<DockstoreTool> containers = containersApi.search("test6");
+        List<DockstoreTool> containers = containersApi.search("test6", null, null);
         assertTrue(containers.size() == 1);
         assertTrue(containers.get(0).getPath().equals(QUAY_IO_TEST_ORG_TEST6));
 
-        containers = containersApi.search("test52");
+        containers = containersApi.search("test52", null, null);
         assertTrue(containers.isEmpty());
     }
 
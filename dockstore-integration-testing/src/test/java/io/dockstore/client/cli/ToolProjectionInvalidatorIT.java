@@ -0,0 +1,160 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.client.cli;
+
+import java.util.function.Consumer;
+
+import io.dockstore.common.CommonTestUtilities;
+import io.dockstore.webservice.DockstoreWebserviceApplication;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Tag;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.jdbi.ToolDAO;
+import io.dockstore.webservice.jdbi.WorkflowDAO;
+import io.dropwizard.testing.DropwizardTestSupport;
+import io.swagger.api.impl.ToolProjectionCache;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Testing that converted GA4GH tools are reused until the entry, one of its versions or one of their files is written
+ */
+public class ToolProjectionInvalidatorIT {
+
+    public static final DropwizardTestSupport<DockstoreWebserviceConfiguration> SUPPORT = new DropwizardTestSupport<>(
+        DockstoreWebserviceApplication.class, CommonTestUtilities.CONFIG_PATH);
+    private static final String TOOL_PATH = "quay.io/test_org/test6";
+    private static final String WORKFLOW_PATH = "github.com/A/l";
+
+    private SessionFactory sessionFactory;
+    private ToolDAO toolDAO;
+    private WorkflowDAO workflowDAO;
+    private Session session;
+
+    @BeforeClass
+    public static void dumpDBAndCreateSchema() throws Exception {
+        CommonTestUtilities.dropAndCreateWithTestData(SUPPORT, true);
+        SUPPORT.before();
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        SUPPORT.after();
+    }
+
+    @Before
+    public void openSession() {
+        sessionFactory = ((DockstoreWebserviceApplication)SUPPORT.getApplication()).getHibernate().getSessionFactory();
+        toolDAO = new ToolDAO(sessionFactory);
+        workflowDAO = new WorkflowDAO(sessionFactory);
+        reopenSession();
+    }
+
+    @After
+    public void closeSession() {
+        session.close();
+    }
+
+    @Test
+    public void unchangedEntryIsConvertedOnce() {
+        io.swagger.model.Tool converted = convert(toolDAO.findByPath(TOOL_PATH, true));
+
+        reopenSession();
+        Assert.assertSame(converted, convert(toolDAO.findByPath(TOOL_PATH, true)));
+    }
+
+    @Test
+    public void writingAVersionInvalidatesItsEntry() {
+        io.swagger.model.Tool converted = convert(toolDAO.findByPath(TOOL_PATH, true));
+
+        inTransaction(() -> {
+            Tag tag = toolDAO.findByPath(TOOL_PATH, true).getTags().iterator().next();
+            tag.setImageId(tag.getImageId() + "-changed");
+        });
+        Assert.assertNotSame(converted, convert(toolDAO.findByPath(TOOL_PATH, true)));
+    }
+
+    @Test
+    public void writingFilesInvalidatesTheirEntry() {
+        io.swagger.model.Tool converted = convert(toolDAO.findByPath(TOOL_PATH, true));
+
+        // every file of every version, their entry is looked up once for all of them
+        inTransaction(() -> toolDAO.findByPath(TOOL_PATH, true).getTags().stream().flatMap(tag -> tag.getSourceFiles().stream())
+            .forEach(appendComment()));
+        Assert.assertNotSame(converted, convert(toolDAO.findByPath(TOOL_PATH, true)));
+    }
+
+    @Test
+    public void writingAWorkflowVersionInvalidatesItsWorkflow() {
+        io.swagger.model.Tool converted = convert(workflowDAO.findByPath(WORKFLOW_PATH, true));
+
+        inTransaction(() -> {
+            Workflow workflow = workflowDAO.findByPath(WORKFLOW_PATH, true);
+            workflow.getWorkflowVersions().forEach(version -> version.setDirtyBit(!version.isDirtyBit()));
+        });
+        Assert.assertNotSame(converted, convert(workflowDAO.findByPath(WORKFLOW_PATH, true)));
+    }
+
+    @Test
+    public void rolledBackWriteKeepsTheEntry() {
+        io.swagger.model.Tool converted = convert(toolDAO.findByPath(TOOL_PATH, true));
+
+        session.beginTransaction();
+        toolDAO.findByPath(TOOL_PATH, true).getTags().stream().flatMap(tag -> tag.getSourceFiles().stream()).forEach(appendComment());
+        session.flush();
+        session.getTransaction().rollback();
+
+        reopenSession();
+        Assert.assertSame(converted, convert(toolDAO.findByPath(TOOL_PATH, true)));
+    }
+
+    private static Consumer<SourceFile> appendComment() {
+        return sourceFile -> sourceFile.setContent(sourceFile.getContent() + "\n# changed");
+    }
+
+    private static io.swagger.model.Tool convert(Entry entry) {
+        return ToolProjectionCache.get(entry, SUPPORT.getConfiguration()).getLeft();
+    }
+
+    /**
+     * Runs the work in its own transaction and leaves a new session open
+     */
+    private void inTransaction(Runnable work) {
+        reopenSession();
+        session.beginTransaction();
+        work.run();
+        session.getTransaction().commit();
+        reopenSession();
+    }
+
+    private void reopenSession() {
+        if (session != null) {
+            session.close();
+        }
+        session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+    }
+}
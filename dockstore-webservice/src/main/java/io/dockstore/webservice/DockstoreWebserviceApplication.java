@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.util.EnumSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -29,7 +31,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import io.dockstore.webservice.core.Group;
 import io.dockstore.webservice.core.Label;
+import io.dockstore.webservice.core.RefreshJob;
 import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.SourceFileContent;
 import io.dockstore.webservice.core.Tag;
 import io.dockstore.webservice.core.Token;
 import io.dockstore.webservice.core.Tool;
@@ -37,12 +41,18 @@ import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowVersion;
 import io.dockstore.webservice.doi.DOIGeneratorFactory;
+import io.dockstore.webservice.helpers.ElasticIndexQueue;
 import io.dockstore.webservice.helpers.ElasticManager;
 import io.dockstore.webservice.helpers.PersistenceExceptionMapper;
 import io.dockstore.webservice.helpers.TransactionExceptionMapper;
+import io.dockstore.webservice.jdbi.EntryDAO;
 import io.dockstore.webservice.jdbi.FileDAO;
 import io.dockstore.webservice.jdbi.GroupDAO;
 import io.dockstore.webservice.jdbi.LabelDAO;
+import io.dockstore.webservice.jdbi.RefreshJobDAO;
+import io.dockstore.webservice.jdbi.SecondLevelCacheBundle;
+import io.dockstore.webservice.jdbi.SourceFileContentCleanup;
+import io.dockstore.webservice.jdbi.SourceFileContentListener;
 import io.dockstore.webservice.jdbi.TagDAO;
 import io.dockstore.webservice.jdbi.TokenDAO;
 import io.dockstore.webservice.jdbi.ToolDAO;
@@ -60,6 +70,9 @@ import io.dockstore.webservice.resources.QuayIOAuthenticationResource;
 import io.dockstore.webservice.resources.TemplateHealthCheck;
 import io.dockstore.webservice.resources.TokenResource;
 import io.dockstore.webservice.resources.UserResource;
+import io.dockstore.webservice.resources.WorkflowArtifacts;
+import io.dockstore.webservice.resources.WorkflowRefreshScheduler;
+import io.dockstore.webservice.resources.WorkflowRefreshTasks;
 import io.dockstore.webservice.resources.WorkflowResource;
 import io.dockstore.webservice.resources.proposedGA4GH.ToolsApiExtendedServiceImpl;
 import io.dockstore.webservice.resources.proposedGA4GH.ToolsExtendedApi;
@@ -83,6 +96,8 @@ import io.swagger.api.ToolClassesApi;
 import io.swagger.api.ToolClassesApiV1;
 import io.swagger.api.ToolsApi;
 import io.swagger.api.ToolsApiV1;
+import io.swagger.api.impl.ToolProjectionCache;
+import io.swagger.api.impl.ToolProjectionInvalidator;
 import io.swagger.api.impl.ToolsApiServiceImpl;
 import io.swagger.jaxrs.config.BeanConfig;
 import io.swagger.jaxrs.listing.ApiListingResource;
@@ -95,6 +110,13 @@ import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlets.CrossOriginFilter;
 import org.glassfish.jersey.CommonProperties;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.type.StandardBasicTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -114,15 +136,32 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
     private static final int BYTES_IN_KILOBYTE = 1024;
     private static final int KILOBYTES_IN_MEGABYTE = 1024;
     private static final int CACHE_IN_MB = 100;
+    private static final String JDBC_BATCH_SIZE = "50";
     private static Cache cache = null;
 
     private final HibernateBundle<DockstoreWebserviceConfiguration> hibernate = new HibernateBundle<DockstoreWebserviceConfiguration>(
-            Token.class, Tool.class, User.class, Group.class, Tag.class, Label.class, SourceFile.class, Workflow.class,
-            WorkflowVersion.class) {
+            Token.class, Tool.class, User.class, Group.class, Tag.class, Label.class, SourceFile.class, SourceFileContent.class, Workflow.class,
+            WorkflowVersion.class, RefreshJob.class) {
         @Override
         public DataSourceFactory getDataSourceFactory(DockstoreWebserviceConfiguration configuration) {
             return configuration.getDataSourceFactory();
         }
+
+        @Override
+        protected void configure(Configuration configuration) {
+            // refreshes write many source files, send them in batches unless the configuration says otherwise
+            setDefaultProperty(configuration, "hibernate.jdbc.batch_size", JDBC_BATCH_SIZE);
+            setDefaultProperty(configuration, "hibernate.order_inserts", "true");
+            setDefaultProperty(configuration, "hibernate.order_updates", "true");
+            configuration.addSqlFunction(EntryDAO.BINARY_COLLATION_FUNCTION,
+                new SQLFunctionTemplate(StandardBasicTypes.STRING, EntryDAO.BINARY_COLLATION_TEMPLATE));
+        }
+
+        private void setDefaultProperty(Configuration configuration, String name, String value) {
+            if (configuration.getProperty(name) == null) {
+                configuration.setProperty(name, value);
+            }
+        }
     };
 
     public static void main(String[] args) throws Exception {
@@ -140,7 +179,8 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
         configureMapper(bootstrap.getObjectMapper());
 
 
-        // setup hibernate+postgres
+        // setup hibernate+postgres, with the second-level cache set up first if enabled
+        bootstrap.addBundle(new SecondLevelCacheBundle());
         bootstrap.addBundle(hibernate);
 
         // serve static html as well
@@ -200,6 +240,9 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
         beanConfig.setResourcePackage("io.dockstore.webservice.resources,io.swagger.api");
         beanConfig.setScan(true);
         ElasticManager.setConfig(configuration);
+        final ElasticIndexQueue elasticIndexQueue = new ElasticIndexQueue(configuration.getEsConfiguration(), environment.metrics());
+        environment.lifecycle().manage(elasticIndexQueue);
+        ElasticManager.setIndexQueue(elasticIndexQueue);
         final QuayIOAuthenticationResource resource2 = new QuayIOAuthenticationResource(configuration.getQuayClientID(),
                 configuration.getQuayRedirectURI());
         environment.jersey().register(resource2);
@@ -218,6 +261,22 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
         final LabelDAO labelDAO = new LabelDAO(hibernate.getSessionFactory());
         final FileDAO fileDAO = new FileDAO(hibernate.getSessionFactory());
 
+        final SourceFileContentListener sourceFileContentListener = new SourceFileContentListener();
+        final EventListenerRegistry eventListenerRegistry = hibernate.getSessionFactory().unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry().getService(EventListenerRegistry.class);
+        eventListenerRegistry.appendListeners(EventType.PRE_INSERT, sourceFileContentListener);
+        eventListenerRegistry.appendListeners(EventType.PRE_UPDATE, sourceFileContentListener);
+        final SourceFileContentCleanup sourceFileContentCleanup = new UnitOfWorkAwareProxyFactory(getHibernate())
+                .create(SourceFileContentCleanup.class, FileDAO.class, fileDAO);
+        environment.lifecycle().manage(sourceFileContentCleanup);
+        final ToolProjectionInvalidator toolProjectionInvalidator = new ToolProjectionInvalidator();
+        eventListenerRegistry.appendListeners(EventType.POST_INSERT, toolProjectionInvalidator);
+        eventListenerRegistry.appendListeners(EventType.POST_UPDATE, toolProjectionInvalidator);
+        eventListenerRegistry.appendListeners(EventType.POST_DELETE, toolProjectionInvalidator);
+        eventListenerRegistry.appendListeners(EventType.POST_COLLECTION_RECREATE, toolProjectionInvalidator);
+        eventListenerRegistry.appendListeners(EventType.POST_COLLECTION_UPDATE, toolProjectionInvalidator);
+        eventListenerRegistry.appendListeners(EventType.POST_COLLECTION_REMOVE, toolProjectionInvalidator);
+
         LOG.info("Cache directory for OkHttp is: " + cache.directory().getAbsolutePath());
         LOG.info("This is our custom logger saying that we're about to load authenticators");
         // setup authentication to allow session access in authenticators, see https://github.com/dropwizard/dropwizard/pull/1361
@@ -237,9 +296,24 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
             workflowVersionDAO, labelDAO, fileDAO, configuration.getBitbucketClientID(), configuration.getBitbucketClientSecret());
         environment.jersey().register(workflowResource);
 
+        final RefreshJobDAO refreshJobDAO = new RefreshJobDAO(hibernate.getSessionFactory());
+        WorkflowRefreshTasks refreshTasks = new UnitOfWorkAwareProxyFactory(getHibernate()).create(WorkflowRefreshTasks.class,
+                new Class[] { WorkflowResource.class, UserDAO.class, TokenDAO.class, RefreshJobDAO.class },
+                new Object[] { workflowResource, userDAO, tokenDAO, refreshJobDAO });
+        final WorkflowRefreshScheduler refreshScheduler = new WorkflowRefreshScheduler(refreshTasks, configuration.getRefreshConfiguration());
+        environment.lifecycle().manage(refreshScheduler);
+        workflowResource.setRefreshScheduler(refreshScheduler);
+        final ExecutorService artifactExecutor = environment.lifecycle().executorService("workflow-artifacts-%d").minThreads(1).maxThreads(1)
+                .build();
+        WorkflowArtifacts workflowArtifacts = new UnitOfWorkAwareProxyFactory(getHibernate()).create(WorkflowArtifacts.class,
+                new Class[] { SessionFactory.class, WorkflowDAO.class, WorkflowVersionDAO.class, ToolDAO.class, Executor.class },
+                new Object[] { hibernate.getSessionFactory(), workflowDAO, workflowVersionDAO, toolDAO, artifactExecutor });
+        workflowResource.setWorkflowArtifacts(workflowArtifacts);
+
         // Note workflow resource must be passed to the docker repo resource, as the workflow resource refresh must be called for checker workflows
         final DockerRepoResource dockerRepoResource = new DockerRepoResource(environment.getObjectMapper(), httpClient, userDAO, tokenDAO, toolDAO, tagDAO,
                 labelDAO, fileDAO, workflowDAO, configuration.getBitbucketClientID(), configuration.getBitbucketClientSecret(), workflowResource);
+        dockerRepoResource.setWorkflowArtifacts(workflowArtifacts);
         environment.jersey().register(dockerRepoResource);
         environment.jersey().register(new GitHubRepoResource(tokenDAO));
         environment.jersey().register(new DockerRepoTagResource(toolDAO, tagDAO));
@@ -258,12 +332,13 @@ public class DockstoreWebserviceApplication extends Application<DockstoreWebserv
         environment.jersey().register(new TokenResource(tokenDAO, userDAO, httpClient, cachingAuthenticator, configuration));
 
         environment.jersey().register(new UserResource(tokenDAO, userDAO, groupDAO, workflowResource, dockerRepoResource));
-        environment.jersey().register(new MetadataResource(toolDAO, workflowDAO, configuration));
+        environment.jersey().register(new MetadataResource(toolDAO, workflowDAO, fileDAO, configuration));
 
         // attach the container dao statically to avoid too much modification of generated code
         ToolsApiServiceImpl.setToolDAO(toolDAO);
         ToolsApiServiceImpl.setWorkflowDAO(workflowDAO);
         ToolsApiServiceImpl.setConfig(configuration);
+        ToolProjectionCache.configure(configuration.getToolProjectionCachePolicy(), environment.metrics());
 
         ToolsApiExtendedServiceImpl.setToolDAO(toolDAO);
         ToolsApiExtendedServiceImpl.setWorkflowDAO(workflowDAO);
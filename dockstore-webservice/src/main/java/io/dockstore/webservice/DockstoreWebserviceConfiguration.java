@@ -16,7 +16,9 @@
 
 package io.dockstore.webservice;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -42,6 +44,12 @@ public class DockstoreWebserviceConfiguration extends Configuration {
     @Valid
     private ElasticSearchConfig esConfiguration = new ElasticSearchConfig();
 
+    @Valid
+    private RefreshConfig refreshConfiguration = new RefreshConfig();
+
+    @Valid
+    private SecondLevelCacheConfig secondLevelCacheConfiguration = new SecondLevelCacheConfig();
+
     @NotEmpty
     private String template;
 
@@ -78,6 +86,12 @@ public class DockstoreWebserviceConfiguration extends Configuration {
     @NotNull
     private CacheBuilderSpec authenticationCachePolicy;
 
+    /**
+     * Policy for the cache of converted GA4GH tools, maximumWeight is an estimate in bytes
+     */
+    @NotNull
+    private CacheBuilderSpec toolProjectionCachePolicy = CacheBuilderSpec.parse("maximumWeight=67108864, expireAfterWrite=1h");
+
     @NotEmpty
     private String hostname;
 
@@ -249,6 +263,14 @@ public class DockstoreWebserviceConfiguration extends Configuration {
         this.authenticationCachePolicy = authenticationCachePolicy;
     }
 
+    public CacheBuilderSpec getToolProjectionCachePolicy() {
+        return toolProjectionCachePolicy;
+    }
+
+    public void setToolProjectionCachePolicy(CacheBuilderSpec toolProjectionCachePolicy) {
+        this.toolProjectionCachePolicy = toolProjectionCachePolicy;
+    }
+
     public String getGitlabClientID() {
         return gitlabClientID;
     }
@@ -306,6 +328,24 @@ public class DockstoreWebserviceConfiguration extends Configuration {
         this.esConfiguration = esConfiguration;
     }
 
+    @JsonProperty("refreshconfiguration")
+    public RefreshConfig getRefreshConfiguration() {
+        return refreshConfiguration;
+    }
+
+    public void setRefreshConfiguration(RefreshConfig refreshConfiguration) {
+        this.refreshConfiguration = refreshConfiguration;
+    }
+
+    @JsonProperty("secondlevelcacheconfiguration")
+    public SecondLevelCacheConfig getSecondLevelCacheConfiguration() {
+        return secondLevelCacheConfiguration;
+    }
+
+    public void setSecondLevelCacheConfiguration(SecondLevelCacheConfig secondLevelCacheConfiguration) {
+        this.secondLevelCacheConfiguration = secondLevelCacheConfiguration;
+    }
+
     public String getUiPort() {
         return uiPort;
     }
@@ -323,10 +363,157 @@ public class DockstoreWebserviceConfiguration extends Configuration {
         this.sqsURL = sqsURL;
     }
 
+    /**
+     * Settings for the background refresh of all workflows
+     */
+    public static class RefreshConfig {
+        private static final int DEFAULT_THREADS = 4;
+        private static final int DEFAULT_RATE_LIMIT_RESERVE = 100;
+
+        /**
+         * number of repositories refreshed at the same time
+         */
+        private int threads = DEFAULT_THREADS;
+        /**
+         * requests left untouched in each token's rate limit budget, refreshing is put off until the reset instead
+         */
+        private int rateLimitReserve = DEFAULT_RATE_LIMIT_RESERVE;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getRateLimitReserve() {
+            return rateLimitReserve;
+        }
+
+        public void setRateLimitReserve(int rateLimitReserve) {
+            this.rateLimitReserve = rateLimitReserve;
+        }
+    }
+
+    /**
+     * Settings for the Hibernate second-level cache of entries, versions, source files and labels, off unless enabled.
+     * Each webservice keeps its own cache, with several webservices writes on one are seen by the others once cached copies expire.
+     */
+    public static class SecondLevelCacheConfig {
+        private boolean enabled = false;
+        /**
+         * used for regions that are not listed in regions
+         */
+        @Valid
+        private CacheRegionConfig defaultRegion = new CacheRegionConfig();
+        /**
+         * region name (entry, version, sourcefile, sourcefilecontent, label, collections, paths) to its settings
+         */
+        @Valid
+        private Map<String, CacheRegionConfig> regions = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public CacheRegionConfig getDefaultRegion() {
+            return defaultRegion;
+        }
+
+        public void setDefaultRegion(CacheRegionConfig defaultRegion) {
+            this.defaultRegion = defaultRegion;
+        }
+
+        public Map<String, CacheRegionConfig> getRegions() {
+            return regions;
+        }
+
+        public void setRegions(Map<String, CacheRegionConfig> regions) {
+            this.regions = regions;
+        }
+
+        public CacheRegionConfig getRegion(String name) {
+            return regions.getOrDefault(name, defaultRegion);
+        }
+    }
+
+    public static class CacheRegionConfig {
+        private static final int DEFAULT_MAX_ENTRIES = 10000;
+        private static final int DEFAULT_TIME_TO_LIVE_SECONDS = 600;
+
+        /**
+         * entries kept on the heap before the least recently used ones are evicted
+         */
+        private int maxEntries = DEFAULT_MAX_ENTRIES;
+        /**
+         * seconds an entry is kept after it was cached
+         */
+        private int timeToLiveSeconds = DEFAULT_TIME_TO_LIVE_SECONDS;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+
     public class ElasticSearchConfig {
+        private static final int DEFAULT_BULK_SIZE = 500;
+        private static final int DEFAULT_MAX_QUEUE_SIZE = 10000;
+        private static final int DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+        private static final int DEFAULT_MAX_RETRIES = 5;
+        private static final int DEFAULT_REINDEX_BATCH_SIZE = 100;
+        private static final int DEFAULT_MAX_BULK_BYTES = 5 * 1024 * 1024;
+        private static final int DEFAULT_MAX_CONCURRENT_BULK_REQUESTS = 4;
+
         private String hostname;
         private int port;
 
+        /**
+         * maximum number of operations per _bulk request
+         */
+        private int bulkSize = DEFAULT_BULK_SIZE;
+        /**
+         * maximum number of documents with queued index updates, updates of further documents are dropped while the queue is full
+         */
+        private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+        /**
+         * how often queued index updates are sent, also the base of the retry backoff
+         */
+        private int flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        /**
+         * number of entries read from the database at a time during a full reindex
+         */
+        private int reindexBatchSize = DEFAULT_REINDEX_BATCH_SIZE;
+        /**
+         * a _bulk request is sent once it reaches this size, even if it has fewer than bulkSize operations
+         */
+        private int maxBulkBytes = DEFAULT_MAX_BULK_BYTES;
+        /**
+         * maximum number of _bulk requests in flight during a full reindex
+         */
+        private int maxConcurrentBulkRequests = DEFAULT_MAX_CONCURRENT_BULK_REQUESTS;
+        /**
+         * a full reindex with more entries that could not be indexed is abandoned and searches keep using the old index
+         */
+        private int maxReindexFailures = 0;
+
         public String getHostname() {
             return hostname;
         }
@@ -342,5 +529,69 @@ public class DockstoreWebserviceConfiguration extends Configuration {
         public void setPort(int port) {
             this.port = port;
         }
+
+        public int getBulkSize() {
+            return bulkSize;
+        }
+
+        public void setBulkSize(int bulkSize) {
+            this.bulkSize = bulkSize;
+        }
+
+        public int getMaxQueueSize() {
+            return maxQueueSize;
+        }
+
+        public void setMaxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+        }
+
+        public int getFlushIntervalMillis() {
+            return flushIntervalMillis;
+        }
+
+        public void setFlushIntervalMillis(int flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public int getReindexBatchSize() {
+            return reindexBatchSize;
+        }
+
+        public void setReindexBatchSize(int reindexBatchSize) {
+            this.reindexBatchSize = reindexBatchSize;
+        }
+
+        public int getMaxBulkBytes() {
+            return maxBulkBytes;
+        }
+
+        public void setMaxBulkBytes(int maxBulkBytes) {
+            this.maxBulkBytes = maxBulkBytes;
+        }
+
+        public int getMaxConcurrentBulkRequests() {
+            return maxConcurrentBulkRequests;
+        }
+
+        public void setMaxConcurrentBulkRequests(int maxConcurrentBulkRequests) {
+            this.maxConcurrentBulkRequests = maxConcurrentBulkRequests;
+        }
+
+        public int getMaxReindexFailures() {
+            return maxReindexFailures;
+        }
+
+        public void setMaxReindexFailures(int maxReindexFailures) {
+            this.maxReindexFailures = maxReindexFailures;
+        }
     }
 }
@@ -24,13 +24,17 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.QueryHints;
 import org.hibernate.annotations.UpdateTimestamp;
 
 /**
@@ -41,7 +45,8 @@ import org.hibernate.annotations.UpdateTimestamp;
 @ApiModel(value = "Label", description = "This describes a descriptive label that can be placed on an entry in the dockstore")
 @Entity
 @Table(name = "label")
-@NamedQuery(name = "io.dockstore.webservice.core.Label.findByLabelValue", query = "SELECT l FROM Label l WHERE l.value = :labelValue")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "label")
+@NamedQuery(name = "io.dockstore.webservice.core.Label.findByLabelValue", query = "SELECT l FROM Label l WHERE l.value = :labelValue", hints = { @QueryHint(name = QueryHints.CACHEABLE, value = "true"), @QueryHint(name = QueryHints.CACHE_REGION, value = "paths") })
 @SuppressWarnings("checkstyle:magicnumber")
 public class Label implements Comparable<Label> {
 
@@ -0,0 +1,156 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.core;
+
+import java.sql.Timestamp;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+/**
+ * Progress of a background refresh of every user's workflows.
+ * Repositories that have been refreshed are recorded in refreshjob_repository so that an interrupted job can resume.
+ */
+@ApiModel(value = "RefreshJob", description = "Progress of a background refresh of all workflows")
+@Entity
+@Table(name = "refreshjob")
+@NamedQueries({
+        @NamedQuery(name = "io.dockstore.webservice.core.RefreshJob.findByStatus", query = "SELECT j FROM RefreshJob j WHERE j.status = :status ORDER BY j.id"),
+        @NamedQuery(name = "io.dockstore.webservice.core.RefreshJob.addRepositories", query = "UPDATE RefreshJob j SET j.totalRepositories = j.totalRepositories + :count WHERE j.id = :id"),
+        @NamedQuery(name = "io.dockstore.webservice.core.RefreshJob.resetRepositories", query = "UPDATE RefreshJob j SET j.totalRepositories = j.completedRepositories + j.failedRepositories WHERE j.id = :id"),
+        @NamedQuery(name = "io.dockstore.webservice.core.RefreshJob.completeRepository", query = "UPDATE RefreshJob j SET j.completedRepositories = j.completedRepositories + 1 WHERE j.id = :id"),
+        @NamedQuery(name = "io.dockstore.webservice.core.RefreshJob.failRepository", query = "UPDATE RefreshJob j SET j.failedRepositories = j.failedRepositories + 1 WHERE j.id = :id") })
+@NamedNativeQueries({
+        @NamedNativeQuery(name = "RefreshJob.findRepositories", query = "SELECT giturl FROM refreshjob_repository WHERE refreshjobid = :id"),
+        @NamedNativeQuery(name = "RefreshJob.addRepository", query = "INSERT INTO refreshjob_repository (refreshjobid, giturl, failed) VALUES (:id, :gitUrl, :failed)") })
+@SuppressWarnings("checkstyle:magicnumber")
+public class RefreshJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @ApiModelProperty(value = "Implementation specific ID for the refresh job in this web service", position = 0)
+    private long id;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    @ApiModelProperty(value = "Whether the job is still running", position = 1)
+    private Status status = Status.RUNNING;
+
+    @Column
+    @ApiModelProperty(value = "Username of the admin who started the job", position = 2)
+    private String requestedBy;
+
+    @Column(nullable = false)
+    @ApiModelProperty(value = "Number of repositories found so far, grows while users are being listed", position = 3)
+    private int totalRepositories;
+
+    @Column(nullable = false)
+    @ApiModelProperty(value = "Number of repositories refreshed", position = 4)
+    private int completedRepositories;
+
+    @Column(nullable = false)
+    @ApiModelProperty(value = "Number of repositories that could not be refreshed", position = 5)
+    private int failedRepositories;
+
+    @Column
+    @ApiModelProperty(value = "When the job finished", position = 6)
+    private Timestamp endDate;
+
+    // database timestamps
+    @Column(updatable = false)
+    @CreationTimestamp
+    private Timestamp dbCreateDate;
+
+    @Column()
+    @UpdateTimestamp
+    private Timestamp dbUpdateDate;
+
+    public RefreshJob() {
+    }
+
+    public RefreshJob(String requestedBy) {
+        this.requestedBy = requestedBy;
+    }
+
+    @JsonProperty
+    public long getId() {
+        return id;
+    }
+
+    @JsonProperty
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    @JsonProperty
+    public String getRequestedBy() {
+        return requestedBy;
+    }
+
+    @JsonProperty
+    public int getTotalRepositories() {
+        return totalRepositories;
+    }
+
+    @JsonProperty
+    public int getCompletedRepositories() {
+        return completedRepositories;
+    }
+
+    @JsonProperty
+    public int getFailedRepositories() {
+        return failedRepositories;
+    }
+
+    @JsonProperty
+    public Timestamp getStartDate() {
+        return dbCreateDate;
+    }
+
+    @JsonProperty
+    public Timestamp getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(Timestamp endDate) {
+        this.endDate = endDate;
+    }
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+}
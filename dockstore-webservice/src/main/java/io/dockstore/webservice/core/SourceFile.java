@@ -16,6 +16,7 @@
 
 package io.dockstore.webservice.core;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.util.Objects;
 
@@ -23,14 +24,26 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.hash.Hashing;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.UpdateTimestamp;
 
 /**
@@ -41,6 +54,13 @@ import org.hibernate.annotations.UpdateTimestamp;
 @ApiModel("SourceFile")
 @Entity
 @Table(name = "sourcefile")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "sourcefile")
+@NamedNativeQueries({
+    @NamedNativeQuery(name = "SourceFile.getStorageStatistics", query = "SELECT (SELECT count(*) FROM sourcefile) AS files, "
+        + "(SELECT count(*) FROM sourcefilecontent) AS contents, "
+        + "(SELECT coalesce(sum(octet_length(c.content)), 0) FROM sourcefile f "
+        + "JOIN sourcefilecontent c ON c.hash = f.contenthash) AS filebytes, "
+        + "(SELECT coalesce(sum(octet_length(content)), 0) FROM sourcefilecontent) AS contentbytes") })
 @SuppressWarnings("checkstyle:magicnumber")
 public class SourceFile {
     /**
@@ -52,8 +72,12 @@ public class SourceFile {
         DOCKSTORE_CWL, DOCKSTORE_WDL, DOCKERFILE, CWL_TEST_JSON, WDL_TEST_JSON, NEXTFLOW, NEXTFLOW_CONFIG, NEXTFLOW_TEST_PARAMS
     }
 
+    /**
+     * generated from a sequence rather than the column default so that new files can be inserted in batches
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sourcefile_id_seq")
+    @SequenceGenerator(name = "sourcefile_id_seq", sequenceName = "sourcefile_id_seq")
     @ApiModelProperty(value = "Implementation specific ID for the source file in this web service", position = 0)
     private long id;
 
@@ -61,9 +85,22 @@ public class SourceFile {
     @ApiModelProperty(value = "Enumerates the type of file", required = true, position = 1)
     private FileType type;
 
-    @Column(columnDefinition = "TEXT")
-    @ApiModelProperty(value = "Cache for the contents of the target file", position = 2)
-    private String content;
+    /**
+     * content set since the file was loaded, not stored in this table
+     * @see io.dockstore.webservice.jdbi.SourceFileContentListener
+     */
+    private transient String content;
+
+    @Column(name = "contenthash")
+    private String contentHash;
+
+    /**
+     * stored once for all files with the same content, fetched in the same query as the file
+     */
+    @ManyToOne(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.JOIN)
+    @JoinColumn(name = "contenthash", insertable = false, updatable = false)
+    private SourceFileContent storedContent;
 
     @Column(nullable = false)
     @ApiModelProperty(value = "Path to source file in git repo", required = true, position = 3)
@@ -94,12 +131,27 @@ public class SourceFile {
         this.type = type;
     }
 
+    @ApiModelProperty(value = "Cache for the contents of the target file", position = 2)
     public String getContent() {
-        return content;
+        return storedContent == null ? content : storedContent.getContent();
     }
 
     public void setContent(String content) {
         this.content = content;
+        this.contentHash = content == null ? null : hash(content);
+        this.storedContent = null;
+    }
+
+    /**
+     * @return SHA-256 of the content, null if there is no content
+     */
+    @JsonIgnore
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public static String hash(String content) {
+        return Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
     }
 
     public String getPath() {
@@ -112,7 +164,7 @@ public class SourceFile {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, type, content);
+        return Objects.hash(id, type, contentHash);
     }
 
     @Override
@@ -124,6 +176,7 @@ public class SourceFile {
             return false;
         }
         final SourceFile other = (SourceFile)obj;
-        return Objects.equals(this.id, other.id) && Objects.equals(this.type, other.type) && Objects.equals(this.content, other.content);
+        return Objects.equals(this.id, other.id) && Objects.equals(this.type, other.type)
+            && Objects.equals(this.contentHash, other.contentHash);
     }
 }
@@ -0,0 +1,50 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.core;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * The content of source files, stored once per SHA-256. Rows are written by
+ * {@link io.dockstore.webservice.jdbi.SourceFileContentListener} and never change, only rows no file uses anymore are deleted.
+ */
+@Entity
+@Table(name = "sourcefilecontent")
+@Immutable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "sourcefilecontent")
+public class SourceFileContent {
+    @Id
+    private String hash;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String content;
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getContent() {
+        return content;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.core;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+@ApiModel(value = "SourceFileStatistics", description = "How much storage deduplicating the content of source files saves")
+public class SourceFileStatistics {
+
+    @ApiModelProperty(value = "Number of source files", position = 0)
+    private final long files;
+
+    @ApiModelProperty(value = "Number of distinct contents stored", position = 1)
+    private final long contents;
+
+    @ApiModelProperty(value = "Bytes of content of all source files", position = 2)
+    private final long fileBytes;
+
+    @ApiModelProperty(value = "Bytes of content actually stored", position = 3)
+    private final long contentBytes;
+
+    public SourceFileStatistics(long files, long contents, long fileBytes, long contentBytes) {
+        this.files = files;
+        this.contents = contents;
+        this.fileBytes = fileBytes;
+        this.contentBytes = contentBytes;
+    }
+
+    public long getFiles() {
+        return files;
+    }
+
+    public long getContents() {
+        return contents;
+    }
+
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    public long getContentBytes() {
+        return contentBytes;
+    }
+
+    @ApiModelProperty(value = "Bytes of content of all source files for each byte stored", position = 4)
+    public double getDedupRatio() {
+        return contentBytes == 0 ? 1 : (double)fileBytes / contentBytes;
+    }
+}
@@ -31,10 +31,15 @@ import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedNativeQuery;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
 import javax.persistence.OrderBy;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
@@ -43,7 +48,11 @@ import io.dockstore.client.cli.nested.AbstractEntryClient;
 import io.dockstore.common.Registry;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Check;
+import org.hibernate.annotations.QueryHints;
 
 /**
  * This describes one tool in the dockstore, extending entry with fields necessary to describe bioinformatics tools.
@@ -59,20 +68,26 @@ import org.hibernate.annotations.Check;
                 + " * associated with CWL and Dockerfile documents")
 @Entity
 @Table(uniqueConstraints = @UniqueConstraint(columnNames = { "registry", "namespace", "name", "toolname" }))
+@NamedEntityGraph(name = "Tool.full", attributeNodes = @NamedAttributeNode(value = "tags", subgraph = "sourceFiles"),
+    subgraphs = @NamedSubgraph(name = "sourceFiles", attributeNodes = @NamedAttributeNode("sourceFiles")))
 @NamedQueries({
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByNameAndNamespaceAndRegistry", query = "SELECT c FROM Tool c WHERE c.name = :name AND c.namespace = :namespace AND c.registry = :registry"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedById", query = "SELECT c FROM Tool c WHERE c.id = :id AND c.isPublished = true"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAllPublished", query = "SELECT c FROM Tool c WHERE c.isPublished = true ORDER BY size(c.starredUsers) DESC"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAllPublishedSummaries", query = "SELECT new io.dockstore.webservice.core.ToolSummary(c.id, c.registry, c.namespace, c.name, c.toolname, c.gitUrl, c.description, c.author, c.lastUpdated) FROM Tool c WHERE c.isPublished = true ORDER BY size(c.starredUsers) DESC"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findRecentPublishedSummaries", query = "SELECT new io.dockstore.webservice.core.ToolSummary(c.id, c.registry, c.namespace, c.name, c.toolname, c.gitUrl, c.description, c.author, c.lastUpdated) FROM Tool c WHERE c.isPublished = true ORDER BY c.lastUpdated DESC NULLS LAST, c.id"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findAll", query = "SELECT c FROM Tool c"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByMode", query = "SELECT c FROM Tool c WHERE c.mode = :mode"),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByRegistryAndNamespaces", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace IN (:namespaces)"),
         @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByNamespace", query = "SELECT c FROM Tool c WHERE lower(c.namespace) = lower(:namespace) AND c.isPublished = true ORDER BY gitUrl"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.searchPattern", query = "SELECT c FROM Tool c WHERE (CONCAT(c.registry, '/', c.namespace, '/', c.name, '/', c.toolname) LIKE :pattern) OR (CONCAT(c.registry, '/', c.namespace, '/', c.name) LIKE :pattern) OR (c.description LIKE :pattern)) AND c.isPublished = true"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.isPublished = true"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByToolPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname = :toolname"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByToolPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname = :toolname AND c.isPublished = true"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByToolPathNullToolName", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname IS NULL"),
-        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByToolPathNullToolName", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname IS NULL AND c.isPublished = true") })
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name", hints = { @QueryHint(name = QueryHints.CACHEABLE, value = "true"), @QueryHint(name = QueryHints.CACHE_REGION, value = "paths") }),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.isPublished = true", hints = { @QueryHint(name = QueryHints.CACHEABLE, value = "true"), @QueryHint(name = QueryHints.CACHE_REGION, value = "paths") }),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByToolPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname = :toolname", hints = { @QueryHint(name = QueryHints.CACHEABLE, value = "true"), @QueryHint(name = QueryHints.CACHE_REGION, value = "paths") }),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByToolPath", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname = :toolname AND c.isPublished = true", hints = { @QueryHint(name = QueryHints.CACHEABLE, value = "true"), @QueryHint(name = QueryHints.CACHE_REGION, value = "paths") }),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findByToolPathNullToolName", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname IS NULL", hints = { @QueryHint(name = QueryHints.CACHEABLE, value = "true"), @QueryHint(name = QueryHints.CACHE_REGION, value = "paths") }),
+        @NamedQuery(name = "io.dockstore.webservice.core.Tool.findPublishedByToolPathNullToolName", query = "SELECT c FROM Tool c WHERE c.registry = :registry AND c.namespace = :namespace AND c.name = :name AND c.toolname IS NULL AND c.isPublished = true", hints = { @QueryHint(name = QueryHints.CACHEABLE, value = "true"), @QueryHint(name = QueryHints.CACHE_REGION, value = "paths") }) })
+@NamedNativeQuery(name = "Tool.search", query = "SELECT id FROM tool WHERE ispublished = TRUE AND searchtext LIKE :pattern "
+    + "ORDER BY word_similarity(:word, searchtext) DESC, id")
 // @formatter:off
 @Check(constraints = "(defaultwdlpath is not null or defaultcwlpath is not null) "
     + "and (toolname NOT LIKE '\\_%')")
@@ -145,7 +160,9 @@ public class Tool extends Entry<Tool, Tag> {
     @ApiModelProperty(value = "Implementation specific timestamp for last built", position = 25)
     private Date lastBuild;
 
-    @OneToMany(fetch = FetchType.EAGER, orphanRemoval = true)
+    @OneToMany(fetch = FetchType.LAZY, orphanRemoval = true)
+    @BatchSize(size = 25)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "collections")
     @JoinTable(name = "tool_tag", joinColumns = @JoinColumn(name = "toolid", referencedColumnName = "id"), inverseJoinColumns = @JoinColumn(name = "tagid", referencedColumnName = "id"))
     @ApiModelProperty(value = "Implementation specific tracking of valid build tags for the docker container", position = 26)
     @OrderBy("id")
@@ -0,0 +1,139 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.core;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * The columns of a published tool that listings show, selected without loading its tags or files.
+ * Properties have the same names as in {@link Tool}.
+ */
+@ApiModel(value = "ToolSummary", description = "Summary of a published tool, for listings")
+@SuppressWarnings("checkstyle:magicnumber")
+public class ToolSummary {
+
+    @ApiModelProperty(value = "Implementation specific ID for the container in this web service", position = 0)
+    private final long id;
+
+    @ApiModelProperty(value = "The registry the tool is in", position = 1)
+    private final String registry;
+
+    @ApiModelProperty(value = "The namespace of the image", position = 2)
+    private final String namespace;
+
+    @ApiModelProperty(value = "The name of the image", position = 3)
+    private final String name;
+
+    @ApiModelProperty(value = "The name of the tool within the image, empty if the image has one tool", position = 4)
+    private final String toolname;
+
+    @ApiModelProperty(value = "The git repository the tool is described in", position = 5)
+    private final String gitUrl;
+
+    @ApiModelProperty(value = "Human-readable description of the tool", position = 6)
+    private final String description;
+
+    @ApiModelProperty(value = "Name of the author of the tool", position = 7)
+    private final String author;
+
+    @ApiModelProperty(value = "Implementation specific timestamp for last updated on webservice", position = 11)
+    private final Date lastUpdated;
+
+    @SuppressWarnings("checkstyle:parameternumber")
+    public ToolSummary(long id, String registry, String namespace, String name, String toolname, String gitUrl, String description,
+        String author, Date lastUpdated) {
+        this.id = id;
+        this.registry = registry;
+        this.namespace = namespace;
+        this.name = name;
+        this.toolname = toolname;
+        this.gitUrl = gitUrl;
+        this.description = description;
+        this.author = author;
+        this.lastUpdated = lastUpdated;
+    }
+
+    @JsonProperty
+    public long getId() {
+        return id;
+    }
+
+    @JsonProperty("registry_string")
+    public String getRegistry() {
+        return registry;
+    }
+
+    @JsonProperty
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @JsonProperty
+    public String getName() {
+        return name;
+    }
+
+    @JsonProperty
+    public String getToolname() {
+        return toolname;
+    }
+
+    @JsonProperty
+    public String getGitUrl() {
+        return gitUrl;
+    }
+
+    @JsonProperty
+    public String getDescription() {
+        return description;
+    }
+
+    @JsonProperty
+    public String getAuthor() {
+        return author;
+    }
+
+    @JsonProperty
+    @ApiModelProperty(position = 8)
+    public String getPath() {
+        return registry + '/' + namespace + '/' + name;
+    }
+
+    @JsonProperty("tool_path")
+    @ApiModelProperty(position = 9)
+    public String getToolPath() {
+        return getPath() + (toolname == null || toolname.isEmpty() ? "" : '/' + toolname);
+    }
+
+    @JsonProperty("is_published")
+    @ApiModelProperty(position = 10)
+    public boolean getIsPublished() {
+        return true;
+    }
+
+    @JsonProperty
+    public Date getLastUpdated() {
+        if (lastUpdated == null) {
+            return new Date(0L);
+        }
+        return lastUpdated;
+    }
+}
@@ -43,6 +43,9 @@ import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Ordering;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -54,6 +57,7 @@ import org.hibernate.annotations.UpdateTimestamp;
 @Entity
 @ApiModel(value = "Base class for versions of entries in the Dockstore")
 @Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "version")
 @SuppressWarnings("checkstyle:magicnumber")
 public abstract class Version<T extends Version> implements Comparable<T> {
     /**
@@ -74,7 +78,9 @@ public abstract class Version<T extends Version> implements Comparable<T> {
     @ApiModelProperty(value = "git commit/tag/branch", required = true, position = 2)
     private String reference;
 
-    @OneToMany(fetch = FetchType.EAGER, orphanRemoval = true, cascade = CascadeType.ALL)
+    @OneToMany(fetch = FetchType.LAZY, orphanRemoval = true, cascade = CascadeType.ALL)
+    @BatchSize(size = 25)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "collections")
     @JoinTable(name = "version_sourcefile", joinColumns = @JoinColumn(name = "versionid", referencedColumnName = "id"), inverseJoinColumns = @JoinColumn(name = "sourcefileid", referencedColumnName = "id"))
     @ApiModelProperty(value = "Cached files for each version. Includes Dockerfile and Descriptor files", position = 3)
     private final Set<SourceFile> sourceFiles;
@@ -111,6 +117,10 @@ public abstract class Version<T extends Version> implements Comparable<T> {
     @ApiModelProperty(value = "This indicates the DOI status", position = 11)
     private DOIStatus doiStatus;
 
+    @Column
+    @ApiModelProperty(value = "The git commit the files of this version were last read from, if known", position = 12)
+    private String commitID;
+
     // database timestamps
     @Column(updatable = false)
     @CreationTimestamp
@@ -160,6 +170,7 @@ public abstract class Version<T extends Version> implements Comparable<T> {
         valid = version.isValid();
         lastModified = version.getLastModified();
         name = version.getName();
+        commitID = version.getCommitID();
     }
 
     public void clone(T version) {
@@ -274,5 +285,14 @@ public abstract class Version<T extends Version> implements Comparable<T> {
         this.doiStatus = doiStatus;
     }
 
+    @JsonProperty
+    public String getCommitID() {
+        return commitID;
+    }
+
+    public void setCommitID(String commitID) {
+        this.commitID = commitID;
+    }
+
     public enum DOIStatus { NOT_REQUESTED, REQUESTED, CREATED }
 }
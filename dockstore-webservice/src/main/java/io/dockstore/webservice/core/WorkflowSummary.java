@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.core;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * The columns of a published workflow that listings show, selected without loading its versions or files.
+ * Properties have the same names as in {@link Workflow}.
+ */
+@ApiModel(value = "WorkflowSummary", description = "Summary of a published workflow, for listings")
+@SuppressWarnings("checkstyle:magicnumber")
+public class WorkflowSummary {
+
+    @ApiModelProperty(value = "Implementation specific ID for the workflow in this web service", position = 0)
+    private final long id;
+
+    private final String sourceControl;
+
+    @ApiModelProperty(value = "The organization or user owning the repository", position = 2)
+    private final String organization;
+
+    @ApiModelProperty(value = "The repository the workflow is in", position = 3)
+    private final String repository;
+
+    @ApiModelProperty(value = "The name of the workflow within the repository, empty if the repository has one workflow", position = 4)
+    private final String workflowName;
+
+    @ApiModelProperty(value = "The git repository the workflow is described in", position = 5)
+    private final String gitUrl;
+
+    @ApiModelProperty(value = "Human-readable description of the workflow", position = 6)
+    private final String description;
+
+    @ApiModelProperty(value = "Name of the author of the workflow", position = 7)
+    private final String author;
+
+    @ApiModelProperty(value = "The descriptor language of the workflow, cwl or wdl", position = 8)
+    private final String descriptorType;
+
+    @ApiModelProperty(value = "Implementation specific timestamp for last updated on webservice", position = 12)
+    private final Date lastUpdated;
+
+    @SuppressWarnings("checkstyle:parameternumber")
+    public WorkflowSummary(long id, String sourceControl, String organization, String repository, String workflowName, String gitUrl,
+        String description, String author, String descriptorType, Date lastUpdated) {
+        this.id = id;
+        this.sourceControl = sourceControl;
+        this.organization = organization;
+        this.repository = repository;
+        this.workflowName = workflowName;
+        this.gitUrl = gitUrl;
+        this.description = description;
+        this.author = author;
+        this.descriptorType = descriptorType;
+        this.lastUpdated = lastUpdated;
+    }
+
+    @JsonProperty
+    public long getId() {
+        return id;
+    }
+
+    @JsonProperty
+    public String getOrganization() {
+        return organization;
+    }
+
+    @JsonProperty
+    public String getRepository() {
+        return repository;
+    }
+
+    @JsonProperty
+    public String getWorkflowName() {
+        return workflowName;
+    }
+
+    @JsonProperty
+    public String getGitUrl() {
+        return gitUrl;
+    }
+
+    @JsonProperty
+    public String getDescription() {
+        return description;
+    }
+
+    @JsonProperty
+    public String getAuthor() {
+        return author;
+    }
+
+    @JsonProperty
+    public String getDescriptorType() {
+        return descriptorType;
+    }
+
+    @JsonProperty
+    @ApiModelProperty(position = 9)
+    public String getPath() {
+        return sourceControl + '/' + organization + '/' + repository;
+    }
+
+    @JsonProperty("full_workflow_path")
+    @ApiModelProperty(position = 10)
+    public String getWorkflowPath() {
+        return getPath() + (workflowName == null || "".equals(workflowName) ? "" : '/' + workflowName);
+    }
+
+    @JsonProperty("is_published")
+    @ApiModelProperty(position = 11)
+    public boolean getIsPublished() {
+        return true;
+    }
+
+    @JsonProperty
+    public Date getLastUpdated() {
+        if (lastUpdated == null) {
+            return new Date(0L);
+        }
+        return lastUpdated;
+    }
+}
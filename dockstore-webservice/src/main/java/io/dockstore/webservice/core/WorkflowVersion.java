@@ -20,7 +20,10 @@ import java.util.Objects;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Ordering;
@@ -35,6 +38,9 @@ import org.apache.commons.io.FilenameUtils;
  */
 @ApiModel(value = "WorkflowVersion", description = "This describes one workflow version associated with a workflow.")
 @Entity
+@NamedQueries({
+        @NamedQuery(name = "io.dockstore.webservice.core.WorkflowVersion.clearArtifactHashByImage", query = "UPDATE WorkflowVersion v SET v.artifactHash = NULL WHERE v.toolTableJson LIKE :pattern")
+})
 @SuppressWarnings("checkstyle:magicnumber")
 public class WorkflowVersion extends Version<WorkflowVersion> implements Comparable<WorkflowVersion> {
 
@@ -43,6 +49,15 @@ public class WorkflowVersion extends Version<WorkflowVersion> implements Compara
     @ApiModelProperty(value = "Path for the workflow", position = 12)
     private String workflowPath;
 
+    @Column(columnDefinition = "text")
+    private String dagJson;
+
+    @Column(columnDefinition = "text")
+    private String toolTableJson;
+
+    @Column
+    private String artifactHash;
+
     public WorkflowVersion() {
         super();
     }
@@ -80,6 +95,44 @@ public class WorkflowVersion extends Version<WorkflowVersion> implements Compara
         this.workflowPath = workflowPath;
     }
 
+    /**
+     * @return the DAG as stored by WorkflowArtifacts
+     */
+    @JsonIgnore
+    public String getDagJson() {
+        return dagJson;
+    }
+
+    /**
+     * @return the tool table as stored by WorkflowArtifacts
+     */
+    @JsonIgnore
+    public String getToolTableJson() {
+        return toolTableJson;
+    }
+
+    /**
+     * @return hash of the files the DAG and tool table were built from and of what was built, null if they have not been built
+     * or have been cleared since
+     */
+    @JsonIgnore
+    public String getArtifactHash() {
+        return artifactHash;
+    }
+
+    public void setArtifacts(String newDagJson, String newToolTableJson, String newArtifactHash) {
+        this.dagJson = newDagJson;
+        this.toolTableJson = newToolTableJson;
+        this.artifactHash = newArtifactHash;
+    }
+
+    /**
+     * Mark the DAG and tool table as out of date, they are kept until they are rebuilt
+     */
+    public void clearArtifactHash() {
+        this.artifactHash = null;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(this.getName(), this.getReference());
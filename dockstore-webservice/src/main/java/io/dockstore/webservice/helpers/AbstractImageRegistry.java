@@ -19,9 +19,12 @@ package io.dockstore.webservice.helpers;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import io.dockstore.client.cli.nested.AbstractEntryClient;
 import io.dockstore.common.Registry;
@@ -36,6 +39,7 @@ import io.dockstore.webservice.jdbi.FileDAO;
 import io.dockstore.webservice.jdbi.TagDAO;
 import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.jdbi.UserDAO;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.client.HttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,6 +67,16 @@ public abstract class AbstractImageRegistry {
      */
     public abstract List<Tag> getTags(Tool tool);
 
+    /**
+     * Get all tags for each of the given tools, registries that can read them concurrently override this
+     *
+     * @param tools the tools to get the tags of
+     * @return the tags of each tool, in the same order as the tools
+     */
+    public List<List<Tag>> getAllTags(List<Tool> tools) {
+        return tools.stream().map(this::getTags).collect(Collectors.toList());
+    }
+
     /**
      * Get all containers from provided namespaces
      *
@@ -138,10 +152,10 @@ public abstract class AbstractImageRegistry {
         // Update db tools by copying over from api tools
         List<Tool> newDBTools = updateTools(apiTools, dbTools, user, toolDAO);
 
-        // Get tags and update for each tool
-        for (Tool tool : newDBTools) {
-            List<Tag> toolTags = getTags(tool);
-            updateTags(toolTags, tool, githubToken, bitbucketToken, gitlabToken, tagDAO, fileDAO, toolDAO, client);
+        // Get tags of all tools and update for each tool
+        List<List<Tag>> allTags = getAllTags(newDBTools);
+        for (int i = 0; i < newDBTools.size(); i++) {
+            updateTags(allTags.get(i), newDBTools.get(i), githubToken, bitbucketToken, gitlabToken, tagDAO, fileDAO, toolDAO, client);
         }
 
         return newDBTools;
@@ -223,96 +237,62 @@ public abstract class AbstractImageRegistry {
      * @param fileDAO
      * @param toolDAO
      * @param client
+     * @return how the tags of the tool changed, null when the tags were not updated
      */
     @SuppressWarnings("checkstyle:parameternumber")
-    public void updateTags(List<Tag> newTags, Tool tool, Token githubToken, Token bitbucketToken, Token gitlabToken, final TagDAO tagDAO,
-            final FileDAO fileDAO, final ToolDAO toolDAO, final HttpClient client) {
-        // Get all existing tags
-        List<Tag> existingTags = new ArrayList<>(tool.getTags());
+    public Reconciliation<Tag> updateTags(List<Tag> newTags, Tool tool, Token githubToken, Token bitbucketToken, Token gitlabToken,
+            final TagDAO tagDAO, final FileDAO fileDAO, final ToolDAO toolDAO, final HttpClient client) {
+        Reconciliation<Tag> diff = null;
 
-        if (tool.getMode() != ToolMode.MANUAL_IMAGE_PATH || (tool.getRegistry().equals(Registry.QUAY_IO.toString()) && existingTags.isEmpty())) {
+        if (tool.getMode() != ToolMode.MANUAL_IMAGE_PATH || (tool.getRegistry().equals(Registry.QUAY_IO.toString()) && tool.getTags().isEmpty())) {
 
             if (newTags == null) {
                 LOG.info(githubToken.getUsername() + " : Tags for tool {} did not get updated because new tags were not found",
                         tool.getPath());
-                return;
-            }
-
-            List<Tag> toDelete = new ArrayList<>(0);
-            for (Iterator<Tag> iterator = existingTags.iterator(); iterator.hasNext(); ) {
-                Tag oldTag = iterator.next();
-                boolean exists = false;
-                for (Tag newTag : newTags) {
-                    if (newTag.getName().equals(oldTag.getName())) {
-                        exists = true;
-                        break;
-                    }
-                }
-                if (!exists) {
-                    toDelete.add(oldTag);
-                    iterator.remove();
-                }
+                return null;
             }
 
-            for (Tag newTag : newTags) {
-                boolean exists = false;
-
-                // Find if user already has the tag
-                for (Tag oldTag : existingTags) {
-                    if (newTag.getName().equals(oldTag.getName())) {
-                        exists = true;
-
-                        oldTag.update(newTag);
+            diff = Reconciliation.reconcile(tool.getTags(), newTags, AbstractImageRegistry::isTagChanged, Tag::getName);
 
-                        // Update tag with default paths if dirty bit not set
-                        if (!oldTag.isDirtyBit()) {
-                            // Has not been modified => set paths
-                            oldTag.setCwlPath(tool.getDefaultCwlPath());
-                            oldTag.setWdlPath(tool.getDefaultWdlPath());
-                            oldTag.setDockerfilePath(tool.getDefaultDockerfilePath());
-                            oldTag.getSourceFiles().add(createSourceFile(tool.getDefaultTestCwlParameterFile(), SourceFile.FileType.CWL_TEST_JSON));
-                            oldTag.getSourceFiles().add(createSourceFile(tool.getDefaultTestWdlParameterFile(), SourceFile.FileType.WDL_TEST_JSON));
-                        }
+            for (Pair<Tag, Tag> match : diff.getMatched()) {
+                Tag oldTag = match.getLeft();
+                oldTag.update(match.getRight());
 
-                        break;
-                    }
-                }
-
-                // Tag does not already exist
-                if (!exists) {
-                    // this could result in the same tag being added to multiple containers with the same path, need to clone
-                    Tag clonedTag = new Tag();
-                    clonedTag.clone(newTag);
-                    clonedTag.getSourceFiles().add(createSourceFile(tool.getDefaultTestCwlParameterFile(), SourceFile.FileType.CWL_TEST_JSON));
-                    clonedTag.getSourceFiles().add(createSourceFile(tool.getDefaultTestWdlParameterFile(), SourceFile.FileType.WDL_TEST_JSON));
-                    existingTags.add(clonedTag);
+                // Update tag with default paths if dirty bit not set
+                if (!oldTag.isDirtyBit()) {
+                    // Has not been modified => set paths
+                    oldTag.setCwlPath(tool.getDefaultCwlPath());
+                    oldTag.setWdlPath(tool.getDefaultWdlPath());
+                    oldTag.setDockerfilePath(tool.getDefaultDockerfilePath());
+                    oldTag.getSourceFiles().add(createSourceFile(tool.getDefaultTestCwlParameterFile(), SourceFile.FileType.CWL_TEST_JSON));
+                    oldTag.getSourceFiles().add(createSourceFile(tool.getDefaultTestWdlParameterFile(), SourceFile.FileType.WDL_TEST_JSON));
                 }
             }
 
+            // the inserts are batched when the session is flushed
             boolean allAutomated = true;
-            for (Tag tag : existingTags) {
-                // create and add a tag if it does not already exist
-                if (!tool.getTags().contains(tag)) {
-                    LOG.info(githubToken.getUsername() + " : Updating tag {}", tag.getName());
-
-                    long id = tagDAO.create(tag);
-                    tag = tagDAO.findById(id);
-
-                    tool.addTag(tag);
-
-                    if (!tag.isAutomated()) {
-                        allAutomated = false;
-                    }
+            for (Tag newTag : diff.getAdded()) {
+                // this could result in the same tag being added to multiple containers with the same path, need to clone
+                Tag clonedTag = new Tag();
+                clonedTag.clone(newTag);
+                clonedTag.getSourceFiles().add(createSourceFile(tool.getDefaultTestCwlParameterFile(), SourceFile.FileType.CWL_TEST_JSON));
+                clonedTag.getSourceFiles().add(createSourceFile(tool.getDefaultTestWdlParameterFile(), SourceFile.FileType.WDL_TEST_JSON));
+                tagDAO.create(clonedTag);
+                tool.addTag(clonedTag);
+
+                if (!clonedTag.isAutomated()) {
+                    allAutomated = false;
                 }
             }
 
-            // delete tool if it has no users
-            for (Tag t : toDelete) {
+            // delete tags that are no longer in the registry
+            for (Tag t : diff.getRemoved()) {
                 LOG.info(githubToken.getUsername() + " : DELETING tag: {}", t.getName());
                 t.getSourceFiles().clear();
                 // tagDAO.delete(t);
                 tool.getTags().remove(t);
             }
+            LOG.info(githubToken.getUsername() + " : Updated tags of {}: {}", tool.getPath(), diff);
 
             if (tool.getMode() != ToolMode.MANUAL_IMAGE_PATH) {
                 if (allAutomated) {
@@ -349,7 +329,14 @@ public abstract class AbstractImageRegistry {
             }
         }
         toolDAO.create(tool);
+        return diff;
+    }
 
+    /**
+     * A tag has changed when its image was rebuilt.
+     */
+    private static boolean isTagChanged(Tag oldTag, Tag newTag) {
+        return !Objects.equals(oldTag.getImageId(), newTag.getImageId()) || !Objects.equals(oldTag.getLastModified(), newTag.getLastModified());
     }
 
     private SourceFile createSourceFile(String path, SourceFile.FileType type) {
@@ -380,6 +367,7 @@ public abstract class AbstractImageRegistry {
 
     /**
      * Updates the new list of tools to the database. Deletes tools that have no users.
+     * A tool from the registry matches a tool in the database with the same tool path or, failing that, the same path and git url.
      *
      * @param apiToolList tools retrieved from quay.io and docker hub
      * @param dbToolList  tools retrieved from the database for the current user
@@ -388,71 +376,52 @@ public abstract class AbstractImageRegistry {
      * @return list of newly updated containers
      */
     public List<Tool> updateTools(final Iterable<Tool> apiToolList, final List<Tool> dbToolList, final User user, final ToolDAO toolDAO) {
+        final Reconciliation<Tool> diff = Reconciliation
+                .reconcile(dbToolList, apiToolList, (oldTool, newTool) -> !Objects.equals(oldTool.getLastModifiedDate(), newTool.getLastModifiedDate()),
+                        Tool::getToolPath, tool -> Arrays.asList(tool.getPath(), tool.getGitUrl()));
+        final List<Tool> newDBToolList = new ArrayList<>(diff.getKept());
 
-        final List<Tool> toDelete = new ArrayList<>();
         // Find containers that the user no longer has
-        for (final Iterator<Tool> iterator = dbToolList.iterator(); iterator.hasNext(); ) {
-            final Tool oldTool = iterator.next();
-            boolean exists = false;
-            for (final Tool newTool : apiToolList) {
-                if ((newTool.getToolPath().equals(oldTool.getToolPath())) || (newTool.getPath().equals(oldTool.getPath()) && newTool
-                        .getGitUrl().equals(oldTool.getGitUrl()))) {
-                    exists = true;
-                    break;
-                }
-            }
-            if (!exists && oldTool.getMode() != ToolMode.MANUAL_IMAGE_PATH) {
+        final List<Tool> toDelete = new ArrayList<>();
+        for (Tool oldTool : diff.getRemoved()) {
+            if (oldTool.getMode() == ToolMode.MANUAL_IMAGE_PATH) {
+                newDBToolList.add(oldTool);
+            } else {
                 oldTool.removeUser(user);
                 // user.removeTool(oldTool);
                 toDelete.add(oldTool);
-                iterator.remove();
             }
         }
 
         // when a container from the registry (ex: quay.io) has newer content, update it from
-        for (Tool newTool : apiToolList) {
-            String path = newTool.getToolPath();
-            boolean exists = false;
-
-            // Find if user already has the container
-            for (Tool oldTool : dbToolList) {
-                if ((newTool.getToolPath().equals(oldTool.getToolPath())) || (newTool.getPath().equals(oldTool.getPath()) && newTool
-                        .getGitUrl().equals(oldTool.getGitUrl()))) {
-                    exists = true;
-                    oldTool.update(newTool);
-                    break;
-                }
-            }
-
-            // Find if container already exists, but does not belong to user
-            if (!exists) {
-                Tool oldTool = toolDAO.findByPath(path, false);
-                if (oldTool != null) {
-                    exists = true;
-                    oldTool.update(newTool);
-                    dbToolList.add(oldTool);
-                }
-            }
-
-            // Tool does not already exist
-            if (!exists) {
-                // newTool.setUserId(userId);
+        for (Pair<Tool, Tool> match : diff.getMatched()) {
+            match.getLeft().update(match.getRight());
+        }
 
-                dbToolList.add(newTool);
+        // Find if container already exists, but does not belong to user, with one query per registry
+        final Map<String, Tool> otherTools = new HashMap<>();
+        diff.getAdded().stream().collect(Collectors.groupingBy(Tool::getRegistry, Collectors.mapping(Tool::getNamespace, Collectors.toSet())))
+                .forEach((registry, namespaces) -> toolDAO.findByRegistryAndNamespaces(registry, namespaces)
+                        .forEach(tool -> otherTools.putIfAbsent(tool.getToolPath(), tool)));
+        for (Tool newTool : diff.getAdded()) {
+            Tool oldTool = otherTools.get(newTool.getToolPath());
+            if (oldTool != null) {
+                oldTool.update(newTool);
+                newDBToolList.add(oldTool);
+            } else {
+                // Tool does not already exist
+                newDBToolList.add(newTool);
             }
         }
 
         final Date time = new Date();
-        // Save all new and existing containers, and generate new tags
-        for (final Tool tool : dbToolList) {
+        // Save all new and existing containers, the inserts are batched when the session is flushed
+        for (final Tool tool : newDBToolList) {
             tool.setLastUpdated(time);
             tool.addUser(user);
             toolDAO.create(tool);
-
-            // do not re-create tags with manual mode
-            // with other types, you can re-create the tags on refresh
-            LOG.info(user.getUsername() + ": UPDATED Tool: {}", tool.getPath());
         }
+        LOG.info(user.getUsername() + ": UPDATED Tools: {}", diff);
 
         // delete container if it has no users
         for (Tool c : toDelete) {
@@ -465,6 +434,6 @@ public abstract class AbstractImageRegistry {
             }
         }
 
-        return dbToolList;
+        return newDBToolList;
     }
 }
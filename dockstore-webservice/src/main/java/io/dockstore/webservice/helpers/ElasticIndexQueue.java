@@ -0,0 +1,457 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Owns the shared elastic search client and batches index updates so that requests do not wait on elastic search.
+ * <p>
+ * Operations are queued per document, a newer operation on a document replaces a queued one.
+ * A background flusher sends them as _bulk requests when a batch fills up or the flush interval passes,
+ * failed operations are retried with exponential backoff.
+ * The number of queued documents is bounded, while the queue is full operations on further documents are dropped and counted,
+ * callers never wait on elastic search. A full reindex brings dropped documents up to date.
+ * <p>
+ * While a reindex builds a new index every operation is written to it as well as to the entry alias,
+ * so that the new index has the updates made during the reindex once the alias is moved to it.
+ */
+public class ElasticIndexQueue implements Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ElasticIndexQueue.class);
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    private final DockstoreWebserviceConfiguration.ElasticSearchConfig esConfig;
+    /**
+     * guarded by itself, insertion order is the order in which documents were first queued
+     */
+    private final Map<String, IndexOperation> pending = new LinkedHashMap<>();
+    /**
+     * only one bulk request is in flight at a time
+     */
+    private final Object flushLock = new Object();
+    /**
+     * guarded by flushLock, the index a reindex is building
+     */
+    private String reindexTarget = null;
+    /**
+     * guarded by flushLock, documents deleted while the reindex runs and not updated since, the reindex may have written them back
+     */
+    private final Set<String> deletedDuringReindex = new HashSet<>();
+    private final Counter indexed;
+    private final Counter retried;
+    private final Counter failed;
+    private final Counter dropped;
+    /**
+     * a flush is queued on the flusher, further requests for one are folded into it
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    /**
+     * guarded by pending, whether the last operation was dropped, so that a full queue is logged once rather than per operation
+     */
+    private boolean full = false;
+    private ScheduledExecutorService flusher;
+    private RestClient restClient;
+
+    public ElasticIndexQueue(DockstoreWebserviceConfiguration.ElasticSearchConfig esConfig, MetricRegistry metrics) {
+        this.esConfig = esConfig;
+        this.indexed = metrics.counter(MetricRegistry.name(ElasticIndexQueue.class, "indexed"));
+        this.retried = metrics.counter(MetricRegistry.name(ElasticIndexQueue.class, "retried"));
+        this.failed = metrics.counter(MetricRegistry.name(ElasticIndexQueue.class, "failed"));
+        this.dropped = metrics.counter(MetricRegistry.name(ElasticIndexQueue.class, "dropped"));
+        metrics.register(MetricRegistry.name(ElasticIndexQueue.class, "depth"), (Gauge<Integer>)this::getDepth);
+        metrics.register(MetricRegistry.name(ElasticIndexQueue.class, "lag"), (Gauge<Long>)this::getLagMillis);
+    }
+
+    @Override
+    public void start() {
+        if (!isEnabled()) {
+            LOGGER.info("No elastic search host found, index updates are disabled.");
+            return;
+        }
+        restClient = RestClient.builder(new HttpHost(esConfig.getHostname(), esConfig.getPort(), "http")).build();
+        flusher = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("elastic-indexer-%d").setDaemon(true).build());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, esConfig.getFlushIntervalMillis(), esConfig.getFlushIntervalMillis(),
+            TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(esConfig.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+        // last attempt to send what is left, failures at this point are only logged
+        flushQuietly();
+        restClient.close();
+    }
+
+    public boolean isEnabled() {
+        return esConfig.getHostname() != null && !esConfig.getHostname().isEmpty();
+    }
+
+    /**
+     * @return the shared client, do not close it
+     */
+    public RestClient getRestClient() {
+        return restClient;
+    }
+
+    /**
+     * Write every operation sent from now on to the given index as well, until the reindex stops.
+     * Waits for the bulk request in flight, if any, so that no operation sent afterwards misses the index.
+     *
+     * @param index the index a reindex is building, it must exist already
+     * @return false if another reindex is running
+     */
+    public boolean startReindex(String index) {
+        synchronized (flushLock) {
+            if (reindexTarget != null) {
+                return false;
+            }
+            reindexTarget = index;
+            deletedDuringReindex.clear();
+            return true;
+        }
+    }
+
+    /**
+     * @return the keys, type/id, of documents deleted since the reindex started and not updated since
+     */
+    public Set<String> getDeletedDuringReindex() {
+        synchronized (flushLock) {
+            return new HashSet<>(deletedDuringReindex);
+        }
+    }
+
+    /**
+     * Stop writing operations to the index of the given reindex, once this returns nothing will be written to it
+     *
+     * @param index the index the reindex was building
+     */
+    public void stopReindex(String index) {
+        synchronized (flushLock) {
+            if (index.equals(reindexTarget)) {
+                reindexTarget = null;
+                deletedDuringReindex.clear();
+            }
+        }
+    }
+
+    /**
+     * Queue an operation, replacing any operation queued for the same document.
+     * When the queue is full and holds nothing for the same document the operation is dropped.
+     *
+     * @param operation the operation to send
+     */
+    public void enqueue(IndexOperation operation) {
+        if (flusher == null) {
+            LOGGER.error("Elastic search indexing is not running, dropping " + operation.action + " of " + operation.getKey());
+            return;
+        }
+        boolean flushNeeded;
+        synchronized (pending) {
+            if (!offer(operation)) {
+                return;
+            }
+            flushNeeded = pending.size() >= esConfig.getBulkSize();
+        }
+        if (flushNeeded) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Queue an operation, replacing any operation queued for the same document, must hold the lock on pending
+     *
+     * @return false if the operation was dropped because the queue is full
+     */
+    private boolean offer(IndexOperation operation) {
+        IndexOperation previous = pending.get(operation.getKey());
+        if (previous == null && pending.size() >= esConfig.getMaxQueueSize()) {
+            dropped.inc();
+            if (!full) {
+                full = true;
+                LOGGER.error("Elastic search index queue is full, dropping updates until it drains");
+            }
+            requestFlush();
+            return false;
+        }
+        full = false;
+        if (previous != null) {
+            operation.firstQueued = previous.firstQueued;
+        }
+        pending.put(operation.getKey(), operation);
+        return true;
+    }
+
+    /**
+     * Ask the flusher to flush soon, without waiting for it
+     */
+    private void requestFlush() {
+        if (!flusher.isShutdown() && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private int getDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return how long the oldest queued operation has been waiting
+     */
+    private long getLagMillis() {
+        long now = System.currentTimeMillis();
+        synchronized (pending) {
+            return pending.values().stream().mapToLong(operation -> now - operation.firstQueued).max().orElse(0L);
+        }
+    }
+
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not flush elastic search index queue. " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Send queued operations that are due until the queue is empty or a batch fails
+     */
+    private void flush() {
+        synchronized (flushLock) {
+            while (true) {
+                List<IndexOperation> batch = takeBatch();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                List<IndexOperation> retry = send(batch);
+                if (!retry.isEmpty()) {
+                    requeue(retry);
+                    // leave the rest to the next scheduled flush so that the backoff is respected
+                    return;
+                }
+            }
+        }
+    }
+
+    private List<IndexOperation> takeBatch() {
+        long now = System.currentTimeMillis();
+        List<IndexOperation> batch = new ArrayList<>();
+        synchronized (pending) {
+            Iterator<IndexOperation> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < esConfig.getBulkSize()) {
+                IndexOperation operation = iterator.next();
+                if (operation.notBefore <= now) {
+                    batch.add(operation);
+                    iterator.remove();
+                }
+            }
+        }
+        return batch;
+    }
+
+    private void requeue(List<IndexOperation> operations) {
+        synchronized (pending) {
+            for (IndexOperation operation : operations) {
+                operation.attempts++;
+                if (operation.attempts > esConfig.getMaxRetries()) {
+                    LOGGER.error("Giving up on elastic search " + operation.action + " of " + operation.getKey() + " after "
+                        + operation.attempts + " attempts");
+                    failed.inc();
+                    continue;
+                }
+                long backoff = esConfig.getFlushIntervalMillis() * (1L << Math.min(operation.attempts, MAX_BACKOFF_SHIFT));
+                backoff = Math.min(MAX_BACKOFF_MILLIS, backoff);
+                operation.notBefore = System.currentTimeMillis() + backoff;
+                // a newer operation on the same document wins over the retry
+                if (!pending.containsKey(operation.getKey()) && offer(operation)) {
+                    retried.inc();
+                }
+            }
+        }
+    }
+
+    /**
+     * Must hold flushLock
+     *
+     * @param batch operations to send in one bulk request
+     * @return the operations that failed and may succeed if retried
+     */
+    private List<IndexOperation> send(List<IndexOperation> batch) {
+        StringBuilder builder = new StringBuilder();
+        for (IndexOperation operation : batch) {
+            operation.appendTo(builder, ElasticReindexer.ALIAS);
+            if (reindexTarget != null) {
+                operation.appendTo(builder, reindexTarget);
+                if ("delete".equals(operation.action)) {
+                    deletedDuringReindex.add(operation.getKey());
+                } else {
+                    deletedDuringReindex.remove(operation.getKey());
+                }
+            }
+        }
+        // each operation has one item per index it was written to
+        final int itemsPerOperation = reindexTarget == null ? 1 : 2;
+        JsonNode response;
+        try {
+            NStringEntity entity = new NStringEntity(builder.toString(), ContentType.APPLICATION_JSON);
+            org.elasticsearch.client.Response post = restClient.performRequest("POST", "/_bulk", Collections.emptyMap(), entity);
+            response = MAPPER.readTree(post.getEntity().getContent());
+        } catch (ResponseException e) {
+            int statusCode = e.getResponse().getStatusLine().getStatusCode();
+            LOGGER.error("Could not submit index to elastic search. " + e.getMessage());
+            if (isRetryable(statusCode)) {
+                return batch;
+            }
+            failed.inc(batch.size());
+            return Collections.emptyList();
+        } catch (IOException e) {
+            LOGGER.error("Could not submit index to elastic search. " + e.getMessage());
+            return batch;
+        }
+        if (!response.path("errors").asBoolean(false)) {
+            indexed.inc(batch.size());
+            return Collections.emptyList();
+        }
+        // items are returned in the same order as the request
+        List<IndexOperation> retry = new ArrayList<>();
+        JsonNode items = response.path("items");
+        for (int i = 0; i < batch.size() && (i + 1) * itemsPerOperation <= items.size(); i++) {
+            IndexOperation operation = batch.get(i);
+            JsonNode item = firstFailure(operation, items, i * itemsPerOperation, itemsPerOperation);
+            if (item == null) {
+                indexed.inc();
+                continue;
+            }
+            int statusCode = item.path("status").asInt(HttpStatus.SC_OK);
+            LOGGER.error("Could not " + operation.action + " " + operation.getKey() + " in elastic search. " + item.path("error"));
+            if (isRetryable(statusCode)) {
+                retry.add(operation);
+            } else {
+                failed.inc();
+            }
+        }
+        return retry;
+    }
+
+    /**
+     * @return the first of the items of the operation that failed, null if none did
+     */
+    private static JsonNode firstFailure(IndexOperation operation, JsonNode items, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            JsonNode item = items.get(i).path(operation.action);
+            int statusCode = item.path("status").asInt(HttpStatus.SC_OK);
+            if (statusCode >= HttpStatus.SC_BAD_REQUEST && !("delete".equals(operation.action) && statusCode == HttpStatus.SC_NOT_FOUND)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isRetryable(int statusCode) {
+        return statusCode == TOO_MANY_REQUESTS || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * One bulk action on one document of the entry index, and of the index a reindex is building
+     */
+    public static final class IndexOperation {
+        private final String action;
+        private final String type;
+        private final long id;
+        private final String source;
+        private long firstQueued = System.currentTimeMillis();
+        private long notBefore = 0;
+        private int attempts = 0;
+
+        private IndexOperation(String action, String type, long id, String source) {
+            this.action = action;
+            this.type = type;
+            this.id = id;
+            this.source = source;
+        }
+
+        /**
+         * @param type   document type, either tool or workflow
+         * @param id     entry id
+         * @param source the partial document, i.e. {"doc": ..., "doc_as_upsert": true}
+         */
+        public static IndexOperation update(String type, long id, String source) {
+            return new IndexOperation("update", type, id, source);
+        }
+
+        public static IndexOperation delete(String type, long id) {
+            return new IndexOperation("delete", type, id, null);
+        }
+
+        String getKey() {
+            return type + '/' + id;
+        }
+
+        void appendTo(StringBuilder builder, String index) {
+            builder.append("{\"").append(action).append("\":{\"_index\":\"").append(index).append("\",\"_type\":\"").append(type)
+                .append("\",\"_id\":\"").append(id).append("\"}}\n");
+            if (source != null) {
+                builder.append(source).append('\n');
+            }
+        }
+    }
+}
@@ -15,26 +15,18 @@
  */
 package io.dockstore.webservice.helpers;
 
-import java.io.IOException;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
 import io.dockstore.webservice.core.Entry;
 import io.dockstore.webservice.core.Tool;
 import io.dropwizard.jackson.Jackson;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
-import org.apache.http.entity.ContentType;
-import org.apache.http.nio.entity.NStringEntity;
 import org.elasticsearch.client.RestClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +40,8 @@ public class ElasticManager {
     public static String hostname;
     public static int port;
     private static final Logger LOGGER = LoggerFactory.getLogger(ElasticManager.class);
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+    private static ElasticIndexQueue indexQueue;
 
     public ElasticManager() {
 
@@ -63,6 +57,27 @@ public class ElasticManager {
         ElasticManager.port = config.getEsConfiguration().getPort();
     }
 
+    public static void setIndexQueue(ElasticIndexQueue indexQueue) {
+        ElasticManager.indexQueue = indexQueue;
+    }
+
+    /**
+     * @return the queue of index updates shared by the whole webservice
+     */
+    public static ElasticIndexQueue getIndexQueue() {
+        if (indexQueue == null || indexQueue.getRestClient() == null) {
+            throw new CustomWebApplicationException("Elastic search is not configured", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+        return indexQueue;
+    }
+
+    /**
+     * @return the client shared by the whole webservice, do not close it
+     */
+    public static RestClient getRestClient() {
+        return getIndexQueue().getRestClient();
+    }
+
     /**
      * This converts the entry into a document for elastic search to use
      *
@@ -70,13 +85,12 @@ public class ElasticManager {
      * @return The entry converted into a json string
      */
     private String getDocumentValueFromEntry(Entry entry) {
-        ObjectMapper mapper = Jackson.newObjectMapper();
         StringBuilder builder = new StringBuilder();
         Map<String, Object> doc = new HashMap<>();
         doc.put("doc", entry);
         doc.put("doc_as_upsert", true);
         try {
-            builder.append(mapper.writeValueAsString(doc));
+            builder.append(MAPPER.writeValueAsString(doc));
         } catch (JsonProcessingException e) {
             e.printStackTrace();
         }
@@ -84,7 +98,8 @@ public class ElasticManager {
     }
 
     /**
-     * This handles the index for elastic search
+     * This handles the index for elastic search.
+     * The entry is serialized right away, while its session is still open, and sent in the background.
      *
      * @param entry   The entry to be converted into a document
      * @param command The command to perform for the document, either "update" or "delete" document
@@ -95,34 +110,24 @@ public class ElasticManager {
             LOGGER.error("No elastic search host found.");
             return;
         }
+        if (indexQueue == null) {
+            LOGGER.error("No elastic search index queue found.");
+            return;
+        }
         if (!checkValid(entry, command)) {
             LOGGER.error("Could not perform the elastic search index update.");
             return;
         }
-        String json = getDocumentValueFromEntry(entry);
-        try (RestClient restClient = RestClient.builder(new HttpHost(ElasticManager.hostname, ElasticManager.port, "http")).build()) {
-            String entryType = entry instanceof Tool ? "tool" : "workflow";
-            HttpEntity entity = new NStringEntity(json, ContentType.APPLICATION_JSON);
-            org.elasticsearch.client.Response post;
-            switch (command) {
-            case UPDATE:
-                post = restClient
-                        .performRequest("POST", "/entry/" + entryType + "/" + entry.getId() + "/_update", Collections.emptyMap(), entity);
-                break;
-            case DELETE:
-                post = restClient.performRequest("DELETE", "/entry/" + entryType + "/" + entry.getId(), Collections.emptyMap(), entity);
-                break;
-            default:
-                throw new RuntimeException("Unknown index command: " + command);
-            }
-            int statusCode = post.getStatusLine().getStatusCode();
-            if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
-                LOGGER.info("Successful " + command + ".");
-            } else {
-                LOGGER.info("Could not submit index to elastic search. " + post.getStatusLine().getReasonPhrase());
-            }
-        } catch (IOException e) {
-            LOGGER.error("Could not submit index to elastic search. " + e.getMessage());
+        String entryType = entry instanceof Tool ? "tool" : "workflow";
+        switch (command) {
+        case UPDATE:
+            indexQueue.enqueue(ElasticIndexQueue.IndexOperation.update(entryType, entry.getId(), getDocumentValueFromEntry(entry)));
+            break;
+        case DELETE:
+            indexQueue.enqueue(ElasticIndexQueue.IndexOperation.delete(entryType, entry.getId()));
+            break;
+        default:
+            throw new RuntimeException("Unknown index command: " + command);
         }
     }
 
@@ -151,44 +156,12 @@ public class ElasticManager {
         return false;
     }
 
-    public void bulkUpsert(List<Entry> entries) {
-        try (RestClient restClient = RestClient.builder(new HttpHost(ElasticManager.hostname, ElasticManager.port, "http")).build()) {
-            String newlineDJSON = getNDJSON(entries);
-            HttpEntity bulkEntity = new NStringEntity(newlineDJSON, ContentType.APPLICATION_JSON);
-            org.elasticsearch.client.Response post = restClient.performRequest("POST", "/entry/_bulk", Collections.emptyMap(), bulkEntity);
-            if (post.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
-                throw new CustomWebApplicationException("Could not submit index to elastic search", HttpStatus.SC_INTERNAL_SERVER_ERROR);
-            }
-        } catch (IOException e) {
-            LOGGER.error("Could not submit index to elastic search. " + e.getMessage());
-        }
-    }
-
     /**
-     * Gets the json used for bulk insert
+     * Queue an index update for each of the entries, they are sent in bounded batches by the index queue
      *
-     * @param publishedEntries A list of published entries
-     * @return The json used for bulk insert
+     * @param entries published entries to index
      */
-    private String getNDJSON(List<Entry> publishedEntries) {
-        ObjectMapper mapper = Jackson.newObjectMapper();
-        Gson gson = new GsonBuilder().create();
-        StringBuilder builder = new StringBuilder();
-        publishedEntries.forEach(entry -> {
-            Map<String, Map<String, String>> index = new HashMap<>();
-            Map<String, String> internal = new HashMap<>();
-            internal.put("_id", String.valueOf(entry.getId()));
-            internal.put("_type", entry instanceof Tool ? "tool" : "workflow");
-            index.put("index", internal);
-            builder.append(gson.toJson(index));
-            builder.append('\n');
-            try {
-                builder.append(mapper.writeValueAsString(entry));
-            } catch (JsonProcessingException e) {
-                e.printStackTrace();
-            }
-            builder.append('\n');
-        });
-        return builder.toString();
+    public void bulkUpsert(List<Entry> entries) {
+        entries.forEach(entry -> handleIndexUpdate(entry, ElasticMode.UPDATE));
     }
 }
@@ -0,0 +1,348 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.Resources;
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.jdbi.EntryDAO;
+import io.dropwizard.jackson.Jackson;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rebuilds the entry index from the database without taking search offline.
+ * <p>
+ * Published entries are read in batches and written to a new index as bounded _bulk requests, several of which may be in flight.
+ * Meanwhile the index queue writes live updates to the new index as well. Entries are written with create actions so that
+ * a live update is not overwritten by the older copy read for the reindex, and entries deleted during the reindex are
+ * deleted again before the alias moves, in case the reindex wrote them back.
+ * Once everything has been sent the "entry" alias is moved to the new index and the old indices are deleted.
+ * If a bulk request fails, or more entries could not be indexed than the configuration allows,
+ * the new index is dropped and the old one keeps serving searches.
+ */
+public class ElasticReindexer {
+    public static final String ALIAS = "entry";
+    private static final Logger LOGGER = LoggerFactory.getLogger(ElasticReindexer.class);
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+    private final ElasticIndexQueue indexQueue;
+    private final RestClient restClient;
+    private final DockstoreWebserviceConfiguration.ElasticSearchConfig esConfig;
+    private final String index = ALIAS + '_' + System.currentTimeMillis();
+    private final Semaphore inFlight;
+    private final AtomicInteger indexed = new AtomicInteger();
+    private final AtomicInteger itemFailures = new AtomicInteger();
+    private final AtomicReference<Exception> requestFailure = new AtomicReference<>();
+    private BulkBuffer buffer = new BulkBuffer();
+    private int queued = 0;
+    private int requests = 0;
+
+    public ElasticReindexer(ElasticIndexQueue indexQueue, DockstoreWebserviceConfiguration.ElasticSearchConfig esConfig) {
+        this.indexQueue = indexQueue;
+        this.restClient = indexQueue.getRestClient();
+        this.esConfig = esConfig;
+        this.inFlight = new Semaphore(esConfig.getMaxConcurrentBulkRequests());
+    }
+
+    /**
+     * Index every published entry of the given DAOs into a new index and point the alias at it.
+     * Must be called within a unit of work, the session is cleared after every batch.
+     *
+     * @param daos where to read published entries from
+     * @return the number of entries indexed
+     */
+    public int reindex(EntryDAO<?>... daos) {
+        try {
+            URL url = Resources.getResource("queries/mapping.json");
+            String mapping = Resources.toString(url, StandardCharsets.UTF_8);
+            restClient.performRequest("PUT", "/" + index, Collections.emptyMap(), new NStringEntity(mapping, ContentType.APPLICATION_JSON));
+        } catch (IOException e) {
+            LOGGER.error("Could not create " + index + ". " + e.getMessage(), e);
+            throw new CustomWebApplicationException(e.getMessage(), HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+        if (!indexQueue.startReindex(index)) {
+            deleteQuietly(index);
+            throw new CustomWebApplicationException("A reindex is already running", HttpStatus.SC_CONFLICT);
+        }
+        try {
+            LOGGER.info("Reindexing published entries into " + index);
+            for (EntryDAO<?> dao : daos) {
+                indexAll(dao);
+            }
+            send();
+            awaitRequests();
+            if (requestFailure.get() != null) {
+                throw new IOException("Could not submit index to elastic search", requestFailure.get());
+            }
+            if (itemFailures.get() > esConfig.getMaxReindexFailures()) {
+                throw new IOException(itemFailures.get() + " entries could not be indexed, at most " + esConfig.getMaxReindexFailures()
+                    + " are allowed");
+            }
+            replayDeletes();
+            swapAlias();
+        } catch (IOException e) {
+            LOGGER.error("Reindex into " + index + " failed, " + ALIAS + " is unchanged. " + e.getMessage(), e);
+            awaitRequests();
+            // live updates must stop first, they would create the index again
+            indexQueue.stopReindex(index);
+            deleteQuietly(index);
+            throw new CustomWebApplicationException(e.getMessage(), HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        } finally {
+            indexQueue.stopReindex(index);
+        }
+        if (itemFailures.get() > 0) {
+            LOGGER.error(itemFailures.get() + " entries could not be indexed into " + index + ", they are missing from searches");
+        }
+        LOGGER.info("Reindexed " + indexed.get() + " entries into " + index + " with " + requests + " bulk requests");
+        return indexed.get();
+    }
+
+    private <T extends Entry> void indexAll(EntryDAO<T> dao) throws IOException {
+        long afterId = 0;
+        List<T> batch = dao.findPublishedAfterId(afterId, esConfig.getReindexBatchSize());
+        while (!batch.isEmpty()) {
+            for (T entry : batch) {
+                add(entry);
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+            // the batch has been serialized, do not let the session grow with the registry
+            dao.clearSession();
+            LOGGER.info("Reindex into " + index + ": " + queued + " entries serialized, " + indexed.get() + " indexed");
+            batch = dao.findPublishedAfterId(afterId, esConfig.getReindexBatchSize());
+        }
+    }
+
+    /**
+     * Append one entry to the current bulk request, sending it when it is full
+     */
+    private void add(Entry entry) throws IOException {
+        int mark = buffer.size();
+        try {
+            String type = entry instanceof Tool ? "tool" : "workflow";
+            String action = "{\"create\":{\"_type\":\"" + type + "\",\"_id\":\"" + entry.getId() + "\"}}\n";
+            buffer.write(action.getBytes(StandardCharsets.UTF_8));
+            MAPPER.writeValue(buffer, entry);
+            buffer.write('\n');
+        } catch (IOException e) {
+            // skip the entry rather than sending a partial document
+            LOGGER.error("Could not serialize entry " + entry.getId() + " for elastic search. " + e.getMessage());
+            buffer.truncate(mark);
+            itemFailures.incrementAndGet();
+            return;
+        }
+        buffer.documents++;
+        queued++;
+        if (buffer.documents >= esConfig.getBulkSize() || buffer.size() >= esConfig.getMaxBulkBytes()) {
+            send();
+        }
+    }
+
+    /**
+     * Send the current bulk request without waiting for it, blocks while too many requests are in flight
+     */
+    private void send() throws IOException {
+        if (buffer.documents == 0) {
+            return;
+        }
+        if (requestFailure.get() != null) {
+            throw new IOException("Could not submit index to elastic search", requestFailure.get());
+        }
+        final int documents = buffer.documents;
+        NByteArrayEntity entity = new NByteArrayEntity(buffer.toByteArray(), ContentType.APPLICATION_JSON);
+        buffer = new BulkBuffer();
+        acquire(1);
+        requests++;
+        restClient.performRequestAsync("POST", "/" + index + "/_bulk", Collections.emptyMap(), entity, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                try {
+                    recordItems(MAPPER.readTree(response.getEntity().getContent()), documents);
+                } catch (IOException e) {
+                    requestFailure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                LOGGER.error("Bulk request into " + index + " failed. " + exception.getMessage());
+                requestFailure.compareAndSet(null, exception);
+                inFlight.release();
+            }
+        });
+    }
+
+    private void recordItems(JsonNode response, int documents) {
+        if (!response.path("errors").asBoolean(false)) {
+            indexed.addAndGet(documents);
+            return;
+        }
+        int failures = 0;
+        for (JsonNode item : response.path("items")) {
+            JsonNode result = item.path("create");
+            int status = result.path("status").asInt(HttpStatus.SC_OK);
+            // a conflict means a live update wrote the entry first, its copy is at least as recent
+            if (status >= HttpStatus.SC_BAD_REQUEST && status != HttpStatus.SC_CONFLICT) {
+                LOGGER.error("Could not index " + result.path("_type").asText() + " " + result.path("_id").asText() + ". " + result
+                    .path("error"));
+                failures++;
+            }
+        }
+        indexed.addAndGet(documents - failures);
+        itemFailures.addAndGet(failures);
+    }
+
+    private void awaitRequests() {
+        acquire(esConfig.getMaxConcurrentBulkRequests());
+        inFlight.release(esConfig.getMaxConcurrentBulkRequests());
+    }
+
+    private void acquire(int permits) {
+        try {
+            inFlight.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomWebApplicationException("Interrupted while reindexing", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Delete again the entries deleted while the reindex ran, it may have written them back after their delete.
+     * Every bulk request of the reindex has completed, later deletes reach the new index through the queue.
+     */
+    private void replayDeletes() throws IOException {
+        Set<String> deleted = indexQueue.getDeletedDuringReindex();
+        if (deleted.isEmpty()) {
+            return;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String key : deleted) {
+            String[] typeAndId = key.split("/");
+            builder.append("{\"delete\":{\"_type\":\"").append(typeAndId[0]).append("\",\"_id\":\"").append(typeAndId[1])
+                .append("\"}}\n");
+        }
+        Response response = restClient.performRequest("POST", "/" + index + "/_bulk", Collections.emptyMap(),
+            new NStringEntity(builder.toString(), ContentType.APPLICATION_JSON));
+        for (JsonNode item : MAPPER.readTree(response.getEntity().getContent()).path("items")) {
+            JsonNode result = item.path("delete");
+            int status = result.path("status").asInt(HttpStatus.SC_OK);
+            if (status >= HttpStatus.SC_BAD_REQUEST && status != HttpStatus.SC_NOT_FOUND) {
+                throw new IOException("Could not delete " + result.path("_type").asText() + " " + result.path("_id").asText() + " from "
+                    + index + ". " + result.path("error"));
+            }
+        }
+        LOGGER.info("Deleted " + deleted.size() + " entries deleted during the reindex from " + index);
+    }
+
+    /**
+     * Atomically point the alias at the new index, then drop the indices it used to point at
+     */
+    private void swapAlias() throws IOException {
+        List<String> oldIndices = getAliasedIndices();
+        if (oldIndices.isEmpty() && exists(ALIAS)) {
+            // an index created before aliases were used has the alias' name, it has to go before the alias can be created
+            LOGGER.info("Replacing the " + ALIAS + " index with an alias");
+            restClient.performRequest("DELETE", "/" + ALIAS);
+        }
+        ObjectNode body = MAPPER.createObjectNode();
+        ArrayNode actions = body.putArray("actions");
+        for (String oldIndex : oldIndices) {
+            actions.addObject().putObject("remove").put("index", oldIndex).put("alias", ALIAS);
+        }
+        actions.addObject().putObject("add").put("index", index).put("alias", ALIAS);
+        restClient.performRequest("POST", "/_aliases", Collections.emptyMap(),
+            new NStringEntity(MAPPER.writeValueAsString(body), ContentType.APPLICATION_JSON));
+        oldIndices.forEach(this::deleteQuietly);
+    }
+
+    private List<String> getAliasedIndices() throws IOException {
+        List<String> indices = new ArrayList<>();
+        try {
+            Response response = restClient.performRequest("GET", "/_alias/" + ALIAS);
+            Iterator<String> names = MAPPER.readTree(response.getEntity().getContent()).fieldNames();
+            names.forEachRemaining(indices::add);
+        } catch (ResponseException e) {
+            if (e.getResponse().getStatusLine().getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+                throw e;
+            }
+        }
+        return indices;
+    }
+
+    private boolean exists(String name) throws IOException {
+        try {
+            Response response = restClient.performRequest("HEAD", "/" + name);
+            return response.getStatusLine().getStatusCode() == HttpStatus.SC_OK;
+        } catch (ResponseException e) {
+            if (e.getResponse().getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private void deleteQuietly(String name) {
+        try {
+            restClient.performRequest("DELETE", "/" + name);
+        } catch (IOException e) {
+            LOGGER.error("Could not delete elastic search index " + name + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * The body of one bulk request
+     */
+    private static final class BulkBuffer extends ByteArrayOutputStream {
+        private int documents = 0;
+
+        /**
+         * Discard everything written after the given size
+         */
+        void truncate(int size) {
+            count = size;
+        }
+    }
+}
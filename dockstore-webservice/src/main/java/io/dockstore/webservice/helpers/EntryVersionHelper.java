@@ -75,6 +75,24 @@ public interface EntryVersionHelper<T extends Entry> extends AuthenticatedResour
         return entries;
     }
 
+    /**
+     * Finds one page of the published entries matching a search
+     *
+     * @param text   text to look for in the path and description of entries
+     * @param offset number of matches to skip
+     * @param limit  maximum number of entries to return, at most {@link EntryDAO#MAX_SEARCH_LIMIT}
+     * @return the matching entries, best matches first
+     */
+    default List<T> searchPublished(String text, int offset, int limit) {
+        if (offset < 0) {
+            throw new CustomWebApplicationException("Offset must not be negative", HttpStatus.SC_BAD_REQUEST);
+        }
+        if (limit < 1 || limit > EntryDAO.MAX_SEARCH_LIMIT) {
+            throw new CustomWebApplicationException("Limit must be between 1 and " + EntryDAO.MAX_SEARCH_LIMIT, HttpStatus.SC_BAD_REQUEST);
+        }
+        return getDAO().search(text, offset, limit);
+    }
+
     /**
      * Return the primary descriptor (i.e. the dockstore.cwl or dockstore.wdl usually, or a single Dockerfile)
      *
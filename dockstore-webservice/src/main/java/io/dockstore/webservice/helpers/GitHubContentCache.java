@@ -0,0 +1,105 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.Map;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Remembers what GitHub returned for paths at a given commit, which never changes, and the contents of blobs by git SHA.
+ * Shared by all GitHubSourceCodeRepo instances, a file that is the same on many branches is only downloaded once.
+ */
+final class GitHubContentCache {
+    private static final long MAX_BLOB_WEIGHT = 64L * 1024 * 1024;
+    private static final long MAX_PATHS = 100000;
+    private static final long MAX_TREE_ENTRIES = 500000;
+    private static final Cache<String, String> BLOBS = CacheBuilder.newBuilder().maximumWeight(MAX_BLOB_WEIGHT)
+        .weigher((String sha, String content) -> 2 * content.length()).build();
+    private static final Cache<String, PathInfo> PATHS = CacheBuilder.newBuilder().maximumSize(MAX_PATHS).build();
+    private static final Cache<String, Map<String, PathInfo>> TREES = CacheBuilder.newBuilder().maximumWeight(MAX_TREE_ENTRIES)
+        .weigher((String key, Map<String, PathInfo> tree) -> tree.size()).build();
+
+    private GitHubContentCache() {
+        // hide the constructor for utility classes
+    }
+
+    static String getBlob(String sha) {
+        return BLOBS.getIfPresent(sha);
+    }
+
+    static void putBlob(String sha, String content) {
+        BLOBS.put(sha, content);
+    }
+
+    /**
+     * @return what is at the path at the commit, null if it has not been looked up yet
+     */
+    static PathInfo getPath(String repositoryId, String commitSha, String path) {
+        return PATHS.getIfPresent(key(repositoryId, commitSha, path));
+    }
+
+    static void putPath(String repositoryId, String commitSha, String path, PathInfo info) {
+        PATHS.put(key(repositoryId, commitSha, path), info);
+    }
+
+    /**
+     * @return every path at the commit, null if the tree has not been fetched yet
+     */
+    static Map<String, PathInfo> getTree(String repositoryId, String commitSha) {
+        return TREES.getIfPresent(repositoryId + '@' + commitSha);
+    }
+
+    /**
+     * @param tree every path at the commit, paths that are not in it do not exist
+     */
+    static void putTree(String repositoryId, String commitSha, Map<String, PathInfo> tree) {
+        TREES.put(repositoryId + '@' + commitSha, tree);
+    }
+
+    static String normalize(String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    private static String key(String repositoryId, String commitSha, String path) {
+        return repositoryId + '@' + commitSha + ':' + normalize(path);
+    }
+
+    /**
+     * The type of a path (file, dir, symlink or submodule) and its git SHA, see the GitHub contents API
+     */
+    static final class PathInfo {
+        static final PathInfo MISSING = new PathInfo("missing", null);
+
+        private final String type;
+        private final String sha;
+
+        PathInfo(String type, String sha) {
+            this.type = type;
+            this.sha = sha;
+        }
+
+        String getType() {
+            return type;
+        }
+
+        String getSha() {
+            return sha;
+        }
+    }
+}
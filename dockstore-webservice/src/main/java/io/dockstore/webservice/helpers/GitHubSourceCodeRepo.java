@@ -18,15 +18,21 @@ package io.dockstore.webservice.helpers;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,19 +49,24 @@ import io.dockstore.webservice.languages.LanguageHandlerFactory;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.HttpStatus;
 import org.eclipse.egit.github.core.Blob;
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
 import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryBranch;
 import org.eclipse.egit.github.core.RepositoryContents;
 import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.TreeEntry;
 import org.eclipse.egit.github.core.User;
 import org.eclipse.egit.github.core.client.GitHubClient;
 import org.eclipse.egit.github.core.client.RequestException;
+import org.eclipse.egit.github.core.service.CommitService;
 import org.eclipse.egit.github.core.service.ContentsService;
 import org.eclipse.egit.github.core.service.DataService;
 import org.eclipse.egit.github.core.service.OrganizationService;
 import org.eclipse.egit.github.core.service.RepositoryService;
 import org.eclipse.egit.github.core.service.UserService;
-import org.kohsuke.github.GHBranch;
 import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHRateLimit;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
 import org.slf4j.Logger;
@@ -69,16 +80,47 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
 
     private static final Logger LOG = LoggerFactory.getLogger(GitHubSourceCodeRepo.class);
+    private static final String FILE = "file";
+    private static final String DIR = "dir";
+    private static final String SYMLINK = "symlink";
+    private static final String SUBMODULE = "submodule";
+    /**
+     * GitHub truncates recursive trees at this many entries
+     */
+    private static final int MAX_TREE_ENTRIES = 100000;
+    private static final int MAX_SYMLINK_HOPS = 8;
+    private static final Pattern COMMIT_SHA = Pattern.compile("[0-9a-f]{40}");
     private final ContentsService cService;
     private final RepositoryService service;
     private final OrganizationService oService;
     private final UserService uService;
     private final GitHub github;
     private final DataService dService;
+    private final String githubTokenContent;
+    private final CommitService commitService;
+    /**
+     * owner/repo -> repository, for the lifetime of this instance (files of a tool are read from several threads)
+     */
+    private final Map<String, Repository> repositories = new ConcurrentHashMap<>();
+    /**
+     * owner/repo@reference -> commit SHA, for the lifetime of this instance
+     */
+    private final Map<String, String> refCommits = new ConcurrentHashMap<>();
+    /**
+     * owner/repo@commit of trees that could not be fetched whole
+     */
+    private final Set<String> untraversableCommits = ConcurrentHashMap.newKeySet();
+    /**
+     * While set, paths are looked up in the tree of their commit, see {@link #getTree(IRepositoryIdProvider, String)}
+     */
+    private boolean readWholeTrees = false;
 
     // TODO: should be made protected in favour of factory
     public GitHubSourceCodeRepo(String gitUsername, String githubTokenContent, String gitRepository) {
-        GitHubClient githubClient = new GitHubClient();
+        this(gitUsername, githubTokenContent, gitRepository, new GitHubClient(), connect(githubTokenContent));
+    }
+
+    GitHubSourceCodeRepo(String gitUsername, String githubTokenContent, String gitRepository, GitHubClient githubClient, GitHub github) {
         githubClient.setOAuth2Token(githubTokenContent);
 
         this.service = new RepositoryService(githubClient);
@@ -86,14 +128,30 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         this.oService = new OrganizationService(githubClient);
         this.uService = new UserService(githubClient);
         this.dService = new DataService(githubClient);
+        this.commitService = new CommitService(githubClient);
         this.gitUsername = gitUsername;
         this.gitRepository = gitRepository;
+        this.githubTokenContent = githubTokenContent;
+        this.github = github;
+    }
+
+    private static GitHub connect(String githubTokenContent) {
         try {
-            this.github = GitHub.connectUsingOAuth(githubTokenContent);
+            return GitHub.connectUsingOAuth(githubTokenContent);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+    }
 
+    @Override
+    public void updateRateLimit() {
+        try {
+            // does not count against the rate limit
+            GHRateLimit rateLimit = github.getRateLimit();
+            RateLimits.update(githubTokenContent, rateLimit.remaining, rateLimit.getResetDate().getTime());
+        } catch (IOException e) {
+            LOG.warn(gitUsername + ": could not check the GitHub rate limit " + e.getMessage());
+        }
     }
 
     @Override
@@ -101,7 +159,7 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         checkNotNull(fileName, "The fileName given is null.");
         Repository repo;
         try {
-            repo = service.getRepository(gitUsername, gitRepository);
+            repo = getRepository(gitUsername, gitRepository);
         } catch (IOException e) {
             LOG.error(gitUsername + ": IOException on readFile" + e.getMessage());
             return null;
@@ -109,8 +167,22 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         return readFileFromRepo(fileName, reference, repo);
     }
 
-    private String readFileFromRepo(String fileName, String reference, Repository repo) {
+    /**
+     * Imports are read one at a time, only look the repository up once
+     */
+    private Repository getRepository(String owner, String name) throws IOException {
+        String key = owner + '/' + name;
+        Repository repository = repositories.get(key);
+        if (repository == null) {
+            repository = service.getRepository(owner, name);
+            repositories.put(key, repository);
+        }
+        return repository;
+    }
+
+    private String readFileFromRepo(String fileName, String reference, IRepositoryIdProvider repo) {
         try {
+            String commitSha = resolveCommit(repo, reference);
             // may need to pass owner from git url, as this may differ from the git username
             // may need to account for symbolic links to directories
             List<String> folders = Arrays.asList(fileName.split("/"));
@@ -122,33 +194,41 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
                 }
                 start.add(folders.get(i));
                 String partialPath = Joiner.on("/").join(start);
-                List<RepositoryContents> contents = cService.getContents(repo, partialPath, reference);
-                if (!contents.isEmpty()) {
-                    if (contents.get(0).getType().equals("symlink")) {
-                        Blob blob = dService.getBlob(repo, contents.get(0).getSha());
-                        String content = extractGitHubContents(blob.getContent());
-                        // restart the loop to look for symbolic links pointed to by symbolic links
-                        List<String> newfolders = Lists.newArrayList(content.split("/"));
-                        List<String> sublist = folders.subList(i + 1, folders.size());
-                        newfolders.addAll(sublist);
-                        folders = newfolders;
-                        start = new ArrayList<>();
-                        i = -1;
-                    }
+                GitHubContentCache.PathInfo info = getPathInfo(repo, reference, commitSha, partialPath);
+                if (SYMLINK.equals(info.getType())) {
+                    String content = getBlob(repo, info.getSha());
+                    // restart the loop to look for symbolic links pointed to by symbolic links
+                    List<String> newfolders = Lists.newArrayList(content.split("/"));
+                    List<String> sublist = folders.subList(i + 1, folders.size());
+                    newfolders.addAll(sublist);
+                    folders = newfolders;
+                    start = new ArrayList<>();
+                    i = -1;
                 }
             }
 
             fileName = Joiner.on("/").join(folders);
 
-            List<RepositoryContents> contents;
+            GitHubContentCache.PathInfo info;
             try {
-                contents = cService.getContents(repo, fileName, reference);
-            } catch (Exception e) {
-                contents = cService.getContents(repo, fileName.toLowerCase(), reference);
+                info = getPathInfo(repo, reference, commitSha, fileName);
+            } catch (RequestException e) {
+                if (e.getStatus() == HttpStatus.SC_UNAUTHORIZED) {
+                    throw e;
+                }
+                info = GitHubContentCache.PathInfo.MISSING;
+            }
+            if (info == GitHubContentCache.PathInfo.MISSING) {
+                info = getPathInfo(repo, reference, commitSha, fileName.toLowerCase());
+            }
+            // the contents API follows symbolic links to files, trees do not
+            for (int hops = 0; SYMLINK.equals(info.getType()) && hops < MAX_SYMLINK_HOPS; hops++) {
+                fileName = resolveSymlink(fileName, getBlob(repo, info.getSha()));
+                info = getPathInfo(repo, reference, commitSha, fileName);
             }
 
-            if (!(contents == null || contents.isEmpty() || contents.get(0).getContent() == null)) {
-                return extractGitHubContents(contents);
+            if (FILE.equals(info.getType())) {
+                return getBlob(repo, info.getSha());
             } else {
                 return null;
             }
@@ -165,11 +245,165 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         return null;
     }
 
+    /**
+     * @param link   path of a symbolic link
+     * @param target what it points to, relative to the folder of the link
+     * @return the path pointed to
+     */
+    private static String resolveSymlink(String link, String target) {
+        Path parent = Paths.get("/" + GitHubContentCache.normalize(link)).getParent();
+        return parent.resolve(target.trim()).normalize().toString();
+    }
+
+    /**
+     * Find the commit a branch or tag points to so that what is read from it can be cached
+     *
+     * @return the commit SHA, null if it could not be found
+     */
+    private String resolveCommit(IRepositoryIdProvider repo, String reference) {
+        if (reference == null) {
+            return null;
+        }
+        if (COMMIT_SHA.matcher(reference).matches()) {
+            return reference;
+        }
+        String key = repo.generateId() + '@' + reference;
+        String commitSha = refCommits.get(key);
+        if (commitSha == null) {
+            try {
+                commitSha = commitService.getCommit(repo, reference).getSha();
+                refCommits.put(key, commitSha);
+            } catch (IOException e) {
+                LOG.info(gitUsername + ": could not resolve " + reference + " of " + repo.generateId() + ", reading it uncached");
+            }
+        }
+        return commitSha;
+    }
+
+    /**
+     * Look up what is at a path, from the cache when the commit is known.
+     * Listing a directory also caches its sub-directories, which answers the lookups of the next path segment.
+     *
+     * @param commitSha the commit of the reference, null to read the reference uncached
+     * @return what is at the path, MISSING if there is nothing
+     */
+    private GitHubContentCache.PathInfo getPathInfo(IRepositoryIdProvider repo, String reference, String commitSha, String path)
+        throws IOException {
+        String repositoryId = repo.generateId();
+        if (commitSha != null && readWholeTrees) {
+            Map<String, GitHubContentCache.PathInfo> tree = getTree(repo, commitSha);
+            if (tree != null) {
+                return tree.getOrDefault(GitHubContentCache.normalize(path), GitHubContentCache.PathInfo.MISSING);
+            }
+        }
+        if (commitSha != null) {
+            GitHubContentCache.PathInfo cached = GitHubContentCache.getPath(repositoryId, commitSha, path);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<RepositoryContents> contents;
+        try {
+            contents = cService.getContents(repo, path, commitSha == null ? reference : commitSha);
+        } catch (RequestException e) {
+            if (e.getStatus() != HttpStatus.SC_NOT_FOUND) {
+                throw e;
+            }
+            contents = Collections.emptyList();
+        }
+
+        GitHubContentCache.PathInfo info;
+        String normalizedPath = GitHubContentCache.normalize(path);
+        if (contents == null || contents.isEmpty()) {
+            info = GitHubContentCache.PathInfo.MISSING;
+        } else if (contents.size() == 1 && !isChild(normalizedPath, contents.get(0).getPath())) {
+            // the path itself, a symbolic link to a file is answered with the file it points to, under the path of that file
+            RepositoryContents content = contents.get(0);
+            info = new GitHubContentCache.PathInfo(content.getType(), content.getSha());
+            if (FILE.equals(content.getType()) && content.getContent() != null) {
+                GitHubContentCache.putBlob(content.getSha(), extractGitHubContents(content.getContent()));
+            }
+        } else {
+            // a directory listing, listings report symlinks as files so only the sub-directories can be trusted
+            info = new GitHubContentCache.PathInfo(DIR, null);
+            if (commitSha != null) {
+                contents.stream().filter(child -> DIR.equals(child.getType())).forEach(child -> GitHubContentCache
+                    .putPath(repositoryId, commitSha, child.getPath(), new GitHubContentCache.PathInfo(DIR, child.getSha())));
+            }
+        }
+        if (commitSha != null) {
+            GitHubContentCache.putPath(repositoryId, commitSha, path, info);
+        }
+        return info;
+    }
+
+    /**
+     * @return whether the path is directly in the directory, as the entries of a listing are
+     */
+    private static boolean isChild(String directory, String path) {
+        int slash = path.lastIndexOf('/');
+        return directory.equals(slash < 0 ? "" : path.substring(0, slash));
+    }
+
+    /**
+     * Fetch every path at a commit in one request
+     *
+     * @return the path of every file, directory, symbolic link and submodule, null if the tree could not be fetched whole
+     */
+    private Map<String, GitHubContentCache.PathInfo> getTree(IRepositoryIdProvider repo, String commitSha) {
+        String repositoryId = repo.generateId();
+        Map<String, GitHubContentCache.PathInfo> tree = GitHubContentCache.getTree(repositoryId, commitSha);
+        if (tree != null || !untraversableCommits.add(repositoryId + '@' + commitSha)) {
+            return tree;
+        }
+        List<TreeEntry> entries;
+        try {
+            entries = dService.getTree(repo, commitSha, true).getTree();
+        } catch (IOException e) {
+            LOG.info(gitUsername + ": could not get the tree of " + repositoryId + " at " + commitSha + ", reading paths one at a time");
+            return null;
+        }
+        if (entries == null || entries.size() >= MAX_TREE_ENTRIES) {
+            // GitHub truncates larger trees, paths missing from them may still exist
+            return null;
+        }
+        tree = new HashMap<>();
+        tree.put("", new GitHubContentCache.PathInfo(DIR, commitSha));
+        for (TreeEntry entry : entries) {
+            String type;
+            if (TreeEntry.TYPE_TREE.equals(entry.getType())) {
+                type = DIR;
+            } else if (TreeEntry.MODE_BLOB_SYMLINK.equals(entry.getMode())) {
+                type = SYMLINK;
+            } else if (TreeEntry.MODE_SUBMODULE.equals(entry.getMode())) {
+                type = SUBMODULE;
+            } else {
+                type = FILE;
+            }
+            tree.put(entry.getPath(), new GitHubContentCache.PathInfo(type, entry.getSha()));
+        }
+        GitHubContentCache.putTree(repositoryId, commitSha, tree);
+        return tree;
+    }
+
+    /**
+     * @return the decoded contents of a blob, downloaded once per SHA
+     */
+    private String getBlob(IRepositoryIdProvider repo, String sha) throws IOException {
+        String content = GitHubContentCache.getBlob(sha);
+        if (content == null) {
+            Blob blob = dService.getBlob(repo, sha);
+            content = extractGitHubContents(blob.getContent());
+            GitHubContentCache.putBlob(sha, content);
+        }
+        return content;
+    }
+
     @Override
     public String getFileContents(String filePath, String branch, String repositoryId) {
         Repository repo;
         try {
-            repo = service.getRepository(gitUsername, repositoryId);
+            repo = getRepository(gitUsername, repositoryId);
         } catch (IOException ex) {
             LOG.info(gitUsername + ": Repo " + repositoryId + " does not contain " + filePath + " on " + branch);
             return null;
@@ -223,11 +457,6 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         return true;
     }
 
-    private String extractGitHubContents(List<RepositoryContents> cwlContents) {
-        String encoded = cwlContents.get(0).getContent();
-        return extractGitHubContents(encoded);
-    }
-
     private String extractGitHubContents(String contents) {
         byte[] decode = Base64.getDecoder().decode(contents.replace("\n", ""));
         return new String(decode, StandardCharsets.UTF_8);
@@ -260,40 +489,36 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
     @Override
     public Workflow setupWorkflowVersions(String repositoryId, Workflow workflow, Optional<Workflow> existingWorkflow,
             Map<String, WorkflowVersion> existingDefaults) {
+        // every version reads its descriptor, imports and test parameter file, look them all up in one tree per commit
+        readWholeTrees = true;
+        try {
+            return setupWorkflowVersionsFromTrees(repositoryId, workflow, existingWorkflow, existingDefaults);
+        } finally {
+            readWholeTrees = false;
+        }
+    }
+
+    private Workflow setupWorkflowVersionsFromTrees(String repositoryId, Workflow workflow, Optional<Workflow> existingWorkflow,
+            Map<String, WorkflowVersion> existingDefaults) {
         RepositoryId id = RepositoryId.createFromId(repositoryId);
 
         // when getting a full workflow, look for versions and check each version for valid workflows
+        // branches and tags report the commit they point to, versions keep it to tell whether they changed since the last refresh
+        List<Pair<String, String>> refCommitPairs = new ArrayList<>();
         List<Pair<String, Date>> references = new ArrayList<>();
         try {
             GHRepository repository = github.getRepository(repositoryId);
-            final Date epochStart = new Date(0);
-            service.getBranches(id).forEach(branch -> {
-                Date branchDate = new Date(0);
-                try {
-                    GHBranch githubBranch = repository.getBranch(branch.getName());
-                    GHCommit commit = repository.getCommit(githubBranch.getSHA1());
-                    branchDate = commit.getCommitDate();
-                    if (branchDate.before(epochStart)) {
-                        branchDate = epochStart;
-                    }
-                } catch (IOException e) {
-                    LOG.info("unable to retrieve commit date for branch " + branch.getName());
-                }
-                references.add(Pair.of(branch.getName(), branchDate));
-            });
-            service.getTags(id).forEach(tag -> {
-                Date branchDate = new Date(0);
-                try {
-                    GHCommit commit = repository.getCommit(tag.getCommit().getSha());
-                    branchDate = commit.getCommitDate();
-                    if (branchDate.before(epochStart)) {
-                        branchDate = epochStart;
-                    }
-                } catch (IOException e) {
-                    LOG.info("unable to retrieve commit date for tag " + tag.getName());
-                }
-                references.add(Pair.of(tag.getName(), branchDate));
-            });
+            for (RepositoryBranch branch : service.getBranches(id)) {
+                refCommitPairs.add(Pair.of(branch.getName(), branch.getCommit().getSha()));
+            }
+            for (RepositoryTag tag : service.getTags(id)) {
+                refCommitPairs.add(Pair.of(tag.getName(), tag.getCommit().getSha()));
+            }
+            for (Pair<String, String> refCommit : refCommitPairs) {
+                refCommits.put(repositoryId + '@' + refCommit.getKey(), refCommit.getValue());
+                Date commitDate = getCommitDate(repository, refCommit.getKey(), refCommit.getValue(), existingDefaults);
+                references.add(Pair.of(refCommit.getKey(), commitDate));
+            }
         } catch (IOException e) {
             LOG.info(gitUsername + ": Cannot get branches or tags for workflow {}");
             throw new CustomWebApplicationException("Could not reach GitHub, please try again later", HttpStatus.SC_SERVICE_UNAVAILABLE);
@@ -311,16 +536,32 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
             // Initialize the workflow version
             WorkflowVersion version = initializeWorkflowVersion(ref.getKey(), existingWorkflow, existingDefaults);
             version.setLastModified(ref.getRight());
+            String commitSha = refCommits.get(repositoryId + '@' + ref.getKey());
+            version.setCommitID(commitSha);
             String calculatedPath = version.getWorkflowPath();
 
+            WorkflowVersion existingVersion = existingDefaults.get(ref.getKey());
+            if (skipUnchangedVersions && isUnchanged(existingVersion, commitSha) && readTheSameFiles(workflow, version, existingVersion)) {
+                LOG.info(gitUsername + ": " + ref.getKey() + " is still at " + commitSha + ", keeping its files");
+                version.setValid(existingVersion.isValid());
+                for (SourceFile existingFile : existingVersion.getSourceFiles()) {
+                    SourceFile file = new SourceFile();
+                    file.setType(existingFile.getType());
+                    file.setPath(existingFile.getPath());
+                    file.setContent(existingFile.getContent());
+                    version.getSourceFiles().add(file);
+                }
+                workflow.addWorkflowVersion(version);
+                continue;
+            }
+
             SourceFile.FileType identifiedType = workflow.getFileType();
 
             // Grab workflow file from github
             try {
                 // Get contents of descriptor file and store
-                final List<RepositoryContents> descriptorContents = cService.getContents(id, calculatedPath, ref.getKey());
-                if (descriptorContents != null && descriptorContents.size() > 0) {
-                    String content = extractGitHubContents(descriptorContents);
+                String content = readFileFromRepo(calculatedPath, ref.getKey(), id);
+                if (content != null) {
 
                     boolean validWorkflow = LanguageHandlerFactory.getInterface(identifiedType).isValidWorkflow(content);
 
@@ -337,9 +578,8 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
                     // Use default test parameter file if either new version or existing version that hasn't been edited
                     // TODO: why is this here? Does this code not have a counterpart in BitBucket and GitLab?
                     if (!version.isDirtyBit() && workflow.getDefaultTestParameterFilePath() != null) {
-                        final List<RepositoryContents> testJsonFile = cService.getContents(id, workflow.getDefaultTestParameterFilePath(), ref.getKey());
-                        if (testJsonFile != null && testJsonFile.size() > 0) {
-                            String testJsonContent = extractGitHubContents(testJsonFile);
+                        String testJsonContent = readFileFromRepo(workflow.getDefaultTestParameterFilePath(), ref.getKey(), id);
+                        if (testJsonContent != null) {
                             SourceFile testJson = new SourceFile();
 
                             // Set Filetype
@@ -375,6 +615,59 @@ public class GitHubSourceCodeRepo extends SourceCodeRepoInterface {
         return workflow;
     }
 
+    /**
+     * Whether reading the version again would look for the same files as the last read did, so that the files of an unchanged
+     * commit can be kept. Versions that were not valid are always read again, they may be valid with a different descriptor type.
+     *
+     * @param workflow        the workflow being refreshed
+     * @param version         the new version, its path and dirty bit are already set
+     * @param existingVersion the version as it was last read
+     * @return true if the descriptor path and type and the test parameter file to read are the same
+     */
+    static boolean readTheSameFiles(Workflow workflow, WorkflowVersion version, WorkflowVersion existingVersion) {
+        if (version.isDirtyBit() != existingVersion.isDirtyBit()
+            || !Objects.equals(version.getWorkflowPath(), existingVersion.getWorkflowPath())) {
+            return false;
+        }
+        final SourceFile.FileType descriptorType = workflow.getFileType();
+        boolean sameDescriptor = existingVersion.getSourceFiles().stream()
+            .anyMatch(file -> file.getType() == descriptorType && Objects.equals(file.getPath(), version.getWorkflowPath()));
+        // a version that was not edited also reads the default test parameter file, which may have been set since
+        final String testParameterPath = workflow.getDefaultTestParameterFilePath();
+        boolean sameTestParameterFile = version.isDirtyBit() || testParameterPath == null || existingVersion.getSourceFiles().stream()
+            .anyMatch(file -> file.getType() == workflow.getTestParameterType() && Objects.equals(file.getPath(), testParameterPath));
+        return sameDescriptor && sameTestParameterFile;
+    }
+
+    /**
+     * @return true if the version was last read from the same commit
+     */
+    private boolean isUnchanged(WorkflowVersion existingVersion, String commitSha) {
+        return existingVersion != null && commitSha != null && commitSha.equals(existingVersion.getCommitID());
+    }
+
+    /**
+     * @return the date of the commit a branch or tag points to, not looked up again if the version is still at that commit
+     */
+    private Date getCommitDate(GHRepository repository, String reference, String commitSha, Map<String, WorkflowVersion> existingDefaults) {
+        final Date epochStart = new Date(0);
+        WorkflowVersion existingVersion = existingDefaults.get(reference);
+        if (isUnchanged(existingVersion, commitSha) && existingVersion.getLastModified() != null) {
+            return existingVersion.getLastModified();
+        }
+        Date commitDate = epochStart;
+        try {
+            GHCommit commit = repository.getCommit(commitSha);
+            commitDate = commit.getCommitDate();
+            if (commitDate.before(epochStart)) {
+                commitDate = epochStart;
+            }
+        } catch (IOException e) {
+            LOG.info("unable to retrieve commit date for " + reference);
+        }
+        return commitDate;
+    }
+
     @Override
     public String getRepositoryId(Entry entry) {
         String repositoryId;
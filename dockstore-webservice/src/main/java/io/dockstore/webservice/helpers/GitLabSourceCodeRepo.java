@@ -22,9 +22,12 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -37,6 +40,7 @@ import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowVersion;
 import io.dockstore.webservice.languages.LanguageHandlerFactory;
 import io.dockstore.webservice.resources.ResourceUtilities;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.slf4j.Logger;
@@ -51,6 +55,15 @@ public class GitLabSourceCodeRepo extends SourceCodeRepoInterface {
     private static final String GITLAB_GIT_URL_PREFIX = "git@gitlab.com:";
     private static final String GITLAB_GIT_URL_SUFFIX = ".git";
 
+    private static final int PROJECTS_PER_PAGE = 100;
+    private static final long PROJECT_TTL_MINUTES = 10;
+    private static final long MAX_PROJECTS = 10000;
+    /**
+     * (token, path_with_namespace) -> project, so that each file read does not have to look for the project again
+     */
+    private static final Cache<Pair<String, String>, GitLabProject> PROJECTS = CacheBuilder.newBuilder()
+        .expireAfterWrite(PROJECT_TTL_MINUTES, TimeUnit.MINUTES).maximumSize(MAX_PROJECTS).build();
+
     private static final Logger LOG = LoggerFactory.getLogger(GitLabSourceCodeRepo.class);
     private final HttpClient client;
     private final String gitlabTokenContent;
@@ -68,42 +81,12 @@ public class GitLabSourceCodeRepo extends SourceCodeRepoInterface {
             fileName = fileName.substring(1);
         }
 
-        String content = null;
-        String branch = reference;
-        String id = null;
-
-        // Determine a branches default branch (if needed) and ID
-        String projectsUrl = GITLAB_API_URL + "projects";
-        Optional<String> asString = ResourceUtilities.asString(projectsUrl, gitlabTokenContent, client);
-
-        if (asString.isPresent()) {
-            String projectJson = asString.get();
-
-            JsonElement jsonElement = new JsonParser().parse(projectJson);
-            if (jsonElement instanceof JsonArray) {
-                JsonArray jsonArray = jsonElement.getAsJsonArray();
-                for (JsonElement project : jsonArray) {
-                    JsonObject projectObject = project.getAsJsonObject();
-
-                    // What if username != namespace?
-                    if (projectObject.get("path_with_namespace").getAsString().equals(gitUsername + "/" + gitRepository)) {
-                        id = projectObject.get("id").getAsString();
-                        if (reference == null) {
-                            branch = projectObject.get("default_branch").getAsString();
-                        }
-                        break;
-                    }
-                }
-            }
-
-        }
-
-        // Get file contents
-        if (id != null || branch != null) {
-            return getFileContentsFromIdV4(id, branch, fileName);
+        GitLabProject project = getProject(gitUsername + "/" + gitRepository);
+        if (project == null) {
+            return null;
         }
-
-        return content;
+        String branch = reference == null ? project.defaultBranch : reference;
+        return getFileContentsFromIdV4(project.id, branch, fileName);
     }
 
     @Override
@@ -114,23 +97,27 @@ public class GitLabSourceCodeRepo extends SourceCodeRepoInterface {
     @Override
     public Map<String, String> getWorkflowGitUrl2RepositoryId() {
         Map<String, String> reposByGitUrl = new HashMap<>();
-        String projectsUrl = GITLAB_API_URL + "projects";
-
-        Optional<String> asString = ResourceUtilities.asString(projectsUrl, gitlabTokenContent, client);
-
-        if (asString.isPresent()) {
-            String projectJson = asString.get();
-
-            JsonElement jsonElement = new JsonParser().parse(projectJson);
-            if (jsonElement instanceof JsonArray) {
-                JsonArray jsonArray = jsonElement.getAsJsonArray();
-                for (JsonElement project : jsonArray) {
-                    JsonObject projectObject = project.getAsJsonObject();
-                    String gitlabUrl = projectObject.get("ssh_url_to_repo").getAsString();
-                    String id = projectObject.get("path_with_namespace").getAsString();
-                    reposByGitUrl.put(gitlabUrl, id);
-                }
+        // page through every project, remembering their ids for the file reads that follow
+        boolean morePages = true;
+        for (int page = 1; morePages; page++) {
+            String projectsUrl = GITLAB_API_URL + "projects?per_page=" + PROJECTS_PER_PAGE + "&page=" + page;
+            Optional<String> asString = ResourceUtilities.asString(projectsUrl, gitlabTokenContent, client);
+            if (!asString.isPresent()) {
+                break;
+            }
+            JsonElement jsonElement = new JsonParser().parse(asString.get());
+            if (!(jsonElement instanceof JsonArray)) {
+                break;
             }
+            JsonArray jsonArray = jsonElement.getAsJsonArray();
+            for (JsonElement project : jsonArray) {
+                JsonObject projectObject = project.getAsJsonObject();
+                String gitlabUrl = projectObject.get("ssh_url_to_repo").getAsString();
+                String id = projectObject.get("path_with_namespace").getAsString();
+                reposByGitUrl.put(gitlabUrl, id);
+                cacheProject(projectObject);
+            }
+            morePages = jsonArray.size() == PROJECTS_PER_PAGE;
         }
 
         return reposByGitUrl;
@@ -234,24 +221,9 @@ public class GitLabSourceCodeRepo extends SourceCodeRepoInterface {
         if (entry.getDefaultVersion() != null) {
             return entry.getDefaultVersion();
         } else {
-            String projectsUrl = GITLAB_API_URL + "projects";
-            // I think I have to pass tokens with ?private_token=...
-            Optional<String> asString = ResourceUtilities.asString(projectsUrl, gitlabTokenContent, client);
-
-            if (asString.isPresent()) {
-                String projectJson = asString.get();
-                JsonElement jsonElement = new JsonParser().parse(projectJson);
-                if (jsonElement instanceof JsonArray) {
-                    JsonArray jsonArray = jsonElement.getAsJsonArray();
-                    for (JsonElement project : jsonArray) {
-                        JsonObject projectObject = project.getAsJsonObject();
-                        if (projectObject.get("path_with_namespace").getAsString().equals(repositoryId)) {
-                            return projectObject.get("default_branch").getAsString();
-                        }
-
-                    }
-                }
-
+            GitLabProject project = getProject(repositoryId);
+            if (project != null) {
+                return project.defaultBranch;
             }
         }
 
@@ -270,27 +242,48 @@ public class GitLabSourceCodeRepo extends SourceCodeRepoInterface {
      * @return
      */
     private String getProjectId(String repositoryId) {
-        String projectsUrl = GITLAB_API_URL + "projects";
-
-        Optional<String> asString = ResourceUtilities.asString(projectsUrl, gitlabTokenContent, client);
+        GitLabProject project = getProject(repositoryId);
+        return project == null ? null : project.id;
+    }
 
+    /**
+     * Look up a project by its path, from the projects seen recently with the same token or else directly
+     *
+     * @param repositoryId namespace/reponame
+     * @return the project, null if it cannot be found
+     */
+    private GitLabProject getProject(String repositoryId) {
+        Pair<String, String> key = Pair.of(gitlabTokenContent, repositoryId);
+        GitLabProject project = PROJECTS.getIfPresent(key);
+        if (project != null) {
+            return project;
+        }
+        String projectUrl;
+        try {
+            // same workaround as for file paths, periods are otherwise taken as a format extension
+            projectUrl = GITLAB_API_URL + "projects/" + URLEncoder.encode(repositoryId, "UTF-8").replace(".", "%2E");
+        } catch (UnsupportedEncodingException e) {
+            LOG.error(e.getMessage());
+            return null;
+        }
+        Optional<String> asString = ResourceUtilities.asString(projectUrl, gitlabTokenContent, client);
         if (asString.isPresent()) {
-            String projectJson = asString.get();
-
-            JsonElement jsonElement = new JsonParser().parse(projectJson);
-            if (jsonElement instanceof JsonArray) {
-                JsonArray jsonArray = jsonElement.getAsJsonArray();
-                for (JsonElement project : jsonArray) {
-                    JsonObject projectObject = project.getAsJsonObject();
-                    if (projectObject.get("path_with_namespace").getAsString().equals(repositoryId)) {
-                        return projectObject.get("id").getAsString();
-                    }
-                }
+            JsonElement jsonElement = new JsonParser().parse(asString.get());
+            if (jsonElement instanceof JsonObject) {
+                return cacheProject(jsonElement.getAsJsonObject());
             }
         }
         return null;
     }
 
+    private GitLabProject cacheProject(JsonObject projectObject) {
+        JsonElement defaultBranch = projectObject.get("default_branch");
+        GitLabProject project = new GitLabProject(projectObject.get("id").getAsString(),
+            defaultBranch == null || defaultBranch.isJsonNull() ? null : defaultBranch.getAsString());
+        PROJECTS.put(Pair.of(gitlabTokenContent, projectObject.get("path_with_namespace").getAsString()), project);
+        return project;
+    }
+
     /**
      * Uses Gitlab API to grab a raw source file and return it; Return null if nothing found
      *
@@ -357,4 +350,17 @@ public class GitLabSourceCodeRepo extends SourceCodeRepoInterface {
         //TODO
         return true;
     }
+
+    /**
+     * What file reads need to know about a project
+     */
+    private static final class GitLabProject {
+        private final String id;
+        private final String defaultBranch;
+
+        GitLabProject(String id, String defaultBranch) {
+            this.id = id;
+            this.defaultBranch = defaultBranch;
+        }
+    }
 }
@@ -17,9 +17,13 @@
 package io.dockstore.webservice.helpers;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -60,26 +64,37 @@ public final class Helper {
         final Token gitlabToken) {
         Set<Tag> tags = tool.getTags();
 
-        // For each tag, will download files to db and determine if the tag is valid
+        final String bitbucketTokenContent = bitbucketToken == null ? null : bitbucketToken.getContent();
+        final String gitlabTokenContent = gitlabToken == null ? null : gitlabToken.getContent();
+        final String githubTokenContent = githubToken == null ? null : githubToken.getContent();
+        final SourceCodeRepoInterface sourceCodeRepo = SourceCodeRepoFactory
+                .createSourceCodeRepo(tool.getGitUrl(), client, bitbucketTokenContent, gitlabTokenContent, githubTokenContent);
+
+        // Start reading the files of every tag before waiting for any of them
+        Map<Tag, List<Future<List<SourceFile>>>> pendingFiles = new LinkedHashMap<>();
+        if (sourceCodeRepo != null) {
+            String host = SourceCodeRepoFactory.parseGitUrl(tool.getGitUrl()).get("Source");
+            for (Tag tag : tags) {
+                pendingFiles.put(tag, loadFiles(sourceCodeRepo, host, tag));
+            }
+        }
+
+        // For each tag, will save the files to db and determine if the tag is valid
         for (Tag tag : tags) {
             LOG.info(githubToken.getUsername() + " : Updating files for tag {}", tag.getName());
 
             // Get all of the required sourcefiles for the given tag
-            List<SourceFile> newFiles = loadFiles(client, bitbucketToken, githubToken, gitlabToken, tool, tag);
+            List<SourceFile> newFiles = getFiles(pendingFiles, tag);
 
-            // Remove all existing sourcefiles
-            tag.getSourceFiles().clear();
+            // Only write the sourcefiles that changed
+            fileDAO.updateSourceFiles(tag, newFiles);
 
             // Add for new descriptor types
             boolean hasCwl = false;
             boolean hasWdl = false;
             boolean hasDockerfile = false;
 
-            for (SourceFile newFile : newFiles) {
-                long id = fileDAO.create(newFile);
-                SourceFile file = fileDAO.findById(id);
-                tag.addSourceFile(file);
-
+            for (SourceFile file : tag.getSourceFiles()) {
                 if (file.getType() == FileType.DOCKERFILE) {
                     hasDockerfile = true;
                     LOG.info(githubToken.getUsername() + " : HAS Dockerfile");
@@ -105,65 +120,102 @@ public final class Helper {
     }
 
     /**
-     * Given a container and tags, load up required files from git repository
+     * Wait for the files of a tag, cancelling the reads of all tags if one of them fails
      *
-     * @param client
-     * @param bitbucketToken
-     * @param githubToken
-     * @param c
-     * @param tag
+     * @param pendingFiles reads started by {@link #loadFiles(SourceCodeRepoInterface, String, Tag)} for each tag
+     * @param tag          the tag to get the files of
      * @return list of SourceFiles containing cwl and dockerfile.
      */
-    private static List<SourceFile> loadFiles(HttpClient client, Token bitbucketToken, Token githubToken, Token gitlabToken, Tool c,
-            Tag tag) {
+    private static List<SourceFile> getFiles(Map<Tag, List<Future<List<SourceFile>>>> pendingFiles, Tag tag) {
         List<SourceFile> files = new ArrayList<>();
-
-        final String bitbucketTokenContent = bitbucketToken == null ? null : bitbucketToken.getContent();
-        final String gitlabTokenContent = gitlabToken == null ? null : gitlabToken.getContent();
-        final String githubTokenContent = githubToken == null ? null : githubToken.getContent();
-        final SourceCodeRepoInterface sourceCodeRepo = SourceCodeRepoFactory
-                .createSourceCodeRepo(c.getGitUrl(), client, bitbucketTokenContent, gitlabTokenContent, githubTokenContent);
-        if (sourceCodeRepo == null) {
-            return files;
+        try {
+            for (Future<List<SourceFile>> future : pendingFiles.getOrDefault(tag, Collections.emptyList())) {
+                files.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelAll(pendingFiles);
+            throw new CustomWebApplicationException("Interrupted while reading the files of tag " + tag.getName(),
+                HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        } catch (ExecutionException e) {
+            cancelAll(pendingFiles);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
         }
+        return files;
+    }
+
+    private static void cancelAll(Map<Tag, List<Future<List<SourceFile>>>> pendingFiles) {
+        pendingFiles.values().forEach(futures -> futures.forEach(future -> future.cancel(true)));
+    }
+
+    /**
+     * Given a tag, start loading up required files from git repository.
+     * The reads run on {@link RemoteCallExecutor}, they must not touch the Hibernate session, so the paths of test
+     * parameter files are looked up here.
+     *
+     * @param sourceCodeRepo repository of the tool, shared by the reads
+     * @param host           host of the repository
+     * @param tag            the tag to read the files of
+     * @return a pending list of SourceFiles for each file type and test parameter file
+     */
+    private static List<Future<List<SourceFile>>> loadFiles(SourceCodeRepoInterface sourceCodeRepo, String host, Tag tag) {
+        List<Future<List<SourceFile>>> files = new ArrayList<>();
 
         // Add for new descriptor types
         for (FileType f : FileType.values()) {
             if (f != FileType.CWL_TEST_JSON && f != FileType.WDL_TEST_JSON && f != FileType.NEXTFLOW_TEST_PARAMS) {
-                String fileResponse = sourceCodeRepo.readGitRepositoryFile(f, tag, null);
-                if (fileResponse != null) {
-                    SourceFile dockstoreFile = new SourceFile();
-                    dockstoreFile.setType(f);
-                    dockstoreFile.setContent(fileResponse);
-                    if (f == FileType.DOCKERFILE) {
-                        dockstoreFile.setPath(tag.getDockerfilePath());
-                    } else if (f == FileType.DOCKSTORE_CWL) {
-                        dockstoreFile.setPath(tag.getCwlPath());
-                        // see if there are imported files and resolve them
-                        Map<String, SourceFile> importedFiles = sourceCodeRepo.resolveImports(fileResponse, f, tag);
-                        files.addAll(importedFiles.values());
-                    } else if (f == FileType.DOCKSTORE_WDL) {
-                        dockstoreFile.setPath(tag.getWdlPath());
-                        Map<String, SourceFile> importedFiles = sourceCodeRepo.resolveImports(fileResponse, f, tag);
-                        files.addAll(importedFiles.values());
-                    } else {
-                        //TODO add nextflow work here
-                        LOG.error("file type not implemented yet");
-                        continue;
-                    }
-                    files.add(dockstoreFile);
-                }
+                files.add(RemoteCallExecutor.submit(host, () -> loadFile(sourceCodeRepo, tag, f)));
             } else {
                 // If test json, must grab all
-                List<SourceFile> cwlTestJson = tag.getSourceFiles().stream().filter((SourceFile u) -> u.getType() == f)
-                    .collect(Collectors.toList());
-                cwlTestJson.forEach(file -> sourceCodeRepo.readFile(tag, files, f, file.getPath()));
+                List<String> testJsonPaths = tag.getSourceFiles().stream().filter((SourceFile u) -> u.getType() == f)
+                    .map(SourceFile::getPath).collect(Collectors.toList());
+                for (String path : testJsonPaths) {
+                    files.add(RemoteCallExecutor.submit(host, () -> {
+                        List<SourceFile> testJson = new ArrayList<>();
+                        sourceCodeRepo.readFile(tag, testJson, f, path);
+                        return testJson;
+                    }));
+                }
             }
         }
         return files;
     }
 
-
+    /**
+     * Load a file of a tag and the files it imports
+     *
+     * @return the imported files followed by the file, empty if there is no such file
+     */
+    private static List<SourceFile> loadFile(SourceCodeRepoInterface sourceCodeRepo, Tag tag, FileType f) {
+        List<SourceFile> files = new ArrayList<>();
+        String fileResponse = sourceCodeRepo.readGitRepositoryFile(f, tag, null);
+        if (fileResponse != null) {
+            SourceFile dockstoreFile = new SourceFile();
+            dockstoreFile.setType(f);
+            dockstoreFile.setContent(fileResponse);
+            if (f == FileType.DOCKERFILE) {
+                dockstoreFile.setPath(tag.getDockerfilePath());
+            } else if (f == FileType.DOCKSTORE_CWL) {
+                dockstoreFile.setPath(tag.getCwlPath());
+                // see if there are imported files and resolve them
+                Map<String, SourceFile> importedFiles = sourceCodeRepo.resolveImports(fileResponse, f, tag);
+                files.addAll(importedFiles.values());
+            } else if (f == FileType.DOCKSTORE_WDL) {
+                dockstoreFile.setPath(tag.getWdlPath());
+                Map<String, SourceFile> importedFiles = sourceCodeRepo.resolveImports(fileResponse, f, tag);
+                files.addAll(importedFiles.values());
+            } else {
+                //TODO add nextflow work here
+                LOG.error("file type not implemented yet");
+                return files;
+            }
+            files.add(dockstoreFile);
+        }
+        return files;
+    }
 
     /**
      * Refreshes user's containers
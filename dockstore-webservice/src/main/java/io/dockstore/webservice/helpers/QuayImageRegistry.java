@@ -17,32 +17,39 @@
 package io.dockstore.webservice.helpers;
 
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import io.dockstore.common.Registry;
+import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.core.Tag;
 import io.dockstore.webservice.core.Token;
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.ToolMode;
 import io.dockstore.webservice.resources.ResourceUtilities;
+import io.dockstore.webservice.resources.ResourceUtilities.RetryableException;
 import io.swagger.quay.client.ApiClient;
 import io.swagger.quay.client.ApiException;
 import io.swagger.quay.client.Configuration;
 import io.swagger.quay.client.api.UserApi;
 import io.swagger.quay.client.model.UserView;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +62,8 @@ public class QuayImageRegistry extends AbstractImageRegistry {
     public static final String QUAY_URL = "https://quay.io/api/v1/";
 
     private static final Logger LOG = LoggerFactory.getLogger(QuayImageRegistry.class);
+    private static final String QUAY_HOST = "quay.io";
+    private static final DateTimeFormatter BUILD_DATE_FORMAT = DateTimeFormatter.ofPattern("EEE, d MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
 
     private final HttpClient client;
     private final ObjectMapper objectMapper;
@@ -73,37 +82,43 @@ public class QuayImageRegistry extends AbstractImageRegistry {
 
     @Override
     public List<Tag> getTags(Tool tool) {
-        LOG.info(quayToken.getUsername() + " ======================= Getting tags for: {}================================", tool.getPath());
-        final String repo = tool.getNamespace() + '/' + tool.getName();
-        final String repoUrl = QUAY_URL + "repository/" + repo;
-        final Optional<String> asStringBuilds = ResourceUtilities.asString(repoUrl, quayToken.getContent(), client);
-
-        final List<Tag> tags = new ArrayList<>();
-
-        if (asStringBuilds.isPresent()) {
-            final String json = asStringBuilds.get();
-            Gson gson = new Gson();
-            Map<String, Map<String, Map<String, String>>> map = new HashMap<>();
-            map = (Map<String, Map<String, Map<String, String>>>)gson.fromJson(json, map.getClass());
+        return getAllTags(Collections.singletonList(tool)).get(0);
+    }
 
-            final Map<String, Map<String, String>> listOfTags = map.get("tags");
+    /**
+     * Reads the tags and builds of all the tools before waiting for any of them.
+     */
+    @Override
+    public List<List<Tag>> getAllTags(List<Tool> tools) {
+        List<Future<Optional<String>>> pending = new ArrayList<>(2 * tools.size());
+        for (Tool tool : tools) {
+            final String repoUrl = QUAY_URL + "repository/" + tool.getNamespace() + '/' + tool.getName();
+            pending.add(fetch(repoUrl));
+            pending.add(fetch(repoUrl + "/build/?limit=2147483647"));
+        }
 
-            for (Entry<String, Map<String, String>> stringMapEntry : listOfTags.entrySet()) {
-                final String s = gson.toJson(stringMapEntry.getValue());
-                try {
-                    final Tag tag = objectMapper.readValue(s, Tag.class);
-                    tags.add(tag);
-                } catch (IOException ex) {
-                    LOG.warn(quayToken.getUsername() + " Exception: {}", ex);
+        List<List<Tag>> allTags = new ArrayList<>(tools.size());
+        for (int i = 0; i < tools.size(); i++) {
+            Tool tool = tools.get(i);
+            LOG.info(quayToken.getUsername() + " ======================= Getting tags for: {}================================", tool.getPath());
+            final List<Tag> tags = new ArrayList<>();
+
+            Optional<JsonNode> repository = parse(await(pending, 2 * i));
+            if (repository.isPresent()) {
+                for (JsonNode tagNode : repository.get().path("tags")) {
+                    try {
+                        tags.add(objectMapper.treeToValue(tagNode, Tag.class));
+                    } catch (IOException ex) {
+                        LOG.warn(quayToken.getUsername() + " Exception: {}", ex);
+                    }
                 }
             }
 
+            Optional<JsonNode> builds = parse(await(pending, 2 * i + 1));
+            builds.ifPresent(json -> updateTagsWithBuildInformation(json.path("builds"), tags, tool));
+            allTags.add(tags);
         }
-
-        String repository = tool.getNamespace() + "/" + tool.getName();
-        updateTagsWithBuildInformation(repository, tags, tool);
-
-        return tags;
+        return allTags;
     }
 
     @Override
@@ -161,146 +176,161 @@ public class QuayImageRegistry extends AbstractImageRegistry {
 
     @Override
     public void updateAPIToolsWithBuildInformation(List<Tool> apiTools) {
-        // Initialize useful classes
-        final Gson gson = new Gson();
-        final SimpleDateFormat formatter = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z");
-
+        // Make calls for build information from quay (only need most recent), all of them before waiting for any
+        List<Future<Optional<String>>> pending = new ArrayList<>(apiTools.size());
         for (Tool tool : apiTools) {
-            // Set path information (not sure why we have to do this here)
-            final String repo = tool.getNamespace() + '/' + tool.getName();
+            pending.add(fetch(QUAY_URL + "repository/" + tool.getNamespace() + '/' + tool.getName() + "/build/?limit=1"));
+        }
 
+        for (int i = 0; i < apiTools.size(); i++) {
+            Tool tool = apiTools.get(i);
             LOG.info("Grabbing tool information for " + tool.getPath());
 
-            // Initialize giturl
-            String gitUrl = null;
-
-            // Make call for build information from quay (only need most recent)
-            String urlBuilds = QUAY_URL + "repository/" + repo + "/build/?limit=1";
-            Optional<String> asStringBuilds = ResourceUtilities.asString(urlBuilds, quayToken.getContent(), client);
-
             // Check result of API call
-            if (asStringBuilds.isPresent()) {
-                String json = asStringBuilds.get();
-
-                // Store the json file into a map for parsing
-                Map<String, ArrayList> buildMap = new HashMap<>();
-                buildMap = (Map<String, ArrayList>)gson.fromJson(json, buildMap.getClass());
-
-                // Grad build information
-                ArrayList builds = buildMap.get("builds");
-
-                if (builds.size() > 0) {
-                    // Look at the latest build for the git url
-                    // ASSUMPTION : We are assuming that for a given Quay repo users are only using one git trigger
-                    if (!builds.isEmpty()) {
-                        // If a build exists, grab data from it and update the tool
-                        Map<String, Map<String, String>> individualBuild = (Map<String, Map<String, String>>)builds.get(0);
+            Optional<JsonNode> buildMap = parse(await(pending, i));
+            if (!buildMap.isPresent()) {
+                continue;
+            }
+            JsonNode builds = buildMap.get().path("builds");
 
-                        // Get the git url
-                        Map<String, String> triggerMetadata = individualBuild.get("trigger_metadata");
+            if (builds.size() > 0) {
+                // Look at the latest build for the git url
+                // ASSUMPTION : We are assuming that for a given Quay repo users are only using one git trigger
+                JsonNode individualBuild = builds.get(0);
 
-                        if (triggerMetadata != null) {
-                            gitUrl = triggerMetadata.get("git_url");
-                        }
-                        // alternative hack for GA4GH importer (should be removed if we can create triggers on quay.io repos)
-                        String autoGenerateTag = "GA4GH-generated-do-not-edit";
-                        try {
-                            if (tool.getDescription().contains(autoGenerateTag)) {
-                                String[] split = tool.getDescription().split("\n");
-                                for (String line : split) {
-                                    if (line.contains(autoGenerateTag)) {
-                                        String[] splitLine = line.split("<>");
-                                        String trimmed = splitLine[1].trim();
-                                        // strip the brackets
-                                        String substring = trimmed.substring(1, trimmed.length() - 1);
-                                        Map<String, String> map = new Gson().fromJson(substring,
-                                                new TypeToken<Map<String, String>>() { }.getType());
-                                        gitUrl = "git@github.com:" + map.get("namespace") + "/" + map.get("repo") + ".git";
-                                    }
-                                }
+                // Get the git url
+                String gitUrl = textOrNull(individualBuild.path("trigger_metadata"), "git_url");
+                // alternative hack for GA4GH importer (should be removed if we can create triggers on quay.io repos)
+                String autoGenerateTag = "GA4GH-generated-do-not-edit";
+                try {
+                    if (tool.getDescription().contains(autoGenerateTag)) {
+                        String[] split = tool.getDescription().split("\n");
+                        for (String line : split) {
+                            if (line.contains(autoGenerateTag)) {
+                                String[] splitLine = line.split("<>");
+                                String trimmed = splitLine[1].trim();
+                                // strip the brackets
+                                String substring = trimmed.substring(1, trimmed.length() - 1);
+                                Map<String, String> map = objectMapper.readValue(substring, new TypeReference<Map<String, String>>() { });
+                                gitUrl = "git@github.com:" + map.get("namespace") + "/" + map.get("repo") + ".git";
                             }
-                        } catch (Exception e) {
-                            LOG.info("Found GA4GH tag in description for " + tool.getPath() + " but could not process it into a git url");
-                        }
-
-                        // Get lastbuild time
-                        Map<String, String> individualBuildStringMap = (Map<String, String>)builds.get(0);
-                        String lastBuild = individualBuildStringMap.get("started");
-
-                        Date date;
-                        try {
-                            date = formatter.parse(lastBuild);
-                            tool.setLastBuild(date);
-                        } catch (ParseException ex) {
-                            LOG.warn(quayToken.getUsername() + ": " + quayToken.getUsername()
-                                    + " Build date did not match format 'EEE, d MMM yyyy HH:mm:ss Z'");
                         }
                     }
+                } catch (Exception e) {
+                    LOG.info("Found GA4GH tag in description for " + tool.getPath() + " but could not process it into a git url");
+                }
 
-                    // Set some attributes if not manual
-                    if (tool.getMode() != ToolMode.MANUAL_IMAGE_PATH) {
-                        tool.setRegistry(Registry.QUAY_IO.toString());
-                        tool.setGitUrl(gitUrl);
+                // Get lastbuild time
+                String lastBuild = textOrNull(individualBuild, "started");
+                try {
+                    if (lastBuild != null) {
+                        tool.setLastBuild(Date.from(ZonedDateTime.parse(lastBuild, BUILD_DATE_FORMAT).toInstant()));
                     }
+                } catch (DateTimeParseException ex) {
+                    LOG.warn(quayToken.getUsername() + ": " + quayToken.getUsername()
+                            + " Build date did not match format 'EEE, d MMM yyyy HH:mm:ss Z'");
+                }
+
+                // Set some attributes if not manual
+                if (tool.getMode() != ToolMode.MANUAL_IMAGE_PATH) {
+                    tool.setRegistry(Registry.QUAY_IO.toString());
+                    tool.setGitUrl(gitUrl);
                 }
             }
         }
     }
 
-    private void updateTagsWithBuildInformation(String repository, List<Tag> tags, Tool tool) {
-        final Gson gson = new Gson();
+    /**
+     * @param builds the builds of the repository of the tool, most recent first
+     */
+    private void updateTagsWithBuildInformation(JsonNode builds, List<Tag> tags, Tool tool) {
+        // The most recent build of each tag
+        Map<String, JsonNode> buildOfTag = new HashMap<>();
+        for (JsonNode build : builds) {
+            for (JsonNode buildTag : build.path("tags")) {
+                buildOfTag.putIfAbsent(buildTag.asText(), build);
+            }
+        }
 
-        // Grab build information for given repository
-        String urlBuilds = QUAY_URL + "repository/" + repository + "/build/?limit=2147483647";
-        Optional<String> asStringBuilds = ResourceUtilities.asString(urlBuilds, quayToken.getContent(), client);
+        // Set up tags with build information
+        for (Tag tag : tags) {
+            // Set tag information based on build info
+            JsonNode build = buildOfTag.get(tag.getName());
+            if (build != null) {
+                // Find if tag has a git reference
+                JsonNode triggerMetadata = build.get("trigger_metadata");
+                if (triggerMetadata != null && !triggerMetadata.isNull()) {
+                    String ref = parseReference(textOrNull(triggerMetadata, "ref"));
+                    tag.setReference(ref);
+                    tag.setAutomated(ref != null);
+                } else {
+                    LOG.error(quayToken.getUsername() + " : WARNING: trigger_metadata is NULL. Could not parse to get reference!");
+                }
+            }
 
-        // List of builds for a tool
-        ArrayList builds;
+            // Set up default descriptor paths
+            tag.setCwlPath(tool.getDefaultCwlPath());
+            tag.setWdlPath(tool.getDefaultWdlPath());
 
-        if (asStringBuilds.isPresent()) {
-            String json = asStringBuilds.get();
-            Map<String, ArrayList> map = new HashMap<>();
-            map = (Map<String, ArrayList>)gson.fromJson(json, map.getClass());
-            builds = map.get("builds");
-
-            // Set up tags with build information
-            for (Tag tag : tags) {
-                // Set tag information based on build info
-                for (Object build : builds) {
-                    Map<String, ArrayList<String>> tagsMap = (Map<String, ArrayList<String>>)build;
-                    List<String> buildTags = tagsMap.get("tags");
-
-                    // If build is for given tag
-                    if (buildTags.contains(tag.getName())) {
-                        // Find if tag has a git reference
-                        Map<String, Map<String, String>> triggerMetadataMap = (Map<String, Map<String, String>>)build;
-                        Map<String, String> triggerMetadata = triggerMetadataMap.get("trigger_metadata");
-                        if (triggerMetadata != null) {
-                            String ref = triggerMetadata.get("ref");
-                            ref = parseReference(ref);
-                            tag.setReference(ref);
-                            if (ref == null) {
-                                tag.setAutomated(false);
-                            } else {
-                                tag.setAutomated(true);
-                            }
-                        } else {
-                            LOG.error(quayToken.getUsername() + " : WARNING: trigger_metadata is NULL. Could not parse to get reference!");
-                        }
+            // Set up default dockerfile path
+            tag.setDockerfilePath(tool.getDefaultDockerfilePath());
+        }
+    }
 
-                        break;
-                    }
-                }
+    /**
+     * Start a read from quay.io, the reads in flight to quay.io are bounded by {@link RemoteCallExecutor}
+     * and rate limited or failed requests are retried.
+     */
+    private Future<Optional<String>> fetch(String url) {
+        final String token = quayToken.getContent();
+        return RemoteCallExecutor.submitWithRetries(QUAY_HOST, () -> {
+            try {
+                return Optional.of(ResourceUtilities.asStringOrThrow(url, token, client));
+            } catch (RetryableException e) {
+                throw e;
+            } catch (IOException e) {
+                LOG.error("Could not read <{}> :=> <{}>", url, e.getMessage());
+                return Optional.empty();
+            }
+        });
+    }
 
-                // Set up default descriptor paths
-                tag.setCwlPath(tool.getDefaultCwlPath());
-                tag.setWdlPath(tool.getDefaultWdlPath());
+    /**
+     * Wait for a read started by {@link #fetch(String)}, cancelling all of them if waiting fails
+     */
+    private static Optional<String> await(List<Future<Optional<String>>> pending, int index) {
+        try {
+            return pending.get(index).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.forEach(future -> future.cancel(true));
+            throw new CustomWebApplicationException("Interrupted while reading from Quay.io", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RetryableException) {
+                LOG.error("Giving up on a read from Quay.io :=> <{}>", e.getCause().getMessage());
+                return Optional.empty();
+            }
+            pending.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-                // Set up default dockerfile path
-                tag.setDockerfilePath(tool.getDefaultDockerfilePath());
+    private Optional<JsonNode> parse(Optional<String> json) {
+        if (json.isPresent()) {
+            try {
+                return Optional.of(objectMapper.readTree(json.get()));
+            } catch (IOException ex) {
+                LOG.warn(quayToken.getUsername() + " Exception: {}", ex);
             }
         }
+        return Optional.empty();
+    }
 
+    private static String textOrNull(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
     }
 
     /**
@@ -317,12 +347,11 @@ public class QuayImageRegistry extends AbstractImageRegistry {
 
         if (asStringBuilds.isPresent()) {
             final String json = asStringBuilds.get();
-
-            Gson gson = new Gson();
-            Map<String, Object> map = new HashMap<>();
-            map = (Map<String, Object>)gson.fromJson(json, map.getClass());
-            return map;
-
+            try {
+                return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() { });
+            } catch (IOException ex) {
+                LOG.warn(quayToken.getUsername() + " Exception: {}", ex);
+            }
         }
         return null;
     }
@@ -0,0 +1,118 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the rate limit budget of each source control token, as last reported by GitHub, GitLab or Bitbucket.
+ * Background work checks {@link #delayMillis(String, int)} before spending a token's requests so that it is put off until the
+ * reset rather than exhausting the budget the token's owner also needs.
+ */
+public final class RateLimits {
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimits.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final long MAX_WAIT_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final ConcurrentMap<String, Budget> BUDGETS = new ConcurrentHashMap<>();
+
+    private RateLimits() {
+        // hide the constructor for utility classes
+    }
+
+    /**
+     * Record the budget reported by a response, GitHub uses X-RateLimit-* headers, GitLab RateLimit-* headers
+     * and all of them may send Retry-After when the limit has been hit.
+     *
+     * @param token    the token the request was made with, may be null
+     * @param response the response
+     */
+    public static void update(String token, HttpResponse response) {
+        if (token == null) {
+            return;
+        }
+        Header remaining = firstHeader(response, "X-RateLimit-Remaining", "RateLimit-Remaining");
+        Header reset = firstHeader(response, "X-RateLimit-Reset", "RateLimit-Reset");
+        Header retryAfter = response.getFirstHeader("Retry-After");
+        try {
+            if (response.getStatusLine().getStatusCode() == TOO_MANY_REQUESTS && retryAfter != null) {
+                update(token, 0, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.getValue().trim())));
+            } else if (remaining != null && reset != null) {
+                update(token, Integer.parseInt(remaining.getValue().trim()),
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(reset.getValue().trim())));
+            }
+        } catch (NumberFormatException e) {
+            LOG.debug("Could not parse rate limit headers", e);
+        }
+    }
+
+    /**
+     * @param token       the token the budget belongs to
+     * @param remaining   requests left until the reset
+     * @param resetMillis when the budget resets, in epoch milliseconds
+     */
+    public static void update(String token, int remaining, long resetMillis) {
+        // a reset further away than that is not believed, work is only ever put off that long
+        BUDGETS.put(token, new Budget(remaining, Math.min(resetMillis, System.currentTimeMillis() + MAX_WAIT_MILLIS)));
+    }
+
+    /**
+     * How long to put off using a token, so that it keeps more than the reserved number of requests
+     *
+     * @param token   the token about to be used
+     * @param reserve requests to leave for everything else using the token
+     * @return milliseconds until the budget of the token resets, 0 if it can be used now or its budget is unknown
+     */
+    public static long delayMillis(String token, int reserve) {
+        Budget budget = BUDGETS.get(token);
+        if (budget == null || budget.remaining > reserve) {
+            return 0;
+        }
+        long delay = budget.resetMillis - System.currentTimeMillis();
+        if (delay > 0) {
+            return delay;
+        }
+        BUDGETS.remove(token, budget);
+        return 0;
+    }
+
+    private static Header firstHeader(HttpResponse response, String... names) {
+        for (String name : names) {
+            Header header = response.getFirstHeader(name);
+            if (header != null) {
+                return header;
+            }
+        }
+        return null;
+    }
+
+    private static final class Budget {
+        private final int remaining;
+        private final long resetMillis;
+
+        Budget(int remaining, long resetMillis) {
+            this.remaining = remaining;
+            this.resetMillis = resetMillis;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * The difference between what is stored and what was just read from a registry or repository, e.g. the tags of a tool.
+ * Matches items by key with one map per key, so reconciling takes time linear in the number of items instead of comparing every pair.
+ *
+ * @param <T> the type of item, entities are matched by key only, their equals and hashCode are never used
+ */
+public final class Reconciliation<T> {
+    private final List<T> added = new ArrayList<>();
+    private final List<T> removed = new ArrayList<>();
+    private final List<T> kept = new ArrayList<>();
+    private final List<Pair<T, T>> changed = new ArrayList<>();
+    private final List<Pair<T, T>> unchanged = new ArrayList<>();
+
+    private Reconciliation() {
+        // use reconcile
+    }
+
+    /**
+     * Match incoming items to existing ones. An incoming item matches the first existing item with the same value for the first key,
+     * failing that for the second key and so on.
+     *
+     * @param existing  the stored items
+     * @param incoming  the items just read, several of them may match the same existing item
+     * @param isChanged given an existing item and the incoming item it matches, whether the incoming one differs
+     * @param keys      functions giving the keys to match on, in order of preference
+     * @return the difference
+     */
+    @SafeVarargs
+    public static <T> Reconciliation<T> reconcile(Collection<T> existing, Iterable<T> incoming, BiPredicate<T, T> isChanged,
+            Function<? super T, ?>... keys) {
+        List<Map<Object, T>> indexes = new ArrayList<>(keys.length);
+        for (Function<? super T, ?> key : keys) {
+            Map<Object, T> index = new HashMap<>(existing.size() * 2);
+            existing.forEach(item -> index.putIfAbsent(key.apply(item), item));
+            indexes.add(index);
+        }
+
+        Reconciliation<T> reconciliation = new Reconciliation<>();
+        Set<T> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (T item : incoming) {
+            T match = null;
+            for (int i = 0; i < keys.length && match == null; i++) {
+                match = indexes.get(i).get(keys[i].apply(item));
+            }
+            if (match == null) {
+                reconciliation.added.add(item);
+            } else {
+                matched.add(match);
+                (isChanged.test(match, item) ? reconciliation.changed : reconciliation.unchanged).add(Pair.of(match, item));
+            }
+        }
+        for (T item : existing) {
+            (matched.contains(item) ? reconciliation.kept : reconciliation.removed).add(item);
+        }
+        return reconciliation;
+    }
+
+    /**
+     * @return incoming items that match no existing item
+     */
+    public List<T> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return existing items that no incoming item matches
+     */
+    public List<T> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return existing items that some incoming item matches, in their original order
+     */
+    public List<T> getKept() {
+        return kept;
+    }
+
+    /**
+     * @return existing items paired with a matching incoming item that differs from it
+     */
+    public List<Pair<T, T>> getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return existing items paired with a matching incoming item that does not differ from it
+     */
+    public List<Pair<T, T>> getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * @return all existing items paired with the incoming items that match them, changed first
+     */
+    public List<Pair<T, T>> getMatched() {
+        List<Pair<T, T>> matched = new ArrayList<>(changed.size() + unchanged.size());
+        matched.addAll(changed);
+        matched.addAll(unchanged);
+        return matched;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return added.size() + " added, " + removed.size() + " removed, " + changed.size() + " changed, " + unchanged.size() + " unchanged";
+    }
+}
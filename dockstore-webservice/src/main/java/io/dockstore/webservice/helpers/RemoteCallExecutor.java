@@ -0,0 +1,167 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dockstore.webservice.resources.ResourceUtilities.RetryableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs calls to remote hosts, i.e. reads from source code repositories such as GitHub and image registries such as quay.io,
+ * in the background, shared by all requests.
+ * The pool is bounded and so is the number of reads in flight to each host, a refresh of a tool with many tags
+ * or of an organization with many repositories should not use up the rate limit of the host or the threads other refreshes need.
+ */
+final class RemoteCallExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(RemoteCallExecutor.class);
+
+    static final int THREADS = 16;
+    static final int MAX_READS_PER_HOST = 8;
+
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long PERMIT_POLL_MILLIS = 100;
+
+    private static final ExecutorService EXECUTOR = Executors
+        .newFixedThreadPool(THREADS, new ThreadFactoryBuilder().setNameFormat("remote-call-%d").setDaemon(true).build());
+    private static final ScheduledExecutorService RETRIES = Executors
+        .newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("remote-call-retry").setDaemon(true).build());
+    private static final ConcurrentMap<String, Semaphore> HOST_PERMITS = new ConcurrentHashMap<>();
+
+    private RemoteCallExecutor() {
+        // hide the constructor for utility classes
+    }
+
+    /**
+     * Submit a read, waiting first while the host already has the maximum number of reads in flight.
+     * Waiting happens on the calling thread, so pool threads are never blocked on busy hosts.
+     * The permit is given back when the read completes, fails or is cancelled, even if it never started.
+     *
+     * @param host the host the task reads from, e.g. github.com
+     * @param task the read, must not use the Hibernate session of the caller
+     * @return the pending result
+     */
+    static <T> Future<T> submit(String host, Callable<T> task) {
+        Semaphore permits = HOST_PERMITS.computeIfAbsent(host, key -> new Semaphore(MAX_READS_PER_HOST));
+        permits.acquireUninterruptibly();
+        return execute(permits, task);
+    }
+
+    /**
+     * Like {@link #submit(String, Callable)}, but when the read throws a {@link RetryableException} it is submitted again later,
+     * after the wait the server asked for or otherwise twice as long as the last wait.
+     * Waiting happens on a scheduler, neither pool threads nor the calling thread sleep through it.
+     *
+     * @return the pending result, failed with the last RetryableException once out of attempts
+     */
+    static <T> Future<T> submitWithRetries(String host, Callable<T> task) {
+        Semaphore permits = HOST_PERMITS.computeIfAbsent(host, key -> new Semaphore(MAX_READS_PER_HOST));
+        permits.acquireUninterruptibly();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(permits, task, 1, INITIAL_BACKOFF_MILLIS, result);
+        return result;
+    }
+
+    /**
+     * @param permits the permits of the host, one of which is already held for this attempt
+     */
+    private static <T> void attempt(Semaphore permits, Callable<T> task, int attempt, long backoff, CompletableFuture<T> result) {
+        try {
+            execute(permits, () -> {
+                if (result.isDone()) {
+                    // cancelled while waiting to be retried
+                    return null;
+                }
+                try {
+                    result.complete(task.call());
+                } catch (RetryableException e) {
+                    if (attempt == MAX_ATTEMPTS) {
+                        result.completeExceptionally(e);
+                    } else {
+                        final long delay = Math.min(e.getRetryAfterMillis() < 0 ? backoff : e.getRetryAfterMillis(), MAX_BACKOFF_MILLIS);
+                        LOG.info("Read failed with {}, retrying in {}ms", e.getStatusCode(), delay);
+                        RETRIES.schedule(() -> retry(permits, task, attempt + 1, 2 * backoff, result), delay, TimeUnit.MILLISECONDS);
+                    }
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Runs on the scheduler, which must not block, so a busy host is checked again a little later instead of waited for
+     */
+    private static <T> void retry(Semaphore permits, Callable<T> task, int attempt, long backoff, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            return;
+        }
+        if (permits.tryAcquire()) {
+            attempt(permits, task, attempt, backoff, result);
+        } else {
+            RETRIES.schedule(() -> retry(permits, task, attempt, backoff, result), PERMIT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param permits the permits of the host, one of which is already held for this task
+     */
+    private static <T> Future<T> execute(Semaphore permits, Callable<T> task) {
+        PermitTask<T> future = new PermitTask<>(task, permits);
+        try {
+            EXECUTOR.execute(future);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Holds a permit of its host from submission until it is done, a task cancelled before it started is done too
+     */
+    private static final class PermitTask<T> extends FutureTask<T> {
+        private final Semaphore permits;
+
+        PermitTask(Callable<T> task, Semaphore permits) {
+            super(task);
+            this.permits = permits;
+        }
+
+        @Override
+        protected void done() {
+            permits.release();
+        }
+    }
+}
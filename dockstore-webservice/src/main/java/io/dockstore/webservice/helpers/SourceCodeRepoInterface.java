@@ -51,6 +51,7 @@ public abstract class SourceCodeRepoInterface {
 
     String gitUsername;
     String gitRepository;
+    boolean skipUnchangedVersions = false;
 
     /**
      * If this interface is pointed at a specific repository, grab a
@@ -112,6 +113,24 @@ public abstract class SourceCodeRepoInterface {
         this.gitRepository = repository;
     }
 
+    /**
+     * When set, versions whose commit has not changed since they were last read keep their files instead of being read again.
+     * Only implemented for GitHub, which reports the commit of every branch and tag.
+     *
+     * @param skipUnchangedVersions whether to skip unchanged versions
+     */
+    public void setSkipUnchangedVersions(boolean skipUnchangedVersions) {
+        this.skipUnchangedVersions = skipUnchangedVersions;
+    }
+
+    /**
+     * Record how much of its rate limit the token used by this repository has left, see {@link RateLimits}.
+     * Only needed where requests do not go through ResourceUtilities, which records it on every response.
+     */
+    public void updateRateLimit() {
+        // rate limits are recorded as responses come in
+    }
+
     /**
      * Get a map of git url to an id that can uniquely identify a repository
      *
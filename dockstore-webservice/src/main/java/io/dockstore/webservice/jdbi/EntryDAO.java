@@ -18,8 +18,20 @@ package io.dockstore.webservice.jdbi;
 
 import java.lang.reflect.ParameterizedType;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
 
 import io.dockstore.webservice.core.Entry;
 import io.dockstore.webservice.core.Tool;
@@ -28,13 +40,34 @@ import io.dropwizard.hibernate.AbstractDAO;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
+import org.hibernate.type.BigIntegerType;
+import org.hibernate.type.StringType;
 
 /**
  * @author dyuen
  */
 public abstract class EntryDAO<T extends Entry> extends AbstractDAO<T> {
 
+    /**
+     * Versions of the entries along with their files, without it they are loaded a batch of entries at a time when first used
+     */
+    public static final String FULL_GRAPH = "full";
+    /**
+     * Largest page of search results the webservice returns
+     */
+    public static final int MAX_SEARCH_LIMIT = 1000;
+    /**
+     * SQL function that compares its argument byte by byte ("C" collation) whatever the database collation is,
+     * so that pages of entries can be merged in Java in the same order as the database returns them
+     */
+    public static final String BINARY_COLLATION_FUNCTION = "binary_collation";
+    /**
+     * Template of {@link #BINARY_COLLATION_FUNCTION}, registered with Hibernate when the session factory is built
+     */
+    public static final String BINARY_COLLATION_TEMPLATE = "(?1 collate \"C\")";
+
     public final int registryIndex = 0;
     public final int orgIndex = 1;
     public final int repoIndex = 2;
@@ -94,7 +127,11 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDAO<T> {
             queryString += "NullName";
         }
 
-        Query query = super.namedQuery(queryString);
+        // cached with the path queries of tools and workflows, declaring the tables read lets writes to them invalidate the results
+        NativeQuery query = (NativeQuery)super.namedQuery(queryString);
+        query.addScalar("type", StringType.INSTANCE).addScalar("id", BigIntegerType.INSTANCE);
+        query.addSynchronizedEntityClass(Tool.class).addSynchronizedEntityClass(Workflow.class);
+        query.setCacheable(true).setCacheRegion("paths");
 
         query.setParameter("one", one);
         query.setParameter("two", two);
@@ -143,13 +180,177 @@ public abstract class EntryDAO<T extends Entry> extends AbstractDAO<T> {
         return list(namedQuery("io.dockstore.webservice.core." + typeOfT.getSimpleName() + ".findAll"));
     }
 
+    /**
+     * Cheap to compute, for caching documents that list all published entries
+     *
+     * @return a value that changes whenever an entry is published, unpublished, updated or deleted while published
+     */
+    public String getPublishedState() {
+        Object[] state = currentSession()
+            .createQuery("SELECT count(e), max(e.dbUpdateDate) FROM " + typeOfT.getSimpleName() + " e WHERE e.isPublished = true", Object[].class)
+            .getSingleResult();
+        return state[0] + "@" + state[1];
+    }
+
     public List<T> findAllPublished() {
         return list(namedQuery("io.dockstore.webservice.core." + typeOfT.getSimpleName() + ".findAllPublished"));
     }
 
-    public List<T> searchPattern(String pattern) {
-        pattern = '%' + pattern + '%';
-        return list(
-                namedQuery("io.dockstore.webservice.core." + typeOfT.getSimpleName() + ".searchPattern").setParameter("pattern", pattern));
+    /**
+     * @param graph the collections to load along with the entries, e.g. {@link #FULL_GRAPH}
+     */
+    public List<T> findAllPublished(String graph) {
+        Query<T> query = namedQuery("io.dockstore.webservice.core." + typeOfT.getSimpleName() + ".findAllPublished");
+        return list(withGraph(query, graph)).stream().distinct().collect(Collectors.toList());
+    }
+
+    /**
+     * Load the collections of an entity graph in the same query instead of one batch at a time.
+     * Each type of entry defines the graphs as named entity graphs called Type.graph
+     */
+    protected Query<T> withGraph(Query<T> query, String graph) {
+        return query.setHint("javax.persistence.fetchgraph", currentSession().getEntityGraph(typeOfT.getSimpleName() + '.' + graph));
+    }
+
+    /**
+     * Finds one page of published entries ordered by (gitUrl, id), starting strictly after the given key.
+     * Git urls are compared byte by byte, see {@link #BINARY_COLLATION_FUNCTION}
+     *
+     * @param filter      substring filters to apply
+     * @param afterGitUrl git url of the last entry of the previous page, null to start from the beginning
+     * @param afterId     id of the last entry of the previous page, ignored when afterGitUrl is null
+     * @param limit       maximum number of keys to return
+     * @return (gitUrl, id, dbUpdateDate, lastUpdated) of matching entries, gitUrl is never null
+     */
+    public List<Object[]> findPublishedKeys(EntryFilter filter, String afterGitUrl, Long afterId, int limit) {
+        return findPublishedKeys(filter, afterGitUrl, afterId, limit, true);
+    }
+
+    /**
+     * Finds the published entries at the end of the (gitUrl, id) order, used to point at the last page without counting through the
+     * ones before it
+     *
+     * @param filter substring filters to apply
+     * @param limit  maximum number of keys to return
+     * @return (gitUrl, id, dbUpdateDate, lastUpdated) of matching entries, the last one first
+     */
+    public List<Object[]> findLastPublishedKeys(EntryFilter filter, int limit) {
+        return findPublishedKeys(filter, null, null, limit, false);
+    }
+
+    private List<Object[]> findPublishedKeys(EntryFilter filter, String afterGitUrl, Long afterId, int limit, boolean ascending) {
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<T> root = query.from(typeOfT);
+        Expression<String> gitUrl = cb.function(BINARY_COLLATION_FUNCTION, String.class, cb.coalesce(root.<String>get("gitUrl"), ""));
+        Expression<Long> id = root.<Long>get("id");
+
+        List<Predicate> predicates = publishedPredicates(cb, root, filter);
+        if (afterGitUrl != null) {
+            predicates.add(cb.or(cb.greaterThan(gitUrl, afterGitUrl), cb.and(cb.equal(gitUrl, afterGitUrl), cb.greaterThan(id, afterId))));
+        }
+        // the timestamps tell whether a converted entry cached by the caller is still current without loading the entry
+        query.multiselect(gitUrl, id, root.get("dbUpdateDate"), root.get("lastUpdated")).where(predicates.toArray(new Predicate[0]));
+        if (ascending) {
+            query.orderBy(cb.asc(gitUrl), cb.asc(id));
+        } else {
+            query.orderBy(cb.desc(gitUrl), cb.desc(id));
+        }
+        return currentSession().createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * @param filter substring filters to apply
+     * @return the number of published entries matching the filter
+     */
+    public long countPublished(EntryFilter filter) {
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(typeOfT);
+        query.select(cb.count(root)).where(publishedPredicates(cb, root, filter).toArray(new Predicate[0]));
+        return currentSession().createQuery(query).getSingleResult();
+    }
+
+    /**
+     * Finds one batch of published entries ordered by id, used to walk through all of them without loading them at once
+     *
+     * @param afterId id of the last entry of the previous batch, 0 to start from the beginning
+     * @param limit   maximum number of entries to return
+     * @return published entries with an id greater than afterId
+     */
+    public List<T> findPublishedAfterId(long afterId, int limit) {
+        CriteriaBuilder cb = currentSession().getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(typeOfT);
+        Root<T> root = query.from(typeOfT);
+        Expression<Long> id = root.<Long>get("id");
+        query.select(root).where(cb.isTrue(root.<Boolean>get("isPublished")), cb.greaterThan(id, afterId)).orderBy(cb.asc(id));
+        return currentSession().createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Detaches everything loaded by the current session, pending changes are lost
+     */
+    public void clearSession() {
+        currentSession().clear();
+    }
+
+    /**
+     * Loads the entries with the given ids in a single round trip
+     *
+     * @param ids ids of the entries to load
+     * @return the entries in the same order as the ids, ids without an entry are skipped
+     */
+    public List<T> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Query<T> query = currentSession().createQuery("SELECT e FROM " + typeOfT.getSimpleName() + " e WHERE e.id IN (:ids)", typeOfT)
+            .setParameterList("ids", ids);
+        Map<Long, T> entries = new HashMap<>();
+        list(withGraph(query, FULL_GRAPH)).forEach(entry -> entries.put(entry.getId(), entry));
+        return ids.stream().map(entries::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Builds the predicates restricting a query to published entries matching the filter.
+     * Subclasses add predicates for the columns only they have.
+     *
+     * @param cb     criteria builder of the current session
+     * @param root   the queried entry
+     * @param filter substring filters to apply
+     * @return a mutable list of predicates
+     */
+    protected List<Predicate> publishedPredicates(CriteriaBuilder cb, Root<T> root, EntryFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isTrue(root.<Boolean>get("isPublished")));
+        addContainsPredicate(cb, predicates, root.<String>get("description"), filter.getDescription());
+        addContainsPredicate(cb, predicates, root.<String>get("author"), filter.getAuthor());
+        return predicates;
+    }
+
+    /**
+     * Matches rows where the column is null or contains the value, equivalent to String.contains for non-null columns
+     */
+    protected void addContainsPredicate(CriteriaBuilder cb, List<Predicate> predicates, Expression<String> column, String value) {
+        if (value != null) {
+            predicates.add(cb.or(cb.isNull(column), cb.greaterThan(cb.locate(column, value), 0)));
+        }
+    }
+
+    /**
+     * Finds one page of the published entries whose path or description contains the given text, ignoring case.
+     * Matches are ranked by how closely a word of the entry resembles the text, using the trigram index on searchtext.
+     *
+     * @param text   text to look for, null matches all published entries
+     * @param offset number of matches to skip
+     * @param limit  maximum number of entries to return
+     * @return the matching entries, best matches first
+     */
+    public List<T> search(String text, int offset, int limit) {
+        String word = text == null ? "" : text.toLowerCase(Locale.ROOT);
+        String pattern = '%' + word.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + '%';
+        List<BigInteger> ids = list(namedQuery(typeOfT.getSimpleName() + ".search").setParameter("pattern", pattern).setParameter("word", word)
+            .setFirstResult(offset).setMaxResults(limit));
+        return findByIds(ids.stream().map(BigInteger::longValue).collect(Collectors.toList()));
     }
 }
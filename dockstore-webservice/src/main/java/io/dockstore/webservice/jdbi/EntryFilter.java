@@ -0,0 +1,77 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.jdbi;
+
+/**
+ * Substring filters used when listing published entries, mirrors the query parameters of GA4GH GET /tools.
+ * A null filter matches everything. A filter on a column also matches rows where that column is null.
+ */
+public class EntryFilter {
+    private final String registryId;
+    private final String registry;
+    private final String organization;
+    private final String name;
+    private final String toolname;
+    private final String description;
+    private final String author;
+
+    public EntryFilter(String registryId, String registry, String organization, String name, String toolname, String description,
+        String author) {
+        this.registryId = registryId;
+        this.registry = registry;
+        this.organization = organization;
+        this.name = name;
+        this.toolname = toolname;
+        this.description = description;
+        this.author = author;
+    }
+
+    public String getRegistryId() {
+        return registryId;
+    }
+
+    public String getRegistry() {
+        return registry;
+    }
+
+    public String getOrganization() {
+        return organization;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getToolname() {
+        return toolname;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * @return true if any filter only makes sense for tools, in which case workflows never match
+     */
+    public boolean hasToolCriteria() {
+        return registryId != null || registry != null || organization != null || name != null || toolname != null;
+    }
+}
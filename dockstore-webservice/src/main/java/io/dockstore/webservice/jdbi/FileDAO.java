@@ -16,7 +16,17 @@
 
 package io.dockstore.webservice.jdbi;
 
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
 import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.SourceFileStatistics;
+import io.dockstore.webservice.core.Version;
 import io.dropwizard.hibernate.AbstractDAO;
 import org.hibernate.SessionFactory;
 
@@ -24,6 +34,9 @@ import org.hibernate.SessionFactory;
  * @author xliu
  */
 public class FileDAO extends AbstractDAO<SourceFile> {
+    private static final String DELETE_UNUSED_CONTENT = "DELETE FROM sourcefilecontent WHERE hash IN (SELECT c.hash FROM sourcefilecontent c "
+        + "WHERE NOT EXISTS (SELECT 1 FROM sourcefile f WHERE f.contenthash = c.hash) LIMIT ? FOR UPDATE SKIP LOCKED)";
+
     public FileDAO(SessionFactory sessionFactory) {
         super(sessionFactory);
     }
@@ -35,4 +48,70 @@ public class FileDAO extends AbstractDAO<SourceFile> {
     public long create(SourceFile file) {
         return persist(file).getId();
     }
+
+    /**
+     * Replace the files of a version with files read from source control, only writing what changed.
+     * Files are matched by type and path, files whose content changed are updated in place, files that are new are
+     * inserted and files that are gone are removed. Unchanged files are left alone, so refreshing does not rewrite them.
+     *
+     * @param version  a persistent version
+     * @param newFiles the files the version should have, not yet persisted
+     * @return whether any file was inserted, updated or removed
+     */
+    public boolean updateSourceFiles(Version version, Collection<SourceFile> newFiles) {
+        Set<SourceFile> sourceFiles = version.getSourceFiles();
+        Map<String, SourceFile> existingFiles = new HashMap<>();
+        sourceFiles.forEach(file -> existingFiles.put(key(file), file));
+
+        boolean changed = false;
+        Set<String> newKeys = new HashSet<>();
+        for (SourceFile newFile : newFiles) {
+            String key = key(newFile);
+            if (!newKeys.add(key)) {
+                continue;
+            }
+            SourceFile existingFile = existingFiles.get(key);
+            if (existingFile == null) {
+                create(newFile);
+                sourceFiles.add(newFile);
+                changed = true;
+            } else if (!Objects.equals(existingFile.getContentHash(), newFile.getContentHash())) {
+                // the content is part of the hash code, take the file out of the set while changing it
+                sourceFiles.remove(existingFile);
+                existingFile.setContent(newFile.getContent());
+                sourceFiles.add(existingFile);
+                changed = true;
+            }
+        }
+        return sourceFiles.removeIf(file -> !newKeys.contains(key(file))) || changed;
+    }
+
+    /**
+     * @return how much the content of all source files takes up compared to the content actually stored
+     */
+    public SourceFileStatistics getStorageStatistics() {
+        Object[] row = (Object[])namedQuery("SourceFile.getStorageStatistics").uniqueResult();
+        return new SourceFileStatistics(((Number)row[0]).longValue(), ((Number)row[1]).longValue(), ((Number)row[2]).longValue(),
+            ((Number)row[3]).longValue());
+    }
+
+    /**
+     * Delete content that no file uses anymore, for instance the previous content of files changed by a refresh.
+     * Content locked by a transaction that is writing a file with it is skipped, see {@link SourceFileContentListener}.
+     *
+     * @param limit how many rows to delete at most
+     * @return how many rows were deleted
+     */
+    public int deleteUnusedContent(int limit) {
+        return currentSession().doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_UNUSED_CONTENT)) {
+                statement.setInt(1, limit);
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    private static String key(SourceFile file) {
+        return file.getType() + ":" + file.getPath();
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.jdbi;
+
+import java.util.List;
+
+import io.dockstore.webservice.core.RefreshJob;
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.Query;
+
+/**
+ * Counters are updated in the database rather than on the entity since repositories are refreshed concurrently
+ */
+public class RefreshJobDAO extends AbstractDAO<RefreshJob> {
+
+    public RefreshJobDAO(SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    public RefreshJob findById(Long id) {
+        return get(id);
+    }
+
+    public long create(RefreshJob job) {
+        return persist(job).getId();
+    }
+
+    public List<RefreshJob> findByStatus(RefreshJob.Status status) {
+        return list(namedQuery("io.dockstore.webservice.core.RefreshJob.findByStatus").setParameter("status", status));
+    }
+
+    public void addRepositories(long id, int count) {
+        namedQuery("io.dockstore.webservice.core.RefreshJob.addRepositories").setParameter("id", id).setParameter("count", count)
+            .executeUpdate();
+    }
+
+    /**
+     * Forget repositories that were found but not refreshed, they are found again when the job resumes
+     */
+    public void resetRepositories(long id) {
+        namedQuery("io.dockstore.webservice.core.RefreshJob.resetRepositories").setParameter("id", id).executeUpdate();
+    }
+
+    /**
+     * @return git urls of the repositories the job has already refreshed or failed to refresh
+     */
+    public List<String> findRepositories(long id) {
+        Query query = namedQuery("RefreshJob.findRepositories").setParameter("id", id);
+        return list(query);
+    }
+
+    public void recordRepository(long id, String gitUrl, boolean failed) {
+        namedQuery("RefreshJob.addRepository").setParameter("id", id).setParameter("gitUrl", gitUrl)
+            .setParameter("failed", failed).executeUpdate();
+        String counter = failed ? "failRepository" : "completeRepository";
+        namedQuery("io.dockstore.webservice.core.RefreshJob." + counter).setParameter("id", id).executeUpdate();
+    }
+}
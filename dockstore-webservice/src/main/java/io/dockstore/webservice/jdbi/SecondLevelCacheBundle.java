@@ -0,0 +1,95 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.jdbi;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration.CacheRegionConfig;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration.SecondLevelCacheConfig;
+import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory;
+
+/**
+ * Turns on the Hibernate second-level and query cache when the configuration enables it.
+ * Must be added before the Hibernate bundle, the cache manager and properties have to be in place when the session factory is built.
+ * The regions are named in the @Cache annotations of the entities and the cacheRegion hints of the queries.
+ */
+public class SecondLevelCacheBundle implements ConfiguredBundle<DockstoreWebserviceConfiguration> {
+    /**
+     * named to match the regions used in io.dockstore.webservice.core
+     */
+    private static final List<String> REGIONS = Arrays.asList("entry", "version", "sourcefile", "sourcefilecontent", "label", "collections",
+        "paths");
+    /**
+     * when each table was last written, query results older than that are stale, so it must never evict or expire
+     */
+    private static final String UPDATE_TIMESTAMPS_REGION = "org.hibernate.cache.spi.UpdateTimestampsCache";
+
+    @Override
+    public void initialize(Bootstrap<?> bootstrap) {
+        // nothing to do until the configuration is read
+    }
+
+    @Override
+    public void run(DockstoreWebserviceConfiguration configuration, Environment environment) {
+        SecondLevelCacheConfig cacheConfig = configuration.getSecondLevelCacheConfiguration();
+        if (!cacheConfig.isEnabled()) {
+            return;
+        }
+
+        Configuration managerConfiguration = new Configuration().name("dockstore").updateCheck(false)
+            .defaultCache(regionConfiguration("default", cacheConfig.getDefaultRegion()));
+        REGIONS.forEach(region -> managerConfiguration.addCache(regionConfiguration(region, cacheConfig.getRegion(region))));
+        managerConfiguration.addCache(new CacheConfiguration(UPDATE_TIMESTAMPS_REGION, 0).eternal(true));
+        // the singleton region factory picks up this manager instead of creating its own
+        CacheManager manager = CacheManager.create(managerConfiguration);
+
+        // properties set in the database configuration win
+        Map<String, String> properties = configuration.getDataSourceFactory().getProperties();
+        properties.putIfAbsent("hibernate.cache.use_second_level_cache", "true");
+        properties.putIfAbsent("hibernate.cache.use_query_cache", "true");
+        properties.putIfAbsent("hibernate.cache.region.factory_class", SingletonEhCacheRegionFactory.class.getName());
+
+        for (String region : REGIONS) {
+            registerMetrics(environment.metrics(), manager.getEhcache(region));
+        }
+    }
+
+    private static CacheConfiguration regionConfiguration(String name, CacheRegionConfig regionConfig) {
+        return new CacheConfiguration(name, regionConfig.getMaxEntries()).timeToLiveSeconds(regionConfig.getTimeToLiveSeconds());
+    }
+
+    private static void registerMetrics(MetricRegistry metrics, Ehcache cache) {
+        String prefix = MetricRegistry.name("hibernate", "cache", cache.getName());
+        metrics.register(MetricRegistry.name(prefix, "hits"), (Gauge<Long>)() -> cache.getStatistics().cacheHitCount());
+        metrics.register(MetricRegistry.name(prefix, "misses"), (Gauge<Long>)() -> cache.getStatistics().cacheMissCount());
+        metrics.register(MetricRegistry.name(prefix, "puts"), (Gauge<Long>)() -> cache.getStatistics().cachePutCount());
+        metrics.register(MetricRegistry.name(prefix, "evictions"), (Gauge<Long>)() -> cache.getStatistics().cacheEvictedCount());
+        metrics.register(MetricRegistry.name(prefix, "size"), (Gauge<Integer>)cache::getSize);
+    }
+}
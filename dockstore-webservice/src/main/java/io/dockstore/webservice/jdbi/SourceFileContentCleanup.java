@@ -0,0 +1,83 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.jdbi;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Every hour, deletes the content of source files that no file uses anymore.
+ * Content is deleted in batches, each in its own transaction, so that a run never keeps many rows locked.
+ * Only use instances created by UnitOfWorkAwareProxyFactory, batches rely on it to open sessions.
+ */
+public class SourceFileContentCleanup implements Managed {
+    private static final Logger LOG = LoggerFactory.getLogger(SourceFileContentCleanup.class);
+    private static final long INTERVAL_MINUTES = 60;
+    private static final int BATCH_SIZE = 1000;
+
+    private final FileDAO fileDAO;
+    private ScheduledExecutorService scheduler;
+
+    public SourceFileContentCleanup(FileDAO fileDAO) {
+        this.fileDAO = fileDAO;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("sourcefile-content-cleanup-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(this::cleanUp, INTERVAL_MINUTES, INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @return how many rows were deleted
+     */
+    public long cleanUp() {
+        long deleted = 0;
+        try {
+            int batch;
+            do {
+                // through the proxy, to get a session
+                batch = deleteBatch();
+                deleted += batch;
+            } while (batch == BATCH_SIZE && !Thread.currentThread().isInterrupted());
+        } catch (RuntimeException e) {
+            LOG.warn("Could not delete unused source file content", e);
+        }
+        if (deleted > 0) {
+            LOG.info("Deleted " + deleted + " unused source file contents");
+        }
+        return deleted;
+    }
+
+    @UnitOfWork
+    public int deleteBatch() {
+        return fileDAO.deleteUnusedContent(BATCH_SIZE);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.jdbi;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import io.dockstore.webservice.core.SourceFile;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+
+/**
+ * Source files only store the hash of their content, the content itself is stored once per hash in sourcefilecontent.
+ * Before a source file is written with new content, makes sure the row for its content exists, whichever way the file got persisted.
+ * The row is kept from being deleted as unused until the transaction writing the file completes, see
+ * {@link FileDAO#deleteUnusedContent(int)}.
+ */
+public class SourceFileContentListener implements PreInsertEventListener, PreUpdateEventListener {
+    private static final String INSERT_CONTENT = "INSERT INTO sourcefilecontent (hash, content) VALUES (?, ?) ON CONFLICT DO NOTHING";
+    private static final String LOCK_CONTENT = "SELECT hash FROM sourcefilecontent WHERE hash = ? FOR KEY SHARE";
+    private static final String CONTENT_HASH = "contentHash";
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        if (event.getEntity() instanceof SourceFile) {
+            SourceFile file = (SourceFile)event.getEntity();
+            if (file.getContentHash() != null) {
+                event.getSession().doWork(connection -> storeContent(connection, file.getContentHash(), file.getContent()));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Files are also updated when only their path changed, their content is then already stored
+     */
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        if (event.getEntity() instanceof SourceFile) {
+            SourceFile file = (SourceFile)event.getEntity();
+            Object[] oldState = event.getOldState();
+            int contentHashIndex = Arrays.asList(event.getPersister().getPropertyNames()).indexOf(CONTENT_HASH);
+            boolean unchanged = oldState != null && Objects.equals(oldState[contentHashIndex], file.getContentHash());
+            if (file.getContentHash() != null && !unchanged) {
+                event.getSession().doWork(connection -> storeContent(connection, file.getContentHash(), file.getContent()));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Insert the content, or lock the row that is already there. If the row was deleted as unused in the meantime, insert it again.
+     */
+    private static void storeContent(Connection connection, String hash, String content) throws SQLException {
+        boolean stored;
+        do {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_CONTENT)) {
+                insert.setString(1, hash);
+                insert.setString(2, content);
+                stored = insert.executeUpdate() == 1;
+            }
+            if (!stored) {
+                try (PreparedStatement lock = connection.prepareStatement(LOCK_CONTENT)) {
+                    lock.setString(1, hash);
+                    try (ResultSet resultSet = lock.executeQuery()) {
+                        stored = resultSet.next();
+                    }
+                }
+            }
+        } while (!stored);
+    }
+}
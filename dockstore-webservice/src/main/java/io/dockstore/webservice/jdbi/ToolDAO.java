@@ -16,10 +16,17 @@
 
 package io.dockstore.webservice.jdbi;
 
+import java.util.Collection;
 import java.util.List;
 
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.ToolMode;
+import io.dockstore.webservice.core.ToolSummary;
 import io.dockstore.webservice.helpers.JsonLdRetriever;
 import org.hibernate.SessionFactory;
 import org.hibernate.query.Query;
@@ -32,10 +39,36 @@ public class ToolDAO extends EntryDAO<Tool> {
         super(factory);
     }
 
+    /**
+     * @return summaries of published tools, most starred first, without loading tags or files
+     */
+    public List<ToolSummary> findAllPublishedSummaries() {
+        return currentSession().createNamedQuery("io.dockstore.webservice.core.Tool.findAllPublishedSummaries", ToolSummary.class).list();
+    }
+
+    /**
+     * @param limit maximum number of summaries to return
+     * @return summaries of the most recently updated published tools, most recent first
+     */
+    public List<ToolSummary> findRecentPublishedSummaries(int limit) {
+        return currentSession().createNamedQuery("io.dockstore.webservice.core.Tool.findRecentPublishedSummaries", ToolSummary.class)
+            .setMaxResults(limit).list();
+    }
+
     public List<Tool> findByMode(final ToolMode mode) {
         return list(namedQuery("io.dockstore.webservice.core.Tool.findByMode").setParameter("mode", mode));
     }
 
+    /**
+     * @param registry   the registry of the tools
+     * @param namespaces the namespaces to look in
+     * @return all tools in the given namespaces of a registry, whichever users they belong to
+     */
+    public List<Tool> findByRegistryAndNamespaces(String registry, Collection<String> namespaces) {
+        return list(namedQuery("io.dockstore.webservice.core.Tool.findByRegistryAndNamespaces").setParameter("registry", registry)
+            .setParameterList("namespaces", namespaces));
+    }
+
     /**
      * Finds all tools with the given path (ignores tool name)
      * When findPublished is true, will only look at published tools
@@ -129,6 +162,25 @@ public class ToolDAO extends EntryDAO<Tool> {
         return uniqueResult(query);
     }
 
+    @Override
+    protected List<Predicate> publishedPredicates(CriteriaBuilder cb, Root<Tool> root, EntryFilter filter) {
+        List<Predicate> predicates = super.publishedPredicates(cb, root, filter);
+        addContainsPredicate(cb, predicates, root.<String>get("registry"), filter.getRegistry());
+        addContainsPredicate(cb, predicates, root.<String>get("namespace"), filter.getOrganization());
+        addContainsPredicate(cb, predicates, root.<String>get("name"), filter.getName());
+        addContainsPredicate(cb, predicates, root.<String>get("toolname"), filter.getToolname());
+        if (filter.getRegistryId() != null) {
+            // the id matches when it contains the tool path, see Tool.getToolPath()
+            Expression<String> toolname = root.get("toolname");
+            Expression<String> path = cb.concat(cb.concat(root.<String>get("registry"), "/"), root.<String>get("namespace"));
+            path = cb.concat(cb.concat(path, "/"), root.<String>get("name"));
+            Expression<String> toolPath = cb.<String>selectCase().when(cb.or(cb.isNull(toolname), cb.equal(toolname, "")), path)
+                .otherwise(cb.concat(cb.concat(path, "/"), toolname));
+            predicates.add(cb.greaterThan(cb.locate(cb.literal(filter.getRegistryId()), toolPath), 0));
+        }
+        return predicates;
+    }
+
     public List<Tool> findPublishedByNamespace(String namespace) {
         return list(namedQuery("io.dockstore.webservice.core.Tool.findPublishedByNamespace").setParameter("namespace", namespace));
     }
@@ -19,6 +19,7 @@ package io.dockstore.webservice.jdbi;
 import java.util.List;
 
 import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.core.WorkflowSummary;
 import org.hibernate.SessionFactory;
 import org.hibernate.query.Query;
 
@@ -124,6 +125,23 @@ public class WorkflowDAO extends EntryDAO<Workflow> {
     }
 
 
+    /**
+     * @return summaries of published workflows, most starred first, without loading versions or files
+     */
+    public List<WorkflowSummary> findAllPublishedSummaries() {
+        return currentSession().createNamedQuery("io.dockstore.webservice.core.Workflow.findAllPublishedSummaries", WorkflowSummary.class)
+            .list();
+    }
+
+    /**
+     * @param limit maximum number of summaries to return
+     * @return summaries of the most recently updated published workflows, most recent first
+     */
+    public List<WorkflowSummary> findRecentPublishedSummaries(int limit) {
+        return currentSession().createNamedQuery("io.dockstore.webservice.core.Workflow.findRecentPublishedSummaries", WorkflowSummary.class)
+            .setMaxResults(limit).list();
+    }
+
     public List<Workflow> findByGitUrl(String giturl) {
         return list(namedQuery("io.dockstore.webservice.core.Workflow.findByGitUrl")
             .setParameter("gitUrl", giturl));
@@ -27,4 +27,13 @@ public class WorkflowVersionDAO extends VersionDAO<WorkflowVersion> {
     public WorkflowVersionDAO(SessionFactory sessionFactory) {
         super(sessionFactory);
     }
+
+    /**
+     * @param image an image as it appears in tool tables, without a tag
+     * @return how many versions whose tool table mentions the image were cleared
+     */
+    public int clearArtifactHashByImage(String image) {
+        return namedQuery("io.dockstore.webservice.core.WorkflowVersion.clearArtifactHashByImage")
+            .setParameter("pattern", "%" + image + "%").executeUpdate();
+    }
 }
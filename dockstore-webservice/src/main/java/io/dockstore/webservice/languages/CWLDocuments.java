@@ -0,0 +1,115 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.dockstore.webservice.languages;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Strings;
+import com.google.gson.Gson;
+import io.cwl.avro.CommandLineTool;
+import io.cwl.avro.ExpressionTool;
+import org.json.JSONObject;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * CWL documents parsed while handling one request.
+ * Steps of large workflows often run the same file, each distinct content is only parsed once.
+ */
+class CWLDocuments {
+    static final String WORKFLOW = "Workflow";
+    static final String COMMAND_LINE_TOOL = "CommandLineTool";
+    static final String EXPRESSION_TOOL = "ExpressionTool";
+
+    private final Yaml yaml = new Yaml();
+    private final Gson gson;
+    private final Map<String, Document> documents = new HashMap<>();
+
+    /**
+     * @param gson type safe CWL parser, see io.cwl.avro.CWL
+     */
+    CWLDocuments(Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * @param content YAML or JSON of a CWL document
+     * @return the parsed document, null if there is no content
+     */
+    Document get(String content) {
+        if (Strings.isNullOrEmpty(content)) {
+            return null;
+        }
+        Document document = documents.get(content);
+        if (document == null) {
+            document = parse(content);
+            documents.put(content, document);
+        }
+        return document;
+    }
+
+    private Document parse(String content) {
+        Map<String, Object> mapping = (Map<String, Object>)yaml.load(content);
+        String cwlClass = mapping == null || mapping.get("class") == null ? null : mapping.get("class").toString();
+        List<Object> requirements = null;
+        List<Object> hints = null;
+        if (EXPRESSION_TOOL.equals(cwlClass)) {
+            final ExpressionTool expressionTool = gson.fromJson(new JSONObject(mapping).toString(), ExpressionTool.class);
+            requirements = expressionTool.getRequirements();
+            hints = expressionTool.getHints();
+        } else if (COMMAND_LINE_TOOL.equals(cwlClass)) {
+            final CommandLineTool commandLineTool = gson.fromJson(new JSONObject(mapping).toString(), CommandLineTool.class);
+            requirements = commandLineTool.getRequirements();
+            hints = commandLineTool.getHints();
+        } else if (WORKFLOW.equals(cwlClass)) {
+            final io.cwl.avro.Workflow workflow = gson.fromJson(new JSONObject(mapping).toString(), io.cwl.avro.Workflow.class);
+            requirements = workflow.getRequirements();
+            hints = workflow.getHints();
+        }
+        return new Document(cwlClass, requirements, hints);
+    }
+
+    /**
+     * A parsed CWL document with what the DAG and tool table need from it
+     */
+    static final class Document {
+        private final String cwlClass;
+        private final List<Object> requirements;
+        private final List<Object> hints;
+
+        Document(String cwlClass, List<Object> requirements, List<Object> hints) {
+            this.cwlClass = cwlClass;
+            this.requirements = requirements;
+            this.hints = hints;
+        }
+
+        /**
+         * @return Workflow, CommandLineTool, ExpressionTool or null if there is no class
+         */
+        String getCwlClass() {
+            return cwlClass;
+        }
+
+        List<Object> getRequirements() {
+            return requirements;
+        }
+
+        List<Object> getHints() {
+            return hints;
+        }
+    }
+}
@@ -29,8 +29,6 @@ import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
-import io.cwl.avro.CommandLineTool;
-import io.cwl.avro.ExpressionTool;
 import io.cwl.avro.WorkflowOutputParameter;
 import io.cwl.avro.WorkflowStep;
 import io.cwl.avro.WorkflowStepInput;
@@ -193,6 +191,8 @@ public class CWLHandler implements LanguageHandlerInterface {
             Gson gson;
             try {
                 gson = io.cwl.avro.CWL.getTypeSafeCWLToolDocument();
+                // steps often run the same files, only parse each of them once
+                CWLDocuments documents = new CWLDocuments(gson);
 
                 final io.cwl.avro.Workflow workflow = gson.fromJson(cwlJson.toString(), io.cwl.avro.Workflow.class);
 
@@ -247,23 +247,24 @@ public class CWLHandler implements LanguageHandlerInterface {
                     // Check for docker requirement within workflow step file
                     String secondaryFile = null;
                     Object run = workflowStep.getRun();
-                    String runAsJson = gson.toJson(gson.toJsonTree(run));
+                    CWLDocuments.Document inlineRun = null;
+                    if (!(run instanceof String)) {
+                        inlineRun = documents.get(gson.toJson(gson.toJsonTree(run)));
+                    }
+                    String inlineClass = inlineRun == null ? null : inlineRun.getCwlClass();
 
                     if (run instanceof String) {
                         secondaryFile = (String)run;
-                    } else if (isTool(runAsJson, yaml)) {
-                        CommandLineTool clTool = gson.fromJson(runAsJson, CommandLineTool.class);
-                        stepDockerRequirement = getRequirementOrHint(clTool.getRequirements(), clTool.getHints(), gson,
+                    } else if (CWLDocuments.COMMAND_LINE_TOOL.equals(inlineClass)) {
+                        stepDockerRequirement = getRequirementOrHint(inlineRun.getRequirements(), inlineRun.getHints(), gson,
                             stepDockerRequirement);
                         stepToType.put(workflowStepId, toolType);
-                    } else if (isWorkflow(runAsJson, yaml)) {
-                        io.cwl.avro.Workflow stepWorkflow = gson.fromJson(runAsJson, io.cwl.avro.Workflow.class);
-                        stepDockerRequirement = getRequirementOrHint(stepWorkflow.getRequirements(), stepWorkflow.getHints(), gson,
+                    } else if (CWLDocuments.WORKFLOW.equals(inlineClass)) {
+                        stepDockerRequirement = getRequirementOrHint(inlineRun.getRequirements(), inlineRun.getHints(), gson,
                             stepDockerRequirement);
                         stepToType.put(workflowStepId, workflowType);
-                    } else if (isExpressionTool(runAsJson, yaml)) {
-                        ExpressionTool expressionTool = gson.fromJson(runAsJson, ExpressionTool.class);
-                        stepDockerRequirement = getRequirementOrHint(expressionTool.getRequirements(), expressionTool.getHints(), gson,
+                    } else if (CWLDocuments.EXPRESSION_TOOL.equals(inlineClass)) {
+                        stepDockerRequirement = getRequirementOrHint(inlineRun.getRequirements(), inlineRun.getHints(), gson,
                             stepDockerRequirement);
                         stepToType.put(workflowStepId, expressionToolType);
                     } else if (run instanceof Map) {
@@ -281,13 +282,18 @@ public class CWLHandler implements LanguageHandlerInterface {
 
                     // Check secondary file for docker pull
                     if (secondaryFile != null) {
-                        stepDockerRequirement = parseSecondaryFile(stepDockerRequirement, secondaryDescContent.get(secondaryFile), gson,
-                            yaml);
-                        if (isExpressionTool(secondaryDescContent.get(secondaryFile), yaml)) {
+                        CWLDocuments.Document secondaryDocument = documents.get(secondaryDescContent.get(secondaryFile));
+                        String secondaryClass = secondaryDocument == null ? null : secondaryDocument.getCwlClass();
+                        if (secondaryDocument != null) {
+                            // Check requirements and hints for docker pull info
+                            stepDockerRequirement = getRequirementOrHint(secondaryDocument.getRequirements(), secondaryDocument.getHints(),
+                                gson, stepDockerRequirement);
+                        }
+                        if (CWLDocuments.EXPRESSION_TOOL.equals(secondaryClass)) {
                             stepToType.put(workflowStepId, expressionToolType);
-                        } else if (isTool(secondaryDescContent.get(secondaryFile), yaml)) {
+                        } else if (CWLDocuments.COMMAND_LINE_TOOL.equals(secondaryClass)) {
                             stepToType.put(workflowStepId, toolType);
-                        } else if (isWorkflow(secondaryDescContent.get(secondaryFile), yaml)) {
+                        } else if (CWLDocuments.WORKFLOW.equals(secondaryClass)) {
                             stepToType.put(workflowStepId, workflowType);
                         } else {
                             stepToType.put(workflowStepId, nodePrefix);
@@ -432,42 +438,6 @@ public class CWLHandler implements LanguageHandlerInterface {
         return dockerPull;
     }
 
-    /**
-     * Checks secondary file for docker pull information
-     *
-     * @param stepDockerRequirement
-     * @param secondaryFileContents
-     * @param gson
-     * @param yaml
-     * @return
-     */
-    private String parseSecondaryFile(String stepDockerRequirement, String secondaryFileContents, Gson gson, Yaml yaml) {
-        if (secondaryFileContents != null) {
-            Map<String, Object> entryMapping = (Map<String, Object>)yaml.load(secondaryFileContents);
-            JSONObject entryJson = new JSONObject(entryMapping);
-
-            List<Object> cltRequirements = null;
-            List<Object> cltHints = null;
-
-            if (isExpressionTool(secondaryFileContents, yaml)) {
-                final ExpressionTool expressionTool = gson.fromJson(entryJson.toString(), io.cwl.avro.ExpressionTool.class);
-                cltRequirements = expressionTool.getRequirements();
-                cltHints = expressionTool.getHints();
-            } else if (isTool(secondaryFileContents, yaml)) {
-                final CommandLineTool commandLineTool = gson.fromJson(entryJson.toString(), io.cwl.avro.CommandLineTool.class);
-                cltRequirements = commandLineTool.getRequirements();
-                cltHints = commandLineTool.getHints();
-            } else if (isWorkflow(secondaryFileContents, yaml)) {
-                final io.cwl.avro.Workflow workflow = gson.fromJson(entryJson.toString(), io.cwl.avro.Workflow.class);
-                cltRequirements = workflow.getRequirements();
-                cltHints = workflow.getHints();
-            }
-            // Check requirements and hints for docker pull info
-            stepDockerRequirement = getRequirementOrHint(cltRequirements, cltHints, gson, stepDockerRequirement);
-        }
-        return stepDockerRequirement;
-    }
-
     /**
      * Given a list of CWL requirements, will return the DockerPull information if present.
      * If not will return the current docker path (currentDefault)
@@ -522,57 +492,6 @@ public class CWLHandler implements LanguageHandlerInterface {
         return currentDefault;
     }
 
-    /**
-     * Checks if a file is a workflow (CWL)
-     *
-     * @param content
-     * @return true if workflow, false otherwise
-     */
-    private boolean isWorkflow(String content, Yaml yaml) {
-        if (!Strings.isNullOrEmpty(content)) {
-            Map<String, Object> mapping = (Map<String, Object>)yaml.load(content);
-            if (mapping.get("class") != null) {
-                String cwlClass = mapping.get("class").toString();
-                return "Workflow".equals(cwlClass);
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Checks if a file is an expression tool (CWL)
-     *
-     * @param content
-     * @return true if expression tool, false otherwise
-     */
-    private boolean isExpressionTool(String content, Yaml yaml) {
-        if (!Strings.isNullOrEmpty(content)) {
-            Map<String, Object> mapping = (Map<String, Object>)yaml.load(content);
-            if (mapping.get("class") != null) {
-                String cwlClass = mapping.get("class").toString();
-                return "ExpressionTool".equals(cwlClass);
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Checks if a file is a tool (CWL)
-     *
-     * @param content
-     * @return true if tool, false otherwise
-     */
-    private boolean isTool(String content, Yaml yaml) {
-        if (!Strings.isNullOrEmpty(content)) {
-            Map<String, Object> mapping = (Map<String, Object>)yaml.load(content);
-            if (mapping.get("class") != null) {
-                String cwlClass = mapping.get("class").toString();
-                return "CommandLineTool".equals(cwlClass);
-            }
-        }
-        return false;
-    }
-
     private boolean isValidCwl(String content, Yaml yaml) {
         try {
             Map<String, Object> mapping = (Map<String, Object>)yaml.load(content);
@@ -16,8 +16,6 @@
 package io.dockstore.webservice.languages;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -28,9 +26,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Strings;
-import com.google.common.io.Files;
 import io.dockstore.client.Bridge;
-import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.client.WorkflowAnalysis;
 import io.dockstore.webservice.core.Entry;
 import io.dockstore.webservice.core.SourceFile;
 import io.dockstore.webservice.core.Tool;
@@ -38,13 +35,11 @@ import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.helpers.SourceCodeRepoInterface;
 import io.dockstore.webservice.jdbi.ToolDAO;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.MutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
-import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import wdl4s.parser.WdlParser;
@@ -54,6 +49,7 @@ import wdl4s.parser.WdlParser;
  */
 public class WDLHandler implements LanguageHandlerInterface {
     public static final Logger LOG = LoggerFactory.getLogger(WDLHandler.class);
+    private static final Pattern IMPORT_PATTERN = Pattern.compile("^import\\s+\"(\\S+)\"", Pattern.MULTILINE);
 
     @Override
     public Entry parseWorkflowContent(Entry entry, String content, Set<SourceFile> sourceFiles) {
@@ -98,43 +94,28 @@ public class WDLHandler implements LanguageHandlerInterface {
     public Map<String, SourceFile> processImports(String content, Version version, SourceCodeRepoInterface sourceCodeRepoInterface) {
         Map<String, SourceFile> imports = new HashMap<>();
         SourceFile.FileType fileType = SourceFile.FileType.DOCKSTORE_WDL;
-        final File tempDesc;
-        try {
-            tempDesc = File.createTempFile("temp", ".wdl", Files.createTempDir());
-            Files.asCharSink(tempDesc, StandardCharsets.UTF_8).write(content);
-
-            // Use matcher to get imports
-            List<String> lines = FileUtils.readLines(tempDesc, StandardCharsets.UTF_8);
-            ArrayList<String> importPaths = new ArrayList<>();
-            Pattern p = Pattern.compile("^import\\s+\"(\\S+)\"");
-
-            for (String line : lines) {
-                Matcher m = p.matcher(line);
-
-                while (m.find()) {
-                    String match = m.group(1);
-                    if (!match.startsWith("http://") && !match.startsWith("https://")) { // Don't resolve URLs
-                        importPaths.add(match.replaceFirst("file://", "")); // remove file:// from path
-                    }
-                }
+        // Use matcher to get imports
+        ArrayList<String> importPaths = new ArrayList<>();
+        Matcher m = IMPORT_PATTERN.matcher(content);
+        while (m.find()) {
+            String match = m.group(1);
+            if (!match.startsWith("http://") && !match.startsWith("https://")) { // Don't resolve URLs
+                importPaths.add(match.replaceFirst("file://", "")); // remove file:// from path
             }
+        }
 
-            for (String importPath : importPaths) {
-                SourceFile importFile = new SourceFile();
+        for (String importPath : importPaths) {
+            SourceFile importFile = new SourceFile();
 
-                final String fileResponse = sourceCodeRepoInterface.readGitRepositoryFile(fileType, version, importPath);
-                if (fileResponse == null) {
-                    SourceCodeRepoInterface.LOG.error("Could not read: " + importPath);
-                    continue;
-                }
-                importFile.setContent(fileResponse);
-                importFile.setPath(importPath);
-                importFile.setType(SourceFile.FileType.DOCKSTORE_WDL);
-                imports.put(importFile.getPath(), importFile);
+            final String fileResponse = sourceCodeRepoInterface.readGitRepositoryFile(fileType, version, importPath);
+            if (fileResponse == null) {
+                SourceCodeRepoInterface.LOG.error("Could not read: " + importPath);
+                continue;
             }
-        } catch (IOException e) {
-            throw new CustomWebApplicationException("Internal server error, out of space",
-                HttpStatus.SC_INSUFFICIENT_SPACE_ON_RESOURCE);
+            importFile.setContent(fileResponse);
+            importFile.setPath(importPath);
+            importFile.setType(SourceFile.FileType.DOCKSTORE_WDL);
+            imports.put(importFile.getPath(), importFile);
         }
 
         return imports;
@@ -155,7 +136,7 @@ public class WDLHandler implements LanguageHandlerInterface {
         ToolDAO dao) {
         // Initialize general variables
         Bridge bridge = new Bridge();
-        bridge.setSecondaryFiles((HashMap<String, String>)secondaryDescContent);
+        bridge.setSecondaryFiles(secondaryDescContent);
         String callType = "call"; // This may change later (ex. tool, workflow)
         String toolType = "tool";
 
@@ -167,21 +148,14 @@ public class WDLHandler implements LanguageHandlerInterface {
         // Initialize data structures for Tool table
         Map<String, Triple<String, String, String>> nodeDockerInfo = new HashMap<>(); // map of stepId -> (run path, docker image, docker url)
 
-        // Write main descriptor to file
-        // The use of temporary files is not needed here and might cause new problems
-        File tempMainDescriptor;
-        try {
-            tempMainDescriptor = File.createTempFile("main", "descriptor", Files.createTempDir());
-            Files.asCharSink(tempMainDescriptor, StandardCharsets.UTF_8).write(mainDescriptor);
-        } catch (IOException e) {
-            throw new CustomWebApplicationException("could not process wdl into DAG", HttpStatus.SC_INTERNAL_SERVER_ERROR);
-        }
+        // Load the workflow once, imports are resolved from the secondary descriptors
+        WorkflowAnalysis analysis = bridge.analyzeWorkflow(mainDescriptor);
 
         // Iterate over each call, grab docker containers
-        Map<String, String> callToDockerMap = bridge.getCallsToDockerMap(tempMainDescriptor);
+        Map<String, String> callToDockerMap = analysis.getCallsToDocker();
 
         // Get import files
-        Map<String, String> namespaceToPath = bridge.getImportMap(tempMainDescriptor);
+        Map<String, String> namespaceToPath = analysis.getImports();
 
         // Create nodePairs, callToType, toolID, and toolDocker
         for (Map.Entry<String, String> entry : callToDockerMap.entrySet()) {
@@ -209,7 +183,7 @@ public class WDLHandler implements LanguageHandlerInterface {
         }
 
         // Iterate over each call, determine dependencies
-        callToDependencies = bridge.getCallsToDependencies(tempMainDescriptor);
+        callToDependencies = analysis.getCallsToDependencies();
 
         // Determine start node edges
         for (Pair<String, String> node : nodePairs) {
@@ -25,6 +25,7 @@ import java.util.Set;
 
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -52,6 +53,7 @@ import io.dockstore.webservice.core.Token;
 import io.dockstore.webservice.core.TokenType;
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.ToolMode;
+import io.dockstore.webservice.core.ToolSummary;
 import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
@@ -112,6 +114,7 @@ public class DockerRepoResource implements AuthenticatedResourceInterface, Entry
     private final ObjectMapper objectMapper;
     private final ElasticManager elasticManager;
     private final WorkflowResource workflowResource;
+    private WorkflowArtifacts workflowArtifacts;
 
     @SuppressWarnings("checkstyle:parameternumber")
     public DockerRepoResource(ObjectMapper mapper, HttpClient client, UserDAO userDAO, TokenDAO tokenDAO, ToolDAO toolDAO, TagDAO tagDAO,
@@ -134,6 +137,10 @@ public class DockerRepoResource implements AuthenticatedResourceInterface, Entry
         elasticManager = new ElasticManager();
     }
 
+    public void setWorkflowArtifacts(WorkflowArtifacts workflowArtifacts) {
+        this.workflowArtifacts = workflowArtifacts;
+    }
+
     @GET
     @Path("/refresh")
     @Timed
@@ -522,6 +529,8 @@ public class DockerRepoResource implements AuthenticatedResourceInterface, Entry
 
         long id = toolDAO.create(c);
         c = toolDAO.findById(id);
+        // workflows link to the tool on Dockstore only while it is published
+        workflowArtifacts.clearLinksTo(c);
         if (request.getPublish()) {
             elasticManager.handleIndexUpdate(c, ElasticMode.UPDATE);
         } else {
@@ -535,11 +544,10 @@ public class DockerRepoResource implements AuthenticatedResourceInterface, Entry
     @UnitOfWork
     @Path("published")
     @ApiOperation(value = "List all published containers.", tags = {
-            "containers" }, notes = "NO authentication", response = Tool.class, responseContainer = "List")
-    public List<Tool> allPublishedContainers() {
-        List<Tool> tools = toolDAO.findAllPublished();
-        filterContainersForHiddenTags(tools);
-        return tools;
+            "containers" }, notes = "NO authentication, only the summary properties of tools are included", response = ToolSummary.class,
+            responseContainer = "List")
+    public List<ToolSummary> allPublishedContainers() {
+        return toolDAO.findAllPublishedSummaries();
     }
 
     @GET
@@ -665,10 +673,12 @@ public class DockerRepoResource implements AuthenticatedResourceInterface, Entry
     @Timed
     @UnitOfWork
     @Path("/search")
-    @ApiOperation(value = "Search for matching registered containers.", notes = "Search on the name (full path name) and description. NO authentication", response = Tool.class, responseContainer = "List", tags = {
+    @ApiOperation(value = "Search for matching registered containers.", notes = "Search on the name (full path name) and description, ignoring case. Best matches come first. NO authentication", response = Tool.class, responseContainer = "List", tags = {
             "containers" })
-    public List<Tool> search(@QueryParam("pattern") String word) {
-        return toolDAO.searchPattern(word);
+    public List<Tool> search(@QueryParam("pattern") String word,
+        @ApiParam(value = "Number of matches to skip") @QueryParam("offset") @DefaultValue("0") int offset,
+        @ApiParam(value = "Maximum number of matches to return, at most 1000") @QueryParam("limit") @DefaultValue("100") int limit) {
+        return searchPublished(word, offset, limit);
     }
 
     @GET
@@ -22,12 +22,21 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 
 import com.codahale.metrics.annotation.Timed;
 import io.dockstore.common.DescriptorLanguage;
@@ -35,22 +44,30 @@ import io.dockstore.common.Registry;
 import io.dockstore.common.SourceControl;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
-import io.dockstore.webservice.core.Entry;
-import io.dockstore.webservice.core.Tool;
-import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.core.SourceFileStatistics;
+import io.dockstore.webservice.core.ToolSummary;
+import io.dockstore.webservice.core.User;
+import io.dockstore.webservice.core.WorkflowSummary;
+import io.dockstore.webservice.jdbi.FileDAO;
 import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.jdbi.WorkflowDAO;
 import io.dockstore.webservice.resources.rss.RSSEntry;
 import io.dockstore.webservice.resources.rss.RSSFeed;
 import io.dockstore.webservice.resources.rss.RSSHeader;
 import io.dockstore.webservice.resources.rss.RSSWriter;
+import io.dropwizard.auth.Auth;
 import io.dropwizard.hibernate.UnitOfWork;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.Authorization;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static io.dockstore.webservice.Constants.JWT_SECURITY_DEFINITION_NAME;
+
 /**
  * @author dyuen
  */
@@ -60,14 +77,19 @@ import org.slf4j.LoggerFactory;
 public class MetadataResource {
 
     private static final Logger LOG = LoggerFactory.getLogger(MetadataResource.class);
+    private static final int RSS_ENTRIES = 50;
 
     private final ToolDAO toolDAO;
     private final WorkflowDAO workflowDAO;
+    private final FileDAO fileDAO;
     private final DockstoreWebserviceConfiguration config;
+    private final AtomicReference<CachedDocument> sitemap = new AtomicReference<>();
+    private final AtomicReference<CachedDocument> rssFeed = new AtomicReference<>();
 
-    public MetadataResource(ToolDAO toolDAO, WorkflowDAO workflowDAO, DockstoreWebserviceConfiguration config) {
+    public MetadataResource(ToolDAO toolDAO, WorkflowDAO workflowDAO, FileDAO fileDAO, DockstoreWebserviceConfiguration config) {
         this.toolDAO = toolDAO;
         this.workflowDAO = workflowDAO;
+        this.fileDAO = fileDAO;
         this.config = config;
     }
 
@@ -75,30 +97,30 @@ public class MetadataResource {
     @Timed
     @UnitOfWork
     @Path("sitemap")
-    @ApiOperation(value = "List all workflow and tool paths.", notes = "NO authentication")
-    public String sitemap() {
-        List<Tool> tools = toolDAO.findAllPublished();
-        List<Workflow> workflows = workflowDAO.findAllPublished();
-        StringBuilder builder = new StringBuilder();
-        for (Tool tool : tools) {
-            builder.append(createToolURL(tool));
-            builder.append(System.lineSeparator());
-        }
-        for (Workflow workflow : workflows) {
-            builder.append(createWorkflowURL(workflow));
-            builder.append(System.lineSeparator());
-        }
-        return builder.toString();
+    @ApiOperation(value = "List all workflow and tool paths.", notes = "NO authentication", response = String.class)
+    public Response sitemap(@Context Request request) {
+        return serve(sitemap, request, () -> {
+            StringBuilder builder = new StringBuilder();
+            for (ToolSummary tool : toolDAO.findAllPublishedSummaries()) {
+                builder.append(createToolURL(tool.getToolPath()));
+                builder.append(System.lineSeparator());
+            }
+            for (WorkflowSummary workflow : workflowDAO.findAllPublishedSummaries()) {
+                builder.append(createWorkflowURL(workflow.getWorkflowPath()));
+                builder.append(System.lineSeparator());
+            }
+            return builder.toString();
+        });
     }
 
-    private String createWorkflowURL(Workflow workflow) {
+    private String createWorkflowURL(String workflowPath) {
         return config.getScheme() + "://" + config.getHostname() + (config.getUiPort() == null ? "" : ":" + config.getUiPort()) + "/workflows/"
-                + workflow.getWorkflowPath();
+                + workflowPath;
     }
 
-    private String createToolURL(Tool tool) {
+    private String createToolURL(String toolPath) {
         return config.getScheme() + "://" + config.getHostname() + (config.getUiPort() == null ? "" : ":" + config.getUiPort())
-            + "/containers/" + tool.getToolPath();
+            + "/containers/" + toolPath;
     }
 
     @GET
@@ -106,17 +128,12 @@ public class MetadataResource {
     @UnitOfWork
     @Path("rss")
     @Produces(MediaType.TEXT_XML)
-    @ApiOperation(value = "List all tools and workflows in creation order", notes = "NO authentication")
-    public String rssFeed() {
-
-        List<Tool> tools = toolDAO.findAllPublished();
-        List<Workflow> workflows = workflowDAO.findAllPublished();
-        List<Entry> dbEntries =  new ArrayList<>();
-        dbEntries.addAll(tools);
-        dbEntries.addAll(workflows);
-        dbEntries.sort(Comparator.comparingLong(entry -> entry.getLastUpdated().getTime()));
+    @ApiOperation(value = "List the most recently updated tools and workflows, most recent first", notes = "NO authentication", response = String.class)
+    public Response rssFeed(@Context Request request) {
+        return serve(rssFeed, request, this::createRSSFeed);
+    }
 
-        // TODO: after seeing if this works, make this more efficient than just returning everything
+    private String createRSSFeed() {
         RSSFeed feed = new RSSFeed();
 
         RSSHeader header = new RSSHeader();
@@ -129,31 +146,19 @@ public class MetadataResource {
 
         feed.setHeader(header);
 
-        List<RSSEntry> entries = new ArrayList<>();
-        for (Entry dbEntry : dbEntries) {
-            RSSEntry entry = new RSSEntry();
-            if (dbEntry instanceof Workflow) {
-                Workflow workflow = (Workflow)dbEntry;
-                entry.setTitle(workflow.getWorkflowPath());
-                String workflowURL = createWorkflowURL(workflow);
-                entry.setGuid(workflowURL);
-                entry.setLink(workflowURL);
-            } else if (dbEntry instanceof Tool) {
-                Tool tool = (Tool)dbEntry;
-                entry.setTitle(tool.getPath());
-                String toolURL = createToolURL(tool);
-                entry.setGuid(toolURL);
-                entry.setLink(toolURL);
-            } else {
-                throw new CustomWebApplicationException("Unknown data type unsupported for RSS feed.", HttpStatus.SC_INTERNAL_SERVER_ERROR);
-            }
-            entry.setDescription(dbEntry.getDescription());
-            Calendar instance = Calendar.getInstance();
-            instance.setTime(dbEntry.getLastUpdated());
-            entry.setPubDate(RSSFeed.formatDate(instance));
-            entries.add(entry);
+        // the most recent tools and workflows, merged
+        List<Pair<Date, RSSEntry>> entries = new ArrayList<>();
+        for (ToolSummary tool : toolDAO.findRecentPublishedSummaries(RSS_ENTRIES)) {
+            String toolURL = createToolURL(tool.getToolPath());
+            entries.add(Pair.of(tool.getLastUpdated(), createRSSEntry(tool.getPath(), toolURL, tool.getDescription(), tool.getLastUpdated())));
+        }
+        for (WorkflowSummary workflow : workflowDAO.findRecentPublishedSummaries(RSS_ENTRIES)) {
+            String workflowURL = createWorkflowURL(workflow.getWorkflowPath());
+            entries.add(Pair.of(workflow.getLastUpdated(), createRSSEntry(workflow.getWorkflowPath(), workflowURL, workflow.getDescription(),
+                workflow.getLastUpdated())));
         }
-        feed.setEntries(entries);
+        feed.setEntries(entries.stream().sorted(Comparator.comparing(Pair<Date, RSSEntry>::getLeft).reversed()).limit(RSS_ENTRIES)
+            .map(Pair::getRight).collect(Collectors.toList()));
 
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         try {
@@ -164,6 +169,36 @@ public class MetadataResource {
         }
     }
 
+    private RSSEntry createRSSEntry(String title, String url, String description, Date lastUpdated) {
+        RSSEntry entry = new RSSEntry();
+        entry.setTitle(title);
+        entry.setGuid(url);
+        entry.setLink(url);
+        entry.setDescription(description);
+        Calendar instance = Calendar.getInstance();
+        instance.setTime(lastUpdated);
+        entry.setPubDate(RSSFeed.formatDate(instance));
+        return entry;
+    }
+
+    /**
+     * Serve a document listing published entries, only generating it again once a published entry changed.
+     * Crawlers that send If-Modified-Since get a 304 until then.
+     */
+    private Response serve(AtomicReference<CachedDocument> cache, Request request, Supplier<String> generator) {
+        String state = toolDAO.getPublishedState() + ',' + workflowDAO.getPublishedState();
+        CachedDocument document = cache.get();
+        if (document == null || !document.state.equals(state)) {
+            document = new CachedDocument(state, generator.get(), document);
+            cache.set(document);
+        }
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(document.lastModified);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return Response.ok(document.content).lastModified(document.lastModified).build();
+    }
+
     @GET
     @Timed
     @UnitOfWork
@@ -200,4 +235,38 @@ public class MetadataResource {
         return descriptorLanguageList;
     }
 
+    @GET
+    @Timed
+    @UnitOfWork
+    @RolesAllowed("admin")
+    @Path("/sourceFileStatistics")
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(value = "Get how much storage deduplicating source file content saves", notes = "Admin only", authorizations = {
+        @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, response = SourceFileStatistics.class)
+    public SourceFileStatistics getSourceFileStatistics(@ApiParam(hidden = true) @Auth User user) {
+        return fileDAO.getStorageStatistics();
+    }
+
+    /**
+     * A generated document and the state of the published entries it was generated from
+     */
+    private static final class CachedDocument {
+        private final String state;
+        private final String content;
+        private final Date lastModified;
+
+        /**
+         * @param previous the document this one replaces, null if there is none
+         */
+        CachedDocument(String state, String content, CachedDocument previous) {
+            this.state = state;
+            this.content = content;
+            // HTTP dates have no milliseconds, a document replaced within the same second must still look modified
+            long seconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            if (previous != null) {
+                seconds = Math.max(seconds, TimeUnit.MILLISECONDS.toSeconds(previous.lastModified.getTime()) + 1);
+            }
+            this.lastModified = new Date(TimeUnit.SECONDS.toMillis(seconds));
+        }
+    }
 }
@@ -20,8 +20,15 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.Date;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+import io.dockstore.webservice.helpers.RateLimits;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
@@ -29,8 +36,10 @@ import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicResponseHandler;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +48,8 @@ import org.slf4j.LoggerFactory;
  */
 public final class ResourceUtilities {
     private static final Logger LOG = LoggerFactory.getLogger(ResourceUtilities.class);
+    private static final int WAIT_TIME = 60000;
+    private static final int TOO_MANY_REQUESTS = 429;
 
     private ResourceUtilities() {
         // hide the constructor for utility classes
@@ -46,7 +57,7 @@ public final class ResourceUtilities {
 
     // from dropwizard example
     public static Optional<String> asString(String input, String token, HttpClient client) {
-        return getResponseAsString(buildHttpGet(input, token), client);
+        return getResponseAsString(buildHttpGet(input, token), token, client);
     }
 
     public static Optional<String> bitbucketPost(String input, String token, HttpClient client, String clientId, String secret,
@@ -79,16 +90,17 @@ public final class ResourceUtilities {
         return httpPost;
     }
 
-    // Todo: Implement a backoff algorithm for below HTTP calls
     public static Optional<String> getResponseAsString(HttpRequestBase httpRequest, HttpClient client) {
+        return getResponseAsString(httpRequest, null, client);
+    }
+
+    /**
+     * @param token the token used by the request, the rate limit reported in the response is recorded for it
+     */
+    public static Optional<String> getResponseAsString(HttpRequestBase httpRequest, String token, HttpClient client) {
         Optional<String> result = Optional.empty();
-        final int waitTime = 60000;
         try {
-            ResponseHandler<String> responseHandler = new BasicResponseHandler();
-            RequestConfig requestConfig = RequestConfig.custom().setSocketTimeout(waitTime).setConnectTimeout(waitTime)
-                    .setConnectionRequestTimeout(waitTime).build();
-            httpRequest.setConfig(requestConfig);
-            result = Optional.of(client.execute(httpRequest, responseHandler));
+            result = Optional.of(execute(httpRequest, token, client));
         } catch (HttpResponseException httpResponseException) {
             LOG.error("getResponseAsString(): caught 'HttpResponseException' while processing request <{}> :=> <{}>", httpRequest,
                     httpResponseException.getMessage());
@@ -100,4 +112,75 @@ public final class ResourceUtilities {
         return result;
     }
 
+    /**
+     * Like {@link #asString(String, String, HttpClient)}, but failures are thrown instead of logged
+     *
+     * @throws RetryableException when the server rate limited the request or failed with a 5xx
+     * @throws IOException        when the request failed for good
+     */
+    public static String asStringOrThrow(String input, String token, HttpClient client) throws IOException {
+        HttpGet httpGet = buildHttpGet(input, token);
+        try {
+            return execute(httpGet, token, client);
+        } finally {
+            httpGet.releaseConnection();
+        }
+    }
+
+    private static String execute(HttpRequestBase httpRequest, String token, HttpClient client) throws IOException {
+        ResponseHandler<String> responseHandler = response -> {
+            RateLimits.update(token, response);
+            final StatusLine statusLine = response.getStatusLine();
+            if (isRetryable(statusLine.getStatusCode())) {
+                EntityUtils.consume(response.getEntity());
+                throw new RetryableException(statusLine.getStatusCode(), statusLine.getReasonPhrase(),
+                        retryAfterMillis(response.getFirstHeader(HttpHeaders.RETRY_AFTER)));
+            }
+            return new BasicResponseHandler().handleResponse(response);
+        };
+        RequestConfig requestConfig = RequestConfig.custom().setSocketTimeout(WAIT_TIME).setConnectTimeout(WAIT_TIME)
+                .setConnectionRequestTimeout(WAIT_TIME).build();
+        httpRequest.setConfig(requestConfig);
+        return client.execute(httpRequest, responseHandler);
+    }
+
+    private static boolean isRetryable(int statusCode) {
+        return statusCode == TOO_MANY_REQUESTS || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * @param retryAfter a Retry-After header, either seconds or an HTTP date
+     * @return how long the server asked to wait, -1 if it did not say
+     */
+    private static long retryAfterMillis(Header retryAfter) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        final String value = retryAfter.getValue().trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * The server rate limited a request or failed with a 5xx, the same request may succeed later
+     */
+    public static final class RetryableException extends HttpResponseException {
+        private final long retryAfterMillis;
+
+        public RetryableException(int statusCode, String reasonPhrase, long retryAfterMillis) {
+            super(statusCode, reasonPhrase);
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        /**
+         * @return how long the server asked to wait before sending the request again, -1 if it did not say
+         */
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
 }
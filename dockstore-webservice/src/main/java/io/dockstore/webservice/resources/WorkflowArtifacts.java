@@ -0,0 +1,221 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.resources;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.core.WorkflowVersion;
+import io.dockstore.webservice.jdbi.ToolDAO;
+import io.dockstore.webservice.jdbi.WorkflowDAO;
+import io.dockstore.webservice.jdbi.WorkflowVersionDAO;
+import io.dockstore.webservice.languages.LanguageHandlerFactory;
+import io.dockstore.webservice.languages.LanguageHandlerInterface;
+import io.dropwizard.hibernate.UnitOfWork;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The DAG and tool table of workflow versions, stored with the version along with a hash of what they were built from.
+ * The hash is taken when they are built and is never recomputed on read. A refresh that changes the files of a version and
+ * publishing or unpublishing a tool they link to clear it instead, and the version keeps serving what it stored until it is
+ * rebuilt in the background. Only a version that was never built is built on request.
+ * Only use instances created by UnitOfWorkAwareProxyFactory, background rebuilds rely on it to open sessions.
+ */
+public class WorkflowArtifacts {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkflowArtifacts.class);
+    private static final String DOCKER_HUB = "registry.hub.docker.com/";
+
+    private final SessionFactory sessionFactory;
+    private final WorkflowDAO workflowDAO;
+    private final WorkflowVersionDAO workflowVersionDAO;
+    private final ToolDAO toolDAO;
+    private final Executor executor;
+    /**
+     * Versions with a rebuild queued or running, mapped to whether they were cleared again since the rebuild started
+     */
+    private final Map<Long, Boolean> pendingVersionIds = new ConcurrentHashMap<>();
+
+    public WorkflowArtifacts(SessionFactory sessionFactory, WorkflowDAO workflowDAO, WorkflowVersionDAO workflowVersionDAO, ToolDAO toolDAO,
+        Executor executor) {
+        this.sessionFactory = sessionFactory;
+        this.workflowDAO = workflowDAO;
+        this.workflowVersionDAO = workflowVersionDAO;
+        this.toolDAO = toolDAO;
+        this.executor = executor;
+    }
+
+    /**
+     * @return hash of the files the DAG and tool table were built from and of what was built, which includes their links
+     */
+    private static String hash(Workflow workflow, WorkflowVersion version, String dagJson, String toolTableJson) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(String.valueOf(workflow.getFileType()), StandardCharsets.UTF_8).putChar('\0');
+        hasher.putString(String.valueOf(version.getWorkflowPath()), StandardCharsets.UTF_8).putChar('\0');
+        List<SourceFile> sourceFiles = version.getSourceFiles().stream().sorted(Comparator.comparing(SourceFile::getPath))
+            .collect(Collectors.toList());
+        for (SourceFile sourceFile : sourceFiles) {
+            hasher.putString(sourceFile.getPath(), StandardCharsets.UTF_8).putChar('\0');
+            hasher.putString(String.valueOf(sourceFile.getContentHash()), StandardCharsets.UTF_8).putChar('\0');
+        }
+        hasher.putString(String.valueOf(dagJson), StandardCharsets.UTF_8).putChar('\0');
+        hasher.putString(String.valueOf(toolTableJson), StandardCharsets.UTF_8);
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Get the stored DAG or tool table of a version. If it was cleared, it is still served and a rebuild is queued.
+     * Must be called from a unit of work.
+     *
+     * @return the JSON, null if the version has no main descriptor or it could not be parsed
+     */
+    public String get(Workflow workflow, WorkflowVersion version, LanguageHandlerInterface.Type type) {
+        if (version.getArtifactHash() == null) {
+            if (version.getDagJson() == null && version.getToolTableJson() == null) {
+                build(workflow, version);
+            } else {
+                submit(workflow.getId(), version.getId());
+            }
+        }
+        return type == LanguageHandlerInterface.Type.DAG ? version.getDagJson() : version.getToolTableJson();
+    }
+
+    /**
+     * Once the current transaction commits, rebuild the artifacts of the versions of a workflow that were cleared, for instance
+     * by a refresh that changed their files. Must be called from a unit of work.
+     */
+    public void scheduleRebuild(Workflow workflow) {
+        long workflowId = workflow.getId();
+        List<Long> staleVersionIds = workflow.getVersions().stream()
+            .filter(version -> version.getId() != 0 && version.getArtifactHash() == null).map(WorkflowVersion::getId)
+            .collect(Collectors.toList());
+        if (staleVersionIds.isEmpty()) {
+            return;
+        }
+        sessionFactory.getCurrentSession().addEventListeners(new BaseSessionEventListener() {
+            @Override
+            public void transactionCompletion(boolean successful) {
+                if (successful) {
+                    staleVersionIds.forEach(versionId -> submit(workflowId, versionId));
+                }
+            }
+        });
+    }
+
+    /**
+     * Clear the artifacts that may link to a tool, since its links change when it is published or unpublished.
+     * They are rebuilt the next time they are requested. Must be called from a unit of work.
+     *
+     * @return how many versions were cleared
+     */
+    public int clearLinksTo(Tool tool) {
+        String image = tool.getPath();
+        // images from Docker Hub appear without their registry in descriptors
+        if (image.startsWith(DOCKER_HUB)) {
+            image = image.substring(DOCKER_HUB.length());
+        }
+        return workflowVersionDAO.clearArtifactHashByImage(image);
+    }
+
+    /**
+     * Rebuild the artifacts of a version in its own transaction, unless they have been rebuilt in the meantime
+     */
+    @UnitOfWork
+    public void rebuild(long workflowId, long versionId) {
+        Workflow workflow = workflowDAO.findById(workflowId);
+        if (workflow == null) {
+            return;
+        }
+        workflow.getVersions().stream().filter(version -> version.getId() == versionId && version.getArtifactHash() == null).findFirst()
+            .ifPresent(version -> build(workflow, version));
+    }
+
+    private void submit(long workflowId, long versionId) {
+        if (pendingVersionIds.put(versionId, Boolean.TRUE) != null) {
+            // already queued or running, running again if it already started
+            return;
+        }
+        executor.execute(() -> {
+            do {
+                pendingVersionIds.put(versionId, Boolean.FALSE);
+                try {
+                    // through the proxy, to get a session
+                    rebuild(workflowId, versionId);
+                } catch (RuntimeException e) {
+                    LOG.warn("Could not build the DAG and tool table of workflow version " + versionId, e);
+                }
+            } while (!pendingVersionIds.remove(versionId, Boolean.FALSE));
+        });
+    }
+
+    private void build(Workflow workflow, WorkflowVersion version) {
+        String dag = null;
+        String toolTable = null;
+        SourceFile mainDescriptor = getMainDescriptorFile(version);
+        if (mainDescriptor != null) {
+            Map<String, String> secondaryDescContent = getSecondaryFiles(version);
+            LanguageHandlerInterface lInterface = LanguageHandlerFactory.getInterface(workflow.getFileType());
+            dag = lInterface.getContent(version.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent,
+                LanguageHandlerInterface.Type.DAG, toolDAO);
+            toolTable = lInterface.getContent(version.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent,
+                LanguageHandlerInterface.Type.TOOLS, toolDAO);
+        }
+        version.setArtifacts(dag, toolTable, hash(workflow, version, dag, toolTable));
+    }
+
+    /**
+     * This method will find the main descriptor file based on the workflow version passed in the parameter
+     *
+     * @param workflowVersion workflowVersion with collects sourcefiles
+     * @return mainDescriptor
+     */
+    private SourceFile getMainDescriptorFile(WorkflowVersion workflowVersion) {
+        for (SourceFile sourceFile : workflowVersion.getSourceFiles()) {
+            if (sourceFile.getPath().equals(workflowVersion.getWorkflowPath())) {
+                return sourceFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param workflowVersion source control version to consider
+     * @return secondary file map (string path -> string content)
+     */
+    private Map<String, String> getSecondaryFiles(WorkflowVersion workflowVersion) {
+        Map<String, String> secondaryDescContent = new HashMap<>();
+        for (SourceFile secondaryFile : workflowVersion.getSourceFiles()) {
+            if (!secondaryFile.getPath().equals(workflowVersion.getWorkflowPath())) {
+                secondaryDescContent.put(secondaryFile.getPath(), secondaryFile.getContent());
+            }
+        }
+        return secondaryDescContent;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.RefreshJob;
+import io.dockstore.webservice.helpers.RateLimits;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the refresh of all workflows in the background.
+ * <p>
+ * Users are listed one at a time, each of their repositories is then refreshed on a bounded pool in its own transaction.
+ * A repository whose token is running out of rate limit is put back on the pool for when the limit resets, so that it does not
+ * hold a worker meanwhile.
+ * Refreshed repositories are recorded with the job, a job that was running when the webservice stopped resumes on startup.
+ * Only one job runs at a time.
+ */
+public class WorkflowRefreshScheduler implements Managed {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkflowRefreshScheduler.class);
+
+    private final WorkflowRefreshTasks tasks;
+    private final DockstoreWebserviceConfiguration.RefreshConfig config;
+    private ExecutorService coordinator;
+    private ScheduledExecutorService workers;
+    private Long runningJobId = null;
+
+    /**
+     * @param tasks must be created by UnitOfWorkAwareProxyFactory
+     */
+    public WorkflowRefreshScheduler(WorkflowRefreshTasks tasks, DockstoreWebserviceConfiguration.RefreshConfig config) {
+        this.tasks = tasks;
+        this.config = config;
+    }
+
+    @Override
+    public void start() {
+        coordinator = Executors
+            .newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("refresh-coordinator-%d").setDaemon(true).build());
+        workers = Executors
+            .newScheduledThreadPool(config.getThreads(), new ThreadFactoryBuilder().setNameFormat("refresh-worker-%d").setDaemon(true).build());
+        List<RefreshJob> interrupted = tasks.findRunningJobs();
+        for (int i = 0; i < interrupted.size() - 1; i++) {
+            // only the latest one is worth resuming
+            tasks.finishJob(interrupted.get(i).getId(), RefreshJob.Status.FAILED);
+        }
+        if (!interrupted.isEmpty()) {
+            RefreshJob job = interrupted.get(interrupted.size() - 1);
+            LOG.info("Resuming refresh job " + job.getId());
+            launch(job.getId(), true);
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        // the running job stays RUNNING and resumes on the next start
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Start refreshing all workflows
+     *
+     * @param requestedBy username of the admin starting the job
+     * @return the new job
+     */
+    public synchronized RefreshJob submit(String requestedBy) {
+        if (runningJobId != null) {
+            throw new CustomWebApplicationException("Refresh job " + runningJobId + " is still running", HttpStatus.SC_CONFLICT);
+        }
+        RefreshJob job = tasks.createJob(requestedBy);
+        launch(job.getId(), false);
+        return job;
+    }
+
+    public RefreshJob getJob(long jobId) {
+        RefreshJob job = tasks.findJob(jobId);
+        if (job == null) {
+            throw new CustomWebApplicationException("Refresh job not found", HttpStatus.SC_NOT_FOUND);
+        }
+        return job;
+    }
+
+    private synchronized void launch(long jobId, boolean resume) {
+        runningJobId = jobId;
+        coordinator.execute(() -> {
+            try {
+                run(jobId, resume);
+            } finally {
+                synchronized (this) {
+                    runningJobId = null;
+                }
+            }
+        });
+    }
+
+    private void run(long jobId, boolean resume) {
+        try {
+            Set<String> claimed = ConcurrentHashMap.newKeySet();
+            if (resume) {
+                claimed.addAll(tasks.prepareResume(jobId));
+            }
+            List<Long> userIds = tasks.findUserIds();
+            LOG.info("Refresh job " + jobId + ": # users to process: " + userIds.size());
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (Long userId : userIds) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                List<WorkflowRefreshTasks.RepositoryTask> repositories;
+                try {
+                    repositories = tasks.findRepositories(jobId, userId, claimed);
+                } catch (RuntimeException e) {
+                    // continue past users that have issues
+                    LOG.error("Refresh job " + jobId + ": could not list repositories of user " + userId, e);
+                    continue;
+                }
+                for (WorkflowRefreshTasks.RepositoryTask repository : repositories) {
+                    CompletableFuture<Void> done = new CompletableFuture<>();
+                    futures.add(done);
+                    workers.execute(() -> refresh(jobId, repository, done));
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+            tasks.finishJob(jobId, RefreshJob.Status.COMPLETED);
+            LOG.info("Refresh job " + jobId + " completed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.info("Refresh job " + jobId + " interrupted, it will resume on the next start");
+        } catch (ExecutionException | RuntimeException e) {
+            LOG.error("Refresh job " + jobId + " failed", e);
+            tasks.finishJob(jobId, RefreshJob.Status.FAILED);
+        }
+    }
+
+    /**
+     * Refresh a repository, or if its token is running out of rate limit schedule this again for when the limit resets
+     *
+     * @param done completed once the repository has been refreshed or recorded as failed
+     */
+    private void refresh(long jobId, WorkflowRefreshTasks.RepositoryTask repository, CompletableFuture<Void> done) {
+        long delay = RateLimits.delayMillis(repository.getTokenContent(), config.getRateLimitReserve());
+        if (delay > 0) {
+            LOG.debug("Refresh job " + jobId + ": putting off " + repository.getGitUrl() + " for " + delay + "ms until the rate limit resets");
+            try {
+                workers.schedule(() -> refresh(jobId, repository, done), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // stopping, the coordinator is interrupted and the job resumes on the next start
+                LOG.debug("Refresh job " + jobId + ": not putting off " + repository.getGitUrl() + ", stopping");
+            }
+            return;
+        }
+        try {
+            try {
+                tasks.refreshRepository(jobId, repository);
+            } catch (RuntimeException e) {
+                LOG.error("Refresh job " + jobId + ": could not refresh " + repository.getGitUrl(), e);
+                tasks.recordFailure(jobId, repository);
+            }
+            done.complete(null);
+        } catch (RuntimeException e) {
+            // the job cannot keep track of its progress
+            done.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.resources;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.core.RefreshJob;
+import io.dockstore.webservice.core.Token;
+import io.dockstore.webservice.core.User;
+import io.dockstore.webservice.helpers.SourceCodeRepoInterface;
+import io.dockstore.webservice.jdbi.RefreshJobDAO;
+import io.dockstore.webservice.jdbi.TokenDAO;
+import io.dockstore.webservice.jdbi.UserDAO;
+import io.dropwizard.hibernate.UnitOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The steps of a background refresh, each in its own short transaction.
+ * Only use instances created by UnitOfWorkAwareProxyFactory, the methods rely on it to open sessions.
+ */
+public class WorkflowRefreshTasks {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkflowRefreshTasks.class);
+
+    private final WorkflowResource workflowResource;
+    private final UserDAO userDAO;
+    private final TokenDAO tokenDAO;
+    private final RefreshJobDAO refreshJobDAO;
+
+    public WorkflowRefreshTasks(WorkflowResource workflowResource, UserDAO userDAO, TokenDAO tokenDAO, RefreshJobDAO refreshJobDAO) {
+        this.workflowResource = workflowResource;
+        this.userDAO = userDAO;
+        this.tokenDAO = tokenDAO;
+        this.refreshJobDAO = refreshJobDAO;
+    }
+
+    @UnitOfWork
+    public RefreshJob createJob(String requestedBy) {
+        long id = refreshJobDAO.create(new RefreshJob(requestedBy));
+        return refreshJobDAO.findById(id);
+    }
+
+    @UnitOfWork
+    public RefreshJob findJob(long jobId) {
+        return refreshJobDAO.findById(jobId);
+    }
+
+    @UnitOfWork
+    public List<RefreshJob> findRunningJobs() {
+        return refreshJobDAO.findByStatus(RefreshJob.Status.RUNNING);
+    }
+
+    @UnitOfWork
+    public void finishJob(long jobId, RefreshJob.Status status) {
+        RefreshJob job = refreshJobDAO.findById(jobId);
+        job.setStatus(status);
+        job.setEndDate(new Timestamp(System.currentTimeMillis()));
+    }
+
+    /**
+     * @return git urls of the repositories an interrupted job has already been through
+     */
+    @UnitOfWork
+    public List<String> prepareResume(long jobId) {
+        refreshJobDAO.resetRepositories(jobId);
+        return refreshJobDAO.findRepositories(jobId);
+    }
+
+    @UnitOfWork
+    public List<Long> findUserIds() {
+        return userDAO.findAll().stream().map(User::getId).sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * List the repositories a user has access to, skipping those already claimed by the job
+     *
+     * @param jobId   the job to count the repositories towards
+     * @param userId  the user whose tokens are used
+     * @param claimed git urls of repositories already handled by the job, the returned ones are added
+     * @return one task per repository
+     */
+    @UnitOfWork
+    public List<RepositoryTask> findRepositories(long jobId, long userId, Set<String> claimed) {
+        User user = userDAO.findById(userId);
+        // why does a specific user have an issue?
+        if (user.getUsername().equals("chapmanb")) {
+            return new ArrayList<>();
+        }
+        List<Token> tokens;
+        try {
+            tokens = workflowResource.getSourceControlTokens(user);
+        } catch (CustomWebApplicationException e) {
+            LOG.info(user.getUsername() + ": no source control tokens, skipping");
+            return new ArrayList<>();
+        }
+        List<RepositoryTask> tasks = new ArrayList<>();
+        for (Token token : tokens) {
+            SourceCodeRepoInterface sourceCodeRepo = workflowResource.createSourceCodeRepo(user, token);
+            Map<String, String> workflowGitUrl2Name = sourceCodeRepo.getWorkflowGitUrl2RepositoryId();
+            sourceCodeRepo.updateRateLimit();
+            workflowGitUrl2Name.forEach((gitUrl, repositoryId) -> {
+                if (claimed.add(gitUrl)) {
+                    tasks.add(new RepositoryTask(userId, token.getId(), token.getContent(), gitUrl, repositoryId));
+                }
+            });
+        }
+        refreshJobDAO.addRepositories(jobId, tasks.size());
+        return tasks;
+    }
+
+    /**
+     * Refresh the workflows of one repository and record it as done, all in one transaction
+     */
+    @UnitOfWork
+    public void refreshRepository(long jobId, RepositoryTask task) {
+        User user = userDAO.findById(task.userId);
+        Token token = tokenDAO.findById(task.tokenId);
+        SourceCodeRepoInterface sourceCodeRepo = workflowResource.createSourceCodeRepo(user, token);
+        // refreshing every repository, do not re-read branches that have not moved
+        sourceCodeRepo.setSkipUnchangedVersions(true);
+        workflowResource.refreshRepository(sourceCodeRepo, user, task.gitUrl, task.repositoryId, new HashSet<>());
+        sourceCodeRepo.updateRateLimit();
+        refreshJobDAO.recordRepository(jobId, task.gitUrl, false);
+    }
+
+    @UnitOfWork
+    public void recordFailure(long jobId, RepositoryTask task) {
+        refreshJobDAO.recordRepository(jobId, task.gitUrl, true);
+    }
+
+    /**
+     * One repository to refresh on behalf of one user
+     */
+    public static final class RepositoryTask {
+        private final long userId;
+        private final long tokenId;
+        private final String tokenContent;
+        private final String gitUrl;
+        private final String repositoryId;
+
+        RepositoryTask(long userId, long tokenId, String tokenContent, String gitUrl, String repositoryId) {
+            this.userId = userId;
+            this.tokenId = tokenId;
+            this.tokenContent = tokenContent;
+            this.gitUrl = gitUrl;
+            this.repositoryId = repositoryId;
+        }
+
+        public String getTokenContent() {
+            return tokenContent;
+        }
+
+        public String getGitUrl() {
+            return gitUrl;
+        }
+    }
+}
@@ -16,7 +16,6 @@
 
 package io.dockstore.webservice.resources;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -34,6 +33,7 @@ import java.util.stream.Collectors;
 
 import javax.annotation.security.RolesAllowed;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -42,19 +42,23 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 
 import com.codahale.metrics.annotation.Timed;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
-import com.google.common.io.Files;
 import io.dockstore.common.SourceControl;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.api.PublishRequest;
 import io.dockstore.webservice.api.StarRequest;
 import io.dockstore.webservice.api.VerifyRequest;
 import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.RefreshJob;
 import io.dockstore.webservice.core.SourceFile;
 import io.dockstore.webservice.core.SourceFile.FileType;
 import io.dockstore.webservice.core.Token;
@@ -64,6 +68,7 @@ import io.dockstore.webservice.core.User;
 import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowMode;
+import io.dockstore.webservice.core.WorkflowSummary;
 import io.dockstore.webservice.core.WorkflowVersion;
 import io.dockstore.webservice.doi.DOIGeneratorFactory;
 import io.dockstore.webservice.doi.DOIGeneratorInterface;
@@ -84,7 +89,6 @@ import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.jdbi.UserDAO;
 import io.dockstore.webservice.jdbi.WorkflowDAO;
 import io.dockstore.webservice.jdbi.WorkflowVersionDAO;
-import io.dockstore.webservice.languages.LanguageHandlerFactory;
 import io.dockstore.webservice.languages.LanguageHandlerInterface;
 import io.dropwizard.auth.Auth;
 import io.dropwizard.hibernate.UnitOfWork;
@@ -127,6 +131,8 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
 
     private final String bitbucketClientID;
     private final String bitbucketClientSecret;
+    private WorkflowRefreshScheduler refreshScheduler;
+    private WorkflowArtifacts workflowArtifacts;
 
     @SuppressWarnings("checkstyle:parameternumber")
     public WorkflowResource(HttpClient client, UserDAO userDAO, TokenDAO tokenDAO, ToolDAO toolDAO, WorkflowDAO workflowDAO,
@@ -151,7 +157,7 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
     @Timed
     @UnitOfWork
     @RolesAllowed("admin")
-    @ApiOperation(value = "Refresh all workflows", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, notes = "Updates some metadata. ADMIN ONLY", response = Workflow.class, responseContainer = "List")
+    @ApiOperation(value = "Refresh all workflows", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, notes = "Updates some metadata in one long transaction, prefer POST /workflows/refresh/jobs. ADMIN ONLY", response = Workflow.class, responseContainer = "List")
     public List<Workflow> refreshAll(@ApiParam(hidden = true) @Auth User authUser) {
         List<User> users = userDAO.findAll();
         LOG.info("# users to process: " + users.size());
@@ -164,7 +170,8 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
                 if (user.getUsername().equals("chapmanb")) {
                     return;
                 }
-                refreshStubWorkflowsForUser(user, null, alreadyProcessedWorkflows);
+                // refreshing every repository, do not re-read branches that have not moved
+                refreshStubWorkflowsForUser(user, null, alreadyProcessedWorkflows, true);
             } catch (Exception e) {
                 // continue past users that have issues
                 LOG.debug("could not refresh user: " + user.getUsername(), e);
@@ -174,6 +181,34 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
         return workflowDAO.findAll();
     }
 
+    public void setRefreshScheduler(WorkflowRefreshScheduler refreshScheduler) {
+        this.refreshScheduler = refreshScheduler;
+    }
+
+    public void setWorkflowArtifacts(WorkflowArtifacts workflowArtifacts) {
+        this.workflowArtifacts = workflowArtifacts;
+    }
+
+    @POST
+    @Path("/refresh/jobs")
+    @Timed
+    @RolesAllowed("admin")
+    @ApiOperation(value = "Start refreshing all workflows in the background", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, notes = "Returns right away, poll the job for progress. ADMIN ONLY", response = RefreshJob.class)
+    public RefreshJob startRefreshAll(@ApiParam(hidden = true) @Auth User authUser) {
+        // no unit of work, each step of the job opens its own
+        return refreshScheduler.submit(authUser.getUsername());
+    }
+
+    @GET
+    @Path("/refresh/jobs/{jobId}")
+    @Timed
+    @RolesAllowed("admin")
+    @ApiOperation(value = "Get the progress of a background refresh", authorizations = { @Authorization(value = JWT_SECURITY_DEFINITION_NAME) }, notes = "ADMIN ONLY", response = RefreshJob.class)
+    public RefreshJob getRefreshJob(@ApiParam(hidden = true) @Auth User authUser,
+        @ApiParam(value = "refresh job ID", required = true) @PathParam("jobId") Long jobId) {
+        return refreshScheduler.getJob(jobId);
+    }
+
     /**
      * TODO: this should not be a GET either
      * @param user
@@ -210,7 +245,7 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
     }
 
     void refreshStubWorkflowsForUser(User user, String organization) {
-        refreshStubWorkflowsForUser(user, organization, new HashSet<>());
+        refreshStubWorkflowsForUser(user, organization, new HashSet<>(), false);
     }
 
     /**
@@ -218,64 +253,68 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
      *
      * @param user         a user to refresh workflows for
      * @param organization limit the refresh to particular organizations if given
+     * @param skipUnchangedVersions whether versions still at the commit they were read from keep their files,
+     *                              only for bulk refreshes since a user refreshing expects every version to be read again
      */
-    private void refreshStubWorkflowsForUser(User user, String organization, Set<Long> alreadyProcessed) {
-
-        List<Token> tokens = checkOnBitbucketToken(user);
-        // Check if tokens for git hosting services are valid and refresh corresponding workflows
-        // Refresh Bitbucket
-        Token bitbucketToken = Token.extractToken(tokens, TokenType.BITBUCKET_ORG.toString());
-        // Refresh Github
-        Token githubToken = Token.extractToken(tokens, TokenType.GITHUB_COM.toString());
-        // Refresh Gitlab
-        Token gitlabToken = Token.extractToken(tokens, TokenType.GITLAB_COM.toString());
-
+    private void refreshStubWorkflowsForUser(User user, String organization, Set<Long> alreadyProcessed, boolean skipUnchangedVersions) {
         // create each type of repo and check its validity
-        BitBucketSourceCodeRepo bitBucketSourceCodeRepo = null;
-        if (bitbucketToken != null) {
-            bitBucketSourceCodeRepo = new BitBucketSourceCodeRepo(bitbucketToken.getUsername(), client, bitbucketToken.getContent(), null);
-            bitBucketSourceCodeRepo.checkSourceCodeValidity();
-        }
-
-        GitHubSourceCodeRepo gitHubSourceCodeRepo = null;
-        if (githubToken != null) {
-            gitHubSourceCodeRepo = new GitHubSourceCodeRepo(user.getUsername(), githubToken.getContent(), null);
-            gitHubSourceCodeRepo.checkSourceCodeValidity();
+        List<SourceCodeRepoInterface> sourceCodeRepos = getSourceControlTokens(user).stream().map(token -> createSourceCodeRepo(user, token))
+            .collect(Collectors.toList());
+        try {
+            for (SourceCodeRepoInterface sourceCodeRepo : sourceCodeRepos) {
+                sourceCodeRepo.setSkipUnchangedVersions(skipUnchangedVersions);
+                // get workflows from the git hosting service for a user and updates db
+                refreshHelper(sourceCodeRepo, user, organization, alreadyProcessed);
+            }
+            // when 3) no data is found for a workflow in the db, we may want to create a warning, note, or label
+        } catch (WebApplicationException ex) {
+            LOG.info(user.getUsername() + ": " + "Failed to refresh user {}", user.getId());
         }
+    }
 
-        GitLabSourceCodeRepo gitLabSourceCodeRepo = null;
-        if (gitlabToken != null) {
-            gitLabSourceCodeRepo = new GitLabSourceCodeRepo(user.getUsername(), client, gitlabToken.getContent(), null);
-            gitLabSourceCodeRepo.checkSourceCodeValidity();
+    /**
+     * Gets the user's tokens for git hosting services, refreshing the Bitbucket token if needed
+     *
+     * @param user the user whose workflows are refreshed
+     * @return Bitbucket, GitHub and GitLab tokens in that order, only those that are present
+     */
+    List<Token> getSourceControlTokens(User user) {
+        List<Token> tokens = checkOnBitbucketToken(user);
+        List<Token> sourceControlTokens = new ArrayList<>();
+        for (TokenType tokenType : Arrays.asList(TokenType.BITBUCKET_ORG, TokenType.GITHUB_COM, TokenType.GITLAB_COM)) {
+            Token token = Token.extractToken(tokens, tokenType.toString());
+            if (token != null && token.getContent() != null) {
+                sourceControlTokens.add(token);
+            }
         }
-        // Update bitbucket workflows if token exists
-        boolean hasBitbucketToken = bitbucketToken != null && bitbucketToken.getContent() != null;
-        boolean hasGitHubToken = githubToken != null && githubToken.getContent() != null;
-        boolean hasGitLabToken = gitlabToken != null && gitlabToken.getContent() != null;
-        if (!hasBitbucketToken && !hasGitHubToken && !hasGitLabToken) {
+        if (sourceControlTokens.isEmpty()) {
             throw new CustomWebApplicationException(
                 "No source control repository token found.  Please link at least one source control repository token to your account.",
                 HttpStatus.SC_BAD_REQUEST);
         }
-        try {
-            if (hasBitbucketToken) {
-                // get workflows from bitbucket for a user and updates db
-                refreshHelper(bitBucketSourceCodeRepo, user, organization, alreadyProcessed);
-            }
-            // Update github workflows if token exists
-            if (hasGitHubToken) {
-                // get workflows from github for a user and updates db
-                refreshHelper(gitHubSourceCodeRepo, user, organization, alreadyProcessed);
-            }
-            // Update gitlab workflows if token exists
-            if (hasGitLabToken) {
-                // get workflows from gitlab for a user and updates db
-                refreshHelper(gitLabSourceCodeRepo, user, organization, alreadyProcessed);
-            }
-            // when 3) no data is found for a workflow in the db, we may want to create a warning, note, or label
-        } catch (WebApplicationException ex) {
-            LOG.info(user.getUsername() + ": " + "Failed to refresh user {}", user.getId());
+        return sourceControlTokens;
+    }
+
+    /**
+     * Create an interface to the git hosting service of a token and check its validity
+     *
+     * @param user  the owner of the token
+     * @param token a Bitbucket, GitHub or GitLab token
+     * @return an interface that is not shared with any other refresh
+     */
+    SourceCodeRepoInterface createSourceCodeRepo(User user, Token token) {
+        SourceCodeRepoInterface sourceCodeRepo;
+        if (TokenType.BITBUCKET_ORG.toString().equals(token.getTokenSource())) {
+            sourceCodeRepo = new BitBucketSourceCodeRepo(token.getUsername(), client, token.getContent(), null);
+        } else if (TokenType.GITHUB_COM.toString().equals(token.getTokenSource())) {
+            sourceCodeRepo = new GitHubSourceCodeRepo(user.getUsername(), token.getContent(), null);
+        } else if (TokenType.GITLAB_COM.toString().equals(token.getTokenSource())) {
+            sourceCodeRepo = new GitLabSourceCodeRepo(user.getUsername(), client, token.getContent(), null);
+        } else {
+            throw new CustomWebApplicationException("Not a source control token: " + token.getTokenSource(), HttpStatus.SC_BAD_REQUEST);
         }
+        sourceCodeRepo.checkSourceCodeValidity();
+        return sourceCodeRepo;
     }
 
     /**
@@ -306,47 +345,62 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
         }
         // For each entry found of the associated git hosting service
         for (Map.Entry<String, String> entry : workflowGitUrl2Name.entrySet()) {
-            // Split entry into organization/namespace and repository/name
-            String[] entryPathSplit = entry.getValue().split("/");
-            sourceCodeRepoInterface.updateUsernameAndRepository(entryPathSplit[0], entryPathSplit[1]);
-
-            // Get all workflows with the same giturl)
-            final List<Workflow> byGitUrl = workflowDAO.findByGitUrl(entry.getKey());
-            if (byGitUrl.size() > 0) {
-                // Workflows exist with the given git url
-                for (Workflow workflow : byGitUrl) {
-                    // check whitelist for already processed workflows
-                    if (alreadyProcessed.contains(workflow.getId())) {
-                        continue;
-                    }
-
-                    // Update existing workflows with new information from the repository
-                    // Note we pass the existing workflow as a base for the updated version of the workflow
-                    final Workflow newWorkflow = sourceCodeRepoInterface.getWorkflow(entry.getValue(), Optional.of(workflow));
-
-                    // Take ownership of these workflows
-                    workflow.getUsers().add(user);
-
-                    // Update the existing matching workflows based off of the new information
-                    updateDBWorkflowWithSourceControlWorkflow(workflow, newWorkflow);
-                    alreadyProcessed.add(workflow.getId());
+            refreshRepository(sourceCodeRepoInterface, user, entry.getKey(), entry.getValue(), alreadyProcessed);
+        }
+    }
+
+    /**
+     * Updates the workflows of one repository, or adds a stub workflow if there are none
+     *
+     * @param sourceCodeRepoInterface interface to read data from source control, it is pointed at the repository,
+     *                                its setting decides whether versions that have not moved are read again
+     * @param user                    the user that made the request to refresh, takes ownership of the workflows
+     * @param gitUrl                  git url of the repository
+     * @param repositoryId            owner/repo
+     * @param alreadyProcessed        ids of workflows to skip, the refreshed workflows are added
+     */
+    void refreshRepository(final SourceCodeRepoInterface sourceCodeRepoInterface, User user, String gitUrl, String repositoryId,
+        Set<Long> alreadyProcessed) {
+        // Split entry into organization/namespace and repository/name
+        String[] entryPathSplit = repositoryId.split("/");
+        sourceCodeRepoInterface.updateUsernameAndRepository(entryPathSplit[0], entryPathSplit[1]);
+
+        // Get all workflows with the same giturl)
+        final List<Workflow> byGitUrl = workflowDAO.findByGitUrl(gitUrl);
+        if (byGitUrl.size() > 0) {
+            // Workflows exist with the given git url
+            for (Workflow workflow : byGitUrl) {
+                // check whitelist for already processed workflows
+                if (alreadyProcessed.contains(workflow.getId())) {
+                    continue;
                 }
-            } else {
-                // Workflows are not registered for the given git url, add one
-                final Workflow newWorkflow = sourceCodeRepoInterface.getWorkflow(entry.getValue(), Optional.empty());
 
-                // The workflow was successfully created
-                if (newWorkflow != null) {
-                    final long workflowID = workflowDAO.create(newWorkflow);
+                // Update existing workflows with new information from the repository
+                // Note we pass the existing workflow as a base for the updated version of the workflow
+                final Workflow newWorkflow = sourceCodeRepoInterface.getWorkflow(repositoryId, Optional.of(workflow));
 
-                    // need to create nested data models
-                    final Workflow workflowFromDB = workflowDAO.findById(workflowID);
-                    workflowFromDB.getUsers().add(user);
+                // Take ownership of these workflows
+                workflow.getUsers().add(user);
 
-                    // Update newly created template workflow (workflowFromDB) with found data from the repository
-                    updateDBWorkflowWithSourceControlWorkflow(workflowFromDB, newWorkflow);
-                    alreadyProcessed.add(workflowFromDB.getId());
-                }
+                // Update the existing matching workflows based off of the new information
+                updateDBWorkflowWithSourceControlWorkflow(workflow, newWorkflow);
+                alreadyProcessed.add(workflow.getId());
+            }
+        } else {
+            // Workflows are not registered for the given git url, add one
+            final Workflow newWorkflow = sourceCodeRepoInterface.getWorkflow(repositoryId, Optional.empty());
+
+            // The workflow was successfully created
+            if (newWorkflow != null) {
+                final long workflowID = workflowDAO.create(newWorkflow);
+
+                // need to create nested data models
+                final Workflow workflowFromDB = workflowDAO.findById(workflowID);
+                workflowFromDB.getUsers().add(user);
+
+                // Update newly created template workflow (workflowFromDB) with found data from the repository
+                updateDBWorkflowWithSourceControlWorkflow(workflowFromDB, newWorkflow);
+                alreadyProcessed.add(workflowFromDB.getId());
             }
         }
     }
@@ -427,7 +481,9 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
         // Then copy over content that changed
         for (WorkflowVersion version : newWorkflow.getVersions()) {
             WorkflowVersion workflowVersionFromDB = existingVersionMap.get(version.getName());
+            boolean pathChanged = false;
             if (existingVersionMap.containsKey(version.getName())) {
+                pathChanged = !Objects.equals(workflowVersionFromDB.getWorkflowPath(), version.getWorkflowPath());
                 workflowVersionFromDB.update(version);
             } else {
                 // create a new one and replace the old one
@@ -438,31 +494,11 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
             }
 
             // Update source files for each version
-            Map<String, SourceFile> existingFileMap = new HashMap<>();
-            workflowVersionFromDB.getSourceFiles().forEach(file -> existingFileMap.put(file.getType().toString() + file.getPath(), file));
-            for (SourceFile file : version.getSourceFiles()) {
-                if (existingFileMap.containsKey(file.getType().toString() + file.getPath())) {
-                    existingFileMap.get(file.getType().toString() + file.getPath()).setContent(file.getContent());
-                } else {
-                    final long fileID = fileDAO.create(file);
-                    final SourceFile fileFromDB = fileDAO.findById(fileID);
-                    workflowVersionFromDB.getSourceFiles().add(fileFromDB);
-                }
-            }
-
-            // Remove existing files that are no longer present
-            for (Map.Entry<String, SourceFile> entry : existingFileMap.entrySet()) {
-                boolean toDelete = true;
-                for (SourceFile file : version.getSourceFiles()) {
-                    if (entry.getKey().equals(file.getType().toString() + file.getPath())) {
-                        toDelete = false;
-                    }
-                }
-                if (toDelete) {
-                    workflowVersionFromDB.getSourceFiles().remove(entry.getValue());
-                }
+            if (fileDAO.updateSourceFiles(workflowVersionFromDB, version.getSourceFiles()) || pathChanged) {
+                workflowVersionFromDB.clearArtifactHash();
             }
         }
+        workflowArtifacts.scheduleRebuild(workflow);
     }
 
     @GET
@@ -734,11 +770,11 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
     @Timed
     @UnitOfWork
     @Path("published")
-    @ApiOperation(value = "List all published workflows.", tags = { "workflows" }, notes = "NO authentication", response = Workflow.class, responseContainer = "List")
-    public List<Workflow> allPublishedWorkflows() {
-        List<Workflow> tools = workflowDAO.findAllPublished();
-        filterContainersForHiddenTags(tools);
-        return tools;
+    @ApiOperation(value = "List all published workflows.", tags = {
+            "workflows" }, notes = "NO authentication, only the summary properties of workflows are included", response = WorkflowSummary.class,
+            responseContainer = "List")
+    public List<WorkflowSummary> allPublishedWorkflows() {
+        return workflowDAO.findAllPublishedSummaries();
     }
 
     @GET
@@ -817,10 +853,12 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
     @Timed
     @UnitOfWork
     @Path("/search")
-    @ApiOperation(value = "Search for matching published workflows.", notes = "Search on the name (full path name) and description. NO authentication", response = Workflow.class, responseContainer = "List", tags = {
+    @ApiOperation(value = "Search for matching published workflows.", notes = "Search on the name (full path name) and description, ignoring case. Best matches come first. NO authentication", response = Workflow.class, responseContainer = "List", tags = {
         "workflows" })
-    public List<Workflow> search(@QueryParam("pattern") String word) {
-        return workflowDAO.searchPattern(word);
+    public List<Workflow> search(@QueryParam("pattern") String word,
+        @ApiParam(value = "Number of matches to skip") @QueryParam("offset") @DefaultValue("0") int offset,
+        @ApiParam(value = "Maximum number of matches to return, at most 1000") @QueryParam("limit") @DefaultValue("100") int limit) {
+        return searchPublished(word, offset, limit);
     }
 
     @GET
@@ -1161,6 +1199,7 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
                 // If path changed then update dirty bit to true
                 if (!existingTag.getWorkflowPath().equals(version.getWorkflowPath())) {
                     existingTag.setDirtyBit(true);
+                    existingTag.clearArtifactHash();
                 }
 
                 existingTag.updateByUser(version);
@@ -1177,20 +1216,9 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
     @UnitOfWork
     @Path("/{workflowId}/dag/{workflowVersionId}")
     @ApiOperation(value = "Get the DAG for a given workflow version", response = String.class)
-    public String getWorkflowDag(@ApiParam(value = "workflowId", required = true) @PathParam("workflowId") Long workflowId, @ApiParam(value = "workflowVersionId", required = true) @PathParam("workflowVersionId") Long workflowVersionId) {
-        Workflow workflow = workflowDAO.findById(workflowId);
-        WorkflowVersion workflowVersion = getWorkflowVersion(workflow, workflowVersionId);
-        SourceFile mainDescriptor = getMainDescriptorFile(workflowVersion);
-
-        if (mainDescriptor != null) {
-            File tmpDir = Files.createTempDir();
-            Map<String, String> secondaryDescContent = extractDescriptorAndSecondaryFiles(workflowVersion, mainDescriptor, tmpDir);
-
-            LanguageHandlerInterface lInterface = LanguageHandlerFactory.getInterface(workflow.getFileType());
-            return lInterface.getContent(workflowVersion.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent,
-                LanguageHandlerInterface.Type.DAG, toolDAO);
-        }
-        return null;
+    public Response getWorkflowDag(@ApiParam(value = "workflowId", required = true) @PathParam("workflowId") Long workflowId, @ApiParam(value = "workflowVersionId", required = true) @PathParam("workflowVersionId") Long workflowVersionId,
+        @Context Request request) {
+        return getArtifact(workflowId, workflowVersionId, LanguageHandlerInterface.Type.DAG, request);
     }
 
     /**
@@ -1205,42 +1233,35 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
     @UnitOfWork
     @Path("/{workflowId}/tools/{workflowVersionId}")
     @ApiOperation(value = "Get the Tools for a given workflow version", response = String.class)
-    public String getTableToolContent(@ApiParam(value = "workflowId", required = true) @PathParam("workflowId") Long workflowId, @ApiParam(value = "workflowVersionId", required = true) @PathParam("workflowVersionId") Long workflowVersionId) {
+    public Response getTableToolContent(@ApiParam(value = "workflowId", required = true) @PathParam("workflowId") Long workflowId, @ApiParam(value = "workflowVersionId", required = true) @PathParam("workflowVersionId") Long workflowVersionId,
+        @Context Request request) {
+        return getArtifact(workflowId, workflowVersionId, LanguageHandlerInterface.Type.TOOLS, request);
+    }
 
+    /**
+     * Serve the stored DAG or tool table of a workflow version, tagged with the hash of what it was built from.
+     * Out of date content that is served while it is rebuilt is not tagged.
+     */
+    private Response getArtifact(Long workflowId, Long workflowVersionId, LanguageHandlerInterface.Type type, Request request) {
         Workflow workflow = workflowDAO.findById(workflowId);
+        checkEntry(workflow);
         WorkflowVersion workflowVersion = getWorkflowVersion(workflow, workflowVersionId);
         if (workflowVersion == null) {
             throw new CustomWebApplicationException("workflow version " + workflowVersionId + " does not exist", HttpStatus.SC_BAD_REQUEST);
         }
-        SourceFile mainDescriptor = getMainDescriptorFile(workflowVersion);
-        if (mainDescriptor != null) {
-            File tmpDir = Files.createTempDir();
-            Map<String, String> secondaryDescContent = extractDescriptorAndSecondaryFiles(workflowVersion, mainDescriptor, tmpDir);
-            LanguageHandlerInterface lInterface = LanguageHandlerFactory.getInterface(workflow.getFileType());
-            return lInterface.getContent(workflowVersion.getWorkflowPath(), mainDescriptor.getContent(), secondaryDescContent,
-                LanguageHandlerInterface.Type.TOOLS, toolDAO);
+        String content = workflowArtifacts.get(workflow, workflowVersion, type);
+        if (content == null) {
+            return Response.noContent().build();
         }
-
-        return null;
-    }
-
-    /**
-     * Populates the return file with the descriptor and secondaryDescContent as a map between file paths and secondary files
-     *
-     * @param workflowVersion source control version to consider
-     * @param mainDescriptor  database record for the main descriptor
-     * @param tmpDir          a directory where to create the written out descriptor
-     * @return secondary file map (string path -> string content)
-     */
-    private Map<String, String> extractDescriptorAndSecondaryFiles(WorkflowVersion workflowVersion, SourceFile mainDescriptor, File tmpDir) {
-        Map<String, String> secondaryDescContent = new HashMap<>();
-        // get secondary files
-        for (SourceFile secondaryFile : workflowVersion.getSourceFiles()) {
-            if (!secondaryFile.getPath().equals(workflowVersion.getWorkflowPath())) {
-                secondaryDescContent.put(secondaryFile.getPath(), secondaryFile.getContent());
-            }
+        if (workflowVersion.getArtifactHash() == null) {
+            return Response.ok(content).build();
         }
-        return secondaryDescContent;
+        EntityTag entityTag = new EntityTag(workflowVersion.getArtifactHash() + '-' + type.name().toLowerCase());
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return Response.ok(content).tag(entityTag).build();
     }
 
     /**
@@ -1264,25 +1285,6 @@ public class WorkflowResource implements AuthenticatedResourceInterface, EntryVe
         return workflowVersion;
     }
 
-    /**
-     * This method will find the main descriptor file based on the workflow version passed in the parameter
-     *
-     * @param workflowVersion workflowVersion with collects sourcefiles
-     * @return mainDescriptor
-     */
-    private SourceFile getMainDescriptorFile(WorkflowVersion workflowVersion) {
-
-        SourceFile mainDescriptor = null;
-        for (SourceFile sourceFile : workflowVersion.getSourceFiles()) {
-            if (sourceFile.getPath().equals(workflowVersion.getWorkflowPath())) {
-                mainDescriptor = sourceFile;
-                break;
-            }
-        }
-
-        return mainDescriptor;
-    }
-
     @PUT
     @Timed
     @UnitOfWork
@@ -17,10 +17,7 @@
 package io.dockstore.webservice.resources.proposedGA4GH;
 
 import java.io.IOException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -31,19 +28,19 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 
-import com.google.common.io.Resources;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceConfiguration;
 import io.dockstore.webservice.core.Entry;
 import io.dockstore.webservice.core.Tool;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.helpers.ElasticManager;
+import io.dockstore.webservice.helpers.ElasticReindexer;
+import io.dockstore.webservice.jdbi.EntryDAO;
 import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.jdbi.WorkflowDAO;
 import io.swagger.api.NotFoundException;
 import io.swagger.api.impl.ToolsImplCommon;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
 import org.apache.http.entity.ContentType;
 import org.apache.http.nio.entity.NStringEntity;
@@ -79,8 +76,8 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
      */
     private List<Entry> getPublished() {
         final List<Entry> published = new ArrayList<>();
-        published.addAll(toolDAO.findAllPublished());
-        published.addAll(workflowDAO.findAllPublished());
+        published.addAll(toolDAO.findAllPublished(EntryDAO.FULL_GRAPH));
+        published.addAll(workflowDAO.findAllPublished(EntryDAO.FULL_GRAPH));
         published.sort(Comparator.comparing(Entry::getGitUrl));
         return published;
     }
@@ -143,36 +140,9 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
 
     @Override
     public Response toolsIndexGet(SecurityContext securityContext) throws NotFoundException {
-        List<Entry> published = getPublished();
-        if (!config.getEsConfiguration().getHostname().isEmpty() && !published.isEmpty()) {
-
-            try (RestClient restClient = RestClient
-                    .builder(new HttpHost(config.getEsConfiguration().getHostname(), config.getEsConfiguration().getPort(), "http"))
-                    .build()) {
-
-                // Delete index
-                try {
-                    restClient.performRequest("DELETE", "/entry");
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-
-                // Get index mapping
-                URL url = Resources.getResource("queries/mapping.json");
-                String text = Resources.toString(url, StandardCharsets.UTF_8);
-                HttpEntity mappingEntity = new NStringEntity(text, ContentType.APPLICATION_JSON);
-
-                // Create index
-                restClient.performRequest("PUT", "/entry", Collections.emptyMap(), mappingEntity);
-
-                // Populate index
-
-                ElasticManager elasticManager = new ElasticManager();
-                elasticManager.bulkUpsert(published);
-            } catch (IOException e) {
-                throw new CustomWebApplicationException(e.getMessage(), HttpStatus.SC_INTERNAL_SERVER_ERROR);
-            }
-            return Response.ok().entity(published.size()).build();
+        if (!config.getEsConfiguration().getHostname().isEmpty()) {
+            ElasticReindexer reindexer = new ElasticReindexer(ElasticManager.getIndexQueue(), config.getEsConfiguration());
+            return Response.ok().entity(reindexer.reindex(toolDAO, workflowDAO)).build();
         }
         return Response.ok().entity(0).build();
     }
@@ -180,9 +150,8 @@ public class ToolsApiExtendedServiceImpl extends ToolsExtendedApiService {
     @Override
     public Response toolsIndexSearch(String query, MultivaluedMap<String, String> queryParameters, SecurityContext securityContext) {
         if (!config.getEsConfiguration().getHostname().isEmpty()) {
-            try (RestClient restClient = RestClient
-                    .builder(new HttpHost(config.getEsConfiguration().getHostname(), config.getEsConfiguration().getPort(), "http"))
-                    .build()) {
+            try {
+                RestClient restClient = ElasticManager.getRestClient();
                 HttpEntity entity = query == null ? null : new NStringEntity(query, ContentType.APPLICATION_JSON);
                 Map<String, String> parameters = new HashMap<>();
                 // TODO: note that this is lossy if there are repeated parameters
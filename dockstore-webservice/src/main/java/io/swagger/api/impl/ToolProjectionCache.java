@@ -0,0 +1,159 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.swagger.api.impl;
+
+import java.util.Date;
+import java.util.Objects;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.collect.Table;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.SourceFile;
+import io.swagger.model.Tool;
+import io.swagger.model.ToolContainerfile;
+import io.swagger.model.ToolDescriptor;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Caches the GA4GH Tool (and its file table) converted from a Dockstore entry.
+ * Entries are keyed by entry id and are only reused while the entry's update timestamps are unchanged,
+ * writes that do not touch the entry row itself (refresh, version and file edits) are picked up by {@link ToolProjectionInvalidator}.
+ * <p>
+ * Cached objects are shared between requests and must not be modified.
+ */
+public final class ToolProjectionCache {
+    private static final int BASE_WEIGHT = 1024;
+    private static final int VERSION_WEIGHT = 512;
+    private static Cache<Long, Projection> cache = CacheBuilder.newBuilder().maximumSize(0).build();
+
+    private ToolProjectionCache() { }
+
+    /**
+     * Builds the cache and registers its statistics, until this is called nothing is cached
+     *
+     * @param spec    cache policy, when maximumWeight is set it is an estimate in bytes
+     * @param metrics the registry to report hits, misses and evictions to
+     */
+    public static void configure(CacheBuilderSpec spec, MetricRegistry metrics) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.from(spec).recordStats();
+        if (spec.toParsableString().contains("maximumWeight")) {
+            cache = builder.weigher((Long id, Projection projection) -> projection.weight).build();
+        } else {
+            cache = builder.build();
+        }
+        metrics.register(MetricRegistry.name(ToolProjectionCache.class, "hits"), (Gauge<Long>)() -> cache.stats().hitCount());
+        metrics.register(MetricRegistry.name(ToolProjectionCache.class, "misses"), (Gauge<Long>)() -> cache.stats().missCount());
+        metrics.register(MetricRegistry.name(ToolProjectionCache.class, "evictions"), (Gauge<Long>)() -> cache.stats().evictionCount());
+        metrics.register(MetricRegistry.name(ToolProjectionCache.class, "size"), (Gauge<Long>)() -> cache.size());
+    }
+
+    /**
+     * Get the converted entry, converting and caching it if needed
+     *
+     * @param entry  the Dockstore tool or workflow
+     * @param config used to build urls
+     * @return the same as ToolsImplCommon.convertEntryToTool, must not be modified
+     */
+    public static Pair<Tool, Table<String, SourceFile.FileType, Object>> get(Entry entry, DockstoreWebserviceConfiguration config) {
+        Projection cached = cache.getIfPresent(entry.getId());
+        if (cached != null && cached.isCurrent(entry)) {
+            return cached.toolTablePair;
+        }
+        Pair<Tool, Table<String, SourceFile.FileType, Object>> toolTablePair = ToolsImplCommon.convertEntryToTool(entry, config);
+        if (toolTablePair != null) {
+            cache.put(entry.getId(), new Projection(entry, toolTablePair));
+        }
+        return toolTablePair;
+    }
+
+    /**
+     * Get the converted entry without loading it, for callers that selected the timestamps of the entry along with its id
+     *
+     * @param entryId      id of the Dockstore tool or workflow
+     * @param dbUpdateDate dbUpdateDate column of the entry
+     * @param lastUpdated  lastUpdated column of the entry, may be null
+     * @return the same as {@link #get(Entry, DockstoreWebserviceConfiguration)}, null when the entry has to be loaded and converted
+     */
+    public static Pair<Tool, Table<String, SourceFile.FileType, Object>> getIfCurrent(long entryId, Date dbUpdateDate, Date lastUpdated) {
+        Projection cached = cache.getIfPresent(entryId);
+        // Entry.getLastUpdated reads a missing value as the epoch
+        if (cached != null && cached.isCurrent(dbUpdateDate, lastUpdated == null ? new Date(0L) : lastUpdated)) {
+            return cached.toolTablePair;
+        }
+        return null;
+    }
+
+    /**
+     * Drop the converted form of an entry, called by {@link ToolProjectionInvalidator} whenever the entry or its versions change
+     *
+     * @param entryId id of the modified entry
+     */
+    static void invalidate(long entryId) {
+        cache.invalidate(entryId);
+    }
+
+    /**
+     * A converted entry along with the timestamps of the entry it was converted from
+     */
+    private static final class Projection {
+        private final Date dbUpdateDate;
+        private final Date lastUpdated;
+        private final int weight;
+        private final Pair<Tool, Table<String, SourceFile.FileType, Object>> toolTablePair;
+
+        Projection(Entry entry, Pair<Tool, Table<String, SourceFile.FileType, Object>> toolTablePair) {
+            this.dbUpdateDate = entry.getDbUpdateDate();
+            this.lastUpdated = entry.getLastUpdated();
+            this.toolTablePair = toolTablePair;
+            this.weight = estimateWeight(toolTablePair);
+        }
+
+        boolean isCurrent(Entry entry) {
+            return isCurrent(entry.getDbUpdateDate(), entry.getLastUpdated());
+        }
+
+        /**
+         * Compares instants, a Timestamp read from the database never equals a Date
+         */
+        boolean isCurrent(Date currentDbUpdateDate, Date currentLastUpdated) {
+            return sameInstant(dbUpdateDate, currentDbUpdateDate) && sameInstant(lastUpdated, currentLastUpdated);
+        }
+
+        private static boolean sameInstant(Date cached, Date current) {
+            return cached == null ? current == null : current != null && cached.getTime() == current.getTime();
+        }
+
+        /**
+         * Rough size in bytes, dominated by the descriptor and Dockerfile contents
+         */
+        private static int estimateWeight(Pair<Tool, Table<String, SourceFile.FileType, Object>> toolTablePair) {
+            long weight = BASE_WEIGHT + (long)VERSION_WEIGHT * toolTablePair.getLeft().getVersions().size();
+            for (Object file : toolTablePair.getRight().values()) {
+                if (file instanceof ToolDescriptor) {
+                    weight += 2L * Objects.toString(((ToolDescriptor)file).getDescriptor(), "").length();
+                } else if (file instanceof ToolContainerfile) {
+                    weight += 2L * Objects.toString(((ToolContainerfile)file).getContainerfile(), "").length();
+                }
+            }
+            return (int)Math.min(weight, Integer.MAX_VALUE);
+        }
+    }
+}
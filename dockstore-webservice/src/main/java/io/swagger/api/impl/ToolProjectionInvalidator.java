@@ -0,0 +1,210 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.swagger.api.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.dockstore.webservice.core.Entry;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Tag;
+import io.dockstore.webservice.core.WorkflowVersion;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.jdbc.Work;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Drops entries from {@link ToolProjectionCache} whenever the entry, one of its versions or one of their files is written,
+ * whichever resource or DAO wrote it. Writes to versions and files leave the timestamps of the entry alone, so without this
+ * they would be served stale until the cached projection expires.
+ * <p>
+ * The ids of written versions and files are collected while the session flushes, their entries are looked up with one query
+ * per type once the last flush is done, right before the transaction commits. The entries are dropped once the transaction
+ * completes, so a concurrent read cannot cache the state that is being replaced.
+ */
+public class ToolProjectionInvalidator implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+    PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+    private static final String ENTRIES_OF_TAGS = "SELECT toolid FROM tool_tag WHERE tagid IN (%1$s)";
+    private static final String ENTRIES_OF_WORKFLOW_VERSIONS = "SELECT workflowid FROM workflow_workflowversion "
+        + "WHERE workflowversionid IN (%1$s)";
+    private static final String ENTRIES_OF_SOURCE_FILES = "SELECT tt.toolid FROM version_sourcefile vs "
+        + "JOIN tool_tag tt ON tt.tagid = vs.versionid WHERE vs.sourcefileid IN (%1$s) "
+        + "UNION ALL SELECT ww.workflowid FROM version_sourcefile vs "
+        + "JOIN workflow_workflowversion ww ON ww.workflowversionid = vs.versionid WHERE vs.sourcefileid IN (%1$s)";
+    /**
+     * Most ids bound to one query, a refresh can write thousands of files
+     */
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final Map<EventSource, Writes> writesBySession = new ConcurrentHashMap<>();
+
+    /**
+     * A new version or file is linked to its entry by writing a collection, which is picked up there
+     */
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Entry) {
+            written(event.getSession(), event.getEntity());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        written(event.getSession(), event.getEntity());
+    }
+
+    /**
+     * A version or file is unlinked from its entry by writing a collection before it is deleted, which is picked up there
+     */
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Entry) {
+            written(event.getSession(), event.getEntity());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        collectionWritten(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        collectionWritten(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        collectionWritten(event);
+    }
+
+    /**
+     * Versions of an entry and labels are collections of the entry, files are collections of a version
+     */
+    private void collectionWritten(AbstractCollectionEvent event) {
+        written(event.getSession(), event.getAffectedOwnerOrNull());
+    }
+
+    private void written(EventSource session, Object entity) {
+        if (entity instanceof Entry) {
+            writes(session).entryIds.add(((Entry)entity).getId());
+        } else if (entity instanceof Tag) {
+            writes(session).tagIds.add(((Tag)entity).getId());
+        } else if (entity instanceof WorkflowVersion) {
+            writes(session).workflowVersionIds.add(((WorkflowVersion)entity).getId());
+        } else if (entity instanceof SourceFile) {
+            writes(session).sourceFileIds.add(((SourceFile)entity).getId());
+        }
+    }
+
+    /**
+     * @return what the current transaction of the session wrote so far, registering what to do with it on the first write
+     */
+    private Writes writes(EventSource session) {
+        return writesBySession.computeIfAbsent(session, newSession -> {
+            Writes writes = new Writes();
+            newSession.getActionQueue().registerProcess((BeforeTransactionCompletionProcess)completingSession -> completingSession
+                .doWork(writes));
+            // dropping is safe whether or not the transaction committed
+            newSession.getActionQueue().registerProcess((AfterTransactionCompletionProcess)(success, completedSession) -> {
+                writesBySession.remove(newSession);
+                writes.entryIds.forEach(ToolProjectionCache::invalidate);
+                // after a rollback the lookup is still registered and would run with the next commit of the session
+                writes.clear();
+            });
+            return writes;
+        });
+    }
+
+    /**
+     * Ids written by one transaction. Entries that only had a version or file written are looked up before commit,
+     * a transaction that rolls back leaves them as they were in the database.
+     */
+    private static final class Writes implements Work {
+        private final Set<Long> entryIds = new HashSet<>();
+        private final Set<Long> tagIds = new HashSet<>();
+        private final Set<Long> workflowVersionIds = new HashSet<>();
+        private final Set<Long> sourceFileIds = new HashSet<>();
+
+        void clear() {
+            entryIds.clear();
+            tagIds.clear();
+            workflowVersionIds.clear();
+            sourceFileIds.clear();
+        }
+
+        @Override
+        public void execute(Connection connection) throws SQLException {
+            addEntries(connection, ENTRIES_OF_TAGS, tagIds);
+            addEntries(connection, ENTRIES_OF_WORKFLOW_VERSIONS, workflowVersionIds);
+            addEntries(connection, ENTRIES_OF_SOURCE_FILES, sourceFileIds);
+        }
+
+        /**
+         * @param query selects the entry ids, each %1$s stands for the placeholders of all the ids
+         */
+        private void addEntries(Connection connection, String query, Set<Long> ids) throws SQLException {
+            List<Long> remaining = new ArrayList<>(ids);
+            for (int from = 0; from < remaining.size(); from += MAX_IDS_PER_QUERY) {
+                List<Long> batch = remaining.subList(from, Math.min(remaining.size(), from + MAX_IDS_PER_QUERY));
+                String sql = String.format(query, String.join(", ", Collections.nCopies(batch.size(), "?")));
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int parameter = 1;
+                    for (int list = 0; list < StringUtils.countMatches(query, "%1$s"); list++) {
+                        for (Long id : batch) {
+                            statement.setLong(parameter++, id);
+                        }
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            entryIds.add(resultSet.getLong(1));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -23,8 +23,12 @@ import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -39,7 +43,6 @@ import javax.ws.rs.core.SecurityContext;
 
 import avro.shaded.com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Table;
 import io.dockstore.webservice.CustomWebApplicationException;
 import io.dockstore.webservice.DockstoreWebserviceApplication;
@@ -52,6 +55,7 @@ import io.dockstore.webservice.core.Version;
 import io.dockstore.webservice.core.Workflow;
 import io.dockstore.webservice.core.WorkflowVersion;
 import io.dockstore.webservice.helpers.EntryVersionHelper;
+import io.dockstore.webservice.jdbi.EntryFilter;
 import io.dockstore.webservice.jdbi.ToolDAO;
 import io.dockstore.webservice.jdbi.WorkflowDAO;
 import io.swagger.api.NotFoundException;
@@ -122,15 +126,16 @@ public class ToolsApiServiceImpl extends ToolsApiService {
             // check whether this is registered
             response = Response.status(Response.Status.UNAUTHORIZED).build();
         } else {
-            io.swagger.model.Tool tool = ToolsImplCommon.convertEntryToTool(container, config).getLeft();
+            io.swagger.model.Tool tool = ToolProjectionCache.get(container, config).getLeft();
             assert (tool != null);
-            // filter out other versions if we're narrowing to a specific version
+            // filter out other versions if we're narrowing to a specific version, the cached tool itself must not be modified
             if (version != null) {
-                tool.getVersions().removeIf(v -> !v.getName().equals(version));
-                if (tool.getVersions().size() != 1) {
+                List<ToolVersion> matchingVersions = tool.getVersions().stream().filter(v -> v.getName().equals(version))
+                    .collect(Collectors.toList());
+                if (matchingVersions.size() != 1) {
                     response = Response.status(Response.Status.NOT_FOUND).build();
                 } else {
-                    response = Response.ok(tool.getVersions().get(0)).build();
+                    response = Response.ok(matchingVersions.get(0)).build();
                 }
             } else {
                 if (returnJustVersions) {
@@ -255,77 +260,86 @@ public class ToolsApiServiceImpl extends ToolsApiService {
     public Response toolsGet(String registryId, String registry, String organization, String name, String toolname, String description,
         String author, String offset, Integer limit, SecurityContext securityContext, ContainerRequestContext value)
         throws NotFoundException {
-        final List<Entry> all = new ArrayList<>();
-        all.addAll(toolDAO.findAllPublished());
-        all.addAll(workflowDAO.findAllPublished());
-        all.sort(Comparator.comparing(Entry::getGitUrl));
+        if (limit == null) {
+            limit = DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1) {
+            throw new CustomWebApplicationException("Limit must be a positive number", HttpStatus.SC_BAD_REQUEST);
+        }
+        final EntryFilter filter = new EntryFilter(registryId, registry, organization, name, toolname, description, author);
+        // workflows do not have a registry, organization, name or toolname so they never match those filters
+        final boolean includeWorkflows = !filter.hasToolCriteria();
+        final PageCursor cursor = PageCursor.parse(offset);
 
-        List<io.swagger.model.Tool> results = new ArrayList<>();
-        for (Entry c : all) {
-            if (c instanceof Workflow && (registryId != null || registry != null || organization != null || name != null
-                || toolname != null)) {
-                continue;
+        // only keys are fetched here, a numeric offset is a deprecated page index and needs the keys of the preceding pages to be skipped
+        final int skip;
+        final int keysToFetch;
+        try {
+            skip = Math.multiplyExact(cursor.getPageIndex(), limit);
+            keysToFetch = Math.addExact(skip, limit + 1);
+        } catch (ArithmeticException e) {
+            throw new CustomWebApplicationException("Offset is out of range", HttpStatus.SC_BAD_REQUEST);
+        }
+        List<Object[]> toolKeys = toolDAO.findPublishedKeys(filter, cursor.toolGitUrl, cursor.toolId, keysToFetch);
+        List<Object[]> workflowKeys = includeWorkflows ? workflowDAO
+            .findPublishedKeys(filter, cursor.workflowGitUrl, cursor.workflowId, keysToFetch) : new ArrayList<>();
+
+        // merge the two ordered key lists, tools and workflows each keep their own position in the next cursor
+        List<Pair<Boolean, Object[]>> pageKeys = new ArrayList<>();
+        int toolIndex = 0;
+        int workflowIndex = 0;
+        for (int position = 0; position < skip + limit; position++) {
+            boolean toolsLeft = toolIndex < toolKeys.size();
+            boolean workflowsLeft = workflowIndex < workflowKeys.size();
+            if (!toolsLeft && !workflowsLeft) {
+                break;
             }
-
-            if (c instanceof Tool) {
-                Tool tool = (Tool)c;
-                // check each criteria. This sucks. Can we do this better with reflection? Or should we pre-convert?
-                if (registryId != null) {
-                    if (!registryId.contains(tool.getToolPath())) {
-                        continue;
-                    }
-                }
-                if (registry != null && tool.getRegistry() != null) {
-                    if (!tool.getRegistry().contains(registry)) {
-                        continue;
-                    }
-                }
-                if (organization != null && tool.getNamespace() != null) {
-                    if (!tool.getNamespace().contains(organization)) {
-                        continue;
-                    }
-                }
-                if (name != null && tool.getName() != null) {
-                    if (!tool.getName().contains(name)) {
-                        continue;
-                    }
-                }
-                if (toolname != null && tool.getToolname() != null) {
-                    if (!tool.getToolname().contains(toolname)) {
-                        continue;
-                    }
-                }
+            boolean takeTool =
+                toolsLeft && (!workflowsLeft || PageCursor.compareKeys(toolKeys.get(toolIndex), workflowKeys.get(workflowIndex)) <= 0);
+            Object[] key = takeTool ? toolKeys.get(toolIndex++) : workflowKeys.get(workflowIndex++);
+            if (position >= skip) {
+                pageKeys.add(Pair.of(takeTool, key));
             }
-            if (description != null && c.getDescription() != null) {
-                if (!c.getDescription().contains(description)) {
-                    continue;
-                }
+        }
+        final boolean hasNextPage = toolIndex < toolKeys.size() || workflowIndex < workflowKeys.size();
+        final PageCursor nextCursor = cursor.advance(toolIndex > 0 ? toolKeys.get(toolIndex - 1) : null,
+            workflowIndex > 0 ? workflowKeys.get(workflowIndex - 1) : null);
+
+        // entries converted since they last changed come from the cache, only the others of this page are loaded and converted
+        Map<Long, io.swagger.model.Tool> converted = new HashMap<>();
+        List<Long> toolsToLoad = new ArrayList<>();
+        List<Long> workflowsToLoad = new ArrayList<>();
+        for (Pair<Boolean, Object[]> key : pageKeys) {
+            final long id = (Long)key.getRight()[1];
+            Pair<io.swagger.model.Tool, Table<String, SourceFile.FileType, Object>> cached = ToolProjectionCache
+                .getIfCurrent(id, (Date)key.getRight()[2], (Date)key.getRight()[3]);
+            if (cached != null) {
+                converted.put(id, cached.getLeft());
+            } else if (key.getLeft()) {
+                toolsToLoad.add(id);
+            } else {
+                workflowsToLoad.add(id);
             }
-            if (author != null && c.getAuthor() != null) {
-                if (!c.getAuthor().contains(author)) {
-                    continue;
-                }
+        }
+        List<Entry> loaded = new ArrayList<>(toolDAO.findByIds(toolsToLoad));
+        loaded.addAll(workflowDAO.findByIds(workflowsToLoad));
+        for (Entry entry : loaded) {
+            Pair<io.swagger.model.Tool, Table<String, SourceFile.FileType, Object>> toolTablePair = ToolProjectionCache.get(entry, config);
+            if (toolTablePair != null) {
+                converted.put(entry.getId(), toolTablePair.getLeft());
             }
-            // if passing, for each container that matches the criteria, convert to standardised format and return
-            io.swagger.model.Tool tool = ToolsImplCommon.convertEntryToTool(c, config).getLeft();
+        }
+        List<io.swagger.model.Tool> results = new ArrayList<>();
+        for (Pair<Boolean, Object[]> key : pageKeys) {
+            io.swagger.model.Tool tool = converted.get((Long)key.getRight()[1]);
             if (tool != null) {
                 results.add(tool);
             }
         }
 
-        if (limit == null) {
-            limit = DEFAULT_PAGE_SIZE;
-        }
-        List<List<io.swagger.model.Tool>> pagedResults = Lists.partition(results, limit);
-        int offsetInteger = 0;
-        if (offset != null) {
-            offsetInteger = Integer.parseInt(offset);
-        }
-        if (offsetInteger >= pagedResults.size()) {
-            results = new ArrayList<>();
-        } else {
-            results = pagedResults.get(offsetInteger);
-        }
+        final long total = toolDAO.countPublished(filter) + (includeWorkflows ? workflowDAO.countPublished(filter) : 0);
+        final PageCursor lastPageCursor = findLastPageCursor(filter, includeWorkflows, total, limit);
+
         final Response.ResponseBuilder responseBuilder = Response.ok(results);
         responseBuilder.header("current_offset", offset);
         responseBuilder.header("current_limit", limit);
@@ -341,15 +355,15 @@ public class ToolsApiServiceImpl extends ToolsApiService {
             handleParameter(registry, "registry", filters);
             handleParameter(limit.toString(), "limit", filters);
 
-            if (offsetInteger + 1 < pagedResults.size()) {
+            if (hasNextPage) {
                 URI nextPageURI = new URI(config.getScheme(), null, config.getHostname(), Integer.parseInt(config.getPort()),
                     DockstoreWebserviceApplication.GA4GH_API_PATH + "/tools",
-                    Joiner.on('&').join(filters) + "&offset=" + (offsetInteger + 1), null);
+                    Joiner.on('&').join(filters) + "&offset=" + nextCursor.toString(), null);
                 responseBuilder.header("next_page", nextPageURI.toURL().toString());
             }
             URI lastPageURI = new URI(config.getScheme(), null, config.getHostname(), Integer.parseInt(config.getPort()),
                 DockstoreWebserviceApplication.GA4GH_API_PATH + "/tools",
-                Joiner.on('&').join(filters) + "&offset=" + (pagedResults.size() - 1), null);
+                Joiner.on('&').join(filters) + "&offset=" + lastPageCursor.toString(), null);
             responseBuilder.header("last_page", lastPageURI.toURL().toString());
 
         } catch (URISyntaxException | MalformedURLException e) {
@@ -358,6 +372,43 @@ public class ToolsApiServiceImpl extends ToolsApiService {
         return responseBuilder.build();
     }
 
+    /**
+     * Finds where the last page starts from the keys at the end of each list, so that it costs the same however many pages there are
+     *
+     * @param filter           substring filters to apply
+     * @param includeWorkflows whether workflows are listed along with the tools
+     * @param total            number of tools and workflows listed
+     * @param limit            page size
+     * @return the cursor of the last page
+     */
+    private PageCursor findLastPageCursor(EntryFilter filter, boolean includeWorkflows, long total, int limit) {
+        if (total == 0) {
+            return new PageCursor();
+        }
+        final int lastPageSize = total % limit == 0 ? limit : (int)(total % limit);
+        // one more key than the page holds, the key before the page is where its cursor points
+        List<Object[]> toolKeys = toolDAO.findLastPublishedKeys(filter, lastPageSize + 1);
+        List<Object[]> workflowKeys = includeWorkflows ? workflowDAO.findLastPublishedKeys(filter, lastPageSize + 1) : new ArrayList<>();
+
+        // walk the last page backwards, on equal keys the workflow is listed after the tool so it comes first here
+        int toolIndex = 0;
+        int workflowIndex = 0;
+        for (int position = 0; position < lastPageSize; position++) {
+            boolean toolsLeft = toolIndex < toolKeys.size();
+            boolean workflowsLeft = workflowIndex < workflowKeys.size();
+            if (!toolsLeft && !workflowsLeft) {
+                break;
+            }
+            if (toolsLeft && (!workflowsLeft || PageCursor.compareKeys(toolKeys.get(toolIndex), workflowKeys.get(workflowIndex)) > 0)) {
+                toolIndex++;
+            } else {
+                workflowIndex++;
+            }
+        }
+        return new PageCursor().advance(toolIndex < toolKeys.size() ? toolKeys.get(toolIndex) : null,
+            workflowIndex < workflowKeys.size() ? workflowKeys.get(workflowIndex) : null);
+    }
+
     private void handleParameter(String parameter, String queryName, List<String> filters) {
         if (parameter != null) {
             filters.add(queryName + "=" + parameter);
@@ -390,8 +441,8 @@ public class ToolsApiServiceImpl extends ToolsApiService {
             return Response.status(Response.Status.UNAUTHORIZED).build();
         }
 
-        final Pair<io.swagger.model.Tool, Table<String, SourceFile.FileType, Object>> toolTablePair = ToolsImplCommon
-            .convertEntryToTool(entry, config);
+        final Pair<io.swagger.model.Tool, Table<String, SourceFile.FileType, Object>> toolTablePair = ToolProjectionCache
+            .get(entry, config);
 
         String finalVersionId = versionId;
         if (toolTablePair == null || toolTablePair.getKey().getVersions() == null) {
@@ -628,6 +679,104 @@ public class ToolsApiServiceImpl extends ToolsApiService {
         return StringUtils.stripStart(cleanRelativePath, "/");
     }
 
+    /**
+     * Position in the listing of GA4GH GET /tools, sorted by (gitUrl, id) with git urls compared byte by byte as the database does.
+     * A keyset cursor remembering the last tool and the last workflow returned,
+     * written as base64(toolGitUrl).toolId.base64(workflowGitUrl).workflowId with empty segments for a list not started yet.
+     * A plain number is still accepted as a page index but is deprecated: every entry of the preceding pages is read to reach it,
+     * next_page and last_page only hand out cursors.
+     */
+    private static final class PageCursor {
+        private static final int SEGMENTS = 4;
+        private int pageIndex = 0;
+        private String toolGitUrl;
+        private Long toolId;
+        private String workflowGitUrl;
+        private Long workflowId;
+
+        static PageCursor parse(String offset) {
+            PageCursor cursor = new PageCursor();
+            if (offset == null || offset.isEmpty()) {
+                return cursor;
+            }
+            try {
+                if (StringUtils.isNumeric(offset)) {
+                    cursor.pageIndex = Integer.parseInt(offset);
+                    return cursor;
+                }
+                String[] segments = offset.split("\\.", -1);
+                if (segments.length != SEGMENTS) {
+                    throw new IllegalArgumentException("unexpected number of segments");
+                }
+                if (!segments[1].isEmpty()) {
+                    cursor.toolGitUrl = decode(segments[0]);
+                    cursor.toolId = Long.parseLong(segments[1]);
+                }
+                if (!segments[SEGMENTS - 1].isEmpty()) {
+                    cursor.workflowGitUrl = decode(segments[2]);
+                    cursor.workflowId = Long.parseLong(segments[SEGMENTS - 1]);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new CustomWebApplicationException("Invalid offset " + offset, HttpStatus.SC_BAD_REQUEST);
+            }
+            return cursor;
+        }
+
+        static int compareKeys(Object[] first, Object[] second) {
+            int compare = compareCodePoints((String)first[0], (String)second[0]);
+            return compare != 0 ? compare : ((Long)first[1]).compareTo((Long)second[1]);
+        }
+
+        /**
+         * Same order as the "C" collation over UTF-8, unlike String.compareTo which orders UTF-16 units
+         * and puts characters above U+FFFF before U+E000 to U+FFFF
+         */
+        static int compareCodePoints(String first, String second) {
+            int index = 0;
+            while (index < first.length() && index < second.length()) {
+                int firstCodePoint = first.codePointAt(index);
+                int secondCodePoint = second.codePointAt(index);
+                if (firstCodePoint != secondCodePoint) {
+                    return Integer.compare(firstCodePoint, secondCodePoint);
+                }
+                index += Character.charCount(firstCodePoint);
+            }
+            return Integer.compare(first.length(), second.length());
+        }
+
+        private static String encode(String gitUrl) {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(gitUrl.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static String decode(String segment) {
+            return new String(Base64.getUrlDecoder().decode(segment), StandardCharsets.UTF_8);
+        }
+
+        int getPageIndex() {
+            return pageIndex;
+        }
+
+        /**
+         * @param lastToolKey     (gitUrl, id) of the last tool consumed, null if no tool was consumed
+         * @param lastWorkflowKey (gitUrl, id) of the last workflow consumed, null if no workflow was consumed
+         * @return the cursor for the page following the consumed keys
+         */
+        PageCursor advance(Object[] lastToolKey, Object[] lastWorkflowKey) {
+            PageCursor next = new PageCursor();
+            next.toolGitUrl = lastToolKey == null ? toolGitUrl : (String)lastToolKey[0];
+            next.toolId = lastToolKey == null ? toolId : (Long)lastToolKey[1];
+            next.workflowGitUrl = lastWorkflowKey == null ? workflowGitUrl : (String)lastWorkflowKey[0];
+            next.workflowId = lastWorkflowKey == null ? workflowId : (Long)lastWorkflowKey[1];
+            return next;
+        }
+
+        @Override
+        public String toString() {
+            return (toolId == null ? "" : encode(toolGitUrl)) + '.' + (toolId == null ? "" : toolId) + '.'
+                + (workflowId == null ? "" : encode(workflowGitUrl)) + '.' + (workflowId == null ? "" : workflowId);
+        }
+    }
+
     /**
      * Used to parse localised IDs (no URL)
      * If tool, the id will look something like "registry.hub.docker.com/sequenza/sequenza"
@@ -69,6 +69,7 @@ public final class ToolsImplCommon {
     private static final Logger LOG = LoggerFactory.getLogger(ToolsImplCommon.class);
     private static final String GITHUB_PREFIX = "git@github.com:";
     private static final String BITBUCKET_PREFIX = "git@bitbucket.org:";
+    private static final Gson GSON = new Gson();
 
     private ToolsImplCommon() { }
 
@@ -364,9 +365,8 @@ public final class ToolsImplCommon {
         tool.setVerified(versions.stream().anyMatch(Version::isVerified));
         final List<String> collect = versions.stream().filter(Version::isVerified).map(Version::getVerifiedSource)
             .collect(Collectors.toList());
-        Gson gson = new Gson();
         Collections.sort(collect);
-        tool.setVerifiedSource(Strings.nullToEmpty(gson.toJson(collect)));
+        tool.setVerifiedSource(Strings.nullToEmpty(GSON.toJson(collect)));
         return tool;
     }
 
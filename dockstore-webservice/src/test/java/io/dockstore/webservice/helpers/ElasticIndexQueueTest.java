@@ -0,0 +1,49 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ElasticIndexQueueTest {
+
+    @Test(timeout = 10000)
+    public void fullQueueDropsWithoutWaiting() throws Exception {
+        DockstoreWebserviceConfiguration.ElasticSearchConfig esConfig = new DockstoreWebserviceConfiguration().getEsConfiguration();
+        // nothing listens there, every flush fails
+        esConfig.setHostname("localhost");
+        esConfig.setPort(1);
+        esConfig.setMaxQueueSize(2);
+        esConfig.setFlushIntervalMillis(60000);
+        MetricRegistry metrics = new MetricRegistry();
+        ElasticIndexQueue queue = new ElasticIndexQueue(esConfig, metrics);
+        queue.start();
+        try {
+            queue.enqueue(ElasticIndexQueue.IndexOperation.delete("tool", 1));
+            queue.enqueue(ElasticIndexQueue.IndexOperation.delete("tool", 2));
+            queue.enqueue(ElasticIndexQueue.IndexOperation.delete("tool", 3));
+
+            Assert.assertEquals(1, metrics.counter(MetricRegistry.name(ElasticIndexQueue.class, "dropped")).getCount());
+            int depth = (Integer)metrics.getGauges().get(MetricRegistry.name(ElasticIndexQueue.class, "depth")).getValue();
+            Assert.assertTrue(depth <= 2);
+        } finally {
+            queue.stop();
+        }
+    }
+}
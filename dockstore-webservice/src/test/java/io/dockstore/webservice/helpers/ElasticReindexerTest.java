@@ -0,0 +1,278 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.CharStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.dockstore.common.Registry;
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.ToolMode;
+import io.dockstore.webservice.jdbi.EntryDAO;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Reindexes into a local http server that answers the few elastic search calls a reindex makes
+ */
+public class ElasticReindexerTest {
+    private static final String OLD_INDEX = "entry_1";
+    private static final int TOOLS = 10;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final DockstoreWebserviceConfiguration.ElasticSearchConfig esConfig = new DockstoreWebserviceConfiguration()
+        .getEsConfiguration();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+    private final Set<String> failingIds = ConcurrentHashMap.newKeySet();
+    private final Set<String> existingIds = ConcurrentHashMap.newKeySet();
+    private HttpServer server;
+    private ElasticIndexQueue indexQueue;
+    private EntryDAO<Tool> toolDAO;
+    /**
+     * runs once the first batch of tools has been read
+     */
+    private Runnable afterFirstBatch = () -> { };
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::serve);
+        server.start();
+        esConfig.setHostname("localhost");
+        esConfig.setPort(server.getAddress().getPort());
+        esConfig.setBulkSize(3);
+        esConfig.setReindexBatchSize(4);
+        esConfig.setFlushIntervalMillis(10);
+        indexQueue = new ElasticIndexQueue(esConfig, new MetricRegistry());
+        indexQueue.start();
+
+        // the DAO never reaches the session, it hands out tools from memory
+        SessionFactory sessionFactory = (SessionFactory)Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { SessionFactory.class }, (proxy, method, args) -> {
+                throw new UnsupportedOperationException(method.getName());
+            });
+        toolDAO = new EntryDAO<Tool>(sessionFactory) {
+            @Override
+            public List<Tool> findPublishedAfterId(long afterId, int limit) {
+                if (afterId > 0 && afterId <= limit) {
+                    afterFirstBatch.run();
+                }
+                return LongStream.rangeClosed(afterId + 1, TOOLS).limit(limit).mapToObj(ElasticReindexerTest::tool)
+                    .collect(Collectors.toList());
+            }
+
+            @Override
+            public void clearSession() {
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        indexQueue.stop();
+        server.stop(0);
+    }
+
+    @Test
+    public void everyEntryIndexedMovesTheAlias() {
+        Assert.assertEquals(TOOLS, new ElasticReindexer(indexQueue, esConfig).reindex(toolDAO));
+
+        String newIndex = createdIndex();
+        Assert.assertEquals(4, requests.stream().filter(request -> request.equals("POST /" + newIndex + "/_bulk")).count());
+        Assert.assertTrue(requests.contains("POST /_aliases"));
+        Assert.assertTrue(requests.contains("DELETE /" + OLD_INDEX));
+        Assert.assertFalse(requests.contains("DELETE /" + newIndex));
+    }
+
+    @Test
+    public void failuresWithinTheThresholdMoveTheAlias() {
+        esConfig.setMaxReindexFailures(2);
+        failingIds.add("3");
+        failingIds.add("7");
+
+        Assert.assertEquals(TOOLS - 2, new ElasticReindexer(indexQueue, esConfig).reindex(toolDAO));
+        Assert.assertTrue(requests.contains("POST /_aliases"));
+        Assert.assertTrue(requests.contains("DELETE /" + OLD_INDEX));
+    }
+
+    @Test
+    public void failuresOverTheThresholdKeepTheOldIndex() {
+        esConfig.setMaxReindexFailures(1);
+        failingIds.add("3");
+        failingIds.add("7");
+
+        try {
+            new ElasticReindexer(indexQueue, esConfig).reindex(toolDAO);
+            Assert.fail("expected the reindex to be abandoned");
+        } catch (CustomWebApplicationException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("2 entries could not be indexed"));
+        }
+        Assert.assertFalse("the alias still points at the old index", requests.contains("POST /_aliases"));
+        Assert.assertFalse(requests.contains("DELETE /" + OLD_INDEX));
+        Assert.assertTrue(requests.contains("DELETE /" + createdIndex()));
+        Assert.assertTrue("live updates no longer go to the dropped index", indexQueue.startReindex("entry_2"));
+    }
+
+    @Test
+    public void entriesWrittenByLiveUpdatesAreNotFailures() {
+        existingIds.add("3");
+
+        Assert.assertEquals(TOOLS, new ElasticReindexer(indexQueue, esConfig).reindex(toolDAO));
+        Assert.assertTrue(requests.contains("POST /_aliases"));
+    }
+
+    @Test(timeout = 10000)
+    public void liveUpdatesDuringTheReindexAreWrittenToTheNewIndex() throws Exception {
+        // tool 2 has been read for the reindex by now, deleting it races with the reindex
+        afterFirstBatch = () -> {
+            indexQueue.enqueue(ElasticIndexQueue.IndexOperation.delete("tool", 2));
+            indexQueue.enqueue(ElasticIndexQueue.IndexOperation.update("workflow", 20, "{\"doc\":{},\"doc_as_upsert\":true}"));
+            awaitQueueRequests(1);
+        };
+        new ElasticReindexer(indexQueue, esConfig).reindex(toolDAO);
+
+        String newIndex = createdIndex();
+        String live = bodies.get(requests.indexOf("POST /_bulk"));
+        Assert.assertTrue(live, live.contains("{\"delete\":{\"_index\":\"entry\",\"_type\":\"tool\",\"_id\":\"2\"}}"));
+        Assert.assertTrue(live, live.contains("{\"delete\":{\"_index\":\"" + newIndex + "\",\"_type\":\"tool\",\"_id\":\"2\"}}"));
+        Assert.assertTrue(live, live.contains("{\"update\":{\"_index\":\"" + newIndex + "\",\"_type\":\"workflow\",\"_id\":\"20\"}}"));
+        // the delete is made again once the reindex has sent everything, before searches move to the new index
+        int replay = requests.lastIndexOf("POST /" + newIndex + "/_bulk");
+        Assert.assertEquals("{\"delete\":{\"_type\":\"tool\",\"_id\":\"2\"}}\n", bodies.get(replay));
+        Assert.assertTrue(replay < requests.indexOf("POST /_aliases"));
+
+        indexQueue.enqueue(ElasticIndexQueue.IndexOperation.delete("tool", 3));
+        awaitQueueRequests(2);
+        String after = bodies.get(requests.lastIndexOf("POST /_bulk"));
+        Assert.assertFalse("the queue stops writing to the new index once the reindex is done", after.contains(newIndex));
+    }
+
+    private void awaitQueueRequests(int count) {
+        while (requests.stream().filter("POST /_bulk"::equals).count() < count) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private String createdIndex() {
+        return requests.stream().filter(request -> request.startsWith("PUT /")).map(request -> request.substring("PUT /".length()))
+            .findFirst().orElseThrow(() -> new AssertionError("no index was created"));
+    }
+
+    private static Tool tool(long id) {
+        Tool tool = new Tool();
+        tool.setId(id);
+        tool.setMode(ToolMode.MANUAL_IMAGE_PATH);
+        tool.setRegistry(Registry.QUAY_IO.toString());
+        tool.setNamespace("test_org");
+        tool.setName("tool" + id);
+        tool.setIsPublished(true);
+        return tool;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String request = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+        String body = CharStreams.toString(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        synchronized (requests) {
+            bodies.add(body);
+            requests.add(request);
+        }
+        if (request.endsWith("/_bulk")) {
+            respond(exchange, 200, bulkResponse(body));
+        } else if (request.equals("GET /_alias/entry")) {
+            ObjectNode aliases = MAPPER.createObjectNode();
+            aliases.putObject(OLD_INDEX).putObject("aliases").putObject("entry");
+            respond(exchange, 200, aliases);
+        } else {
+            respond(exchange, 200, MAPPER.createObjectNode().put("acknowledged", true));
+        }
+    }
+
+    /**
+     * Every action succeeds except those on the failing ids, and creates of the existing ids
+     */
+    private JsonNode bulkResponse(String body) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        ObjectNode response = MAPPER.createObjectNode();
+        ArrayNode items = response.putArray("items");
+        boolean errors = false;
+        for (int i = 0; i < lines.size(); i++) {
+            JsonNode action = MAPPER.readTree(lines.get(i));
+            String actionName = action.fieldNames().next();
+            if (!"delete".equals(actionName)) {
+                // the document
+                i++;
+            }
+            JsonNode target = action.get(actionName);
+            ObjectNode result = items.addObject().putObject(actionName);
+            result.put("_type", target.path("_type").asText()).put("_id", target.path("_id").asText());
+            if (failingIds.contains(target.path("_id").asText())) {
+                result.put("status", 400).putObject("error").put("type", "mapper_parsing_exception");
+                errors = true;
+            } else if ("create".equals(actionName) && existingIds.contains(target.path("_id").asText())) {
+                result.put("status", 409).putObject("error").put("type", "version_conflict_engine_exception");
+                errors = true;
+            } else {
+                result.put("status", 201);
+            }
+        }
+        response.put("errors", errors);
+        return response;
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
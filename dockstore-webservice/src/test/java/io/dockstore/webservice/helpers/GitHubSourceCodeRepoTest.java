@@ -0,0 +1,132 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.core.WorkflowVersion;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.GsonUtils;
+import org.eclipse.egit.github.core.client.RequestError;
+import org.eclipse.egit.github.core.client.RequestException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static io.dropwizard.testing.FixtureHelpers.fixture;
+
+public class GitHubSourceCodeRepoTest {
+    private static final String CONTENTS = "/repos/dockstore/symlinks/contents/";
+    private static final String MD5SUM_CWL = "cwlVersion: v1.0\nclass: CommandLineTool\n";
+
+    /**
+     * GitHub answers for a symbolic link to a file with the file it points to, under the path of that file
+     */
+    @Test
+    public void readsSymlinkToFile() {
+        FixtureClient client = new FixtureClient();
+        client.contents.put(CONTENTS + "Dockstore.cwl", fixture("fixtures/github/md5sum-cwl.json"));
+        GitHubSourceCodeRepo repo = new GitHubSourceCodeRepo("dockstore", "token", "symlinks", client, null);
+
+        Assert.assertEquals(MD5SUM_CWL, repo.readFile("Dockstore.cwl", "1111111111111111111111111111111111111111"));
+    }
+
+    /**
+     * A listing of a directory with one file looks like a single file too
+     */
+    @Test
+    public void readsFileInDirectoryWithOneFile() {
+        FixtureClient client = new FixtureClient();
+        client.contents.put(CONTENTS + "tools", fixture("fixtures/github/tools-listing.json"));
+        client.contents.put(CONTENTS + "tools/md5sum.cwl", fixture("fixtures/github/md5sum-cwl.json"));
+        GitHubSourceCodeRepo repo = new GitHubSourceCodeRepo("dockstore", "token", "symlinks", client, null);
+
+        Assert.assertEquals(MD5SUM_CWL, repo.readFile("tools/md5sum.cwl", "2222222222222222222222222222222222222222"));
+        Assert.assertNull(repo.readFile("tools", "2222222222222222222222222222222222222222"));
+    }
+
+    /**
+     * An unchanged commit only keeps its files if they were read from the same descriptor and test parameter file
+     */
+    @Test
+    public void unchangedCommitKeepsFilesReadFromTheSamePaths() {
+        Workflow workflow = new Workflow();
+        workflow.setDescriptorType("cwl");
+        workflow.setDefaultTestParameterFilePath("/test.json");
+        WorkflowVersion existingVersion = version("/Dockstore.cwl", false);
+        existingVersion.getSourceFiles().add(sourceFile(SourceFile.FileType.DOCKSTORE_CWL, "/Dockstore.cwl"));
+        existingVersion.getSourceFiles().add(sourceFile(SourceFile.FileType.CWL_TEST_JSON, "/test.json"));
+
+        Assert.assertTrue(GitHubSourceCodeRepo.readTheSameFiles(workflow, version("/Dockstore.cwl", false), existingVersion));
+        Assert.assertFalse("the descriptor path changed",
+            GitHubSourceCodeRepo.readTheSameFiles(workflow, version("/other.cwl", false), existingVersion));
+        workflow.setDefaultTestParameterFilePath("/other.json");
+        Assert.assertFalse("the default test parameter file changed",
+            GitHubSourceCodeRepo.readTheSameFiles(workflow, version("/Dockstore.cwl", false), existingVersion));
+        existingVersion.setDirtyBit(true);
+        Assert.assertTrue("an edited version does not read the default test parameter file",
+            GitHubSourceCodeRepo.readTheSameFiles(workflow, version("/Dockstore.cwl", true), existingVersion));
+        Assert.assertFalse("the version was edited since it was read",
+            GitHubSourceCodeRepo.readTheSameFiles(workflow, version("/Dockstore.cwl", false), existingVersion));
+        workflow.setDescriptorType("wdl");
+        Assert.assertFalse("the descriptor type changed",
+            GitHubSourceCodeRepo.readTheSameFiles(workflow, version("/Dockstore.cwl", true), existingVersion));
+    }
+
+    private static WorkflowVersion version(String workflowPath, boolean dirtyBit) {
+        WorkflowVersion version = new WorkflowVersion();
+        version.setWorkflowPath(workflowPath);
+        version.setDirtyBit(dirtyBit);
+        return version;
+    }
+
+    private static SourceFile sourceFile(SourceFile.FileType type, String path) {
+        SourceFile sourceFile = new SourceFile();
+        sourceFile.setType(type);
+        sourceFile.setPath(path);
+        return sourceFile;
+    }
+
+    /**
+     * Answers requests for the repository and its contents, with fixtures instead of GitHub
+     */
+    private static class FixtureClient extends GitHubClient {
+        private final Map<String, String> contents = new HashMap<>();
+
+        @Override
+        public GitHubResponse get(GitHubRequest request) throws IOException {
+            String uri = request.getUri();
+            if ("/repos/dockstore/symlinks".equals(uri)) {
+                return new GitHubResponse(null, new Repository().setName("symlinks").setOwner(new User().setLogin("dockstore")));
+            }
+            String json = contents.get(uri);
+            if (json == null) {
+                throw new RequestException(new RequestError(), HttpURLConnection.HTTP_NOT_FOUND);
+            }
+            boolean listing = json.trim().startsWith("[");
+            return new GitHubResponse(null, GsonUtils.fromJson(json, listing ? request.getArrayType() : request.getType()));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+import io.dockstore.webservice.AbstractBenchmark;
+import io.dockstore.webservice.core.Tag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Times matching the stored tags of a tool against the tags read from the registry, where a few tags were added, removed or rebuilt.
+ * nestedLoops is how AbstractImageRegistry.updateTags matched tags before Reconciliation was introduced. It grows with the square of
+ * the number of tags, reconcile should grow linearly, so compare the two over several sizes rather than at one,
+ * e.g. -p tags=1000,10000,100000.
+ */
+@State(Scope.Benchmark)
+public class ReconciliationBenchmark extends AbstractBenchmark {
+
+    @Param({ "10000" })
+    private int tags;
+
+    private final List<Tag> existing = new ArrayList<>();
+    private final List<Tag> incoming = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        // every hundredth tag was deleted, every hundredth is new and every tenth was rebuilt
+        for (int i = 0; i < tags; i++) {
+            if (i % 100 != 1) {
+                existing.add(tag("tag" + i, "image" + i));
+            }
+            if (i % 100 != 2) {
+                incoming.add(tag("tag" + i, i % 10 == 3 ? "rebuilt" + i : "image" + i));
+            }
+        }
+    }
+
+    private static Tag tag(String name, String imageId) {
+        Tag tag = new Tag();
+        tag.setName(name);
+        tag.setImageId(imageId);
+        tag.setLastModified(new Date(0));
+        return tag;
+    }
+
+    @Benchmark
+    public Reconciliation<Tag> reconcile() {
+        return Reconciliation.reconcile(existing, incoming, (oldTag, newTag) -> !Objects.equals(oldTag.getImageId(), newTag.getImageId()),
+            Tag::getName);
+    }
+
+    @Benchmark
+    public int nestedLoops() {
+        List<Tag> removed = new ArrayList<>();
+        for (Tag oldTag : existing) {
+            boolean exists = false;
+            for (Tag newTag : incoming) {
+                if (newTag.getName().equals(oldTag.getName())) {
+                    exists = true;
+                    break;
+                }
+            }
+            if (!exists) {
+                removed.add(oldTag);
+            }
+        }
+        int changed = 0;
+        List<Tag> added = new ArrayList<>();
+        for (Tag newTag : incoming) {
+            boolean exists = false;
+            for (Tag oldTag : existing) {
+                if (newTag.getName().equals(oldTag.getName())) {
+                    exists = true;
+                    if (!Objects.equals(oldTag.getImageId(), newTag.getImageId())) {
+                        changed++;
+                    }
+                    break;
+                }
+            }
+            if (!exists) {
+                added.add(newTag);
+            }
+        }
+        return removed.size() + added.size() + changed;
+    }
+}
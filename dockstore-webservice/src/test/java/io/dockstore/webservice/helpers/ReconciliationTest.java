@@ -0,0 +1,56 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReconciliationTest {
+
+    @Test
+    public void reconcileByName() {
+        List<String[]> existing = Arrays.asList(new String[] { "1.0", "a" }, new String[] { "1.1", "b" }, new String[] { "latest", "c" });
+        List<String[]> incoming = Arrays.asList(new String[] { "latest", "d" }, new String[] { "1.1", "b" }, new String[] { "2.0", "e" });
+        Reconciliation<String[]> diff = Reconciliation
+            .reconcile(existing, incoming, (oldItem, newItem) -> !Objects.equals(oldItem[1], newItem[1]), item -> item[0]);
+
+        Assert.assertEquals(Collections.singletonList(incoming.get(2)), diff.getAdded());
+        Assert.assertEquals(Collections.singletonList(existing.get(0)), diff.getRemoved());
+        Assert.assertEquals(Arrays.asList(existing.get(1), existing.get(2)), diff.getKept());
+        Assert.assertEquals(1, diff.getChanged().size());
+        Assert.assertSame(existing.get(2), diff.getChanged().get(0).getLeft());
+        Assert.assertSame(incoming.get(0), diff.getChanged().get(0).getRight());
+        Assert.assertEquals(1, diff.getUnchanged().size());
+        Assert.assertEquals("1 added, 1 removed, 1 changed, 1 unchanged", diff.toString());
+    }
+
+    @Test
+    public void reconcileFallsBackToLaterKeys() {
+        List<String[]> existing = Collections.singletonList(new String[] { "quay.io/org/repo", "github.com/org/repo" });
+        List<String[]> incoming = Collections.singletonList(new String[] { "quay.io/org/repo/tool", "github.com/org/repo" });
+        Reconciliation<String[]> diff = Reconciliation.reconcile(existing, incoming, (oldItem, newItem) -> false, item -> item[0], item -> item[1]);
+
+        Assert.assertTrue(diff.isEmpty());
+        Assert.assertEquals(existing, diff.getKept());
+        Assert.assertTrue(diff.getAdded().isEmpty() && diff.getRemoved().isEmpty());
+    }
+}
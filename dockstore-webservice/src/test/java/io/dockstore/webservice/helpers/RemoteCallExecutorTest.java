@@ -0,0 +1,81 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.helpers;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.dockstore.webservice.resources.ResourceUtilities.RetryableException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RemoteCallExecutorTest {
+
+    @Test(timeout = 10000)
+    public void cancelledReadsGiveBackTheirPermit() throws Exception {
+        final String host = "queued.example.com";
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // keep every thread of the pool busy, so the reads below stay queued
+            for (int i = 0; i < RemoteCallExecutor.THREADS; i++) {
+                RemoteCallExecutor.submit("busy-" + i % 2 + ".example.com", () -> {
+                    release.await();
+                    return null;
+                });
+            }
+            // twice as many as the host allows, submitting blocks once permits of cancelled reads are lost
+            for (int i = 0; i < 2 * RemoteCallExecutor.MAX_READS_PER_HOST; i++) {
+                Future<String> queued = RemoteCallExecutor.submit(host, () -> "queued");
+                Assert.assertTrue(queued.cancel(true));
+            }
+        } finally {
+            release.countDown();
+        }
+        Assert.assertEquals("done", RemoteCallExecutor.submit(host, () -> "done").get());
+    }
+
+    @Test(timeout = 10000)
+    public void retriesAfterTheWaitTheServerAskedFor() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        Future<String> read = RemoteCallExecutor.submitWithRetries("retry.example.com", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new RetryableException(429, "Too Many Requests", 0);
+            }
+            return "done";
+        });
+        Assert.assertEquals("done", read.get());
+        Assert.assertEquals(3, attempts.get());
+    }
+
+    @Test(timeout = 10000)
+    public void givesUpWithTheLastFailure() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        Future<String> read = RemoteCallExecutor.submitWithRetries("retry.example.com", () -> {
+            attempts.incrementAndGet();
+            throw new RetryableException(503, "Service Unavailable", 0);
+        });
+        try {
+            read.get();
+            Assert.fail("expected the read to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RetryableException);
+        }
+        Assert.assertEquals(4, attempts.get());
+    }
+}
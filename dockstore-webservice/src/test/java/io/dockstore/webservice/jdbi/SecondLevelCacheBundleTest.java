@@ -0,0 +1,119 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.jdbi;
+
+import java.util.Map;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration.CacheRegionConfig;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.setup.Environment;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SecondLevelCacheBundleTest {
+    private DockstoreWebserviceConfiguration configuration;
+    private Environment environment;
+
+    @Before
+    public void setUp() {
+        configuration = new DockstoreWebserviceConfiguration();
+        environment = new Environment("test", Jackson.newObjectMapper(), Validators.newValidator(), new MetricRegistry(),
+            getClass().getClassLoader());
+    }
+
+    @After
+    public void shutDownCacheManagers() {
+        // the region factory shares a singleton manager, the next test has to build its own
+        CacheManager.ALL_CACHE_MANAGERS.forEach(CacheManager::shutdown);
+    }
+
+    @Test
+    public void disabledLeavesHibernateAlone() {
+        new SecondLevelCacheBundle().run(configuration, environment);
+
+        Assert.assertTrue(configuration.getDataSourceFactory().getProperties().isEmpty());
+        Assert.assertTrue(CacheManager.ALL_CACHE_MANAGERS.isEmpty());
+        Assert.assertTrue(environment.metrics().getGauges().isEmpty());
+    }
+
+    @Test
+    public void enabledTurnsOnSecondLevelAndQueryCache() {
+        configuration.getSecondLevelCacheConfiguration().setEnabled(true);
+        new SecondLevelCacheBundle().run(configuration, environment);
+
+        Map<String, String> properties = configuration.getDataSourceFactory().getProperties();
+        Assert.assertEquals("true", properties.get("hibernate.cache.use_second_level_cache"));
+        Assert.assertEquals("true", properties.get("hibernate.cache.use_query_cache"));
+        Assert.assertEquals(SingletonEhCacheRegionFactory.class.getName(), properties.get("hibernate.cache.region.factory_class"));
+    }
+
+    @Test
+    public void databasePropertiesWin() {
+        configuration.getSecondLevelCacheConfiguration().setEnabled(true);
+        configuration.getDataSourceFactory().getProperties().put("hibernate.cache.use_query_cache", "false");
+        new SecondLevelCacheBundle().run(configuration, environment);
+
+        Assert.assertEquals("false", configuration.getDataSourceFactory().getProperties().get("hibernate.cache.use_query_cache"));
+    }
+
+    @Test
+    public void regionsAreConfiguredByName() {
+        DockstoreWebserviceConfiguration.SecondLevelCacheConfig cacheConfig = configuration.getSecondLevelCacheConfiguration();
+        cacheConfig.setEnabled(true);
+        CacheRegionConfig entry = new CacheRegionConfig();
+        entry.setMaxEntries(42);
+        entry.setTimeToLiveSeconds(7);
+        cacheConfig.getRegions().put("entry", entry);
+        cacheConfig.getDefaultRegion().setMaxEntries(5);
+        new SecondLevelCacheBundle().run(configuration, environment);
+
+        CacheManager manager = CacheManager.getInstance();
+        CacheConfiguration entryConfig = manager.getEhcache("entry").getCacheConfiguration();
+        Assert.assertEquals(42, entryConfig.getMaxEntriesLocalHeap());
+        Assert.assertEquals(7, entryConfig.getTimeToLiveSeconds());
+        // regions that are not listed use the default
+        Assert.assertEquals(5, manager.getEhcache("sourcefilecontent").getCacheConfiguration().getMaxEntriesLocalHeap());
+        // query results are only known to be fresh as long as these are
+        CacheConfiguration timestamps = manager.getEhcache("org.hibernate.cache.spi.UpdateTimestampsCache").getCacheConfiguration();
+        Assert.assertTrue(timestamps.isEternal());
+        Assert.assertEquals(0, timestamps.getMaxEntriesLocalHeap());
+    }
+
+    @Test
+    public void regionsReportMetrics() {
+        configuration.getSecondLevelCacheConfiguration().setEnabled(true);
+        new SecondLevelCacheBundle().run(configuration, environment);
+
+        for (String region : new String[] { "entry", "version", "sourcefile", "sourcefilecontent", "label", "collections", "paths" }) {
+            for (String metric : new String[] { "hits", "misses", "puts", "evictions", "size" }) {
+                String name = MetricRegistry.name("hibernate", "cache", region, metric);
+                Assert.assertTrue(name, environment.metrics().getGauges().containsKey(name));
+            }
+        }
+        CacheManager.getInstance().getEhcache("label").put(new Element(1L, "label"));
+        Assert.assertEquals(1, environment.metrics().getGauges().get("hibernate.cache.label.size").getValue());
+    }
+}
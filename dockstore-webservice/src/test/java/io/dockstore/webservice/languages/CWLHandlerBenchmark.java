@@ -0,0 +1,113 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.languages;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import io.dockstore.webservice.AbstractBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Times the DAG and tool table of a synthetic workflow whose steps run a smaller number of shared tools.
+ * Each tool file is imported by steps / distinctTools steps. Since CWLDocuments, each file is parsed once however many steps import
+ * it, so with steps fixed the time of dag and toolTable should drop as distinctTools goes down.
+ * dagUncached and toolTableUncached are the baseline: every step runs its own copy of its tool, so every step parses its file
+ * again as it did before CWLDocuments, whatever distinctTools is.
+ * Vary distinctTools with steps fixed, e.g. -p steps=200 -p distinctTools=1,20,200.
+ */
+@State(Scope.Benchmark)
+public class CWLHandlerBenchmark extends AbstractBenchmark {
+
+    @Param({ "200" })
+    private int steps;
+
+    @Param({ "20" })
+    private int distinctTools;
+
+    private final CWLHandler handler = new CWLHandler();
+    private String mainDescriptor;
+    private final Map<String, String> secondaryDescriptors = new HashMap<>();
+    private String uncachedMainDescriptor;
+    private final Map<String, String> uncachedSecondaryDescriptors = new HashMap<>();
+
+    @Setup
+    public void setup() {
+        mainDescriptor = workflow(step -> "tools/tool" + (step % distinctTools) + ".cwl");
+        for (int i = 0; i < distinctTools; i++) {
+            secondaryDescriptors.put("tools/tool" + i + ".cwl", tool(i));
+        }
+
+        // the copies differ by a comment, so that no two steps share a parsed document
+        uncachedMainDescriptor = workflow(step -> "copies/step" + step + ".cwl");
+        for (int i = 0; i < steps; i++) {
+            uncachedSecondaryDescriptors.put("copies/step" + i + ".cwl", tool(i % distinctTools) + "# copy for step" + i + "\n");
+        }
+    }
+
+    private String workflow(IntFunction<String> toolPath) {
+        StringBuilder workflow = new StringBuilder();
+        workflow.append("cwlVersion: v1.0\nclass: Workflow\n");
+        workflow.append("requirements:\n  - class: DockerRequirement\n    dockerPull: debian:8\n");
+        workflow.append("inputs:\n  input_file: File\n");
+        workflow.append("outputs:\n  output_file:\n    type: File\n    outputSource: step").append(steps - 1).append("/output_file\n");
+        workflow.append("steps:\n");
+        for (int i = 0; i < steps; i++) {
+            String source = i == 0 ? "input_file" : "step" + (i - 1) + "/output_file";
+            workflow.append("  step").append(i).append(":\n");
+            workflow.append("    run: ").append(toolPath.apply(i)).append("\n");
+            workflow.append("    in:\n      input_file: ").append(source).append("\n");
+            workflow.append("    out: [output_file]\n");
+        }
+        return workflow.toString();
+    }
+
+    private static String tool(int i) {
+        return "cwlVersion: v1.0\nclass: CommandLineTool\nbaseCommand: [tool" + i + "]\n"
+            + "requirements:\n  - class: DockerRequirement\n    dockerPull: ubuntu:16.0" + (i % 10) + "\n"
+            + "hints:\n  - class: ResourceRequirement\n    coresMin: 1\n"
+            + "inputs:\n  input_file:\n    type: File\n    inputBinding:\n      position: 1\n"
+            + "outputs:\n  output_file:\n    type: File\n    outputBinding:\n      glob: out.txt\n";
+    }
+
+    @Benchmark
+    public String dag() {
+        return handler.getContent("/Dockstore.cwl", mainDescriptor, secondaryDescriptors, LanguageHandlerInterface.Type.DAG, null);
+    }
+
+    @Benchmark
+    public String toolTable() {
+        return handler.getContent("/Dockstore.cwl", mainDescriptor, secondaryDescriptors, LanguageHandlerInterface.Type.TOOLS, null);
+    }
+
+    @Benchmark
+    public String dagUncached() {
+        return handler.getContent("/Dockstore.cwl", uncachedMainDescriptor, uncachedSecondaryDescriptors,
+            LanguageHandlerInterface.Type.DAG, null);
+    }
+
+    @Benchmark
+    public String toolTableUncached() {
+        return handler.getContent("/Dockstore.cwl", uncachedMainDescriptor, uncachedSecondaryDescriptors,
+            LanguageHandlerInterface.Type.TOOLS, null);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.resources;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Workflow;
+import io.dockstore.webservice.core.WorkflowVersion;
+import io.dockstore.webservice.jdbi.WorkflowDAO;
+import io.dockstore.webservice.languages.LanguageHandlerInterface;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkflowArtifactsTest {
+    private static final String DESCRIPTOR = "cwlVersion: v1.0\nclass: Workflow\n"
+        + "inputs:\n  input_file: File\n"
+        + "outputs:\n  output_file:\n    type: File\n    outputSource: step/output_file\n"
+        + "steps:\n  step:\n    run: tool.cwl\n    in:\n      input_file: input_file\n    out: [output_file]\n";
+    private static final String TOOL = "cwlVersion: v1.0\nclass: CommandLineTool\nbaseCommand: [tool]\n"
+        + "requirements:\n  - class: DockerRequirement\n    dockerPull: ubuntu:16.04\n"
+        + "inputs:\n  input_file:\n    type: File\n    inputBinding:\n      position: 1\n"
+        + "outputs:\n  output_file:\n    type: File\n    outputBinding:\n      glob: out.txt\n";
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private Workflow workflow;
+    private WorkflowVersion version;
+    private WorkflowArtifacts artifacts;
+
+    @Before
+    public void setUp() {
+        workflow = new Workflow();
+        workflow.setId(1);
+        workflow.setDescriptorType("cwl");
+        version = new WorkflowVersion();
+        version.setName("master");
+        version.setReference("master");
+        version.setWorkflowPath("/Dockstore.cwl");
+        version.getSourceFiles().add(sourceFile("/Dockstore.cwl", DESCRIPTOR));
+        version.getSourceFiles().add(sourceFile("tool.cwl", TOOL));
+        workflow.addWorkflowVersion(version);
+        // the background rebuild finds the workflow through the DAO, nothing else touches the database
+        ClassLoader classLoader = getClass().getClassLoader();
+        Session session = (Session)Proxy.newProxyInstance(classLoader, new Class[] { Session.class }, (proxy, method, args) -> {
+            if ("get".equals(method.getName())) {
+                return workflow;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+        SessionFactory sessionFactory = (SessionFactory)Proxy.newProxyInstance(classLoader, new Class[] { SessionFactory.class },
+            (proxy, method, args) -> {
+                if ("getCurrentSession".equals(method.getName())) {
+                    return session;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+        artifacts = new WorkflowArtifacts(sessionFactory, new WorkflowDAO(sessionFactory), null, null, tasks::add);
+    }
+
+    @Test
+    public void storedArtifactsAreServed() {
+        version.setArtifacts("stored dag", "stored tools", "hash");
+
+        Assert.assertEquals("stored dag", artifacts.get(workflow, version, LanguageHandlerInterface.Type.DAG));
+        Assert.assertEquals("stored tools", artifacts.get(workflow, version, LanguageHandlerInterface.Type.TOOLS));
+        Assert.assertEquals("hash", version.getArtifactHash());
+        Assert.assertTrue("nothing is rebuilt while the hash is set, even if the stored content is not what the files give",
+            tasks.isEmpty());
+    }
+
+    @Test
+    public void neverBuiltArtifactsAreBuiltOnRequest() {
+        String toolTable = artifacts.get(workflow, version, LanguageHandlerInterface.Type.TOOLS);
+
+        Assert.assertTrue(toolTable, toolTable.contains("ubuntu:16.04"));
+        Assert.assertNotNull(version.getDagJson());
+        Assert.assertNotNull(version.getArtifactHash());
+        Assert.assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void clearedArtifactsAreServedUntilRebuilt() {
+        version.setArtifacts("old dag", "old tools", "hash");
+        version.clearArtifactHash();
+
+        Assert.assertEquals("old dag", artifacts.get(workflow, version, LanguageHandlerInterface.Type.DAG));
+        Assert.assertEquals("old tools", artifacts.get(workflow, version, LanguageHandlerInterface.Type.TOOLS));
+        Assert.assertEquals("one rebuild is queued however often the version is requested", 1, tasks.size());
+        Assert.assertNull(version.getArtifactHash());
+    }
+
+    @Test
+    public void rebuildReplacesClearedArtifacts() {
+        version.setArtifacts("old dag", "old tools", "hash");
+        version.clearArtifactHash();
+        artifacts.get(workflow, version, LanguageHandlerInterface.Type.DAG);
+
+        tasks.remove(0).run();
+        Assert.assertTrue(version.getToolTableJson(), version.getToolTableJson().contains("ubuntu:16.04"));
+        Assert.assertNotEquals("old dag", version.getDagJson());
+        String hash = version.getArtifactHash();
+        Assert.assertNotNull(hash);
+
+        // the rebuilt content is served as it is, and rebuilding the same files again gives the same hash
+        Assert.assertEquals(version.getDagJson(), artifacts.get(workflow, version, LanguageHandlerInterface.Type.DAG));
+        Assert.assertTrue(tasks.isEmpty());
+        version.clearArtifactHash();
+        artifacts.get(workflow, version, LanguageHandlerInterface.Type.DAG);
+        tasks.remove(0).run();
+        Assert.assertEquals(hash, version.getArtifactHash());
+    }
+
+    @Test
+    public void changesBeforeTheQueuedRebuildRunsAreBuilt() {
+        version.setArtifacts("old dag", "old tools", "hash");
+        version.clearArtifactHash();
+        artifacts.get(workflow, version, LanguageHandlerInterface.Type.DAG);
+        Runnable rebuild = tasks.remove(0);
+        version.getSourceFiles().removeIf(file -> "tool.cwl".equals(file.getPath()));
+        version.getSourceFiles().add(sourceFile("tool.cwl", TOOL.replace("ubuntu:16.04", "debian:8")));
+        // a refresh that changed the files asks again before the queued rebuild ran
+        artifacts.get(workflow, version, LanguageHandlerInterface.Type.DAG);
+        Assert.assertTrue(tasks.isEmpty());
+
+        rebuild.run();
+        Assert.assertTrue(version.getToolTableJson(), version.getToolTableJson().contains("debian:8"));
+    }
+
+    private static SourceFile sourceFile(String path, String content) {
+        SourceFile sourceFile = new SourceFile();
+        sourceFile.setType(SourceFile.FileType.DOCKSTORE_CWL);
+        sourceFile.setPath(path);
+        sourceFile.setContent(content);
+        return sourceFile;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.dockstore.webservice.resources;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.dockstore.webservice.CustomWebApplicationException;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.RefreshJob;
+import io.dockstore.webservice.helpers.RateLimits;
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkflowRefreshSchedulerTest {
+    private final DockstoreWebserviceConfiguration.RefreshConfig config = new DockstoreWebserviceConfiguration.RefreshConfig();
+    private FakeTasks tasks;
+    private WorkflowRefreshScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        config.setThreads(1);
+        config.setRateLimitReserve(0);
+        tasks = new FakeTasks();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void submittedJobRefreshesEveryRepository() throws Exception {
+        tasks.repositories.put(1L, Arrays.asList("a", "b"));
+        tasks.repositories.put(2L, Arrays.asList("b", "c"));
+        start();
+
+        RefreshJob job = scheduler.submit("admin");
+        tasks.finished.await();
+
+        Assert.assertEquals("admin", job.getRequestedBy());
+        Assert.assertEquals(RefreshJob.Status.COMPLETED, tasks.statuses.get(job.getId()));
+        Assert.assertEquals("a repository two users have access to is refreshed once", Arrays.asList("a", "b", "c"), tasks.refreshed);
+        Assert.assertSame(job, scheduler.getJob(job.getId()));
+    }
+
+    @Test(timeout = 10000)
+    public void onlyOneJobRunsAtATime() throws Exception {
+        tasks.repositories.put(1L, Collections.singletonList("a"));
+        tasks.blocked = new CountDownLatch(1);
+        start();
+
+        RefreshJob job = scheduler.submit("admin");
+        try {
+            scheduler.submit("admin");
+            Assert.fail("expected a conflict");
+        } catch (CustomWebApplicationException e) {
+            Assert.assertEquals(HttpStatus.SC_CONFLICT, e.getResponse().getStatus());
+        }
+        tasks.blocked.countDown();
+        tasks.finished.await();
+        Assert.assertEquals(RefreshJob.Status.COMPLETED, tasks.statuses.get(job.getId()));
+    }
+
+    @Test
+    public void missingJobIsNotFound() {
+        start();
+        try {
+            scheduler.getJob(42);
+            Assert.fail("expected the job not to be found");
+        } catch (CustomWebApplicationException e) {
+            Assert.assertEquals(HttpStatus.SC_NOT_FOUND, e.getResponse().getStatus());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void startResumesTheLatestRunningJob() throws Exception {
+        tasks.repositories.put(1L, Arrays.asList("a", "b"));
+        tasks.running.add(tasks.job(1, "admin"));
+        tasks.running.add(tasks.job(2, "admin"));
+        tasks.alreadyRefreshed.put(2L, Collections.singletonList("a"));
+        start();
+
+        tasks.finished.await();
+        Assert.assertEquals(RefreshJob.Status.FAILED, tasks.statuses.get(1L));
+        Assert.assertEquals(RefreshJob.Status.COMPLETED, tasks.statuses.get(2L));
+        Assert.assertEquals("repositories refreshed before the restart are skipped", Collections.singletonList("b"), tasks.refreshed);
+    }
+
+    @Test(timeout = 10000)
+    public void failedRepositoryIsRecordedAndTheJobGoesOn() throws Exception {
+        tasks.repositories.put(1L, Arrays.asList("a", "b"));
+        tasks.failing.add("a");
+        start();
+
+        RefreshJob job = scheduler.submit("admin");
+        tasks.finished.await();
+
+        Assert.assertEquals(Collections.singletonList("a"), tasks.failed);
+        Assert.assertEquals(Collections.singletonList("b"), tasks.refreshed);
+        Assert.assertEquals(RefreshJob.Status.COMPLETED, tasks.statuses.get(job.getId()));
+    }
+
+    @Test(timeout = 10000)
+    public void jobFailsWhenItCannotRecordProgress() throws Exception {
+        tasks.repositories.put(1L, Collections.singletonList("a"));
+        tasks.failing.add("a");
+        tasks.recordingFails = true;
+        start();
+
+        RefreshJob job = scheduler.submit("admin");
+        tasks.finished.await();
+        Assert.assertEquals(RefreshJob.Status.FAILED, tasks.statuses.get(job.getId()));
+    }
+
+    @Test(timeout = 10000)
+    public void rateLimitedRepositoryIsPutOffWithoutHoldingAWorker() throws Exception {
+        tasks.repositories.put(1L, Arrays.asList("limited", "free"));
+        final long reset = System.currentTimeMillis() + 500;
+        RateLimits.update(FakeTasks.token("limited"), 0, reset);
+        start();
+
+        scheduler.submit("admin");
+        tasks.finished.await();
+
+        Assert.assertEquals("the only worker refreshes the other repository meanwhile", Arrays.asList("free", "limited"), tasks.refreshed);
+        Assert.assertTrue(tasks.refreshedAt.get("limited") >= reset);
+        Assert.assertEquals("the budget is forgotten after the reset", 0, RateLimits.delayMillis(FakeTasks.token("limited"), 0));
+    }
+
+    private void start() {
+        scheduler = new WorkflowRefreshScheduler(tasks, config);
+        scheduler.start();
+    }
+
+    /**
+     * Keeps jobs and repositories in memory, each user has the repositories listed for them and uses a token named after each one
+     */
+    private static final class FakeTasks extends WorkflowRefreshTasks {
+        private final Map<Long, List<String>> repositories = new ConcurrentHashMap<>();
+        private final Map<Long, List<String>> alreadyRefreshed = new ConcurrentHashMap<>();
+        private final Map<Long, RefreshJob> jobs = new ConcurrentHashMap<>();
+        private final Map<Long, RefreshJob.Status> statuses = new ConcurrentHashMap<>();
+        private final List<RefreshJob> running = new ArrayList<>();
+        private final Set<String> failing = ConcurrentHashMap.newKeySet();
+        private final List<String> refreshed = new CopyOnWriteArrayList<>();
+        private final Map<String, Long> refreshedAt = new ConcurrentHashMap<>();
+        private final List<String> failed = new CopyOnWriteArrayList<>();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile CountDownLatch blocked = new CountDownLatch(0);
+        private volatile boolean recordingFails = false;
+
+        FakeTasks() {
+            super(null, null, null, null);
+        }
+
+        static String token(String gitUrl) {
+            return "token-" + gitUrl;
+        }
+
+        RefreshJob job(long id, String requestedBy) {
+            RefreshJob job = new RefreshJob(requestedBy) {
+                @Override
+                public long getId() {
+                    return id;
+                }
+            };
+            jobs.put(id, job);
+            return job;
+        }
+
+        @Override
+        public RefreshJob createJob(String requestedBy) {
+            return job(jobs.size() + 1, requestedBy);
+        }
+
+        @Override
+        public RefreshJob findJob(long jobId) {
+            return jobs.get(jobId);
+        }
+
+        @Override
+        public List<RefreshJob> findRunningJobs() {
+            return running;
+        }
+
+        @Override
+        public void finishJob(long jobId, RefreshJob.Status status) {
+            statuses.put(jobId, status);
+            if (jobId == jobs.size()) {
+                finished.countDown();
+            }
+        }
+
+        @Override
+        public List<String> prepareResume(long jobId) {
+            return alreadyRefreshed.getOrDefault(jobId, Collections.emptyList());
+        }
+
+        @Override
+        public List<Long> findUserIds() {
+            List<Long> userIds = new ArrayList<>(repositories.keySet());
+            Collections.sort(userIds);
+            return userIds;
+        }
+
+        @Override
+        public List<RepositoryTask> findRepositories(long jobId, long userId, Set<String> claimed) {
+            List<RepositoryTask> tasks = new ArrayList<>();
+            for (String gitUrl : repositories.get(userId)) {
+                if (claimed.add(gitUrl)) {
+                    tasks.add(new RepositoryTask(userId, 0, token(gitUrl), gitUrl, gitUrl));
+                }
+            }
+            return tasks;
+        }
+
+        @Override
+        public void refreshRepository(long jobId, RepositoryTask task) {
+            try {
+                blocked.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing.contains(task.getGitUrl())) {
+                throw new IllegalStateException("could not refresh " + task.getGitUrl());
+            }
+            refreshedAt.put(task.getGitUrl(), System.currentTimeMillis());
+            refreshed.add(task.getGitUrl());
+        }
+
+        @Override
+        public void recordFailure(long jobId, RepositoryTask task) {
+            if (recordingFails) {
+                throw new IllegalStateException("could not record " + task.getGitUrl());
+            }
+            failed.add(task.getGitUrl());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *    Copyright 2017 OICR
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.swagger.api.impl;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dockstore.common.Registry;
+import io.dockstore.webservice.DockstoreWebserviceConfiguration;
+import io.dockstore.webservice.core.SourceFile;
+import io.dockstore.webservice.core.Tag;
+import io.dockstore.webservice.core.Tool;
+import io.dockstore.webservice.core.ToolMode;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ToolProjectionCacheTest {
+    private final DockstoreWebserviceConfiguration config = new DockstoreWebserviceConfiguration();
+    private MetricRegistry metrics;
+    private Tool tool;
+
+    @Before
+    public void setUp() {
+        config.setHostname("localhost");
+        config.setPort("8080");
+        config.setScheme("http");
+        metrics = new MetricRegistry();
+        ToolProjectionCache.configure(CacheBuilderSpec.parse("maximumSize=10"), metrics);
+
+        tool = new Tool();
+        tool.setId(1);
+        tool.setMode(ToolMode.AUTO_DETECT_QUAY_TAGS_AUTOMATED_BUILDS);
+        tool.setName("test6");
+        tool.setNamespace("test_org");
+        tool.setRegistry(Registry.QUAY_IO.toString());
+        tool.setGitUrl("git@github.com:test_org/test6.git");
+        tool.setDefaultCwlPath("/Dockstore.cwl");
+        tool.setLastUpdated(new Date(1000L));
+        Tag tag = new Tag();
+        tag.setName("master");
+        tag.setReference("master");
+        tag.setCwlPath("/Dockstore.cwl");
+        SourceFile sourceFile = new SourceFile();
+        sourceFile.setType(SourceFile.FileType.DOCKSTORE_CWL);
+        sourceFile.setPath("/Dockstore.cwl");
+        sourceFile.setContent("cwlVersion: v1.0");
+        tag.addSourceFile(sourceFile);
+        tool.addTag(tag);
+    }
+
+    @Test
+    public void unchangedEntryIsConvertedOnce() {
+        io.swagger.model.Tool converted = ToolProjectionCache.get(tool, config).getLeft();
+
+        Assert.assertSame(converted, ToolProjectionCache.get(tool, config).getLeft());
+        Assert.assertEquals(1L, metrics.getGauges().get(MetricRegistry.name(ToolProjectionCache.class, "hits")).getValue());
+    }
+
+    @Test
+    public void cachedEntryIsFoundFromItsTimestamps() {
+        io.swagger.model.Tool converted = ToolProjectionCache.get(tool, config).getLeft();
+
+        // the database hands back Timestamps, the entry was given a Date
+        Assert.assertSame(converted, ToolProjectionCache.getIfCurrent(1L, null, new Timestamp(1000L)).getLeft());
+        Assert.assertNull("the entry changed since it was converted", ToolProjectionCache.getIfCurrent(1L, null, new Timestamp(2000L)));
+        Assert.assertNull("the entry was never converted", ToolProjectionCache.getIfCurrent(2L, null, new Timestamp(1000L)));
+    }
+
+    @Test
+    public void neverUpdatedEntryIsFoundFromItsTimestamps() {
+        tool.setLastUpdated(null);
+        io.swagger.model.Tool converted = ToolProjectionCache.get(tool, config).getLeft();
+
+        Assert.assertSame(converted, ToolProjectionCache.getIfCurrent(1L, null, null).getLeft());
+    }
+
+    @Test
+    public void updatedEntryIsConvertedAgain() {
+        io.swagger.model.Tool converted = ToolProjectionCache.get(tool, config).getLeft();
+        tool.setLastUpdated(new Date(2000L));
+
+        Assert.assertNotSame(converted, ToolProjectionCache.get(tool, config).getLeft());
+    }
+
+    @Test
+    public void invalidatedEntryIsConvertedAgain() {
+        io.swagger.model.Tool converted = ToolProjectionCache.get(tool, config).getLeft();
+        // what the invalidator does when a version or file of the entry is written
+        tool.getTags().iterator().next().setReference("develop");
+        ToolProjectionCache.invalidate(1L);
+
+        Assert.assertNull(ToolProjectionCache.getIfCurrent(1L, null, new Date(1000L)));
+        Assert.assertNotSame(converted, ToolProjectionCache.get(tool, config).getLeft());
+    }
+}